@@ -0,0 +1,91 @@
+package red.jiuzhou.dbxml;
+
+import red.jiuzhou.validation.XmlFieldOrderManager;
+import red.jiuzhou.validation.XmlFieldValueCorrector;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 旧版逐行字段投影（仅供 RowProjectionBenchmark 对比）
+ *
+ * 与替换前 DbToXmlGenerator.writeItem / parseSubquery 的行内逻辑相同：每行重新排序、过滤黑名单、
+ * 调整 attacks/skills 顺序，按表名分派修正规则，子表行用 HashMap 暂存子节点属性。
+ *
+ * @author yanxq
+ * @date 2026-10-16
+ */
+final class LegacyRowProjection {
+
+    private LegacyRowProjection() {
+    }
+
+    /**
+     * 主表行：先写属性，再写子节点
+     */
+    static void writeItem(XmlExportWriter xmlWriter, String tableName, Map<String, Object> itemMap) throws IOException {
+        Set<String> keySet = itemMap.keySet();
+        keySet = XmlFieldOrderManager.sortFields(tableName, keySet);
+        keySet = DbToXmlGenerator.reorderIfNeeded(keySet, "attacks", "skills");
+        for (String key : keySet) {
+            if (key.startsWith("_attr_") && itemMap.get(key) != null) {
+                String value = XmlFieldValueCorrector.correctValue(tableName, key, String.valueOf(itemMap.get(key)));
+                xmlWriter.writeAttribute(key.replace("_attr_", ""), value);
+            }
+        }
+        for (String key : keySet) {
+            if (itemMap.get(key) != null && !key.startsWith("_attr_")) {
+                String value = String.valueOf(itemMap.get(key));
+                value = XmlFieldValueCorrector.correctValue(tableName, key, value);
+                xmlWriter.writeTextElement(key, value);
+            }
+        }
+    }
+
+    /**
+     * 子表行：_attr__子节点__属性 形式的属性在写对应子节点时附加
+     */
+    static void writeSubRow(XmlExportWriter xmlWriter, String tableName, Map<String, Object> subMap,
+                            Predicate<String> skip) throws IOException {
+        Set<String> subKeySet = subMap.keySet();
+        subKeySet = XmlFieldOrderManager.sortFields(tableName, subKeySet);
+        subKeySet = DbToXmlGenerator.reorderIfNeeded(subKeySet, "attacks", "skills");
+
+        Map<String, Map<String, String>> childAttrs = new HashMap<>();
+        for (String subKey : subKeySet) {
+            if (skip.test(subKey)) {
+                continue;
+            }
+            if (subKey.startsWith("_attr_") && subMap.get(subKey) != null) {
+                String subValue = String.valueOf(subMap.get(subKey));
+                subValue = XmlFieldValueCorrector.correctValue(tableName, subKey, subValue);
+                if (subKey.contains("__")) {
+                    String[] attrArr = subKey.split("__");
+                    childAttrs.computeIfAbsent(attrArr[1], k -> new LinkedHashMap<>()).put(attrArr[2], subValue);
+                } else {
+                    xmlWriter.writeAttribute(subKey.replace("_attr_", ""), subValue);
+                }
+            }
+        }
+        for (String subKey : subKeySet) {
+            if (skip.test(subKey)) {
+                continue;
+            }
+            if (!subKey.startsWith("_attr_") && subMap.get(subKey) != null) {
+                String subValue = String.valueOf(subMap.get(subKey));
+                subValue = XmlFieldValueCorrector.correctValue(tableName, subKey, subValue);
+                xmlWriter.writeStartElement(subKey);
+                Map<String, String> attrs = childAttrs.remove(subKey);
+                if (attrs != null) {
+                    attrs.forEach(xmlWriter::writeAttribute);
+                }
+                xmlWriter.writeCharacters(subValue);
+                xmlWriter.writeEndElement();
+            }
+        }
+    }
+}
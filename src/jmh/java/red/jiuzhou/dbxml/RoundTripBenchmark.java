@@ -0,0 +1,150 @@
+package red.jiuzhou.dbxml;
+
+import cn.hutool.core.io.FileUtil;
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.DocumentHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.transaction.TransactionStatus;
+import red.jiuzhou.batch.ConflictResolutionStrategy;
+import red.jiuzhou.util.CopyBulkLoader;
+import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.EncodingMetadataManager;
+import red.jiuzhou.util.RoundTripValidator;
+import red.jiuzhou.util.SmartInsertExecutor;
+import red.jiuzhou.util.TableChangeTracker;
+import red.jiuzhou.validation.XmlFieldValidator;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @className: red.jiuzhou.dbxml.RoundTripBenchmark.java
+ * @description: DB ↔ XML 往返各阶段基准
+ *
+ * 五个阶段分别计时，每个阶段的输入在 Trial 级别准备好，互不依赖：
+ * <pre>
+ * parse     XML 文本 → dom4j Document（与 XmlToDbGenerator 的 DOM 模式相同）
+ * validate  XmlFieldValidator.validateBatch 校验主表与子表行
+ * map       Document → 主表/子表行（XmlToDbGenerator.mapDocument）
+ * insert    事务内清表 + SmartInsertExecutor 批量写入（与导入流程相同）
+ * export    构造 DbToXmlGenerator（含子表预加载）并导出文件
+ * </pre>
+ * 导出写入临时目录，不覆盖 file.exportDataPath 下的正式文件；结束时清理基准表、编码元数据与条目清单。
+ * 运行方式见 {@link RoundTripBenchmarkRunner}。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class RoundTripBenchmark {
+
+    /** 主表行数 */
+    @Param({"5000"})
+    public int items;
+
+    /** 每个主表行的子表行数 */
+    @Param({"4"})
+    public int subRows;
+
+    /** 批量写入策略：false 为逐批 INSERT，true 为 COPY 批量加载 */
+    @Param({"false"})
+    public boolean bulkLoad;
+
+    private File workDir;
+    private File exportDir;
+    private String xmlPath;
+    private String xmlText;
+    private Document document;
+    private XmlToDbGenerator importer;
+    private Map<String, List<Map<String, String>>> mappedRows;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("jlingyou-bench").toFile();
+        exportDir = new File(workDir, "export");
+        FileUtil.mkdir(exportDir);
+        SyntheticAionXml data = new SyntheticAionXml(items, subRows);
+        xmlPath = data.writeFiles(workDir);
+        xmlText = FileUtil.readUtf8String(xmlPath);
+
+        SyntheticAionXml.createTables();
+        importer = new XmlToDbGenerator(SyntheticAionXml.TABLE_NAME, null, xmlPath, xmlPath);
+        importer.setStreamingMode(false);
+        document = DocumentHelper.parseText(xmlText);
+        mappedRows = importer.mapDocument(document);
+
+        // 导出阶段需要库中已有数据
+        insertRows(mappedRows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        // 构造 XmlToDbGenerator 与导出验证时写入的元数据
+        EncodingMetadataManager.deleteMetadata(SyntheticAionXml.TABLE_NAME);
+        RoundTripValidator.deleteItemManifest(SyntheticAionXml.TABLE_NAME, "");
+        TableChangeTracker.invalidate(SyntheticAionXml.TABLE_NAME, "");
+        SyntheticAionXml.dropTables();
+        SyntheticAionXml.deleteFiles(workDir);
+    }
+
+    @Benchmark
+    public Document parse() throws DocumentException {
+        return DocumentHelper.parseText(xmlText);
+    }
+
+    @Benchmark
+    public void validate(Blackhole blackhole) {
+        for (Map.Entry<String, List<Map<String, String>>> entry : mappedRows.entrySet()) {
+            blackhole.consume(XmlFieldValidator.validateBatch(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<Map<String, String>>> map() {
+        return importer.mapDocument(document);
+    }
+
+    @Benchmark
+    public void insert() {
+        insertRows(mappedRows);
+    }
+
+    @Benchmark
+    public String export() {
+        DbToXmlGenerator generator = new DbToXmlGenerator(SyntheticAionXml.TABLE_NAME, null, xmlPath);
+        generator.setExportDir(exportDir.getAbsolutePath());
+        return generator.processAndMerge();
+    }
+
+    /**
+     * 与 XmlToDbGenerator 导入流程一致：单事务内先清表，再按批写入主表与子表
+     */
+    private void insertRows(Map<String, List<Map<String, String>>> rows) {
+        int batchSize = bulkLoad ? CopyBulkLoader.BATCH_SIZE : 1000;
+        TransactionStatus transaction = DatabaseUtil.beginTransaction();
+        try {
+            DatabaseUtil.delTable(SyntheticAionXml.SUB_TABLE_NAME);
+            DatabaseUtil.delTable(SyntheticAionXml.TABLE_NAME);
+            for (Map.Entry<String, List<Map<String, String>>> entry : rows.entrySet()) {
+                for (List<Map<String, String>> batch : XmlToDbGenerator.splitList(entry.getValue(), batchSize)) {
+                    SmartInsertExecutor.executeBatchInsert(entry.getKey(), batch,
+                            ConflictResolutionStrategy.REPLACE_UPDATE, bulkLoad);
+                }
+            }
+            DatabaseUtil.commitTransaction(transaction);
+        } catch (RuntimeException e) {
+            DatabaseUtil.rollbackTransaction(transaction);
+            throw e;
+        }
+    }
+}
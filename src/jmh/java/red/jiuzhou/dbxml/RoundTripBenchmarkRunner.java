@@ -0,0 +1,102 @@
+package red.jiuzhou.dbxml;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * @className: red.jiuzhou.dbxml.RoundTripBenchmarkRunner.java
+ * @description: RoundTripBenchmark 启动入口
+ *
+ * 连接 application.yml 中配置的 PostgreSQL（基准只读写 bench_item 开头的表，结束时删除），
+ * 结果写入 target/jmh-roundtrip.json，并在控制台按阶段输出吞吐量、分配速率与 P99 延迟。
+ *
+ * 可用系统属性调整：
+ * <pre>
+ * bench.items     主表行数，可逗号分隔多个取值（默认 5000）
+ * bench.subRows   每个主表行的子表行数（默认 4）
+ * bench.bulkLoad  是否使用 COPY 批量加载，可为 "false,true" 对比两种写入（默认 false）
+ * bench.stages    要运行的阶段，正则（默认 parse|validate|map|insert|export）
+ * bench.result    结果文件路径（默认 target/jmh-roundtrip.json）
+ * </pre>
+ * 示例：java -Dbench.items=1000,20000 -cp target/j_lingyou-1.0.0.jar red.jiuzhou.dbxml.RoundTripBenchmarkRunner
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class RoundTripBenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        String stages = System.getProperty("bench.stages", "parse|validate|map|insert|export");
+        String resultFile = System.getProperty("bench.result", "target/jmh-roundtrip.json");
+
+        Options options = new OptionsBuilder()
+                .include(RoundTripBenchmark.class.getName() + "\\.(" + stages + ")$")
+                .param("items", System.getProperty("bench.items", "5000").split(","))
+                .param("subRows", System.getProperty("bench.subRows", "4").split(","))
+                .param("bulkLoad", System.getProperty("bench.bulkLoad", "false").split(","))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile)
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+        printSummary(results);
+        System.out.println("完整结果: " + resultFile);
+    }
+
+    /**
+     * 按 阶段+参数 汇总：吞吐量取 Throughput 模式，P99 取 SampleTime 模式，分配速率取 GC 分析器
+     */
+    private static void printSummary(Collection<RunResult> results) {
+        Map<String, double[]> summary = new TreeMap<>();
+        for (RunResult result : results) {
+            String stage = result.getParams().getBenchmark();
+            stage = stage.substring(stage.lastIndexOf('.') + 1);
+            String key = String.format("%-9s items=%-7s subRows=%-3s bulkLoad=%-5s", stage,
+                    result.getParams().getParam("items"), result.getParams().getParam("subRows"),
+                    result.getParams().getParam("bulkLoad"));
+            double[] row = summary.computeIfAbsent(key, k -> new double[]{Double.NaN, Double.NaN, Double.NaN, Double.NaN});
+
+            Result<?> primary = result.getPrimaryResult();
+            if (result.getParams().getMode() == Mode.Throughput) {
+                // ops/ms → ops/s
+                row[0] = primary.getScore() * 1000;
+                row[1] = secondary(result, "gc.alloc.rate");
+                row[2] = secondary(result, "gc.alloc.rate.norm");
+            } else if (result.getParams().getMode() == Mode.SampleTime) {
+                row[3] = primary.getStatistics().getPercentile(99);
+            }
+        }
+
+        System.out.println();
+        System.out.println("==================== DB ↔ XML 往返基准 ====================");
+        System.out.printf("%-50s %12s %14s %16s %12s%n", "阶段", "ops/s", "分配 MB/s", "分配 B/op", "P99 ms");
+        for (Map.Entry<String, double[]> entry : summary.entrySet()) {
+            double[] row = entry.getValue();
+            System.out.printf("%-50s %12.3f %14.1f %16.0f %12.3f%n", entry.getKey(), row[0], row[1], row[2], row[3]);
+        }
+    }
+
+    /**
+     * 读取 GC 分析器的次要结果（不同 JMH 版本的指标名可能带 "·" 前缀）
+     */
+    private static double secondary(RunResult result, String name) {
+        for (Map.Entry<String, Result> entry : result.getSecondaryResults().entrySet()) {
+            String key = entry.getKey();
+            if (key.equals(name) || key.equals("·" + name)) {
+                return entry.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,135 @@
+package red.jiuzhou.dbxml;
+
+import org.openjdk.jmh.annotations.*;
+import red.jiuzhou.validation.XmlFieldOrderManager;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * @className: red.jiuzhou.dbxml.RowProjectionBenchmark.java
+ * @description: 导出行投影基准：逐行排序/过滤/修正分派 与 预编译投影计划 的对比
+ *
+ * 列集合取自 cache/table_structure_cache.json 中的真实表结构（需在项目根目录运行），
+ * 每行是独立的 LinkedHashMap（与 JdbcTemplate.queryForList 一致，keySet 不共享），约五分之一的值为 NULL；
+ * 输出写入空 Writer，只计字段投影与 XML 拼接本身：
+ * <pre>
+ * items    主表行（属性 + 子节点）
+ * subRows  子表行（额外带 _attr__子节点__属性 列，跳过关联字段 id）
+ * </pre>
+ * 运行：java -cp target/classes:target/benchmark-deps/* org.openjdk.jmh.Main RowProjectionBenchmark -prof gc
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class RowProjectionBenchmark {
+
+    private static final Predicate<String> SKIP_ASSOCIATED = "id"::equals;
+
+    /** legacy: 旧版逐行投影；plan: 当前预编译投影计划 */
+    @Param({"legacy", "plan"})
+    public String impl;
+
+    /** 表结构缓存中的表名 */
+    @Param({"item_armors", "npcs_npcs"})
+    public String tableName;
+
+    /** 每次调用导出的行数 */
+    @Param({"1000"})
+    public int rows;
+
+    private List<Map<String, Object>> itemRows;
+    private List<Map<String, Object>> subRowList;
+    private RowProjectionPlan.Cache plans;
+    private Object itemContext;
+    private Object subContext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        XmlFieldOrderManager.initialize();
+        List<String> columns = XmlFieldOrderManager.getOrderedFields(tableName);
+        if (columns.isEmpty()) {
+            throw new IllegalStateException("表结构缓存中没有表: " + tableName);
+        }
+        List<String> subColumns = new ArrayList<>(columns);
+        for (String column : columns) {
+            if (!column.startsWith("_attr_") && !"id".equals(column)) {
+                subColumns.add("_attr__" + column + "__type");
+                break;
+            }
+        }
+        itemRows = buildRows(columns);
+        subRowList = buildRows(subColumns);
+        plans = new RowProjectionPlan.Cache();
+        itemContext = new Object();
+        subContext = new Object();
+    }
+
+    private List<Map<String, Object>> buildRows(List<String> columns) {
+        List<Map<String, Object>> result = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int c = 0; c < columns.size(); c++) {
+                row.put(columns.get(c), (r + c) % 5 == 0 ? null : String.valueOf(r * 31 + c));
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int items() throws IOException {
+        XmlExportWriter writer = new XmlExportWriter(Writer.nullWriter());
+        writer.writeStartElement("items");
+        for (Map<String, Object> row : itemRows) {
+            writer.writeStartElement("item");
+            if ("legacy".equals(impl)) {
+                LegacyRowProjection.writeItem(writer, tableName, row);
+            } else {
+                RowProjectionPlan plan = plans.lookup(itemContext, row, columns ->
+                        RowProjectionPlan.compile(tableName, columns, key -> false, null, false));
+                plan.writeAttributes(writer, row);
+                for (int i = 0; i < plan.keys.length; i++) {
+                    plan.writeElement(writer, row, i);
+                }
+            }
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        return itemRows.size();
+    }
+
+    @Benchmark
+    public int subRows() throws IOException {
+        XmlExportWriter writer = new XmlExportWriter(Writer.nullWriter());
+        writer.writeStartElement("items");
+        for (Map<String, Object> row : subRowList) {
+            writer.writeStartElement("data");
+            if ("legacy".equals(impl)) {
+                LegacyRowProjection.writeSubRow(writer, tableName, row, SKIP_ASSOCIATED);
+            } else {
+                RowProjectionPlan plan = plans.lookup(subContext, row, columns ->
+                        RowProjectionPlan.compile(tableName, columns, SKIP_ASSOCIATED, null, true));
+                plan.writeAttributes(writer, row);
+                for (int i = 0; i < plan.keys.length; i++) {
+                    plan.writeElement(writer, row, i);
+                }
+            }
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        return subRowList.size();
+    }
+}
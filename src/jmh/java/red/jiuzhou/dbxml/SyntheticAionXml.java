@@ -0,0 +1,145 @@
+package red.jiuzhou.dbxml;
+
+import cn.hutool.core.io.FileUtil;
+import com.alibaba.fastjson.JSON;
+import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.PathUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * @className: red.jiuzhou.dbxml.SyntheticAionXml.java
+ * @description: 基准测试用的合成 Aion 风格数据
+ *
+ * 生成 item_templates/item_template 结构的 XML（每个 item 带若干 bonus_attr 子表行），
+ * 以及对应的表配置 JSON 与 PostgreSQL 表结构，数据按固定种子生成，多次运行结果一致。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class SyntheticAionXml {
+
+    public static final String TABLE_NAME = "bench_item";
+    public static final String SUB_TABLE_NAME = "bench_item__bonus_attr";
+
+    private static final String[] QUALITIES = {"common", "rare", "legend", "unique", "epic", "mythic"};
+    private static final String[] RACES = {"PC_ALL", "PC_LIGHT", "PC_DARK"};
+    private static final String[] ATTRS = {"maxhp", "maxmp", "physicalattack", "magicalattack",
+            "physicaldefend", "magicalresist", "critical", "accuracy", "dodge", "parry", "block", "speed"};
+
+    private final int items;
+    private final int subRowsPerItem;
+
+    public SyntheticAionXml(int items, int subRowsPerItem) {
+        this.items = items;
+        this.subRowsPerItem = subRowsPerItem;
+    }
+
+    /**
+     * 主表 + 子表总行数
+     */
+    public int getTotalRows() {
+        return items + items * subRowsPerItem;
+    }
+
+    /**
+     * 生成 XML 文本
+     */
+    public String generateXml() {
+        Random random = new Random(42);
+        StringBuilder xml = new StringBuilder(items * (320 + subRowsPerItem * 90));
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        xml.append("<item_templates>\n");
+        for (int i = 0; i < items; i++) {
+            xml.append("  <item_template>\n");
+            appendTag(xml, "id", String.valueOf(100000000 + i));
+            appendTag(xml, "name", "bench_item_" + i);
+            appendTag(xml, "desc", "STR_BENCH_ITEM_" + i);
+            appendTag(xml, "level", String.valueOf(1 + random.nextInt(65)));
+            appendTag(xml, "price", String.valueOf(random.nextInt(1000000)));
+            appendTag(xml, "quality", QUALITIES[random.nextInt(QUALITIES.length)]);
+            appendTag(xml, "race", RACES[random.nextInt(RACES.length)]);
+            appendTag(xml, "max_stack_count", String.valueOf(random.nextBoolean() ? 1 : 100));
+            for (int j = 0; j < subRowsPerItem; j++) {
+                xml.append("    <bonus_attr>\n");
+                xml.append("      <attr_name>").append(ATTRS[(i + j) % ATTRS.length]).append("</attr_name>\n");
+                xml.append("      <attr_value>").append(random.nextInt(500)).append("</attr_value>\n");
+                xml.append("    </bonus_attr>\n");
+            }
+            xml.append("  </item_template>\n");
+        }
+        xml.append("</item_templates>\n");
+        return xml.toString();
+    }
+
+    private static void appendTag(StringBuilder xml, String tag, String value) {
+        xml.append("    <").append(tag).append('>').append(value).append("</").append(tag).append(">\n");
+    }
+
+    /**
+     * 写出 XML 文件与表配置，返回 XML 文件路径（即 XmlToDbGenerator/DbToXmlGenerator 的 tabFilePath）
+     */
+    public String writeFiles(File workDir) {
+        File xmlFile = new File(workDir, TABLE_NAME + ".xml");
+        FileUtil.writeString(generateXml(), xmlFile, StandardCharsets.UTF_8);
+
+        Map<String, Object> subConf = new LinkedHashMap<>();
+        subConf.put("table_name", SUB_TABLE_NAME);
+        subConf.put("db_column", "bonus_attr");
+        subConf.put("xml_tag", "bonus_attr");
+        subConf.put("addDataNode", "");
+        subConf.put("associatedFiled", "id");
+        subConf.put("sql", "select * from \"" + SUB_TABLE_NAME + "\" where \"id\" = '#associated_filed' order by CAST(\"id\" AS INTEGER) ASC");
+
+        Map<String, Object> conf = new LinkedHashMap<>();
+        conf.put("table_name", TABLE_NAME);
+        conf.put("file_path", xmlFile.getAbsolutePath());
+        conf.put("xml_root_tag", "item_templates");
+        conf.put("xml_item_tag", "item_template");
+        conf.put("sql", "select * from \"" + TABLE_NAME + "\" order by CAST(\"id\" AS INTEGER) ASC");
+        List<Object> list = new ArrayList<>();
+        list.add(subConf);
+        conf.put("list", list);
+
+        // 与 TabConfLoad 的查找规则一致：配置目录 + XML 所在目录 + 表名.json
+        File confFile = new File(PathUtil.getConfPath(xmlFile.getParent()), TABLE_NAME + ".json");
+        FileUtil.writeString(JSON.toJSONString(conf, true), confFile, StandardCharsets.UTF_8);
+        TabConfLoad.invalidateCache(TABLE_NAME);
+        return xmlFile.getAbsolutePath();
+    }
+
+    /**
+     * 删除 writeFiles 生成的文件（含配置文件）
+     */
+    public static void deleteFiles(File workDir) {
+        FileUtil.del(new File(PathUtil.getConfPath(workDir.getAbsolutePath()), TABLE_NAME + ".json"));
+        FileUtil.del(workDir);
+        TabConfLoad.invalidateCache(TABLE_NAME);
+    }
+
+    /**
+     * 重建基准测试表（与自动建表一致，所有字段为 varchar）
+     */
+    public static void createTables() {
+        dropTables();
+        DatabaseUtil.getJdbcTemplate().execute("CREATE TABLE \"" + TABLE_NAME + "\" ("
+                + "\"id\" varchar(32) PRIMARY KEY, \"name\" varchar(128), \"desc\" varchar(128), "
+                + "\"level\" varchar(16), \"price\" varchar(16), \"quality\" varchar(16), "
+                + "\"race\" varchar(16), \"max_stack_count\" varchar(16))");
+        DatabaseUtil.getJdbcTemplate().execute("CREATE TABLE \"" + SUB_TABLE_NAME + "\" ("
+                + "\"id\" varchar(32), \"attr_name\" varchar(64), \"attr_value\" varchar(16))");
+    }
+
+    public static void dropTables() {
+        DatabaseUtil.getJdbcTemplate().execute("DROP TABLE IF EXISTS \"" + SUB_TABLE_NAME + "\"");
+        DatabaseUtil.getJdbcTemplate().execute("DROP TABLE IF EXISTS \"" + TABLE_NAME + "\"");
+        DatabaseUtil.clearMetadataCache(TABLE_NAME);
+        DatabaseUtil.clearMetadataCache(SUB_TABLE_NAME);
+    }
+}
@@ -0,0 +1,128 @@
+package red.jiuzhou.ops.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @className: red.jiuzhou.ops.core.CacheManagerBenchmark.java
+ * @description: CacheManager 分段 LRU 与旧版全表扫描淘汰的对比基准
+ *
+ * 两种实现总容量相同（10000），键空间为容量的 keySpaceFactor 倍，角色/军团/物品三类键混合，
+ * 访问分布偏斜（少数热点键占大部分访问），缓存始终处于满容量状态：
+ * <pre>
+ * readMostly  90% 读 + 未命中时回填
+ * writeHeavy  50% 读 + 50% 写
+ * </pre>
+ * 运行：java -cp target/classes:target/benchmark-deps/* org.openjdk.jmh.Main CacheManagerBenchmark -prof gc
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(4)
+public class CacheManagerBenchmark {
+
+    private static final int CAPACITY = 10000;
+    private static final String[] PREFIXES = {"char:", "guild:", "item:"};
+
+    /** legacy: 旧版 ConcurrentHashMap + 全表扫描淘汰；segmented: 当前分段 LRU */
+    @Param({"legacy", "segmented"})
+    public String impl;
+
+    /** 键空间 / 容量 */
+    @Param({"3"})
+    public int keySpaceFactor;
+
+    private LegacyCacheManager legacy;
+    private CacheManager segmented;
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("legacy".equals(impl)) {
+            legacy = new LegacyCacheManager(CAPACITY);
+        } else {
+            segmented = new CacheManager(
+                    new CacheManager.RegionConfig("char", "角色", 3000, 300),
+                    new CacheManager.RegionConfig("guild", "军团", 2000, 300),
+                    new CacheManager.RegionConfig("item", "物品", 5000, 120));
+        }
+
+        keys = new String[CAPACITY * keySpaceFactor];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = PREFIXES[i % PREFIXES.length] + i;
+        }
+
+        // 预热到满容量
+        for (String key : keys) {
+            put(key, key);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (legacy != null) {
+            legacy.shutdown();
+        }
+    }
+
+    /**
+     * 每线程独立的随机序列
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().getId());
+
+        /** 偏斜分布：取两个均匀数的乘积，小下标（热点键）概率更高 */
+        int nextIndex(int bound) {
+            return (int) (random.nextDouble() * random.nextDouble() * bound);
+        }
+
+        boolean chance(int percent) {
+            return random.nextInt(100) < percent;
+        }
+    }
+
+    @Benchmark
+    public Object readMostly(Cursor cursor) {
+        String key = keys[cursor.nextIndex(keys.length)];
+        if (cursor.chance(90)) {
+            Object value = get(key);
+            if (value == null) {
+                put(key, key);
+            }
+            return value;
+        }
+        put(key, key);
+        return key;
+    }
+
+    @Benchmark
+    public Object writeHeavy(Cursor cursor) {
+        String key = keys[cursor.nextIndex(keys.length)];
+        if (cursor.chance(50)) {
+            return get(key);
+        }
+        put(key, key);
+        return key;
+    }
+
+    private Object get(String key) {
+        return legacy != null ? legacy.get(key, String.class) : segmented.get(key, String.class);
+    }
+
+    private void put(String key, String value) {
+        if (legacy != null) {
+            legacy.put(key, value, 300);
+        } else {
+            segmented.put(key, value, 300);
+        }
+    }
+}
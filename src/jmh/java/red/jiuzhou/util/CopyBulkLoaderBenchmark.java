@@ -0,0 +1,88 @@
+package red.jiuzhou.util;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.TransactionStatus;
+import red.jiuzhou.batch.ConflictResolutionStrategy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @className: red.jiuzhou.util.CopyBulkLoaderBenchmark.java
+ * @description: 逐行 UPSERT 与 COPY 批量加载的对比基准
+ *
+ * 读取目标表已有数据，在回滚的事务中按 REPLACE_UPDATE 写回，不会修改数据库数据：
+ * <pre>
+ * jdbc  SmartInsertExecutor 逐批 INSERT ... ON CONFLICT（每批 1000 行）
+ * copy  CopyBulkLoader 暂存表 + COPY + 合并（每批 CopyBulkLoader.BATCH_SIZE 行）
+ * </pre>
+ * 需要 application.yml 中配置的 PostgreSQL，table 参数指定一张有主键的已有表。
+ * 运行：java -cp target/j_lingyou-1.0.0.jar org.openjdk.jmh.Main CopyBulkLoaderBenchmark -p table=&lt;表名&gt; -p rows=50000
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx4g"})
+public class CopyBulkLoaderBenchmark {
+
+    private static final int JDBC_BATCH_SIZE = 1000;
+
+    /** 读取数据并写回的表（必填） */
+    @Param({""})
+    public String table;
+
+    /** 读取的行数 */
+    @Param({"50000"})
+    public int rows;
+
+    /** jdbc: 逐批 UPSERT；copy: COPY 批量加载 */
+    @Param({"jdbc", "copy"})
+    public String loader;
+
+    private List<Map<String, String>> dataList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if (table.isEmpty()) {
+            throw new IllegalArgumentException("请用 -p table=<表名> 指定基准表");
+        }
+        dataList = new ArrayList<>(rows);
+        DatabaseUtil.getJdbcTemplate().query(
+            String.format("SELECT * FROM \"%s\" LIMIT %d", table, rows),
+            rs -> {
+                int count = rs.getMetaData().getColumnCount();
+                Map<String, String> row = new LinkedHashMap<>();
+                for (int i = 1; i <= count; i++) {
+                    row.put(rs.getMetaData().getColumnLabel(i), rs.getString(i));
+                }
+                dataList.add(row);
+            });
+    }
+
+    @Benchmark
+    public void load() {
+        boolean copy = "copy".equals(loader);
+        int batchSize = copy ? CopyBulkLoader.BATCH_SIZE : JDBC_BATCH_SIZE;
+        TransactionStatus status = DatabaseUtil.beginTransaction();
+        try {
+            for (int from = 0; from < dataList.size(); from += batchSize) {
+                List<Map<String, String>> batch = dataList.subList(from, Math.min(from + batchSize, dataList.size()));
+                if (copy) {
+                    CopyBulkLoader.load(table, batch, ConflictResolutionStrategy.REPLACE_UPDATE);
+                } else {
+                    SmartInsertExecutor.executeBatchInsert(table, batch, ConflictResolutionStrategy.REPLACE_UPDATE, false);
+                }
+            }
+        } finally {
+            DatabaseUtil.rollbackTransaction(status);
+        }
+    }
+}
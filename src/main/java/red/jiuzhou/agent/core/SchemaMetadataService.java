@@ -7,6 +7,7 @@ import red.jiuzhou.ui.mapping.DatabaseTableScanner;
 import red.jiuzhou.ui.mapping.DatabaseTableScanner.TableInfo;
 import red.jiuzhou.ui.mapping.DatabaseTableScanner.ColumnInfo;
 import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.SchemaCatalog;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -37,7 +38,10 @@ public class SchemaMetadataService {
     private JdbcTemplate jdbcTemplate;
 
     /** 是否已初始化 */
-    private boolean initialized = false;
+    private volatile boolean initialized = false;
+
+    /** 构建 tableCache 时 SchemaCatalog 的版本，版本变化（有 DDL）时重建 */
+    private volatile long catalogVersion = -1;
 
     public SchemaMetadataService() {
         initSemanticMappings();
@@ -86,10 +90,11 @@ public class SchemaMetadataService {
     }
 
     /**
-     * 初始化元数据
+     * 初始化元数据（从 SchemaCatalog 构建，整体替换而不是先清空，查询期间不会看到空表）
      */
-    public void initialize() {
-        if (initialized) {
+    public synchronized void initialize() {
+        long version = SchemaCatalog.get().getVersion();
+        if (initialized && version == catalogVersion) {
             return;
         }
 
@@ -99,12 +104,18 @@ public class SchemaMetadataService {
         try {
             List<TableInfo> tables = DatabaseTableScanner.scanAllTables();
 
+            Map<String, TableInfo> loaded = new HashMap<>();
             for (TableInfo table : tables) {
-                String tableName = table.getTableName();
-                tableCache.put(tableName, table);
+                loaded.put(table.getTableName(), table);
+            }
+            tableCache.putAll(loaded);
+            tableCache.keySet().retainAll(loaded.keySet());
+            for (String tableName : loaded.keySet()) {
                 tableNameIndex.put(tableName.toLowerCase(), tableName);
             }
+            tableNameIndex.values().retainAll(loaded.keySet());
 
+            catalogVersion = version;
             initialized = true;
             log.info("成功加载 {} 个表的元数据，耗时 {}ms",
                     tables.size(), System.currentTimeMillis() - startTime);
@@ -118,9 +129,7 @@ public class SchemaMetadataService {
      * 刷新元数据缓存
      */
     public void refresh() {
-        initialized = false;
-        tableCache.clear();
-        tableNameIndex.clear();
+        SchemaCatalog.get().reloadAll();
         initialize();
     }
 
@@ -451,7 +460,7 @@ public class SchemaMetadataService {
      * 确保已初始化
      */
     private void ensureInitialized() {
-        if (!initialized) {
+        if (!initialized || SchemaCatalog.get().getVersion() != catalogVersion) {
             initialize();
         }
     }
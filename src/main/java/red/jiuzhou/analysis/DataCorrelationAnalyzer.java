@@ -45,6 +45,12 @@ public class DataCorrelationAnalyzer {
 
     private static final Logger log = LoggerFactory.getLogger(DataCorrelationAnalyzer.class);
 
+    /** 判断幂次增长时最多查看的前置数据点数 */
+    public static final int POWER_GROWTH_PROBE = 10;
+
+    /** 单个字段最多报告的极端异常值个数 */
+    public static final int MAX_REPORTED_OUTLIERS = 5;
+
     // 常见游戏属性模式识别
     private static final Pattern ID_PATTERN = Pattern.compile("(?i).*(id|编号|序号).*");
     private static final Pattern LEVEL_PATTERN = Pattern.compile("(?i).*(level|等级|lv|lvl).*");
@@ -282,9 +288,22 @@ public class DataCorrelationAnalyzer {
                 CorrelationType.NO_CORRELATION, "数据不足或维度不匹配");
         }
 
-        // 计算皮尔逊相关系数
-        double correlation = calculatePearsonCorrelation(values1, values2);
+        double[] x = toArray(values1);
+        double[] y = toArray(values2);
+        int leading = Math.min(x.length, POWER_GROWTH_PROBE);
+        return analyzeCorrelation(field1Name, field2Name, calculatePearsonCorrelation(x, y),
+            Arrays.copyOf(x, leading), Arrays.copyOf(y, leading));
+    }
 
+    /**
+     * 根据已算好的皮尔逊相关系数判断相关性类型
+     *
+     * @param correlation 皮尔逊相关系数（可由 {@link StreamingFieldStatistics} 在线计算）
+     * @param leadingX    前若干个成对数值（最多 {@value #POWER_GROWTH_PROBE} 个），用于判断幂次增长
+     * @param leadingY    与 leadingX 一一对应
+     */
+    public static FieldCorrelation analyzeCorrelation(String field1Name, String field2Name, double correlation,
+                                                      double[] leadingX, double[] leadingY) {
         // 判断相关性类型
         CorrelationType type;
         String insight;
@@ -294,7 +313,7 @@ public class DataCorrelationAnalyzer {
             insight = String.format("%s 和 %s 没有明显关联，可以独立调整", field1Name, field2Name);
         } else if (correlation > 0.7) {
             // 检查是否是幂次增长
-            boolean isPowerGrowth = detectPowerGrowth(values1, values2);
+            boolean isPowerGrowth = detectPowerGrowth(leadingX, leadingY);
             if (isPowerGrowth) {
                 type = CorrelationType.POWER_GROWTH;
                 insight = String.format("%s 随 %s 呈指数增长，注意后期数值膨胀风险", field2Name, field1Name);
@@ -319,16 +338,16 @@ public class DataCorrelationAnalyzer {
     /**
      * 计算皮尔逊相关系数
      */
-    private static double calculatePearsonCorrelation(List<Double> x, List<Double> y) {
-        int n = x.size();
+    private static double calculatePearsonCorrelation(double[] x, double[] y) {
+        int n = x.length;
         double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0, sumY2 = 0;
 
         for (int i = 0; i < n; i++) {
-            sumX += x.get(i);
-            sumY += y.get(i);
-            sumXY += x.get(i) * y.get(i);
-            sumX2 += x.get(i) * x.get(i);
-            sumY2 += y.get(i) * y.get(i);
+            sumX += x[i];
+            sumY += y[i];
+            sumXY += x[i] * y[i];
+            sumX2 += x[i] * x[i];
+            sumY2 += y[i] * y[i];
         }
 
         double numerator = n * sumXY - sumX * sumY;
@@ -341,14 +360,14 @@ public class DataCorrelationAnalyzer {
     /**
      * 检测是否为幂次增长
      */
-    private static boolean detectPowerGrowth(List<Double> x, List<Double> y) {
+    private static boolean detectPowerGrowth(double[] x, double[] y) {
         // 简化判断：计算增长率的变化
-        if (x.size() < 5) return false;
+        if (x.length < 5) return false;
 
         List<Double> growthRates = new ArrayList<>();
-        for (int i = 1; i < Math.min(x.size(), 10); i++) {
-            double dx = x.get(i) - x.get(i - 1);
-            double dy = y.get(i) - y.get(i - 1);
+        for (int i = 1; i < Math.min(x.length, POWER_GROWTH_PROBE); i++) {
+            double dx = x[i] - x[i - 1];
+            double dy = y[i] - y[i - 1];
             if (dx > 0) {
                 growthRates.add(dy / dx);
             }
@@ -377,14 +396,24 @@ public class DataCorrelationAnalyzer {
         }
 
         // 排序并计算统计量
-        List<Double> sorted = new ArrayList<>(values);
-        Collections.sort(sorted);
+        double[] sorted = toArray(values);
+        Arrays.sort(sorted);
 
-        double mean = sorted.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-        double median = sorted.get(sorted.size() / 2);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        return analyzeDistribution(fieldName, sorted, calculateSkewness(sorted, mean));
+    }
 
-        // 计算偏度
-        double skewness = calculateSkewness(sorted, mean);
+    /**
+     * 基于已排序的数值列分析分布特征
+     *
+     * @param sorted   升序排列的全部数值
+     * @param skewness 偏度（可由 {@link StreamingFieldStatistics} 的在线矩计算）
+     */
+    public static DistributionProfile analyzeDistribution(String fieldName, double[] sorted, double skewness) {
+        if (sorted.length == 0) {
+            return new DistributionProfile(fieldName, DistributionType.DISCRETE, 0, 0,
+                "数据为空", Collections.emptyList());
+        }
 
         // 计算均匀度
         double evenness = calculateEvenness(sorted);
@@ -422,16 +451,16 @@ public class DataCorrelationAnalyzer {
     /**
      * 计算偏度
      */
-    private static double calculateSkewness(List<Double> sorted, double mean) {
+    private static double calculateSkewness(double[] sorted, double mean) {
         double m3 = 0;
         double m2 = 0;
         for (double v : sorted) {
             double diff = v - mean;
-            m3 += Math.pow(diff, 3);
-            m2 += Math.pow(diff, 2);
+            m3 += diff * diff * diff;
+            m2 += diff * diff;
         }
-        m3 /= sorted.size();
-        m2 /= sorted.size();
+        m3 /= sorted.length;
+        m2 /= sorted.length;
 
         if (m2 == 0) return 0;
         return m3 / Math.pow(m2, 1.5);
@@ -440,15 +469,15 @@ public class DataCorrelationAnalyzer {
     /**
      * 计算均匀度
      */
-    private static double calculateEvenness(List<Double> sorted) {
-        if (sorted.size() < 2) return 1.0;
+    private static double calculateEvenness(double[] sorted) {
+        if (sorted.length < 2) return 1.0;
 
         // 将数据分成10个区间，计算分布均匀度
-        int buckets = Math.min(10, sorted.size());
+        int buckets = Math.min(10, sorted.length);
         int[] counts = new int[buckets];
 
-        double min = sorted.get(0);
-        double max = sorted.get(sorted.size() - 1);
+        double min = sorted[0];
+        double max = sorted[sorted.length - 1];
         double range = max - min;
 
         if (range == 0) return 1.0;
@@ -459,7 +488,7 @@ public class DataCorrelationAnalyzer {
         }
 
         // 计算基尼系数的变体
-        double expectedCount = sorted.size() / (double) buckets;
+        double expectedCount = sorted.length / (double) buckets;
         double variance = 0;
         for (int count : counts) {
             variance += Math.pow(count - expectedCount, 2);
@@ -473,24 +502,19 @@ public class DataCorrelationAnalyzer {
     /**
      * 检测数值间隙
      */
-    private static List<GapInfo> detectGaps(List<Double> sorted) {
+    private static List<GapInfo> detectGaps(double[] sorted) {
         List<GapInfo> gaps = new ArrayList<>();
-        if (sorted.size() < 2) return gaps;
+        if (sorted.length < 2) return gaps;
 
-        // 计算平均间距
-        List<Double> diffs = new ArrayList<>();
-        for (int i = 1; i < sorted.size(); i++) {
-            diffs.add(sorted.get(i) - sorted.get(i - 1));
-        }
-
-        double avgDiff = diffs.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        // 计算平均间距（相邻差值之和等于极差）
+        double avgDiff = (sorted[sorted.length - 1] - sorted[0]) / (sorted.length - 1);
         double threshold = avgDiff * 3; // 超过平均间距3倍视为间隙
 
-        for (int i = 1; i < sorted.size(); i++) {
-            double diff = sorted.get(i) - sorted.get(i - 1);
+        for (int i = 1; i < sorted.length; i++) {
+            double diff = sorted[i] - sorted[i - 1];
             if (diff > threshold && diff > 1) {
-                gaps.add(new GapInfo(sorted.get(i - 1), sorted.get(i),
-                    String.format("%.1f ~ %.1f 之间缺少数值", sorted.get(i - 1), sorted.get(i))));
+                gaps.add(new GapInfo(sorted[i - 1], sorted[i],
+                    String.format("%.1f ~ %.1f 之间缺少数值", sorted[i - 1], sorted[i])));
             }
         }
 
@@ -500,14 +524,19 @@ public class DataCorrelationAnalyzer {
     /**
      * 检测是否符合幂律分布
      */
-    private static boolean detectPowerLawDistribution(List<Double> sorted) {
-        if (sorted.size() < 10) return false;
+    private static boolean detectPowerLawDistribution(double[] sorted) {
+        if (sorted.length < 10) return false;
 
         // 检查是否少数高值占据大部分
-        int topCount = sorted.size() / 10; // 前10%
-        double topSum = sorted.subList(sorted.size() - topCount, sorted.size())
-                .stream().mapToDouble(Double::doubleValue).sum();
-        double totalSum = sorted.stream().mapToDouble(Double::doubleValue).sum();
+        int topCount = sorted.length / 10; // 前10%
+        double topSum = 0;
+        double totalSum = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            totalSum += sorted[i];
+            if (i >= sorted.length - topCount) {
+                topSum += sorted[i];
+            }
+        }
 
         // 如果前10%的和占总和的50%以上，认为是幂律分布
         return topSum / totalSum > 0.5;
@@ -529,22 +558,18 @@ public class DataCorrelationAnalyzer {
 
             if (numericValues.size() < 5) continue;
 
-            List<Double> sorted = new ArrayList<>(numericValues);
-            Collections.sort(sorted);
+            double[] sorted = toArray(numericValues);
+            Arrays.sort(sorted);
 
             // 检测极端异常值
-            double q1 = sorted.get(sorted.size() / 4);
-            double q3 = sorted.get(sorted.size() * 3 / 4);
-            double iqr = q3 - q1;
-            double lowerBound = q1 - 3 * iqr;
-            double upperBound = q3 + 3 * iqr;
+            double[] bounds = extremeOutlierBounds(sorted);
 
             List<String> outliers = new ArrayList<>();
             for (int i = 0; i < entry.getValue().size(); i++) {
                 Map<String, String> record = entry.getValue().get(i);
                 try {
                     double value = Double.parseDouble(record.getOrDefault(fieldName, "0"));
-                    if (value < lowerBound || value > upperBound) {
+                    if (value < bounds[0] || value > bounds[1]) {
                         String id = record.getOrDefault(idField, "记录" + i);
                         outliers.add(String.format("%s (值: %.2f)", id, value));
                     }
@@ -552,21 +577,44 @@ public class DataCorrelationAnalyzer {
                 }
             }
 
-            if (!outliers.isEmpty() && outliers.size() <= 5) {
-                issues.add(new BalanceIssue(
-                    "极端异常值",
-                    Severity.WARNING,
-                    String.format("%s 存在 %d 个极端异常值，可能是配置错误或刻意设计",
-                        fieldName, outliers.size()),
-                    "检查这些数值是否合理，或考虑调整到正常范围",
-                    outliers.subList(0, Math.min(3, outliers.size()))
-                ));
-            }
+            extremeOutlierIssue(fieldName, outliers).ifPresent(issues::add);
         }
 
         return issues;
     }
 
+    /**
+     * 极端异常值的上下界：Q1 - 3·IQR 与 Q3 + 3·IQR
+     *
+     * @param sorted 升序排列的数值，至少 1 个
+     * @return {下界, 上界}
+     */
+    public static double[] extremeOutlierBounds(double[] sorted) {
+        double q1 = sorted[sorted.length / 4];
+        double q3 = sorted[sorted.length * 3 / 4];
+        double iqr = q3 - q1;
+        return new double[]{q1 - 3 * iqr, q3 + 3 * iqr};
+    }
+
+    /**
+     * 根据异常记录生成"极端异常值"问题；超过 {@value #MAX_REPORTED_OUTLIERS} 个时视为刻意设计，不报告
+     *
+     * @param outliers 形如 "id (值: 1.00)" 的异常记录描述
+     */
+    public static Optional<BalanceIssue> extremeOutlierIssue(String fieldName, List<String> outliers) {
+        if (outliers.isEmpty() || outliers.size() > MAX_REPORTED_OUTLIERS) {
+            return Optional.empty();
+        }
+        return Optional.of(new BalanceIssue(
+            "极端异常值",
+            Severity.WARNING,
+            String.format("%s 存在 %d 个极端异常值，可能是配置错误或刻意设计",
+                fieldName, outliers.size()),
+            "检查这些数值是否合理，或考虑调整到正常范围",
+            outliers.subList(0, Math.min(3, outliers.size()))
+        ));
+    }
+
     /**
      * 提取数值列表
      */
@@ -586,4 +634,12 @@ public class DataCorrelationAnalyzer {
             .filter(Objects::nonNull)
             .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    private static double[] toArray(List<Double> values) {
+        double[] array = new double[values.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = values.get(i);
+        }
+        return array;
+    }
+}
@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 import red.jiuzhou.relationship.XmlRelationshipAnalyzer;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +27,11 @@ import java.util.stream.Collectors;
  * ImpactAnalyzer analyzer = new ImpactAnalyzer(relationships);
  * ImpactReport report = analyzer.analyzeDeleteImpact("items", "id", "1001");
  * // 输出：删除物品1001会影响：npc_drop表3处、shop_items表2处、quest_reward表1处
+ *
+ * // 设置值级反向索引后，报告列出实际引用该值的行
+ * ValueReferenceIndex valueIndex = new ValueReferenceIndex();
+ * valueIndex.refresh(relationshipReport);
+ * analyzer.setValueIndex(valueIndex);
  * }</pre>
  *
  * @author Claude
@@ -51,24 +58,20 @@ public class ImpactAnalyzer {
     // 正向索引：sourceTable -> targetTable -> relationships
     private final Map<String, Map<String, List<Relationship>>> forwardIndex;
 
+    // 值级反向索引（可选）：设置后影响报告列出实际引用该值的行
+    private volatile ValueReferenceIndex valueIndex;
+
     public ImpactAnalyzer(List<XmlRelationshipAnalyzer.Relationship> xmlRelationships) {
-        this.reverseIndex = new HashMap<>();
-        this.forwardIndex = new HashMap<>();
+        this.reverseIndex = new ConcurrentHashMap<>();
+        this.forwardIndex = new ConcurrentHashMap<>();
         buildIndexes(xmlRelationships);
     }
 
     private void buildIndexes(List<XmlRelationshipAnalyzer.Relationship> xmlRelationships) {
         for (XmlRelationshipAnalyzer.Relationship rel : xmlRelationships) {
-            String sourceTable = extractTableName(rel.getSourceFileKey());
-            String targetTable = extractTableName(rel.getTargetFileKey());
-            String sourceField = rel.getSourceColumnName();
-            String targetField = rel.getTargetColumnName();
-
-            Relationship relationship = new Relationship(
-                sourceTable, sourceField, rel.getSourceColumnPath(),
-                targetTable, targetField, rel.getTargetColumnPath(),
-                rel.getConfidence(), rel.getMatchCount()
-            );
+            Relationship relationship = toRelationship(rel);
+            String sourceTable = relationship.sourceTable;
+            String targetTable = relationship.targetTable;
 
             // 反向索引：targetTable -> sourceTable
             reverseIndex.computeIfAbsent(targetTable, k -> new HashMap<>())
@@ -82,10 +85,99 @@ public class ImpactAnalyzer {
         }
     }
 
+    /**
+     * 设置值级反向索引，为null时只做表级分析
+     */
+    public void setValueIndex(ValueReferenceIndex valueIndex) {
+        this.valueIndex = valueIndex;
+    }
+
+    public ValueReferenceIndex getValueIndex() {
+        return valueIndex;
+    }
+
+    private Relationship toRelationship(XmlRelationshipAnalyzer.Relationship rel) {
+        return new Relationship(
+            extractTableName(rel.getSourceFileKey()), rel.getSourceColumnName(), rel.getSourceColumnPath(),
+            extractTableName(rel.getTargetFileKey()), rel.getTargetColumnName(), rel.getTargetColumnPath(),
+            rel.getConfidence(), rel.getMatchCount()
+        );
+    }
+
+    /**
+     * 增量更新索引（配合 {@link XmlRelationshipAnalyzer.RelationshipReport#getAffectedFiles()}）
+     *
+     * <p>移除涉及变化文件所属表的全部关系，再从当前关系中加入涉及这些表的部分，其余表的索引不动。
+     * 受影响的索引项整体替换而不是原地修改，并发查询看到的是更新前或更新后的完整索引项。
+     *
+     * @param changedFileKeys 关系可能发生变化的文件
+     * @param xmlRelationships 本次分析的全部关系
+     */
+    public synchronized void applyChanges(Collection<String> changedFileKeys,
+                                          List<XmlRelationshipAnalyzer.Relationship> xmlRelationships) {
+        if (changedFileKeys == null || changedFileKeys.isEmpty()) {
+            return;
+        }
+        Set<String> affectedTables = changedFileKeys.stream()
+            .map(ImpactAnalyzer::extractTableName)
+            .collect(Collectors.toSet());
+
+        List<Relationship> added = new ArrayList<>();
+        for (XmlRelationshipAnalyzer.Relationship rel : xmlRelationships) {
+            if (affectedTables.contains(extractTableName(rel.getSourceFileKey()))
+                    || affectedTables.contains(extractTableName(rel.getTargetFileKey()))) {
+                added.add(toRelationship(rel));
+            }
+        }
+
+        patchIndex(forwardIndex, affectedTables, added, true);
+        patchIndex(reverseIndex, affectedTables, added, false);
+        log.debug("影响分析索引增量更新：{} 张表，{} 条关系", affectedTables.size(), added.size());
+    }
+
+    private static void patchIndex(Map<String, Map<String, List<Relationship>>> index,
+                                   Set<String> affectedTables,
+                                   List<Relationship> added,
+                                   boolean forward) {
+        // 需要重建的索引项：受影响的表、引用了受影响表的表、新关系所在的表
+        Set<String> rows = new HashSet<>(affectedTables);
+        for (Map.Entry<String, Map<String, List<Relationship>>> entry : index.entrySet()) {
+            if (!Collections.disjoint(entry.getValue().keySet(), affectedTables)) {
+                rows.add(entry.getKey());
+            }
+        }
+        for (Relationship rel : added) {
+            rows.add(forward ? rel.sourceTable : rel.targetTable);
+        }
+
+        for (String row : rows) {
+            Map<String, List<Relationship>> rebuilt = new HashMap<>();
+            Map<String, List<Relationship>> old = affectedTables.contains(row) ? null : index.get(row);
+            if (old != null) {
+                old.forEach((table, rels) -> {
+                    if (!affectedTables.contains(table)) {
+                        rebuilt.put(table, rels);
+                    }
+                });
+            }
+            for (Relationship rel : added) {
+                if (row.equals(forward ? rel.sourceTable : rel.targetTable)) {
+                    rebuilt.computeIfAbsent(forward ? rel.targetTable : rel.sourceTable, k -> new ArrayList<>())
+                           .add(rel);
+                }
+            }
+            if (rebuilt.isEmpty()) {
+                index.remove(row);
+            } else {
+                index.put(row, rebuilt);
+            }
+        }
+    }
+
     /**
      * 从文件路径提取表名
      */
-    private String extractTableName(String fileKey) {
+    static String extractTableName(String fileKey) {
         String fileName = fileKey;
         if (fileName.contains("/")) {
             fileName = fileName.substring(fileName.lastIndexOf("/") + 1);
@@ -111,42 +203,11 @@ public class ImpactAnalyzer {
         );
 
         // 查找哪些表引用了当前表的该字段
-        Map<String, List<Relationship>> references = reverseIndex.get(tableName);
-        if (references == null || references.isEmpty()) {
-            report.setSummary("未发现其他表引用此数据，可以安全删除");
-            return report;
-        }
-
-        // 统计影响
-        int totalImpactedTables = 0;
-        int totalReferences = 0;
-
-        for (Map.Entry<String, List<Relationship>> entry : references.entrySet()) {
-            String referencingTable = entry.getKey();
-            List<Relationship> rels = entry.getValue();
-
-            // 过滤出相关字段的关系
-            List<Relationship> relevantRels = rels.stream()
-                .filter(r -> r.targetField.toLowerCase().contains(fieldName.toLowerCase()))
-                .collect(Collectors.toList());
-
-            if (!relevantRels.isEmpty()) {
-                totalImpactedTables++;
-                totalReferences += relevantRels.size();
-
-                for (Relationship rel : relevantRels) {
-                    ImpactedReference impacted = new ImpactedReference(
-                        referencingTable,
-                        rel.sourceField,
-                        rel.confidence,
-                        "需要删除或清空此字段的值"
-                    );
-                    report.addImpactedReference(impacted);
-                }
-            }
-        }
+        collectImpactedReferences(report, field -> "需要删除或清空此字段的值");
 
         // 生成摘要
+        int totalImpactedTables = report.getImpactedTableCount();
+        int totalReferences = report.getReferenceCount();
         if (totalImpactedTables == 0) {
             report.setSummary("未发现其他表引用此数据，可以安全删除");
             report.setSeverity(Severity.SAFE);
@@ -166,6 +227,22 @@ public class ImpactAnalyzer {
         return report;
     }
 
+    /**
+     * 批量分析删除影响（例如一次规则执行删除的全部记录）
+     *
+     * @param tableName 要删除数据的表名
+     * @param fieldName 主键字段名
+     * @param values 要删除的值
+     * @return 每个值的影响报告，顺序与 values 一致
+     */
+    public List<ImpactReport> analyzeDeleteImpact(String tableName, String fieldName, Collection<String> values) {
+        List<ImpactReport> reports = new ArrayList<>(values.size());
+        for (String value : values) {
+            reports.add(analyzeDeleteImpact(tableName, fieldName, value));
+        }
+        return reports;
+    }
+
     /**
      * 分析修改影响
      *
@@ -182,52 +259,89 @@ public class ImpactAnalyzer {
         );
         report.setNewValue(newValue);
 
-        Map<String, List<Relationship>> references = reverseIndex.get(tableName);
-        if (references == null || references.isEmpty()) {
+        collectImpactedReferences(report, field -> String.format("需要将 %s 从 '%s' 更新为 '%s'",
+            field, oldValue, newValue));
+
+        int totalImpactedTables = report.getImpactedTableCount();
+        int totalReferences = report.getReferenceCount();
+        if (totalImpactedTables == 0) {
             report.setSummary("未发现其他表引用此字段，可以安全修改");
             report.setSeverity(Severity.SAFE);
-            return report;
+        } else {
+            report.setSummary(String.format("修改此字段会影响 %d 张表，共 %d 处引用，需要同步更新",
+                totalImpactedTables, totalReferences));
+            report.setSeverity(totalImpactedTables <= 3 ? Severity.WARNING : Severity.CRITICAL);
         }
 
-        int totalImpactedTables = 0;
-        int totalReferences = 0;
-
-        for (Map.Entry<String, List<Relationship>> entry : references.entrySet()) {
-            String referencingTable = entry.getKey();
-            List<Relationship> rels = entry.getValue();
+        report.generateCascadeActions();
+        return report;
+    }
 
-            List<Relationship> relevantRels = rels.stream()
-                .filter(r -> r.targetField.toLowerCase().contains(fieldName.toLowerCase()))
-                .collect(Collectors.toList());
+    /**
+     * 批量分析修改影响（例如一次规则执行修改的全部值）
+     *
+     * @param tableName 要修改数据的表名
+     * @param fieldName 字段名
+     * @param oldToNewValues 旧值 -> 新值
+     * @return 每个旧值的影响报告
+     */
+    public List<ImpactReport> analyzeUpdateImpact(String tableName, String fieldName,
+                                                 Map<String, String> oldToNewValues) {
+        List<ImpactReport> reports = new ArrayList<>(oldToNewValues.size());
+        for (Map.Entry<String, String> entry : oldToNewValues.entrySet()) {
+            reports.add(analyzeUpdateImpact(tableName, fieldName, entry.getKey(), entry.getValue()));
+        }
+        return reports;
+    }
 
-            if (!relevantRels.isEmpty()) {
-                totalImpactedTables++;
-                totalReferences += relevantRels.size();
+    /**
+     * 收集引用了报告中的值的位置
+     *
+     * <p>设置了值级索引时列出实际引用该值的行（按引用表和字段汇总），
+     * 否则退回表级关系：列出可能引用该字段的表和字段。
+     */
+    private void collectImpactedReferences(ImpactReport report, Function<String, String> suggestion) {
+        String fieldName = report.getFieldName();
+        ValueReferenceIndex index = valueIndex;
+
+        if (index != null) {
+            Map<String, List<ValueReferenceIndex.ValueReference>> grouped = new LinkedHashMap<>();
+            for (ValueReferenceIndex.ValueReference ref
+                    : index.findReferences(report.getTableName(), fieldName, report.getValue())) {
+                grouped.computeIfAbsent(ref.getSourceTable() + "|" + ref.getField(), k -> new ArrayList<>())
+                       .add(ref);
+            }
+            for (List<ValueReferenceIndex.ValueReference> refs : grouped.values()) {
+                ValueReferenceIndex.ValueReference first = refs.get(0);
+                List<String> rowKeys = refs.stream()
+                    .map(ValueReferenceIndex.ValueReference::getRowKey)
+                    .distinct()
+                    .collect(Collectors.toList());
+                report.addImpactedReference(new ImpactedReference(
+                    first.getSourceTable(), first.getField(), first.getConfidence(),
+                    suggestion.apply(first.getField()), rowKeys));
+            }
+            return;
+        }
 
-                for (Relationship rel : relevantRels) {
-                    ImpactedReference impacted = new ImpactedReference(
+        Map<String, List<Relationship>> references = reverseIndex.get(report.getTableName());
+        if (references == null) {
+            return;
+        }
+        for (Map.Entry<String, List<Relationship>> entry : references.entrySet()) {
+            String referencingTable = entry.getKey();
+            for (Relationship rel : entry.getValue()) {
+                // 只保留指向该字段的关系（字段名精确匹配，避免 id 命中 item_id 等）
+                if (rel.targetField.equalsIgnoreCase(fieldName)) {
+                    report.addImpactedReference(new ImpactedReference(
                         referencingTable,
                         rel.sourceField,
                         rel.confidence,
-                        String.format("需要将 %s 从 '%s' 更新为 '%s'",
-                            rel.sourceField, oldValue, newValue)
-                    );
-                    report.addImpactedReference(impacted);
+                        suggestion.apply(rel.sourceField)
+                    ));
                 }
             }
         }
-
-        if (totalImpactedTables == 0) {
-            report.setSummary("未发现其他表引用此字段，可以安全修改");
-            report.setSeverity(Severity.SAFE);
-        } else {
-            report.setSummary(String.format("修改此字段会影响 %d 张表，共 %d 处引用，需要同步更新",
-                totalImpactedTables, totalReferences));
-            report.setSeverity(totalImpactedTables <= 3 ? Severity.WARNING : Severity.CRITICAL);
-        }
-
-        report.generateCascadeActions();
-        return report;
     }
 
     /**
@@ -356,8 +470,12 @@ public class ImpactAnalyzer {
 
                 String action;
                 if (type == ImpactType.DELETE) {
+                    int rowCount = 0;
+                    for (ImpactedReference ref : refs) {
+                        rowCount += ref.rowKeys.isEmpty() ? 1 : ref.rowKeys.size();
+                    }
                     action = String.format("删除或清空 %s 表中引用此数据的 %d 条记录",
-                        table, refs.size());
+                        table, rowCount);
                 } else {
                     action = String.format("将 %s 表中的 %s 字段从 '%s' 更新为 '%s'",
                         table, refs.get(0).fieldName, value, newValue);
@@ -377,6 +495,20 @@ public class ImpactAnalyzer {
         public List<ImpactedReference> getImpactedReferences() {
             return Collections.unmodifiableList(impactedReferences);
         }
+
+        /** 受影响的表数 */
+        public int getImpactedTableCount() {
+            return (int) impactedReferences.stream().map(r -> r.tableName).distinct().count();
+        }
+
+        /** 引用数：有行级信息时按行计，否则按字段计 */
+        public int getReferenceCount() {
+            int count = 0;
+            for (ImpactedReference ref : impactedReferences) {
+                count += ref.rowKeys.isEmpty() ? 1 : ref.rowKeys.size();
+            }
+            return count;
+        }
         public List<CascadeAction> getCascadeActions() {
             return Collections.unmodifiableList(cascadeActions);
         }
@@ -413,6 +545,11 @@ public class ImpactAnalyzer {
                     for (ImpactedReference ref : entry.getValue()) {
                         sb.append(String.format("  • 字段: %s (置信度: %.1f%%)\n",
                             ref.fieldName, ref.confidence * 100));
+                        if (!ref.rowKeys.isEmpty()) {
+                            int shown = Math.min(20, ref.rowKeys.size());
+                            sb.append(String.format("    行: %s%s\n", String.join(", ", ref.rowKeys.subList(0, shown)),
+                                ref.rowKeys.size() > shown ? String.format(" ...（共 %d 行）", ref.rowKeys.size()) : ""));
+                        }
                         sb.append(String.format("    → %s\n", ref.suggestion));
                     }
                 }
@@ -439,19 +576,28 @@ public class ImpactAnalyzer {
         public final String fieldName;
         public final double confidence;
         public final String suggestion;
+        /** 引用该值的行主键（值级索引可用时），否则为空 */
+        public final List<String> rowKeys;
 
         public ImpactedReference(String tableName, String fieldName,
                                double confidence, String suggestion) {
+            this(tableName, fieldName, confidence, suggestion, Collections.emptyList());
+        }
+
+        public ImpactedReference(String tableName, String fieldName,
+                               double confidence, String suggestion, List<String> rowKeys) {
             this.tableName = tableName;
             this.fieldName = fieldName;
             this.confidence = confidence;
             this.suggestion = suggestion;
+            this.rowKeys = Collections.unmodifiableList(new ArrayList<>(rowKeys));
         }
 
         public String getTableName() { return tableName; }
         public String getFieldName() { return fieldName; }
         public double getConfidence() { return confidence; }
         public String getSuggestion() { return suggestion; }
+        public List<String> getRowKeys() { return rowKeys; }
     }
 
     /**
@@ -0,0 +1,392 @@
+package red.jiuzhou.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * @className: red.jiuzhou.analysis.StreamingFieldStatistics.java
+ * @description: 流式字段统计
+ *
+ * 逐条接收扁平化后的记录（字段名 → 值），一次遍历得到全部数值字段的统计量和两两相关性，
+ * 不再先收集全部记录、再按字段逐个重扫成 List&lt;Double&gt;：
+ * 1. 每个数值字段一列原始 double 数组（附带所在行号），排序后即为精确分位数，供分布特征和异常值检测使用；
+ * 2. 均值、二阶/三阶中心矩用 Welford 在线更新，直接给出方差和偏度；
+ * 3. 每对字段维护在线协矩（只统计两者同时有值的行），结束时即得皮尔逊相关系数，覆盖全部字段对；
+ *    只需要单列统计量时可在构造时关闭，省去每行 O(字段数²) 的更新；
+ * 4. ID 字段（名称按 _ 和驼峰拆分后含 id 这个词，如 id、item_id、npcId）额外记录每行原值，用于在异常值提示中标出记录。
+ * 收尾计算（排序、分布、相关性分类、异常值）按字段并行。
+ * 非线程安全：一个实例只由一个线程 accept，结束后再查询。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class StreamingFieldStatistics {
+
+    private final boolean trackPairs;
+    private final Map<String, FieldColumn> columns = new LinkedHashMap<>();
+    private final List<FieldColumn> columnsByIndex = new ArrayList<>();
+    private int rowCount;
+
+    // 字段对 (i < j) 的在线协矩，下标 j * (j - 1) / 2 + i
+    private int[] pairCount = new int[0];
+    private double[] pairMeanX = new double[0];
+    private double[] pairMeanY = new double[0];
+    private double[] pairCoMoment = new double[0];
+    private double[] pairM2X = new double[0];
+    private double[] pairM2Y = new double[0];
+
+    // 当前行的数值字段（复用，避免每行分配）
+    private int[] rowFields = new int[16];
+    private double[] rowValues = new double[16];
+
+    /**
+     * 统计单列统计量和全部字段对的相关性
+     */
+    public StreamingFieldStatistics() {
+        this(true);
+    }
+
+    /**
+     * @param trackPairs 是否维护字段对的协矩；为 false 时只统计单列，不能调用 findCorrelations
+     */
+    public StreamingFieldStatistics(boolean trackPairs) {
+        this.trackPairs = trackPairs;
+    }
+
+    /**
+     * 接收一条记录；字段顺序按首次出现确定
+     */
+    public void accept(Map<String, String> record) {
+        int row = rowCount++;
+        int present = 0;
+        for (Map.Entry<String, String> entry : record.entrySet()) {
+            FieldColumn column = columns.get(entry.getKey());
+            if (column == null) {
+                column = register(entry.getKey());
+            }
+            if (column.labels != null) {
+                column.setLabel(row, entry.getValue());
+            }
+            double value = parseNumber(entry.getValue());
+            if (Double.isNaN(value)) {
+                continue;
+            }
+            column.add(row, value);
+            if (!trackPairs) {
+                continue;
+            }
+            if (present == rowFields.length) {
+                rowFields = Arrays.copyOf(rowFields, present * 2);
+                rowValues = Arrays.copyOf(rowValues, present * 2);
+            }
+            rowFields[present] = column.index;
+            rowValues[present] = value;
+            present++;
+        }
+
+        for (int a = 1; a < present; a++) {
+            for (int b = 0; b < a; b++) {
+                if (rowFields[a] > rowFields[b]) {
+                    updatePair(rowFields[b], rowValues[b], rowFields[a], rowValues[a]);
+                } else {
+                    updatePair(rowFields[a], rowValues[a], rowFields[b], rowValues[b]);
+                }
+            }
+        }
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * 数值个数不少于 minSamples 的字段，按字段首次出现顺序
+     */
+    public List<FieldColumn> getNumericColumns(int minSamples) {
+        return columnsByIndex.stream()
+                .filter(column -> column.count >= Math.max(1, minSamples))
+                .collect(Collectors.toList());
+    }
+
+    public FieldColumn getColumn(String fieldName) {
+        return columns.get(fieldName);
+    }
+
+    /**
+     * 全部数值字段两两之间 |r| 超过阈值的相关性，按 |r| 从高到低
+     *
+     * @param minSamples 字段及字段对至少需要的数值个数
+     * @param threshold  相关系数绝对值阈值（不含）
+     */
+    public List<DataCorrelationAnalyzer.FieldCorrelation> findCorrelations(int minSamples, double threshold) {
+        if (!trackPairs) {
+            throw new IllegalStateException("未启用字段对统计，无法计算相关性");
+        }
+        List<FieldColumn> numeric = getNumericColumns(minSamples);
+        List<int[]> pairs = new ArrayList<>();
+        for (int j = 1; j < numeric.size(); j++) {
+            for (int i = 0; i < j; i++) {
+                pairs.add(new int[]{numeric.get(i).index, numeric.get(j).index});
+            }
+        }
+
+        return pairs.parallelStream()
+                .filter(pair -> {
+                    int p = pairIndex(pair[0], pair[1]);
+                    return pairCount[p] >= minSamples && Math.abs(pairCorrelation(p)) > threshold;
+                })
+                .map(pair -> {
+                    FieldColumn x = columnsByIndex.get(pair[0]);
+                    FieldColumn y = columnsByIndex.get(pair[1]);
+                    double[][] leading = leadingPairs(x, y, DataCorrelationAnalyzer.POWER_GROWTH_PROBE);
+                    return DataCorrelationAnalyzer.analyzeCorrelation(x.name, y.name,
+                            pairCorrelation(pairIndex(pair[0], pair[1])), leading[0], leading[1]);
+                })
+                .sorted(Comparator.comparingDouble(
+                        (DataCorrelationAnalyzer.FieldCorrelation c) -> Math.abs(c.getCorrelation())).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 全部数值字段的分布特征，按字段首次出现顺序
+     */
+    public List<DataCorrelationAnalyzer.DistributionProfile> profileDistributions(int minSamples) {
+        return getNumericColumns(minSamples).parallelStream()
+                .map(column -> DataCorrelationAnalyzer.analyzeDistribution(
+                        column.name, column.sortedValues(), column.getSkewness()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 各数值字段的极端异常值（Q1/Q3 外 3 倍 IQR），异常记录用 idField 的原值标识，没有时用"记录N"
+     */
+    public List<DataCorrelationAnalyzer.BalanceIssue> detectBalanceIssues(String idField) {
+        FieldColumn idColumn = idField != null ? columns.get(idField) : null;
+        String[] labels = idColumn != null ? idColumn.labels : null;
+        return getNumericColumns(5).parallelStream()
+                .map(column -> {
+                    double[] bounds = DataCorrelationAnalyzer.extremeOutlierBounds(column.sortedValues());
+                    List<String> outliers = new ArrayList<>();
+                    for (int i = 0; i < column.count
+                            && outliers.size() <= DataCorrelationAnalyzer.MAX_REPORTED_OUTLIERS; i++) {
+                        double value = column.values[i];
+                        if (value < bounds[0] || value > bounds[1]) {
+                            int row = column.rows[i];
+                            String label = labels != null && row < labels.length && labels[row] != null
+                                    ? labels[row] : "记录" + row;
+                            outliers.add(String.format("%s (值: %.2f)", label, value));
+                        }
+                    }
+                    return DataCorrelationAnalyzer.extremeOutlierIssue(column.name, outliers);
+                })
+                .filter(Optional::isPresent)
+                .map(Optional::get)
+                .collect(Collectors.toList());
+    }
+
+    private FieldColumn register(String fieldName) {
+        FieldColumn column = new FieldColumn(fieldName, columnsByIndex.size(), isIdField(fieldName));
+        columns.put(fieldName, column);
+        columnsByIndex.add(column);
+        if (!trackPairs) {
+            return column;
+        }
+
+        int required = pairIndex(0, column.index + 1);
+        if (required > pairCount.length) {
+            int capacity = Math.max(required, pairCount.length * 2);
+            pairCount = Arrays.copyOf(pairCount, capacity);
+            pairMeanX = Arrays.copyOf(pairMeanX, capacity);
+            pairMeanY = Arrays.copyOf(pairMeanY, capacity);
+            pairCoMoment = Arrays.copyOf(pairCoMoment, capacity);
+            pairM2X = Arrays.copyOf(pairM2X, capacity);
+            pairM2Y = Arrays.copyOf(pairM2Y, capacity);
+        }
+        return column;
+    }
+
+    /**
+     * 字段名按 _、- 等分隔符和驼峰拆词后是否含 id 这个词（width、hidden 等不算）
+     */
+    static boolean isIdField(String fieldName) {
+        String words = fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ENGLISH);
+        for (String word : words.split("[^a-z0-9]+")) {
+            if ("id".equals(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int pairIndex(int i, int j) {
+        return j * (j - 1) / 2 + i;
+    }
+
+    private void updatePair(int i, double x, int j, double y) {
+        int p = pairIndex(i, j);
+        int n = ++pairCount[p];
+        double dx = x - pairMeanX[p];
+        pairMeanX[p] += dx / n;
+        double dy = y - pairMeanY[p];
+        pairMeanY[p] += dy / n;
+        pairCoMoment[p] += dx * (y - pairMeanY[p]);
+        pairM2X[p] += dx * (x - pairMeanX[p]);
+        pairM2Y[p] += dy * (y - pairMeanY[p]);
+    }
+
+    private double pairCorrelation(int p) {
+        double denominator = Math.sqrt(pairM2X[p] * pairM2Y[p]);
+        return denominator == 0 ? 0 : pairCoMoment[p] / denominator;
+    }
+
+    /**
+     * 两列在共同行上的前 limit 对数值（行号递增）
+     */
+    private static double[][] leadingPairs(FieldColumn x, FieldColumn y, int limit) {
+        double[] xs = new double[limit];
+        double[] ys = new double[limit];
+        int found = 0;
+        int a = 0;
+        int b = 0;
+        while (found < limit && a < x.count && b < y.count) {
+            if (x.rows[a] < y.rows[b]) {
+                a++;
+            } else if (x.rows[a] > y.rows[b]) {
+                b++;
+            } else {
+                xs[found] = x.values[a++];
+                ys[found] = y.values[b++];
+                found++;
+            }
+        }
+        return new double[][]{Arrays.copyOf(xs, found), Arrays.copyOf(ys, found)};
+    }
+
+    /**
+     * 解析数值，非数值（含空串、NaN、无穷）返回 NaN；先看首字符，文本字段不走异常路径
+     */
+    static double parseNumber(String raw) {
+        if (raw == null) {
+            return Double.NaN;
+        }
+        String value = raw.trim();
+        if (value.isEmpty()) {
+            return Double.NaN;
+        }
+        char first = value.charAt(0);
+        if ((first < '0' || first > '9') && first != '-' && first != '+' && first != '.') {
+            return Double.NaN;
+        }
+        try {
+            double parsed = Double.parseDouble(value);
+            return Double.isInfinite(parsed) ? Double.NaN : parsed;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * 单个字段的数值列与在线矩
+     */
+    public static final class FieldColumn {
+        private final String name;
+        private final int index;
+        private double[] values = new double[16];
+        private int[] rows = new int[16];
+        private int count;
+        private double mean;
+        private double m2;
+        private double m3;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+        private String[] labels;
+        private double[] sorted;
+
+        private FieldColumn(String name, int index, boolean keepLabels) {
+            this.name = name;
+            this.index = index;
+            this.labels = keepLabels ? new String[16] : null;
+        }
+
+        private void add(int row, double value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count + (count >> 1));
+                rows = Arrays.copyOf(rows, values.length);
+            }
+            values[count] = value;
+            rows[count] = row;
+
+            long n1 = count;
+            count++;
+            double delta = value - mean;
+            double deltaN = delta / count;
+            double term = delta * deltaN * n1;
+            mean += deltaN;
+            m3 += term * deltaN * (count - 2) - 3 * deltaN * m2;
+            m2 += term;
+            if (count == 1 || value < min) {
+                min = value;
+            }
+            if (count == 1 || value > max) {
+                max = value;
+            }
+            sorted = null;
+        }
+
+        private void setLabel(int row, String value) {
+            if (row >= labels.length) {
+                labels = Arrays.copyOf(labels, Math.max(row + 1, labels.length + (labels.length >> 1)));
+            }
+            labels[row] = value;
+        }
+
+        public String getName() { return name; }
+        public int getCount() { return count; }
+        public double getMean() { return mean; }
+        public double getMin() { return min; }
+        public double getMax() { return max; }
+
+        /** 总体方差 */
+        public double getVariance() {
+            return count == 0 ? 0 : m2 / count;
+        }
+
+        /** 总体偏度：正值右偏，负值左偏 */
+        public double getSkewness() {
+            if (count == 0 || m2 == 0) {
+                return 0;
+            }
+            return (m3 / count) / Math.pow(m2 / count, 1.5);
+        }
+
+        /**
+         * 升序排列的全部数值（首次调用时排序，之后复用）
+         */
+        public synchronized double[] sortedValues() {
+            if (sorted == null) {
+                sorted = Arrays.copyOf(values, count);
+                Arrays.sort(sorted);
+            }
+            return sorted;
+        }
+
+        /**
+         * 精确分位数，取排序后下标 floor(count * p) 处的值
+         */
+        public double quantile(double p) {
+            double[] data = sortedValues();
+            if (data.length == 0) {
+                return Double.NaN;
+            }
+            int position = (int) Math.floor(data.length * p);
+            return data[Math.max(0, Math.min(data.length - 1, position))];
+        }
+    }
+}
@@ -0,0 +1,482 @@
+package red.jiuzhou.analysis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.relationship.XmlRelationshipAnalyzer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * @className: red.jiuzhou.analysis.ValueReferenceIndex.java
+ * @description: 值级反向引用索引
+ *
+ * 由字段级关系（{@link XmlRelationshipAnalyzer}）构建：（被引用表, 值）→ 引用该值的（引用表, 行主键, 字段）列表，
+ * 影响分析据此列出引用某个物品/NPC/技能的具体行，而不只是可能引用的表。
+ * 数据来自检测出这些关系的 XML 文件：每个源文件流式读取一遍关系涉及的列；
+ * 行是根元素下的条目，行主键取条目的 id 属性或 id 子元素，都没有时取条目序号（#1 起）。
+ * refresh 只重新读取修改时间/大小变化、或所涉关系变化的源文件，其余文件的引用保持不变，
+ * 批量导入导出或重新分析关系之后整体刷新一次即可。
+ * 查询不加锁，看到的是刷新前或刷新后的完整索引项。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class ValueReferenceIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ValueReferenceIndex.class);
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    // 被引用表 -> 值 -> 引用列表（发布后不再修改）
+    private final Map<String, Map<String, List<ValueReference>>> index = new ConcurrentHashMap<>();
+
+    // 源文件 -> 该文件贡献的引用（只在 refresh 内访问）
+    private final Map<String, FileReferences> files = new HashMap<>();
+
+    /**
+     * 按关系报告刷新索引
+     *
+     * @param report 字段级关系报告
+     */
+    public synchronized void refresh(XmlRelationshipAnalyzer.RelationshipReport report) {
+        long start = System.currentTimeMillis();
+
+        // 1. 按源文件分组关系，计算每个文件需要读取的列
+        Map<String, Map<String, List<ColumnTarget>>> columnsByFile = new LinkedHashMap<>();
+        for (XmlRelationshipAnalyzer.Relationship rel : report.getRelationships()) {
+            columnsByFile.computeIfAbsent(rel.getSourceFileKey(), k -> new TreeMap<>())
+                    .computeIfAbsent(rel.getSourceColumnPath(), k -> new ArrayList<>())
+                    .add(new ColumnTarget(rel));
+        }
+
+        // 2. 找出需要重新读取的文件（新增、变化、关系变化）和已不再有关系的文件
+        List<PendingFile> pending = new ArrayList<>();
+        Set<String> removed = new HashSet<>(files.keySet());
+        for (Map.Entry<String, Map<String, List<ColumnTarget>>> entry : columnsByFile.entrySet()) {
+            String fileKey = entry.getKey();
+            removed.remove(fileKey);
+            Path path = resolve(report.getBaseDirectories(), fileKey);
+            long modified = -1L;
+            long size = -1L;
+            if (path != null) {
+                try {
+                    modified = Files.getLastModifiedTime(path).toMillis();
+                    size = Files.size(path);
+                } catch (IOException e) {
+                    log.warn("读取文件属性失败: {}", path, e);
+                }
+            }
+            String signature = signature(entry.getValue());
+            FileReferences old = files.get(fileKey);
+            if (old == null || old.modified != modified || old.size != size || !old.signature.equals(signature)) {
+                pending.add(new PendingFile(fileKey, path, modified, size, signature, entry.getValue()));
+            }
+        }
+        if (pending.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        // 3. 并行读取变化的文件
+        List<FileReferences> scanned = pending.parallelStream()
+                .map(file -> new FileReferences(file.modified, file.size, file.signature,
+                        file.path == null ? Collections.emptyList() : scanFile(file.path, file.fileKey, file.columns)))
+                .collect(Collectors.toList());
+
+        // 4. 替换受影响的索引项：去掉这些文件原来的引用，加入新读取的引用
+        Set<String> changedFiles = new HashSet<>(removed);
+        Map<String, Map<String, List<ValueReference>>> added = new HashMap<>();
+        Map<String, Set<String>> touched = new HashMap<>();
+        for (String fileKey : removed) {
+            collectKeys(files.remove(fileKey).references, touched);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            String fileKey = pending.get(i).fileKey;
+            changedFiles.add(fileKey);
+            FileReferences old = files.put(fileKey, scanned.get(i));
+            if (old != null) {
+                collectKeys(old.references, touched);
+            }
+            for (ValueReference ref : scanned.get(i).references) {
+                touched.computeIfAbsent(ref.targetTable, k -> new HashSet<>()).add(ref.value);
+                added.computeIfAbsent(ref.targetTable, k -> new HashMap<>())
+                        .computeIfAbsent(ref.value, k -> new ArrayList<>())
+                        .add(ref);
+            }
+        }
+
+        for (Map.Entry<String, Set<String>> entry : touched.entrySet()) {
+            String table = entry.getKey();
+            Map<String, List<ValueReference>> values = index.computeIfAbsent(table, k -> new ConcurrentHashMap<>());
+            Map<String, List<ValueReference>> addedValues = added.getOrDefault(table, Collections.emptyMap());
+            for (String value : entry.getValue()) {
+                List<ValueReference> merged = new ArrayList<>();
+                for (ValueReference ref : values.getOrDefault(value, Collections.emptyList())) {
+                    if (!changedFiles.contains(ref.sourceFile)) {
+                        merged.add(ref);
+                    }
+                }
+                merged.addAll(addedValues.getOrDefault(value, Collections.emptyList()));
+                if (merged.isEmpty()) {
+                    values.remove(value);
+                } else {
+                    values.put(value, Collections.unmodifiableList(merged));
+                }
+            }
+            if (values.isEmpty()) {
+                index.remove(table);
+            }
+        }
+
+        log.info("值级引用索引刷新完成：读取 {} 个文件，移除 {} 个文件，耗时 {}ms",
+                pending.size(), removed.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 查询引用某个值的所有行
+     *
+     * @param targetTable 被引用表
+     * @param value 被引用的值
+     * @return 引用列表（不可修改）
+     */
+    public List<ValueReference> findReferences(String targetTable, String value) {
+        if (targetTable == null || value == null) {
+            return Collections.emptyList();
+        }
+        Map<String, List<ValueReference>> values = index.get(targetTable);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return values.getOrDefault(value.trim(), Collections.emptyList());
+    }
+
+    /**
+     * 查询引用某张表某个字段的值的所有行
+     *
+     * @param targetTable 被引用表
+     * @param targetField 被引用字段（按字段名精确匹配，不区分大小写）
+     * @param value 被引用的值
+     * @return 引用列表
+     */
+    public List<ValueReference> findReferences(String targetTable, String targetField, String value) {
+        List<ValueReference> refs = findReferences(targetTable, value);
+        if (refs.isEmpty() || targetField == null) {
+            return refs;
+        }
+        List<ValueReference> result = new ArrayList<>();
+        for (ValueReference ref : refs) {
+            if (targetField.equalsIgnoreCase(ref.getTargetField())) {
+                result.add(ref);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 批量查询（例如一次规则执行涉及的全部值）
+     *
+     * @param targetTable 被引用表
+     * @param values 被引用的值
+     * @return 值 -> 引用列表，只包含有引用的值
+     */
+    public Map<String, List<ValueReference>> findReferences(String targetTable, Collection<String> values) {
+        Map<String, List<ValueReference>> result = new LinkedHashMap<>();
+        for (String value : values) {
+            List<ValueReference> refs = findReferences(targetTable, value);
+            if (!refs.isEmpty()) {
+                result.put(value, refs);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 已索引的被引用值数量
+     */
+    public int getIndexedValueCount() {
+        int count = 0;
+        for (Map<String, List<ValueReference>> values : index.values()) {
+            count += values.size();
+        }
+        return count;
+    }
+
+    // ========== 私有方法 ==========
+
+    private static Path resolve(List<Path> baseDirs, String fileKey) {
+        for (Path baseDir : baseDirs) {
+            Path candidate = baseDir.resolve(fileKey);
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static String signature(Map<String, List<ColumnTarget>> columns) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, List<ColumnTarget>> entry : columns.entrySet()) {
+            sb.append(entry.getKey()).append('=');
+            entry.getValue().stream()
+                    .map(target -> target.targetTable + "." + target.targetField + ":" + target.confidence)
+                    .sorted()
+                    .forEach(s -> sb.append(s).append(','));
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    private static void collectKeys(List<ValueReference> references, Map<String, Set<String>> touched) {
+        for (ValueReference ref : references) {
+            touched.computeIfAbsent(ref.targetTable, k -> new HashSet<>()).add(ref.value);
+        }
+    }
+
+    /**
+     * 流式读取一个源文件中关系涉及的列，路径规则与关系分析一致：
+     * 属性为 {@code path/@name}，没有子元素的元素取其文本 {@code path}
+     */
+    private static List<ValueReference> scanFile(Path file, String fileKey, Map<String, List<ColumnTarget>> columns) {
+        String sourceTable = ImpactAnalyzer.extractTableName(fileKey);
+        List<ValueReference> references = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                Deque<Frame> stack = new ArrayDeque<>();
+                RowState row = null;
+                int rowOrdinal = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        Frame parent = stack.peek();
+                        String name = reader.getLocalName();
+                        String path = parent == null ? name : parent.path + "/" + name;
+                        if (parent != null) {
+                            parent.text = null;
+                        }
+                        if (stack.size() == 1) {
+                            row = new RowState(++rowOrdinal);
+                        }
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String attributeName = reader.getAttributeLocalName(i);
+                            String attributeValue = reader.getAttributeValue(i);
+                            if (stack.size() == 1 && row.key == null && "id".equalsIgnoreCase(attributeName)) {
+                                row.key = trimToNull(attributeValue);
+                            }
+                            List<ColumnTarget> targets = columns.get(path + "/@" + attributeName);
+                            if (targets != null) {
+                                addOccurrence(row, targets, attributeValue, sourceTable, fileKey, references);
+                            }
+                        }
+                        stack.push(new Frame(path));
+                    } else if (event == XMLStreamConstants.CHARACTERS
+                            || event == XMLStreamConstants.CDATA
+                            || event == XMLStreamConstants.SPACE) {
+                        Frame current = stack.peek();
+                        if (current != null && current.text != null) {
+                            current.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        Frame frame = stack.pop();
+                        if (frame.text != null) {
+                            if (stack.size() == 2 && row.key == null && "id".equalsIgnoreCase(reader.getLocalName())) {
+                                row.key = trimToNull(frame.text.toString());
+                            }
+                            List<ColumnTarget> targets = columns.get(frame.path);
+                            if (targets != null) {
+                                addOccurrence(row, targets, frame.text.toString(), sourceTable, fileKey, references);
+                            }
+                        }
+                        if (stack.size() == 1 && row != null) {
+                            row.flush(sourceTable, fileKey, references);
+                            row = null;
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException | IOException e) {
+            log.warn("读取XML文件失败，跳过其引用: {}", file, e);
+            return Collections.emptyList();
+        }
+        return references;
+    }
+
+    private static void addOccurrence(RowState row, List<ColumnTarget> targets, String rawValue,
+                                      String sourceTable, String fileKey, List<ValueReference> references) {
+        String value = trimToNull(rawValue);
+        if (value == null) {
+            return;
+        }
+        if (row == null) {
+            // 根元素上的属性不属于任何条目
+            for (ColumnTarget target : targets) {
+                references.add(target.toReference(sourceTable, fileKey, "#0", value));
+            }
+            return;
+        }
+        for (ColumnTarget target : targets) {
+            row.occurrences.add(new Occurrence(target, value));
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * 引用某个值的一行数据
+     */
+    public static class ValueReference {
+        private final String sourceTable;
+        private final String sourceFile;
+        private final String rowKey;
+        private final String field;
+        private final String fieldPath;
+        private final String targetTable;
+        private final String targetField;
+        private final String value;
+        private final double confidence;
+
+        ValueReference(String sourceTable, String sourceFile, String rowKey, String field, String fieldPath,
+                       String targetTable, String targetField, String value, double confidence) {
+            this.sourceTable = sourceTable;
+            this.sourceFile = sourceFile;
+            this.rowKey = rowKey;
+            this.field = field;
+            this.fieldPath = fieldPath;
+            this.targetTable = targetTable;
+            this.targetField = targetField;
+            this.value = value;
+            this.confidence = confidence;
+        }
+
+        public String getSourceTable() { return sourceTable; }
+        public String getSourceFile() { return sourceFile; }
+        public String getRowKey() { return rowKey; }
+        public String getField() { return field; }
+        public String getFieldPath() { return fieldPath; }
+        public String getTargetTable() { return targetTable; }
+        public String getTargetField() { return targetField; }
+        public String getValue() { return value; }
+        public double getConfidence() { return confidence; }
+
+        @Override
+        public String toString() {
+            return sourceTable + "[" + rowKey + "]." + field + " -> " + targetTable + "." + targetField + "=" + value;
+        }
+    }
+
+    private static final class ColumnTarget {
+        private final String field;
+        private final String fieldPath;
+        private final String targetTable;
+        private final String targetField;
+        private final double confidence;
+
+        ColumnTarget(XmlRelationshipAnalyzer.Relationship rel) {
+            this.field = rel.getSourceColumnName();
+            this.fieldPath = rel.getSourceColumnPath();
+            this.targetTable = ImpactAnalyzer.extractTableName(rel.getTargetFileKey());
+            this.targetField = rel.getTargetColumnName();
+            this.confidence = rel.getConfidence();
+        }
+
+        ValueReference toReference(String sourceTable, String fileKey, String rowKey, String value) {
+            return new ValueReference(sourceTable, fileKey, rowKey, field, fieldPath,
+                    targetTable, targetField, value, confidence);
+        }
+    }
+
+    private static final class FileReferences {
+        private final long modified;
+        private final long size;
+        private final String signature;
+        private final List<ValueReference> references;
+
+        FileReferences(long modified, long size, String signature, List<ValueReference> references) {
+            this.modified = modified;
+            this.size = size;
+            this.signature = signature;
+            this.references = references;
+        }
+    }
+
+    private static final class PendingFile {
+        private final String fileKey;
+        private final Path path;
+        private final long modified;
+        private final long size;
+        private final String signature;
+        private final Map<String, List<ColumnTarget>> columns;
+
+        PendingFile(String fileKey, Path path, long modified, long size, String signature,
+                    Map<String, List<ColumnTarget>> columns) {
+            this.fileKey = fileKey;
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.signature = signature;
+            this.columns = columns;
+        }
+    }
+
+    private static final class Frame {
+        private final String path;
+        private StringBuilder text = new StringBuilder();
+
+        Frame(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * 正在读取的条目：主键可能出现在引用字段之后，条目结束时再生成引用
+     */
+    private static final class RowState {
+        private final int ordinal;
+        private final List<Occurrence> occurrences = new ArrayList<>();
+        private String key;
+
+        RowState(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        void flush(String sourceTable, String fileKey, List<ValueReference> references) {
+            String rowKey = key != null ? key : "#" + ordinal;
+            for (Occurrence occurrence : occurrences) {
+                references.add(occurrence.target.toReference(sourceTable, fileKey, rowKey, occurrence.value));
+            }
+        }
+    }
+
+    private static final class Occurrence {
+        private final ColumnTarget target;
+        private final String value;
+
+        Occurrence(ColumnTarget target, String value) {
+            this.target = target;
+            this.value = value;
+        }
+    }
+}
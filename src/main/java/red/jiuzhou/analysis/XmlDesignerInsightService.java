@@ -58,6 +58,7 @@ public class XmlDesignerInsightService {
     private static final int MAX_TRACKED_UNIQUE_VALUES = 500;
     private static final int VALUE_TRUNCATE_LIMIT = 220;
     private static final int TOP_VALUE_LIMIT = 12;
+    private static final int MIN_NUMERIC_SAMPLES = 3;
     private static final Pattern NUMERIC_PATTERN = Pattern.compile("^-?\\d+(\\.\\d+)?$");
     private static final List<Charset> CHARSET_FALLBACKS = buildCharsetFallbacks();
 
@@ -148,12 +149,14 @@ public class XmlDesignerInsightService {
         XmlFileSummary summary = buildSummary(xmlFile, root, entryElementName);
         Builder builder = XmlDesignerInsight.builder(summary).withEntryCount(entries.size());
         AttributeAggregator aggregator = new AttributeAggregator();
+        StreamingFieldStatistics statistics = new StreamingFieldStatistics();
         List<Map<String, String>> sampleRecords = new ArrayList<>();
 
         for (Element element : entries) {
             Map<String, String> flattened = flattenElement(element);
             if (!flattened.isEmpty()) {
                 aggregator.accept(flattened);
+                statistics.accept(flattened);
             }
             if (sampleRecords.size() < sampleLimit) {
                 sampleRecords.add(flattened);
@@ -175,34 +178,26 @@ public class XmlDesignerInsightService {
         }
 
         // 执行高级分析
-        performAdvancedAnalysis(builder, entries, aggregator);
+        performAdvancedAnalysis(builder, aggregator, statistics);
 
         return builder.build();
     }
 
     /**
      * 执行高级数据分析，包括关联性、分布特征和平衡性检测
+     *
+     * <p>统计量在展平条目时已由 {@link StreamingFieldStatistics} 一次遍历收集，这里覆盖全部数值字段，不再截取前几个。
      */
-    private void performAdvancedAnalysis(Builder builder, List<Element> entries, AttributeAggregator aggregator) {
-        if (entries.isEmpty()) {
+    private void performAdvancedAnalysis(Builder builder, AttributeAggregator aggregator,
+                                         StreamingFieldStatistics statistics) {
+        if (statistics.getRowCount() == 0) {
             log.debug("数据洞察: 跳过高级分析，因为没有数据记录");
             return;
         }
 
         try {
             log.debug("数据洞察: 开始执行高级分析，记录数: {}, 字段数: {}",
-                entries.size(), aggregator.attributeStats.size());
-
-            // 收集所有数据
-            List<Map<String, String>> allRecords = new ArrayList<>();
-            for (Element element : entries) {
-                Map<String, String> flattened = flattenElement(element);
-                if (!flattened.isEmpty()) {
-                    allRecords.add(flattened);
-                }
-            }
-
-            log.debug("数据洞察: 展平后的记录数: {}", allRecords.size());
+                statistics.getRowCount(), aggregator.attributeStats.size());
 
             // 识别字段类型
             int typeCount = 0;
@@ -213,59 +208,26 @@ public class XmlDesignerInsightService {
             }
             log.debug("数据洞察: 识别了 {} 个字段类型", typeCount);
 
-            // 提取数值字段
-            Map<String, List<Double>> numericFields = new LinkedHashMap<>();
-            for (String fieldName : aggregator.attributeStats.keySet()) {
-                List<Double> values = extractNumericValuesFromRecords(allRecords, fieldName);
-                if (values.size() >= 3) { // 至少需要3个数据点
-                    numericFields.put(fieldName, values);
-                }
-            }
-            log.debug("数据洞察: 找到 {} 个数值字段", numericFields.size());
-
-            // 分析字段间相关性（只分析前10个数值字段，避免过多计算）
-            List<String> fieldNames = new ArrayList<>(numericFields.keySet());
-            int maxFields = Math.min(10, fieldNames.size());
-            int correlationCount = 0;
-            for (int i = 0; i < maxFields; i++) {
-                for (int j = i + 1; j < maxFields; j++) {
-                    String field1 = fieldNames.get(i);
-                    String field2 = fieldNames.get(j);
-                    List<Double> values1 = numericFields.get(field1);
-                    List<Double> values2 = numericFields.get(field2);
-
-                    DataCorrelationAnalyzer.FieldCorrelation correlation =
-                        DataCorrelationAnalyzer.analyzeCorrelation(field1, values1, field2, values2);
-
-                    // 只添加有意义的相关性
-                    if (Math.abs(correlation.getCorrelation()) > 0.3) {
-                        builder.addCorrelation(correlation);
-                        correlationCount++;
-                    }
-                }
-            }
-            log.debug("数据洞察: 发现 {} 个显著相关性", correlationCount);
+            // 数值字段（至少需要3个数据点）
+            int numericCount = statistics.getNumericColumns(MIN_NUMERIC_SAMPLES).size();
+            log.debug("数据洞察: 找到 {} 个数值字段", numericCount);
 
-            // 分析数值分布特征（只分析前15个字段）
-            int count = 0;
-            for (Map.Entry<String, List<Double>> entry : numericFields.entrySet()) {
-                if (count++ >= 15) break;
+            // 分析字段间相关性，只保留有意义的（|r| > 0.3）
+            List<DataCorrelationAnalyzer.FieldCorrelation> correlations =
+                statistics.findCorrelations(MIN_NUMERIC_SAMPLES, 0.3);
+            correlations.forEach(builder::addCorrelation);
+            log.debug("数据洞察: 发现 {} 个显著相关性", correlations.size());
 
-                DataCorrelationAnalyzer.DistributionProfile profile =
-                    DataCorrelationAnalyzer.analyzeDistribution(entry.getKey(), entry.getValue());
-                builder.addDistributionProfile(profile);
-            }
-            log.debug("数据洞察: 分析了 {} 个字段的分布特征", count);
+            // 分析数值分布特征
+            List<DataCorrelationAnalyzer.DistributionProfile> profiles =
+                statistics.profileDistributions(MIN_NUMERIC_SAMPLES);
+            profiles.forEach(builder::addDistributionProfile);
+            log.debug("数据洞察: 分析了 {} 个字段的分布特征", profiles.size());
 
             // 检测平衡性问题
             String idField = findIdField(aggregator);
-            Map<String, List<Map<String, String>>> fieldRecords = new LinkedHashMap<>();
-            for (String fieldName : numericFields.keySet()) {
-                fieldRecords.put(fieldName, allRecords);
-            }
-
             List<DataCorrelationAnalyzer.BalanceIssue> issues =
-                DataCorrelationAnalyzer.detectBalanceIssues(fieldRecords, idField != null ? idField : "id");
+                statistics.detectBalanceIssues(idField != null ? idField : "id");
 
             for (DataCorrelationAnalyzer.BalanceIssue issue : issues) {
                 builder.addBalanceIssue(issue);
@@ -273,7 +235,7 @@ public class XmlDesignerInsightService {
             log.debug("数据洞察: 检测到 {} 个平衡性问题", issues.size());
 
             log.info("数据洞察: 高级分析完成 - 字段类型:{}, 数值字段:{}, 相关性:{}, 分布特征:{}, 平衡问题:{}",
-                typeCount, numericFields.size(), correlationCount, count, issues.size());
+                typeCount, numericCount, correlations.size(), profiles.size(), issues.size());
 
         } catch (Exception e) {
             log.error("数据洞察: 高级分析出现异常", e);
@@ -281,23 +243,6 @@ public class XmlDesignerInsightService {
         }
     }
 
-    /**
-     * 从记录中提取数值列表
-     */
-    private List<Double> extractNumericValuesFromRecords(List<Map<String, String>> records, String fieldName) {
-        List<Double> values = new ArrayList<>();
-        for (Map<String, String> record : records) {
-            String value = record.get(fieldName);
-            if (value != null && !value.trim().isEmpty()) {
-                try {
-                    values.add(Double.parseDouble(value.trim()));
-                } catch (NumberFormatException ignored) {
-                }
-            }
-        }
-        return values;
-    }
-
     /**
      * 查找ID字段
      */
@@ -306,9 +251,9 @@ public class XmlDesignerInsightService {
         if (aggregator.attributeStats.containsKey("id")) {
             return "id";
         }
-        // 查找包含id的字段
+        // 查找 ID 字段（与 StreamingFieldStatistics 记录原值的字段一致）
         for (String fieldName : aggregator.attributeStats.keySet()) {
-            if (fieldName.toLowerCase(Locale.ENGLISH).contains("id")) {
+            if (StreamingFieldStatistics.isIdField(fieldName)) {
                 return fieldName;
             }
         }
@@ -1,11 +1,21 @@
 package red.jiuzhou.analysis.aion;
 
+import cn.hutool.crypto.digest.DigestUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.YamlUtils;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Aion游戏机制检测器
@@ -190,6 +200,9 @@ public class AionMechanismDetector {
         LOCALIZATION_FOLDERS.add("ru");
     }
 
+    /** 检测规则版本：修改 detect() 的判定逻辑时递增，使磁盘扫描缓存失效 */
+    private static final int RULES_VERSION = 1;
+
     private final File publicRoot;
     private final File localizedRoot;
     private final File clientRoot;  // 客户端XML目录
@@ -224,48 +237,77 @@ public class AionMechanismDetector {
      * 1. 本地化目录 - 最高优先级，覆盖服务端
      * 2. 服务端目录 - 本地化没有的文件才显示
      * 3. 客户端目录 - 独立的客户端配置
+     *
+     * 三个目录用 ForkJoin 并行遍历（每个文件只读一次属性），按文件名建索引后完成去重和覆盖检测；
+     * 检测结果按「路径 + 修改时间 + 大小」缓存到磁盘，再次扫描只检测变化的文件。
      */
     public AionMechanismView scan() {
         AionMechanismView view = new AionMechanismView();
+        long startTime = System.currentTimeMillis();
 
         log.info("开始扫描Aion XML目录: {}", publicRoot.getAbsolutePath());
 
-        // 用于去重的文件名集合（小写，便于比较）
-        Set<String> processedFileNames = new HashSet<>();
-
-        // 1. 先扫描本地化目录（优先级最高）
-        Set<String> localizedFileNames = new HashSet<>();
-        if (localizedRoot != null && localizedRoot.exists()) {
-            log.info("扫描本地化目录（优先）: {}", localizedRoot.getAbsolutePath());
-            scanDirectory(localizedRoot, localizedRoot, view, true, localizedFileNames);
-            // 记录本地化文件名用于去重
-            for (String name : localizedFileNames) {
-                processedFileNames.add(name.toLowerCase());
+        MechanismScanCache cache = MechanismScanCache.forRoots(rootsKey());
+        cache.open(rulesFingerprint(MechanismOverrideConfig.getInstance()));
+
+        int parallelism = Integer.parseInt(YamlUtils.getProperty("application.yml", "aion.mechanism.scan-parallelism", "0"));
+        ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+        try {
+            // 本地化目录通常位于公共目录之下（XML/China），遍历公共/客户端目录时跳过它
+            Path localizedPath = localizedRoot != null ? localizedRoot.toPath().toAbsolutePath().normalize() : null;
+            List<ScannedFile> localizedFiles = walk(pool, localizedRoot, null);
+            List<ScannedFile> publicFiles = walk(pool, publicRoot, localizedPath);
+            List<ScannedFile> clientFiles = walk(pool, clientRoot, localizedPath);
+
+            // 文件名索引（小写 -> 首个同名文件），去重和本地化覆盖检测都只查索引
+            Map<String, ScannedFile> localizedIndex = indexByName(localizedFiles);
+            Map<String, ScannedFile> publicIndex = indexByName(publicFiles);
+
+            Map<String, MechanismScanCache.Entry> scanned = new ConcurrentHashMap<>();
+            AtomicInteger detectedCount = new AtomicInteger();
+
+            // 1. 本地化目录（优先级最高）
+            if (!localizedFiles.isEmpty()) {
+                log.info("扫描本地化目录（优先）: {}", localizedRoot.getAbsolutePath());
+                addFiles(view, localizedFiles, detectAll(pool, localizedFiles, true, cache, scanned, detectedCount), true);
+                log.info("本地化目录: {} 个文件", localizedFiles.size());
             }
-            log.info("本地化目录: {} 个文件", localizedFileNames.size());
-        }
 
-        // 2. 扫描公共目录（服务端XML），跳过本地化已有的文件
-        Set<String> publicFileNames = new HashSet<>();
-        scanDirectoryWithDedup(publicRoot, publicRoot, view, false, publicFileNames, processedFileNames);
-        // 将公共目录文件名也加入去重集合
-        for (String name : publicFileNames) {
-            processedFileNames.add(name.toLowerCase());
-        }
-        log.info("服务端目录: {} 个文件（已排除本地化重复）", publicFileNames.size());
+            // 2. 公共目录（服务端XML），跳过本地化已有的文件
+            List<ScannedFile> publicOnly = new ArrayList<>(publicFiles.size());
+            for (ScannedFile f : publicFiles) {
+                if (!localizedIndex.containsKey(f.lowerName)) {
+                    publicOnly.add(f);
+                }
+            }
+            addFiles(view, publicOnly, detectAll(pool, publicOnly, false, cache, scanned, detectedCount), false);
+            log.info("服务端目录: {} 个文件（已排除本地化重复）", publicOnly.size());
 
-        // 检测本地化覆盖关系
-        if (!localizedFileNames.isEmpty()) {
-            detectLocalizedOverrides(view, publicFileNames, localizedFileNames);
-        }
+            // 检测本地化覆盖关系
+            if (!localizedIndex.isEmpty()) {
+                detectLocalizedOverrides(view, publicIndex, localizedIndex, cache, scanned, detectedCount);
+            }
+
+            // 3. 客户端XML目录（如果配置了），客户端文件通常有不同命名（client_前缀），但也做去重检查
+            if (!clientFiles.isEmpty()) {
+                log.info("扫描客户端XML目录: {}", clientRoot.getAbsolutePath());
+                List<ScannedFile> clientOnly = new ArrayList<>(clientFiles.size());
+                for (ScannedFile f : clientFiles) {
+                    if (!localizedIndex.containsKey(f.lowerName) && !publicIndex.containsKey(f.lowerName)) {
+                        clientOnly.add(f);
+                    }
+                }
+                addFiles(view, clientOnly, detectAll(pool, clientOnly, false, cache, scanned, detectedCount), false);
+                log.info("客户端目录: {} 个文件", clientOnly.size());
+            }
 
-        // 3. 扫描客户端XML目录（如果配置了）
-        if (clientRoot != null && clientRoot.exists()) {
-            log.info("扫描客户端XML目录: {}", clientRoot.getAbsolutePath());
-            Set<String> clientFileNames = new HashSet<>();
-            // 客户端文件通常有不同命名（client_前缀），但也做去重检查
-            scanDirectoryWithDedup(clientRoot, clientRoot, view, false, clientFileNames, processedFileNames);
-            log.info("客户端目录: {} 个文件", clientFileNames.size());
+            cache.replace(scanned, detectedCount.get() > 0);
+            log.info("扫描文件 {} 个，重新检测 {} 个，耗时 {} ms",
+                    scanned.size(), detectedCount.get(), System.currentTimeMillis() - startTime);
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.shutdown();
+            }
         }
 
         // 更新统计
@@ -276,120 +318,174 @@ public class AionMechanismDetector {
     }
 
     /**
-     * 带去重的目录扫描
+     * 目录遍历得到的XML文件（属性只读取一次）
      */
-    private void scanDirectoryWithDedup(File dir, File root, AionMechanismView view,
-                                        boolean isLocalized, Set<String> fileNames,
-                                        Set<String> excludeFileNames) {
-        if (dir == null || !dir.exists() || !dir.isDirectory()) {
-            return;
+    private static final class ScannedFile {
+        final File file;
+        final String lowerName;
+        final String relativePath;
+        final long modified;
+        final long size;
+
+        ScannedFile(Path path, Path root, BasicFileAttributes attrs) {
+            this.file = path.toFile();
+            this.lowerName = file.getName().toLowerCase();
+            this.relativePath = root.relativize(path).toString();
+            this.modified = attrs.lastModifiedTime().toMillis();
+            this.size = attrs.size();
         }
+    }
 
-        File[] files = dir.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File f) {
-                return f.isFile() && f.getName().toLowerCase().endsWith(".xml");
+    /**
+     * 并行遍历目录：每个子目录一个 ForkJoin 任务，结果保持「先本目录文件、后子目录」且按名称排序
+     */
+    private static final class WalkTask extends RecursiveTask<List<ScannedFile>> {
+        private static final long serialVersionUID = 1L;
+
+        // 任务只在进程内执行，不会被序列化
+        private final transient Path dir;
+        private final transient Path root;
+        private final transient Path skipDir;
+
+        WalkTask(Path dir, Path root, Path skipDir) {
+            this.dir = dir;
+            this.root = root;
+            this.skipDir = skipDir;
+        }
+
+        @Override
+        protected List<ScannedFile> compute() {
+            List<ScannedFile> files = new ArrayList<>();
+            List<Path> subDirs = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (attrs.isDirectory()) {
+                        if (skipDir == null || !skipDir.equals(path.toAbsolutePath().normalize())) {
+                            subDirs.add(path);
+                        }
+                    } else if (attrs.isRegularFile() && path.getFileName().toString().toLowerCase().endsWith(".xml")) {
+                        files.add(new ScannedFile(path, root, attrs));
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("读取目录失败: {} - {}", dir, e.getMessage());
+                return files;
             }
-        });
 
-        File[] subDirs = dir.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File f) {
-                return f.isDirectory();
-            }
-        });
+            files.sort(Comparator.comparing(f -> f.file.getName()));
+            subDirs.sort(Comparator.comparing(Path::getFileName));
 
-        // 处理XML文件（跳过已存在的）
-        if (files != null) {
-            for (File file : files) {
-                String fileName = file.getName();
-                String fileNameLower = fileName.toLowerCase();
-
-                // 检查是否已被更高优先级目录处理
-                if (excludeFileNames.contains(fileNameLower)) {
-                    log.debug("跳过重复文件: {} (已有本地化版本)", fileName);
-                    continue;
-                }
-
-                String relativePath = getRelativePath(root, file);
-                DetectionResult result = detect(file, relativePath, isLocalized);
-
-                // 添加到视图（使用正确的构造函数）
-                AionMechanismView.FileEntry entry = new AionMechanismView.FileEntry(
-                        fileName,
-                        relativePath,
-                        file,
-                        result,
-                        isLocalized
-                );
-
-                // 使用 view.addFile 统一添加（自动处理统计）
-                view.addFile(entry);
-                fileNames.add(fileName);
+            List<WalkTask> tasks = new ArrayList<>(subDirs.size());
+            for (Path subDir : subDirs) {
+                tasks.add(new WalkTask(subDir, root, skipDir));
             }
+            invokeAll(tasks);
+            for (WalkTask task : tasks) {
+                files.addAll(task.join());
+            }
+            return files;
         }
+    }
 
-        // 递归处理子目录
-        if (subDirs != null) {
-            for (File subDir : subDirs) {
-                scanDirectoryWithDedup(subDir, root, view, isLocalized, fileNames, excludeFileNames);
-            }
+    private static List<ScannedFile> walk(ForkJoinPool pool, File root, Path skipDir) {
+        if (root == null || !root.isDirectory()) {
+            return Collections.emptyList();
         }
+        Path rootPath = root.toPath();
+        return pool.invoke(new WalkTask(rootPath, rootPath, skipDir));
     }
 
-    /**
-     * 递归扫描目录
-     */
-    private void scanDirectory(File dir, File root, AionMechanismView view,
-                               boolean isLocalized, Set<String> fileNames) {
-        if (dir == null || !dir.exists() || !dir.isDirectory()) {
-            return;
+    private static Map<String, ScannedFile> indexByName(List<ScannedFile> files) {
+        Map<String, ScannedFile> index = new HashMap<>(files.size() * 2);
+        for (ScannedFile f : files) {
+            index.putIfAbsent(f.lowerName, f);
         }
+        return index;
+    }
 
-        File[] files = dir.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File f) {
-                return f.isFile() && f.getName().toLowerCase().endsWith(".xml");
-            }
-        });
+    /**
+     * 并行检测一批文件（结果与输入顺序一致），未变化的文件直接使用缓存结果
+     */
+    private List<DetectionResult> detectAll(ForkJoinPool pool, List<ScannedFile> files, boolean isLocalized,
+                                            MechanismScanCache cache, Map<String, MechanismScanCache.Entry> scanned,
+                                            AtomicInteger detectedCount) {
+        if (files.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return pool.submit(() -> files.parallelStream()
+                .map(f -> detectCached(f, f.relativePath, isLocalized, cache, scanned, detectedCount))
+                .toList()).join();
+    }
 
-        File[] subDirs = dir.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File f) {
-                return f.isDirectory();
-            }
-        });
+    private DetectionResult detectCached(ScannedFile f, String relativePath, boolean isLocalized,
+                                         MechanismScanCache cache, Map<String, MechanismScanCache.Entry> scanned,
+                                         AtomicInteger detectedCount) {
+        String key = f.file.getAbsolutePath();
+        MechanismScanCache.Entry entry = cache.lookup(key, f.modified, f.size);
+        DetectionResult result;
+        if (entry != null) {
+            result = DetectionResult.builder()
+                    .category(entry.category)
+                    .confidence(entry.confidence)
+                    .reasoning(entry.reasoning)
+                    .localized(isLocalized)
+                    .relativePath(relativePath)
+                    .build();
+        } else {
+            result = detect(f.file, relativePath, isLocalized);
+            entry = new MechanismScanCache.Entry(f.modified, f.size,
+                    result.category(), result.confidence(), result.reasoning());
+            detectedCount.incrementAndGet();
+        }
+        scanned.put(key, entry);
+        return result;
+    }
 
-        // 处理XML文件
-        if (files != null) {
-            for (File file : files) {
-                String relativePath = getRelativePath(root, file);
-                DetectionResult result = detect(file, relativePath, isLocalized);
-
-                AionMechanismView.FileEntry entry = new AionMechanismView.FileEntry(
-                        file.getName(),
-                        relativePath,
-                        file,
-                        result,
-                        isLocalized
-                );
-
-                view.addFile(entry);
-                fileNames.add(file.getName().toLowerCase());
-            }
+    private void addFiles(AionMechanismView view, List<ScannedFile> files, List<DetectionResult> results,
+                          boolean isLocalized) {
+        for (int i = 0; i < files.size(); i++) {
+            ScannedFile f = files.get(i);
+            view.addFile(new AionMechanismView.FileEntry(
+                    f.file.getName(),
+                    f.relativePath,
+                    f.file,
+                    results.get(i),
+                    isLocalized,
+                    f.size
+            ));
         }
+    }
 
-        // 递归处理子目录（跳过本地化目录避免重复扫描）
-        if (subDirs != null) {
-            for (File subDir : subDirs) {
-                String dirName = subDir.getName().toLowerCase();
-                // 如果是本地化目录，且当前不是本地化模式，则跳过（稍后单独扫描）
-                if (!isLocalized && LOCALIZATION_FOLDERS.contains(dirName)) {
-                    continue;
-                }
-                scanDirectory(subDir, root, view, isLocalized, fileNames);
-            }
-        }
+    /**
+     * 扫描缓存的键：三个根目录
+     */
+    private String rootsKey() {
+        return publicRoot.getAbsolutePath() + "|"
+                + (localizedRoot != null ? localizedRoot.getAbsolutePath() : "") + "|"
+                + (clientRoot != null ? clientRoot.getAbsolutePath() : "");
+    }
+
+    /**
+     * 检测规则指纹：映射表、分类模式与手动覆盖/排除配置，任一变化都会使扫描缓存失效
+     */
+    private static String rulesFingerprint(MechanismOverrideConfig overrideConfig) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(RULES_VERSION).append('|');
+        sb.append(new TreeMap<>(FOLDER_MAPPINGS)).append('|');
+        sb.append(new TreeMap<>(EXACT_FILE_MAPPINGS)).append('|');
+        for (AionMechanismCategory category : AionMechanismCategory.values()) {
+            sb.append(category.name()).append(':').append(category.getPriority()).append(':')
+                    .append(category.getPattern() != null ? category.getPattern().pattern() : "").append(';');
+        }
+        sb.append('|').append(new TreeMap<>(overrideConfig.getAllOverrides()));
+        sb.append('|').append(new TreeSet<>(overrideConfig.getExcludedFiles()));
+        return DigestUtil.md5Hex(sb.toString());
     }
 
     /**
@@ -505,83 +601,34 @@ public class AionMechanismDetector {
     }
 
     /**
-     * 检测本地化覆盖
+     * 检测本地化覆盖：同名文件同时存在于公共目录和本地化目录（按文件名索引查找）
      */
     private void detectLocalizedOverrides(AionMechanismView view,
-                                          Set<String> publicFiles,
-                                          Set<String> localizedFiles) {
-        // 找出同时存在于两个目录的文件
-        Set<String> overriddenFiles = new HashSet<>(publicFiles);
-        overriddenFiles.retainAll(localizedFiles);
-
-        for (String fileName : overriddenFiles) {
-            File publicFile = findFile(publicRoot, fileName);
-            File localizedFile = findFile(localizedRoot, fileName);
-
-            if (publicFile != null && localizedFile != null) {
-                DetectionResult result = detect(publicFile, fileName, false);
-                AionMechanismView.LocalizedOverride override =
-                        new AionMechanismView.LocalizedOverride(
-                                fileName,
-                                publicFile,
-                                localizedFile,
-                                result.getCategory()
-                        );
-                view.addLocalizedOverride(override);
-            }
-        }
-
-        log.info("检测到 {} 个本地化覆盖文件", overriddenFiles.size());
-    }
-
-    /**
-     * 在目录中查找文件（递归）
-     */
-    private File findFile(File dir, String fileName) {
-        if (dir == null || !dir.exists()) {
-            return null;
-        }
-
-        File direct = new File(dir, fileName);
-        if (direct.exists() && direct.isFile()) {
-            return direct;
-        }
-
-        File[] subDirs = dir.listFiles(new FileFilter() {
-            @Override
-            public boolean accept(File f) {
-                return f.isDirectory();
-            }
-        });
-
-        if (subDirs != null) {
-            for (File subDir : subDirs) {
-                File found = findFile(subDir, fileName);
-                if (found != null) {
-                    return found;
-                }
+                                          Map<String, ScannedFile> publicIndex,
+                                          Map<String, ScannedFile> localizedIndex,
+                                          MechanismScanCache cache,
+                                          Map<String, MechanismScanCache.Entry> scanned,
+                                          AtomicInteger detectedCount) {
+        int overrideCount = 0;
+        for (Map.Entry<String, ScannedFile> e : localizedIndex.entrySet()) {
+            ScannedFile publicFile = publicIndex.get(e.getKey());
+            if (publicFile == null) {
+                continue;
             }
-        }
-
-        return null;
-    }
-
-    /**
-     * 获取相对路径
-     */
-    private String getRelativePath(File root, File file) {
-        String rootPath = root.getAbsolutePath();
-        String filePath = file.getAbsolutePath();
-
-        if (filePath.startsWith(rootPath)) {
-            String relative = filePath.substring(rootPath.length());
-            if (relative.startsWith(File.separator)) {
-                relative = relative.substring(1);
-            }
-            return relative;
-        }
-
-        return file.getName();
+            String fileName = publicFile.file.getName();
+            DetectionResult result = detectCached(publicFile, fileName, false, cache, scanned, detectedCount);
+            AionMechanismView.LocalizedOverride override =
+                    new AionMechanismView.LocalizedOverride(
+                            fileName,
+                            publicFile.file,
+                            e.getValue().file,
+                            result.category()
+                    );
+            view.addLocalizedOverride(override);
+            overrideCount++;
+        }
+
+        log.info("检测到 {} 个本地化覆盖文件", overrideCount);
     }
 
     /**
@@ -157,13 +157,21 @@ public class AionMechanismView {
 
         public FileEntry(String fileName, String relativePath, File file,
                         DetectionResult detectionResult, boolean localized) {
+            this(fileName, relativePath, file, detectionResult, localized, file.length());
+        }
+
+        /**
+         * 已知文件大小时使用（扫描时已读取过文件属性，避免再次 stat）
+         */
+        public FileEntry(String fileName, String relativePath, File file,
+                        DetectionResult detectionResult, boolean localized, long fileSize) {
             this.fileName = fileName;
             this.relativePath = relativePath;
             this.file = file;
             this.category = detectionResult.getCategory();
             this.detectionResult = detectionResult;
             this.localized = localized;
-            this.fileSize = file.length();
+            this.fileSize = fileSize;
         }
 
         public String getFileName() {
@@ -3,6 +3,8 @@ package red.jiuzhou.analysis.aion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import red.jiuzhou.analysis.ImpactAnalyzer;
+import red.jiuzhou.analysis.ValueReferenceIndex;
 import red.jiuzhou.analysis.aion.mechanism.MechanismNode;
 import red.jiuzhou.analysis.aion.mechanism.MechanismRelationship;
 import red.jiuzhou.analysis.aion.mechanism.MechanismRelationshipGraph;
@@ -31,6 +33,9 @@ import java.util.function.Consumer;
  *   <li>提供影响分析</li>
  * </ul>
  *
+ * <p>字段级关系由 {@link XmlRelationshipAnalyzer} 增量维护：每次构建只重新采集变化的文件，
+ * 没有任何文件变化时直接返回已构建的关系图，有变化时重新聚合机制级关系并增量更新影响分析索引。
+ *
  * @author Claude
  * @version 1.0
  */
@@ -39,10 +44,17 @@ public class MechanismRelationshipService {
 
     private static final Logger log = LoggerFactory.getLogger(MechanismRelationshipService.class);
 
-    // 缓存构建好的关系图
+    // 缓存构建好的关系图，及构建时的机制视图签名（文件数 + 代表性文件）
     private volatile MechanismRelationshipGraph cachedGraph;
-    private volatile long cacheTimestamp;
-    private static final long CACHE_TTL_MS = 5 * 60 * 1000;  // 5分钟缓存
+    private String cachedViewSignature;
+
+    // 字段级影响分析器，随关系报告增量更新
+    private volatile ImpactAnalyzer impactAnalyzer;
+
+    // 值级反向引用索引：首次取影响分析器时构建，之后按最新关系报告增量刷新
+    private final ValueReferenceIndex valueIndex = new ValueReferenceIndex();
+    private RelationshipReport latestReport;
+    private RelationshipReport indexedReport;
 
     // 文件名到机制的映射缓存
     private final Map<String, AionMechanismCategory> fileToMechanismCache = new ConcurrentHashMap<>();
@@ -62,13 +74,7 @@ public class MechanismRelationshipService {
      * @param progressCallback 进度回调
      * @return 关系图
      */
-    public MechanismRelationshipGraph buildRelationshipGraph(Consumer<String> progressCallback) {
-        // 检查缓存
-        if (cachedGraph != null && (System.currentTimeMillis() - cacheTimestamp) < CACHE_TTL_MS) {
-            log.info("使用缓存的机制关系图");
-            return cachedGraph;
-        }
-
+    public synchronized MechanismRelationshipGraph buildRelationshipGraph(Consumer<String> progressCallback) {
         log.info("开始构建机制关系图...");
         long startTime = System.currentTimeMillis();
 
@@ -96,9 +102,18 @@ public class MechanismRelationshipService {
         notifyProgress(progressCallback, "构建文件-机制映射...");
         buildFileToMechanismMapping(mechanismView);
 
-        // 4. 获取字段级关系报告
+        // 4. 获取字段级关系报告（只重新采集变化的文件）
         notifyProgress(progressCallback, "分析字段级关系...");
         RelationshipReport relationshipReport = getOrLoadRelationshipReport();
+        updateImpactAnalyzer(relationshipReport);
+
+        String viewSignature = buildViewSignature(mechanismView);
+        if (cachedGraph != null && viewSignature.equals(cachedViewSignature)
+                && relationshipReport != null && relationshipReport.isIncremental()
+                && relationshipReport.getChangedFiles().isEmpty()) {
+            log.info("XML文件无变化，使用已构建的机制关系图");
+            return cachedGraph;
+        }
 
         // 5. 聚合到机制级关系
         notifyProgress(progressCallback, "聚合机制级关系...");
@@ -113,11 +128,38 @@ public class MechanismRelationshipService {
 
         // 缓存
         cachedGraph = graph;
-        cacheTimestamp = System.currentTimeMillis();
+        cachedViewSignature = viewSignature;
 
         return graph;
     }
 
+    /**
+     * 获取字段级影响分析器（最近一次构建关系图时的关系），附带刷新后的值级反向引用索引
+     *
+     * @return 影响分析器，尚未构建过关系图时返回null
+     */
+    public synchronized ImpactAnalyzer getImpactAnalyzer() {
+        ImpactAnalyzer analyzer = impactAnalyzer;
+        if (analyzer != null && latestReport != indexedReport) {
+            valueIndex.refresh(latestReport);
+            indexedReport = latestReport;
+            analyzer.setValueIndex(valueIndex);
+        }
+        return analyzer;
+    }
+
+    /**
+     * 获取字段级影响分析器，尚未构建过关系图时只加载字段级关系报告（不扫描机制视图）
+     *
+     * @return 影响分析器，关系报告不可用时返回null
+     */
+    public synchronized ImpactAnalyzer loadImpactAnalyzer() {
+        if (impactAnalyzer == null) {
+            updateImpactAnalyzer(getOrLoadRelationshipReport());
+        }
+        return getImpactAnalyzer();
+    }
+
     /**
      * 获取缓存的关系图（如果存在）
      *
@@ -130,9 +172,9 @@ public class MechanismRelationshipService {
     /**
      * 清除缓存
      */
-    public void clearCache() {
+    public synchronized void clearCache() {
         cachedGraph = null;
-        cacheTimestamp = 0;
+        cachedViewSignature = null;
         fileToMechanismCache.clear();
         log.info("机制关系图缓存已清除");
     }
@@ -223,6 +265,45 @@ public class MechanismRelationshipService {
         log.debug("文件-机制映射构建完成，共 {} 个文件", fileToMechanismCache.size());
     }
 
+    private void updateImpactAnalyzer(RelationshipReport report) {
+        if (report == null) {
+            return;
+        }
+        latestReport = report;
+        ImpactAnalyzer current = impactAnalyzer;
+        if (current == null || !report.isIncremental()) {
+            ImpactAnalyzer analyzer = new ImpactAnalyzer(report.getRelationships());
+            if (indexedReport != null) {
+                analyzer.setValueIndex(valueIndex);
+            }
+            impactAnalyzer = analyzer;
+        } else {
+            current.applyChanges(report.getAffectedFiles(), report.getRelationships());
+        }
+    }
+
+    /**
+     * 聚合时用到的机制视图内容：各机制的文件数与代表性文件
+     */
+    private String buildViewSignature(AionMechanismView mechanismView) {
+        StringBuilder signature = new StringBuilder();
+        for (AionMechanismCategory category : AionMechanismCategory.values()) {
+            AionMechanismView.MechanismGroup group = mechanismView.getGroup(category);
+            if (group == null) {
+                continue;
+            }
+            signature.append(category.name()).append(':')
+                    .append(group.getPublicFiles().size()).append('/')
+                    .append(group.getLocalizedFiles().size());
+            int maxFiles = Math.min(5, group.getPublicFiles().size());
+            for (int i = 0; i < maxFiles; i++) {
+                signature.append(',').append(group.getPublicFiles().get(i).getFileName());
+            }
+            signature.append(';');
+        }
+        return signature.toString();
+    }
+
     private RelationshipReport getOrLoadRelationshipReport() {
         try {
             return XmlRelationshipAnalyzer.analyzeCurrentDatabase();
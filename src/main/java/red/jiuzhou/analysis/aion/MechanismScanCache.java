@@ -0,0 +1,176 @@
+package red.jiuzhou.analysis.aion;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.YamlUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @className: red.jiuzhou.analysis.aion.MechanismScanCache.java
+ * @description: 机制扫描结果的磁盘缓存
+ *
+ * 按「绝对路径 + 修改时间 + 大小」缓存每个文件的检测结果（分类、置信度、原因），
+ * 再次打开机制浏览器时只重新检测新增或变化的文件。
+ * 规则指纹（检测规则版本 + 手动覆盖/排除配置）变化时整体失效。
+ * 同一组扫描根目录在进程内共享一个实例，磁盘文件只在首次使用时读取。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+final class MechanismScanCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MechanismScanCache.class);
+
+    private static final int MAGIC = 0x4A5A4D53;   // "JZMS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Map<String, MechanismScanCache> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private volatile String fingerprint = "";
+    private volatile Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private boolean loaded;
+
+    /**
+     * 单个文件的检测结果（与扫描上下文无关的部分）
+     */
+    static final class Entry {
+        final long modified;
+        final long size;
+        final AionMechanismCategory category;
+        final double confidence;
+        final String reasoning;
+
+        Entry(long modified, long size, AionMechanismCategory category, double confidence, String reasoning) {
+            this.modified = modified;
+            this.size = size;
+            this.category = category;
+            this.confidence = confidence;
+            this.reasoning = reasoning;
+        }
+    }
+
+    private MechanismScanCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * 获取一组扫描根目录对应的缓存
+     */
+    static MechanismScanCache forRoots(String rootsKey) {
+        return INSTANCES.computeIfAbsent(rootsKey, key -> {
+            String dir = YamlUtils.getProperty("application.yml", "aion.mechanism.scan-cache-dir", "cache/mechanism-scan");
+            return new MechanismScanCache(Paths.get(dir, DigestUtil.md5Hex(key) + ".bin"));
+        });
+    }
+
+    /**
+     * 按规则指纹准备缓存：首次使用时读取磁盘文件，指纹不一致时清空
+     */
+    synchronized void open(String rulesFingerprint) {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        if (!rulesFingerprint.equals(fingerprint)) {
+            if (!entries.isEmpty()) {
+                log.info("机制检测规则已变化，丢弃 {} 条扫描缓存", entries.size());
+            }
+            entries = new ConcurrentHashMap<>();
+            fingerprint = rulesFingerprint;
+        }
+    }
+
+    /**
+     * 文件未变化时返回缓存的检测结果，否则返回 null
+     */
+    Entry lookup(String path, long modified, long size) {
+        Entry entry = entries.get(path);
+        return entry != null && entry.modified == modified && entry.size == size ? entry : null;
+    }
+
+    /**
+     * 用本次扫描的完整结果替换缓存（已删除的文件随之移除），有变化时写盘
+     */
+    synchronized void replace(Map<String, Entry> scanned, boolean changed) {
+        boolean removed = entries.size() != scanned.size();
+        entries = new ConcurrentHashMap<>(scanned);
+        if (changed || removed) {
+            save();
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file))))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.info("扫描缓存格式不匹配，忽略: {}", file);
+                return;
+            }
+            String storedFingerprint = in.readUTF();
+            int count = in.readInt();
+            Map<String, Entry> map = new ConcurrentHashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                String categoryName = in.readUTF();
+                double confidence = in.readDouble();
+                String reasoning = in.readUTF();
+                AionMechanismCategory category;
+                try {
+                    category = AionMechanismCategory.valueOf(categoryName);
+                } catch (IllegalArgumentException e) {
+                    // 分类已被删除或改名，该文件重新检测
+                    continue;
+                }
+                map.put(path, new Entry(modified, size, category, confidence, reasoning));
+            }
+            fingerprint = storedFingerprint;
+            entries = map;
+            log.info("加载机制扫描缓存: {} 个文件", map.size());
+        } catch (IOException e) {
+            log.warn("读取机制扫描缓存失败，将全量扫描: {}", e.getMessage());
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint);
+                Map<String, Entry> snapshot = entries;
+                out.writeInt(snapshot.size());
+                for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                    Entry entry = e.getValue();
+                    out.writeUTF(e.getKey());
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.size);
+                    out.writeUTF(entry.category.name());
+                    out.writeDouble(entry.confidence);
+                    out.writeUTF(entry.reasoning);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存机制扫描缓存失败: {}", e.getMessage());
+        }
+    }
+}
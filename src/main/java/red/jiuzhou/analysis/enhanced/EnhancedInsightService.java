@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.util.StringUtils;
+import red.jiuzhou.analysis.StreamingFieldStatistics;
 import red.jiuzhou.analysis.enhanced.GameSystemDetector.GameSystemType;
 import red.jiuzhou.analysis.enhanced.GameSystemDetector.SystemDetectionResult;
 import red.jiuzhou.analysis.enhanced.SmartInsightEngine.SmartInsight;
@@ -66,6 +67,37 @@ public class EnhancedInsightService {
         log.info("增强洞察服务初始化完成，缓存: {}", cacheEnabled ? "启用" : "禁用");
     }
 
+    /**
+     * 单次遍历条目的结果
+     */
+    private static class EntryScan {
+        private final Map<String, FieldValues> fields = new LinkedHashMap<>();
+        // 只用到单列的极值、均值、分位数和计数，不维护字段对协矩
+        private final StreamingFieldStatistics statistics = new StreamingFieldStatistics(false);
+        private final List<Map<String, String>> sampleRecords = new ArrayList<>();
+    }
+
+    /**
+     * 单个字段的取值计数
+     */
+    private static class FieldValues {
+        private final Set<String> uniqueValues = new HashSet<>();
+        private int presentCount;
+        private int nonEmptyCount;
+        private int numericCount;
+
+        void record(String value) {
+            presentCount++;
+            uniqueValues.add(value);
+            if (StringUtils.hasLength(value)) {
+                nonEmptyCount++;
+                if (NUMERIC_PATTERN.matcher(value.trim()).matches()) {
+                    numericCount++;
+                }
+            }
+        }
+    }
+
     /**
      * 缓存的分析结果
      */
@@ -246,16 +278,17 @@ public class EnhancedInsightService {
 
         log.debug("XML解析完成: 根元素={}, 数据条目={}", root.getName(), entries.size());
 
-        // 2. 提取数据上下文
-        GameSystemDetector.DataContext dataContext = buildDataContext(xmlFile, entries);
+        // 2. 一次遍历展平全部条目，收集字段取值、数值统计和样本记录
+        EntryScan scan = scanEntries(entries);
 
-        // 3. 检测游戏系统类型
+        // 3. 提取数据上下文并检测游戏系统类型
+        GameSystemDetector.DataContext dataContext = buildDataContext(xmlFile, scan, entries.size());
         SystemDetectionResult systemDetection = systemDetector.detectGameSystem(dataContext);
         log.info("游戏系统检测: {} (置信度: {:.2f})",
                 systemDetection.getPrimaryType().getDisplayName(), systemDetection.getConfidence());
 
         // 4. 分析字段特征
-        Map<String, FieldAnalysis> fieldAnalyses = analyzeFields(entries);
+        Map<String, FieldAnalysis> fieldAnalyses = analyzeFields(scan, entries.size());
 
         // 5. 计算数据质量指标
         DataQualityMetrics qualityMetrics = calculateQualityMetrics(fieldAnalyses, entries.size());
@@ -273,8 +306,8 @@ public class EnhancedInsightService {
         // 7. 生成智能洞察
         List<SmartInsight> insights = insightEngine.generateInsights(gameContext);
 
-        // 8. 提取样本记录
-        List<Map<String, String>> sampleRecords = extractSampleRecords(entries);
+        // 8. 样本记录
+        List<Map<String, String>> sampleRecords = scan.sampleRecords;
 
         // 9. 构建文件摘要
         EnhancedFileSummary fileSummary = buildEnhancedFileSummary(
@@ -360,101 +393,75 @@ public class EnhancedInsightService {
     }
 
     /**
-     * 构建数据上下文
+     * 一次遍历展平全部条目：字段取值集合、覆盖计数、数值列统计和前若干条样本都在这里收集
      */
-    private GameSystemDetector.DataContext buildDataContext(Path xmlFile, List<Element> entries) {
-        if (entries.isEmpty()) {
-            return new GameSystemDetector.DataContext(
-                    xmlFile.getFileName().toString(),
-                    Collections.emptyList(),
-                    Collections.emptyMap(),
-                    Collections.emptyMap(),
-                    0
-            );
+    private EntryScan scanEntries(List<Element> entries) {
+        EntryScan scan = new EntryScan();
+        for (Element entry : entries) {
+            Map<String, String> flattened = flattenElement(entry);
+            for (Map.Entry<String, String> field : flattened.entrySet()) {
+                scan.fields.computeIfAbsent(field.getKey(), k -> new FieldValues()).record(field.getValue());
+            }
+            scan.statistics.accept(flattened);
+            if (scan.sampleRecords.size() < SAMPLE_RECORD_LIMIT) {
+                scan.sampleRecords.add(flattened);
+            }
         }
+        return scan;
+    }
 
-        // 收集所有字段名
-        Set<String> allFieldNames = new HashSet<>();
+    /**
+     * 构建数据上下文
+     */
+    private GameSystemDetector.DataContext buildDataContext(Path xmlFile, EntryScan scan, int recordCount) {
         Map<String, Integer> fieldCounts = new HashMap<>();
         Map<String, Set<String>> sampleValues = new HashMap<>();
-
-        for (Element entry : entries) {
-            Map<String, String> flattenedEntry = flattenElement(entry);
-            for (Map.Entry<String, String> field : flattenedEntry.entrySet()) {
-                String fieldName = field.getKey();
-                String value = field.getValue();
-
-                allFieldNames.add(fieldName);
-                fieldCounts.merge(fieldName, 1, Integer::sum);
-
-                sampleValues.computeIfAbsent(fieldName, k -> new HashSet<>()).add(value);
-            }
-        }
+        scan.fields.forEach((fieldName, values) -> {
+            fieldCounts.put(fieldName, values.presentCount);
+            sampleValues.put(fieldName, values.uniqueValues);
+        });
 
         return new GameSystemDetector.DataContext(
                 xmlFile.getFileName().toString(),
-                new ArrayList<>(allFieldNames),
+                new ArrayList<>(scan.fields.keySet()),
                 fieldCounts,
                 sampleValues,
-                entries.size()
+                recordCount
         );
     }
 
     /**
      * 分析字段特征
      */
-    private Map<String, FieldAnalysis> analyzeFields(List<Element> entries) {
-        Map<String, FieldAnalysis> analyses = new HashMap<>();
-
-        if (entries.isEmpty()) {
-            return analyses;
-        }
-
-        // 收集字段信息
-        Map<String, List<String>> fieldValues = new HashMap<>();
-        for (Element entry : entries) {
-            Map<String, String> flattened = flattenElement(entry);
-            for (Map.Entry<String, String> field : flattened.entrySet()) {
-                fieldValues.computeIfAbsent(field.getKey(), k -> new ArrayList<>())
-                          .add(field.getValue());
-            }
-        }
-
-        // 分析每个字段
-        for (Map.Entry<String, List<String>> fieldEntry : fieldValues.entrySet()) {
-            String fieldName = fieldEntry.getKey();
-            List<String> values = fieldEntry.getValue();
-
-            FieldAnalysis analysis = analyzeField(fieldName, values, entries.size());
-            analyses.put(fieldName, analysis);
-        }
-
+    private Map<String, FieldAnalysis> analyzeFields(EntryScan scan, int totalRecords) {
+        Map<String, FieldAnalysis> analyses = new LinkedHashMap<>();
+        scan.fields.forEach((fieldName, values) -> analyses.put(fieldName,
+                analyzeField(fieldName, values, scan.statistics.getColumn(fieldName), totalRecords)));
         return analyses;
     }
 
     /**
      * 分析单个字段
      */
-    private FieldAnalysis analyzeField(String fieldName, List<String> values, int totalRecords) {
+    private FieldAnalysis analyzeField(String fieldName, FieldValues values,
+                                       StreamingFieldStatistics.FieldColumn column, int totalRecords) {
         // 计算覆盖率
-        long nonEmptyCount = values.stream().mapToLong(v -> StringUtils.hasLength(v) ? 1 : 0).sum();
-        double coverage = (double) nonEmptyCount / totalRecords;
+        double coverage = (double) values.nonEmptyCount / totalRecords;
 
         // 计算唯一值数量
-        Set<String> uniqueValues = new HashSet<>(values);
-        int uniqueCount = uniqueValues.size();
+        int uniqueCount = values.uniqueValues.size();
 
         // 判断数据类型
         String dataType = inferDataType(values);
 
         // 检测异常值
-        boolean hasOutliers = detectOutliers(values, dataType);
+        boolean hasOutliers = detectOutliers(column, dataType);
 
         // 计算统计信息
-        Map<String, Object> statistics = calculateStatistics(values, dataType);
+        Map<String, Object> statistics = calculateStatistics(column, dataType);
 
         // 获取样本值
-        List<String> sampleValues = uniqueValues.stream()
+        List<String> sampleValues = values.uniqueValues.stream()
                 .limit(5)
                 .collect(Collectors.toList());
 
@@ -465,13 +472,8 @@ public class EnhancedInsightService {
     /**
      * 推断数据类型
      */
-    private String inferDataType(List<String> values) {
-        long numericCount = values.stream()
-                .filter(StringUtils::hasLength)
-                .mapToLong(v -> NUMERIC_PATTERN.matcher(v.trim()).matches() ? 1 : 0)
-                .sum();
-
-        double numericRatio = (double) numericCount / Math.max(values.size(), 1);
+    private String inferDataType(FieldValues values) {
+        double numericRatio = (double) values.numericCount / Math.max(values.presentCount, 1);
 
         if (numericRatio > 0.8) {
             return "数值";
@@ -485,68 +487,32 @@ public class EnhancedInsightService {
     /**
      * 检测异常值
      */
-    private boolean detectOutliers(List<String> values, String dataType) {
-        if (!"数值".equals(dataType)) {
-            return false;
-        }
-
-        List<Double> numericValues = values.stream()
-                .filter(StringUtils::hasLength)
-                .map(String::trim)
-                .map(v -> {
-                    try {
-                        return Double.parseDouble(v);
-                    } catch (NumberFormatException e) {
-                        return null;
-                    }
-                })
-                .filter(Objects::nonNull)
-                .sorted()
-                .collect(Collectors.toList());
-
-        if (numericValues.size() < 5) {
+    private boolean detectOutliers(StreamingFieldStatistics.FieldColumn column, String dataType) {
+        if (!"数值".equals(dataType) || column == null || column.getCount() < 5) {
             return false;
         }
 
         // 使用IQR方法检测异常值
-        int q1Index = numericValues.size() / 4;
-        int q3Index = numericValues.size() * 3 / 4;
-        double q1 = numericValues.get(q1Index);
-        double q3 = numericValues.get(q3Index);
+        double q1 = column.quantile(0.25);
+        double q3 = column.quantile(0.75);
         double iqr = q3 - q1;
         double lowerBound = q1 - 1.5 * iqr;
         double upperBound = q3 + 1.5 * iqr;
 
-        return numericValues.stream()
-                .anyMatch(v -> v < lowerBound || v > upperBound);
+        return column.getMin() < lowerBound || column.getMax() > upperBound;
     }
 
     /**
      * 计算统计信息
      */
-    private Map<String, Object> calculateStatistics(List<String> values, String dataType) {
+    private Map<String, Object> calculateStatistics(StreamingFieldStatistics.FieldColumn column, String dataType) {
         Map<String, Object> stats = new HashMap<>();
 
-        if ("数值".equals(dataType)) {
-            List<Double> numericValues = values.stream()
-                    .filter(StringUtils::hasLength)
-                    .map(String::trim)
-                    .map(v -> {
-                        try {
-                            return Double.parseDouble(v);
-                        } catch (NumberFormatException e) {
-                            return null;
-                        }
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
-
-            if (!numericValues.isEmpty()) {
-                stats.put("min", Collections.min(numericValues));
-                stats.put("max", Collections.max(numericValues));
-                stats.put("average", numericValues.stream().mapToDouble(Double::doubleValue).average().orElse(0.0));
-                stats.put("count", numericValues.size());
-            }
+        if ("数值".equals(dataType) && column != null && column.getCount() > 0) {
+            stats.put("min", column.getMin());
+            stats.put("max", column.getMax());
+            stats.put("average", column.getMean());
+            stats.put("count", column.getCount());
         }
 
         return stats;
@@ -590,16 +556,6 @@ public class EnhancedInsightService {
         return new DataQualityMetrics(completeness, consistency, balance, progression, subMetrics);
     }
 
-    /**
-     * 提取样本记录
-     */
-    private List<Map<String, String>> extractSampleRecords(List<Element> entries) {
-        return entries.stream()
-                .limit(SAMPLE_RECORD_LIMIT)
-                .map(this::flattenElement)
-                .collect(Collectors.toList());
-    }
-
     /**
      * 扁平化XML元素
      */
@@ -6,9 +6,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import red.jiuzhou.dbxml.TabConfLoad;
 import red.jiuzhou.dbxml.TableConf;
+import red.jiuzhou.dbxml.TableForestBuilder;
+import red.jiuzhou.dbxml.TableNode;
 import red.jiuzhou.dbxml.WorldXmlToDbGenerator;
 import red.jiuzhou.dbxml.XmlToDbGenerator;
 import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.YamlUtils;
 import red.jiuzhou.xmltosql.XmlProcess;
 import red.jiuzhou.validation.BatchImportPreflightChecker;
 import red.jiuzhou.validation.PreflightReport;
@@ -16,10 +19,17 @@ import red.jiuzhou.validation.PreflightReport;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -43,6 +53,17 @@ public class BatchXmlImporter {
     /** World类型表名列表 */
     private static final List<String> WORLD_TABLES = Arrays.asList("world");
 
+    // ==================== 并行导入调度 ====================
+    // 每个文件导入期间独占一个连接（单文件全局事务），因此实际并行度 = min(并行度, 连接预算)
+    // 配置项：import.parallel.threads (默认 min(4, CPU核数))；import.parallel.max-connections (默认4，需不超过连接池大小)
+    private static final int DEFAULT_PARALLELISM = Integer.parseInt(YamlUtils.getProperty("application.yml",
+        "import.parallel.threads", String.valueOf(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+    private static final int CONNECTION_BUDGET = Integer.parseInt(YamlUtils.getProperty("application.yml",
+        "import.parallel.max-connections", "4"));
+
+    /** XmlProcess 的 DDL 生成使用静态状态，自动建表需串行执行 */
+    private static final Object DDL_LOCK = new Object();
+
     /**
      * 批量导入结果（增强版 - 支持智能诊断）
      */
@@ -58,6 +79,10 @@ public class BatchXmlImporter {
         private Map<red.jiuzhou.ui.error.structured.ErrorCategory, Integer> errorsByCategory = new HashMap<>();
         private Map<red.jiuzhou.ui.error.structured.ErrorLevel, Integer> errorsByLevel = new HashMap<>();
 
+        // 每个文件的耗时统计，以及整批耗时（毫秒）
+        private List<FileImportStats> fileStats = new ArrayList<>();
+        private long elapsedMillis;
+
         public int getTotal() { return total; }
         public void setTotal(int total) { this.total = total; }
 
@@ -81,11 +106,44 @@ public class BatchXmlImporter {
             return errorsByLevel;
         }
 
+        public List<FileImportStats> getFileStats() { return fileStats; }
+
+        public long getElapsedMillis() { return elapsedMillis; }
+        public void setElapsedMillis(long elapsedMillis) { this.elapsedMillis = elapsedMillis; }
+
+        /**
+         * 整批吞吐（记录/秒）
+         */
+        public double getRecordsPerSecond() {
+            long records = fileStats.stream().mapToLong(FileImportStats::getRecords).sum();
+            return elapsedMillis > 0 ? records * 1000.0 / elapsedMillis : 0;
+        }
+
         public String getSummary() {
             return String.format("总计: %d, 成功: %d, 失败: %d, 跳过: %d",
                 total, success, failed, skipped);
         }
 
+        /**
+         * 线程安全地记录成功文件
+         */
+        synchronized void recordSuccess(String filePath, FileImportStats stats) {
+            successFiles.add(filePath);
+            success++;
+            fileStats.add(stats);
+        }
+
+        /**
+         * 线程安全地记录失败文件
+         */
+        synchronized void recordFailure(red.jiuzhou.batch.diagnosis.DiagnosticFailure failure, FileImportStats stats) {
+            failedFiles.add(failure);
+            failed++;
+            errorsByCategory.merge(failure.getCategory(), 1, Integer::sum);
+            errorsByLevel.merge(failure.getLevel(), 1, Integer::sum);
+            fileStats.add(stats);
+        }
+
         /**
          * 获取可重试的失败项
          */
@@ -127,6 +185,49 @@ public class BatchXmlImporter {
         }
     }
 
+    /**
+     * 单个文件的导入耗时与吞吐
+     */
+    public static class FileImportStats {
+        private final String filePath;
+        private final boolean success;
+        private final long records;
+        private final long fileBytes;
+        private final long elapsedMillis;
+        private final String threadName;
+
+        public FileImportStats(String filePath, boolean success, long records, long fileBytes, long elapsedMillis) {
+            this.filePath = filePath;
+            this.success = success;
+            this.records = records;
+            this.fileBytes = fileBytes;
+            this.elapsedMillis = elapsedMillis;
+            this.threadName = Thread.currentThread().getName();
+        }
+
+        public String getFilePath() { return filePath; }
+        public boolean isSuccess() { return success; }
+        public long getRecords() { return records; }
+        public long getFileBytes() { return fileBytes; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public String getThreadName() { return threadName; }
+
+        public double getRecordsPerSecond() {
+            return elapsedMillis > 0 ? records * 1000.0 / elapsedMillis : 0;
+        }
+
+        public double getMegabytesPerSecond() {
+            return elapsedMillis > 0 ? fileBytes / 1024.0 / 1024.0 * 1000.0 / elapsedMillis : 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s, %d 条, %d ms, %.0f 条/秒, %.2f MB/秒",
+                new File(filePath).getName(), success ? "成功" : "失败", records, elapsedMillis,
+                getRecordsPerSecond(), getMegabytesPerSecond());
+        }
+    }
+
     /**
      * 导入选项
      */
@@ -139,6 +240,11 @@ public class BatchXmlImporter {
         // 新增：冲突解决策略（默认为覆盖更新）
         private ConflictResolutionStrategy conflictStrategy = ConflictResolutionStrategy.REPLACE_UPDATE;
         private boolean applyToAllFiles = false;  // 批量导入时，策略是否应用到所有文件
+        // 使用 COPY + 暂存表合并写入（默认取 import.bulk-load.enabled 配置）
+        private boolean bulkLoad = Boolean.parseBoolean(
+            YamlUtils.getProperty("application.yml", "import.bulk-load.enabled", "false"));
+        // 批量导入并行度（1 表示按原顺序串行导入）
+        private int parallelism = DEFAULT_PARALLELISM;
 
         public String getAiModule() { return aiModule; }
         public void setAiModule(String aiModule) { this.aiModule = aiModule; }
@@ -168,6 +274,22 @@ public class BatchXmlImporter {
         public void setApplyToAllFiles(boolean apply) {
             this.applyToAllFiles = apply;
         }
+
+        public boolean isBulkLoad() {
+            return bulkLoad;
+        }
+
+        public void setBulkLoad(boolean bulkLoad) {
+            this.bulkLoad = bulkLoad;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
     }
 
     /**
@@ -176,6 +298,12 @@ public class BatchXmlImporter {
     public interface ProgressCallback {
         void onProgress(int current, int total, String currentFile);
         void onComplete(BatchImportResult result);
+
+        /**
+         * 单个文件导入结束（成功或失败）时回调，包含耗时与吞吐
+         */
+        default void onFileComplete(FileImportStats stats) {
+        }
     }
 
     /**
@@ -190,25 +318,38 @@ public class BatchXmlImporter {
             ImportOptions options) {
 
         return CompletableFuture.supplyAsync(() -> {
-            File xmlFile = new File(xmlFilePath);
-            String currentPhase = "初始化";  // 跟踪当前执行阶段
-            Map<String, Object> context = new HashMap<>();  // 上下文信息
+            importSingleXmlNow(xmlFilePath, options);
+            return true;
+        });
+    }
 
-            try {
-                log.info("开始导入XML: {}", xmlFilePath);
+    /**
+     * 在当前线程导入单个文件
+     *
+     * @return 写入的记录数（World 类型文件无法统计，返回 0）
+     * @throws red.jiuzhou.batch.diagnosis.DiagnosticImportException 导入失败
+     */
+    private static int importSingleXmlNow(String xmlFilePath, ImportOptions options) {
+        File xmlFile = new File(xmlFilePath);
+        String currentPhase = "初始化";  // 跟踪当前执行阶段
+        Map<String, Object> context = new HashMap<>();  // 上下文信息
+
+        try {
+            log.info("开始导入XML: {}", xmlFilePath);
 
-                // 从文件名提取表名
-                String fileName = FileUtil.getName(xmlFilePath);
-                String tableName = fileName.substring(0, fileName.lastIndexOf('.'));
-                context.put("table", tableName);
-                context.put("file_size", xmlFile.length());
+            // 从文件名提取表名
+            String fileName = FileUtil.getName(xmlFilePath);
+            String tableName = fileName.substring(0, fileName.lastIndexOf('.'));
+            context.put("table", tableName);
+            context.put("file_size", xmlFile.length());
 
-                // ==================== 导入前自动建表（2025-12-29新增）====================
-                currentPhase = "DDL生成与建表";
-                // 检查表是否存在，如果不存在则先执行DDL建表
-                try {
-                    boolean tableExists = DatabaseUtil.tableExists(tableName);
-                    if (!tableExists) {
+            // ==================== 导入前自动建表（2025-12-29新增）====================
+            currentPhase = "DDL生成与建表";
+            // 检查表是否存在，如果不存在则先执行DDL建表
+            try {
+                boolean tableExists = DatabaseUtil.tableExists(tableName);
+                if (!tableExists) {
+                    synchronized (DDL_LOCK) {
                         log.info("表 {} 不存在，开始自动生成DDL并建表...", tableName);
 
                         // 生成DDL SQL脚本
@@ -219,65 +360,67 @@ public class BatchXmlImporter {
                         // 执行DDL脚本建表
                         DatabaseUtil.executeSqlScript(sqlDdlFilePath);
                         log.info("✅ 自动建表成功: {}", tableName);
-                    } else {
-                        log.debug("表 {} 已存在，跳过DDL生成", tableName);
                     }
-                } catch (Exception ddlException) {
-                    log.error("自动建表失败，表: {}", tableName, ddlException);
-                    context.put("ddl_error", ddlException.getMessage());
-                    throw ddlException;  // 继续抛出以被外层捕获
-                }
-                // =======================================================================
-
-                // 判断是否为World类型
-                currentPhase = "数据导入";
-                boolean isWorldType = isWorldTable(tableName);
-                String mapType = options != null ? options.getMapType() : null;
-                context.put("is_world_type", isWorldType);
-                context.put("map_type", mapType);
-
-                if (isWorldType && mapType != null) {
-                    // World类型文件
-                    WorldXmlToDbGenerator generator = new WorldXmlToDbGenerator(tableName, mapType);
-                    generator.xmlTodb();
                 } else {
-                    // 普通文件
-                    // 传入xmlFilePath作为tabFielPath参数，让TabConfLoad.getTale()可以计算配置文件路径
-                    XmlToDbGenerator generator = new XmlToDbGenerator(
-                        tableName,
-                        mapType,
-                        xmlFilePath,
-                        xmlFilePath  // 修复：传入XML文件路径而不是null
-                    );
-
-                    String aiModule = options != null ? options.getAiModule() : null;
-                    List<String> selectedColumns = options != null ? options.getSelectedColumns() : null;
-
-                    if (aiModule != null) {
-                        currentPhase = "AI处理";
-                        context.put("ai_module", aiModule);
-                        context.put("ai_columns", selectedColumns);
-                    }
+                    log.debug("表 {} 已存在，跳过DDL生成", tableName);
+                }
+            } catch (Exception ddlException) {
+                log.error("自动建表失败，表: {}", tableName, ddlException);
+                context.put("ddl_error", ddlException.getMessage());
+                throw ddlException;  // 继续抛出以被外层捕获
+            }
+            // =======================================================================
+
+            // 判断是否为World类型
+            currentPhase = "数据导入";
+            boolean isWorldType = isWorldTable(tableName);
+            String mapType = options != null ? options.getMapType() : null;
+            context.put("is_world_type", isWorldType);
+            context.put("map_type", mapType);
+
+            int importedRecords = 0;
+            if (isWorldType && mapType != null) {
+                // World类型文件
+                WorldXmlToDbGenerator generator = new WorldXmlToDbGenerator(tableName, mapType);
+                generator.xmlTodb();
+            } else {
+                // 普通文件
+                // 传入xmlFilePath作为tabFielPath参数，让TabConfLoad.getTale()可以计算配置文件路径
+                XmlToDbGenerator generator = new XmlToDbGenerator(
+                    tableName,
+                    mapType,
+                    xmlFilePath,
+                    xmlFilePath  // 修复：传入XML文件路径而不是null
+                );
 
-                    // 新增：传递 options 以支持冲突解决策略
-                    generator.xmlTodb(aiModule, selectedColumns, options);
+                String aiModule = options != null ? options.getAiModule() : null;
+                List<String> selectedColumns = options != null ? options.getSelectedColumns() : null;
+
+                if (aiModule != null) {
+                    currentPhase = "AI处理";
+                    context.put("ai_module", aiModule);
+                    context.put("ai_columns", selectedColumns);
                 }
 
-                log.info("导入成功: {}", xmlFilePath);
-                return true;
+                // 新增：传递 options 以支持冲突解决策略
+                generator.xmlTodb(aiModule, selectedColumns, options);
+                importedRecords = generator.getImportedRecords();
+            }
 
-            } catch (Exception e) {
-                log.error("导入失败: {} [阶段: {}]", xmlFilePath, currentPhase, e);
+            log.info("导入成功: {}", xmlFilePath);
+            return importedRecords;
 
-                // 创建 DiagnosticFailure 并包装为 DiagnosticImportException
-                red.jiuzhou.batch.diagnosis.DiagnosticFailure failure =
-                    red.jiuzhou.batch.diagnosis.DiagnosticFailure.fromException(
-                        xmlFile, e, currentPhase, context
-                    );
+        } catch (Exception e) {
+            log.error("导入失败: {} [阶段: {}]", xmlFilePath, currentPhase, e);
 
-                throw new red.jiuzhou.batch.diagnosis.DiagnosticImportException(failure, e);
-            }
-        });
+            // 创建 DiagnosticFailure 并包装为 DiagnosticImportException
+            red.jiuzhou.batch.diagnosis.DiagnosticFailure failure =
+                red.jiuzhou.batch.diagnosis.DiagnosticFailure.fromException(
+                    xmlFile, e, currentPhase, context
+                );
+
+            throw new red.jiuzhou.batch.diagnosis.DiagnosticImportException(failure, e);
+        }
     }
 
     /**
@@ -312,88 +455,191 @@ public class BatchXmlImporter {
                     importableFiles.size(), skippedFiles.size(), preflight.getErrorFiles());
             log.info("========== 第2阶段：开始批量导入 ==========");
 
-            // ===== 原有逻辑：导入有效文件 =====
+            // ===== 导入有效文件：无依赖关系的文件组并行，同组内按原顺序串行 =====
             BatchImportResult result = new BatchImportResult();
             result.setTotal(importableFiles.size());
             result.setSkipped(skippedFiles.size());  // 预检查跳过的数量
 
-            AtomicInteger processed = new AtomicInteger(0);
+            int parallelism = Math.min(options != null ? options.getParallelism() : DEFAULT_PARALLELISM, CONNECTION_BUDGET);
+            List<List<File>> groups = parallelism > 1
+                ? planImportGroups(importableFiles)
+                : Collections.singletonList(importableFiles);
+            int threads = Math.max(1, Math.min(parallelism, groups.size()));
+            log.info("导入计划: {} 个文件, {} 个独立组, 并行线程 {}", importableFiles.size(), groups.size(), threads);
 
-            for (File file : importableFiles) {
-                String fileName = file.getName();
-                String filePath = file.getAbsolutePath();
+            AtomicInteger processed = new AtomicInteger(0);
+            long batchStart = System.currentTimeMillis();
 
+            if (threads == 1) {
+                for (List<File> group : groups) {
+                    importGroup(group, options, callback, result, processed);
+                }
+            } else {
+                AtomicInteger threadIndex = new AtomicInteger(0);
+                ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+                    Thread t = new Thread(r, "xml-import-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
                 try {
-                    // 预检查已过滤，这里直接导入
-                    // 更新进度（UI线程）
-                    int current = processed.incrementAndGet();
-                    if (callback != null) {
-                        Platform.runLater(() ->
-                            callback.onProgress(current, result.getTotal(), fileName)
-                        );
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (List<File> group : groups) {
+                        futures.add(executor.submit(() -> importGroup(group, options, callback, result, processed)));
                     }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("批量导入被中断", e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("批量导入调度失败: " + e.getCause().getMessage(), e.getCause());
+                } finally {
+                    executor.shutdownNow();
+                }
+            }
 
-                    // 导入
-                    importSingleXml(filePath, options).join();
-                    result.getSuccessFiles().add(filePath);
-                    result.setSuccess(result.getSuccess() + 1);
+            result.setElapsedMillis(System.currentTimeMillis() - batchStart);
+            log.info("批量导入完成: {}, 耗时 {} ms, 吞吐 {} 条/秒",
+                result.getSummary(), result.getElapsedMillis(), String.format("%.0f", result.getRecordsPerSecond()));
 
-                    log.info("✅ 进度 [{}/{}] 导入成功: {}", current, result.getTotal(), fileName);
+            // 完成回调（UI线程）
+            if (callback != null) {
+                Platform.runLater(() -> callback.onComplete(result));
+            }
 
-                } catch (java.util.concurrent.CompletionException ce) {
-                    // CompletableFuture.join() 会包装异常为 CompletionException
-                    Throwable cause = ce.getCause();
+            return result;
+        });
+    }
 
-                    red.jiuzhou.batch.diagnosis.DiagnosticFailure failure;
+    /**
+     * 按原顺序串行导入同一组文件（组内文件共享表或父子表关系）
+     */
+    private static void importGroup(List<File> group, ImportOptions options, ProgressCallback callback,
+                                    BatchImportResult result, AtomicInteger processed) {
+        for (File file : group) {
+            importOneFile(file, options, callback, result, processed);
+        }
+    }
 
-                    if (cause instanceof red.jiuzhou.batch.diagnosis.DiagnosticImportException) {
-                        // 已包含诊断信息，直接提取
-                        failure = ((red.jiuzhou.batch.diagnosis.DiagnosticImportException) cause)
-                            .getDiagnosticFailure();
-                        log.debug("提取 DiagnosticFailure: {}", failure.getErrorCode());
-                    } else {
-                        // 其他异常，创建 DiagnosticFailure
-                        failure = red.jiuzhou.batch.diagnosis.DiagnosticFailure.fromException(
-                            file, cause != null ? cause : ce, "批量导入", Map.of()
-                        );
-                        log.debug("创建 DiagnosticFailure: {}", failure.getErrorCode());
-                    }
+    private static void importOneFile(File file, ImportOptions options, ProgressCallback callback,
+                                      BatchImportResult result, AtomicInteger processed) {
+        String fileName = file.getName();
+        String filePath = file.getAbsolutePath();
+
+        // 预检查已过滤，这里直接导入
+        // 更新进度（UI线程）
+        int current = processed.incrementAndGet();
+        if (callback != null) {
+            Platform.runLater(() ->
+                callback.onProgress(current, result.getTotal(), fileName)
+            );
+        }
 
-                    // 添加到失败列表
-                    result.getFailedFiles().add(failure);
-                    result.setFailed(result.getFailed() + 1);
+        long start = System.currentTimeMillis();
+        FileImportStats stats;
+        try {
+            int records = importSingleXmlNow(filePath, options);
+            stats = new FileImportStats(filePath, true, records, file.length(), System.currentTimeMillis() - start);
+            result.recordSuccess(filePath, stats);
 
-                    // 更新错误统计（用于可视化）
-                    result.getErrorsByCategory().merge(failure.getCategory(), 1, Integer::sum);
-                    result.getErrorsByLevel().merge(failure.getLevel(), 1, Integer::sum);
+            log.info("✅ 进度 [{}/{}] 导入成功: {}", current, result.getTotal(), stats);
 
-                    log.error("❌ 进度 [{}/{}] 导入失败: {} - {} [{}]",
-                        processed.get(), result.getTotal(), fileName,
-                        failure.structuredError().title(), failure.getErrorCode());
+        } catch (red.jiuzhou.batch.diagnosis.DiagnosticImportException e) {
+            // 已包含诊断信息，直接提取
+            red.jiuzhou.batch.diagnosis.DiagnosticFailure failure = e.getDiagnosticFailure();
+            log.debug("提取 DiagnosticFailure: {}", failure.getErrorCode());
 
-                } catch (Exception e) {
-                    // 其他未预期的异常（保底处理）
-                    red.jiuzhou.batch.diagnosis.DiagnosticFailure failure =
-                        red.jiuzhou.batch.diagnosis.DiagnosticFailure.fromException(
-                            file, e, "未知阶段", Map.of()
-                        );
+            stats = new FileImportStats(filePath, false, 0, file.length(), System.currentTimeMillis() - start);
+            result.recordFailure(failure, stats);
 
-                    result.getFailedFiles().add(failure);
-                    result.setFailed(result.getFailed() + 1);
-                    result.getErrorsByCategory().merge(failure.getCategory(), 1, Integer::sum);
-                    result.getErrorsByLevel().merge(failure.getLevel(), 1, Integer::sum);
+            log.error("❌ 进度 [{}/{}] 导入失败: {} - {} [{}]",
+                current, result.getTotal(), fileName,
+                failure.structuredError().title(), failure.getErrorCode());
 
-                    log.error("❌ 进度 [{}/{}] 导入失败（未预期异常）: {}", processed.get(), result.getTotal(), fileName, e);
-                }
+        } catch (Exception e) {
+            // 其他未预期的异常（保底处理）
+            red.jiuzhou.batch.diagnosis.DiagnosticFailure failure =
+                red.jiuzhou.batch.diagnosis.DiagnosticFailure.fromException(
+                    file, e, "未知阶段", Map.of()
+                );
+
+            stats = new FileImportStats(filePath, false, 0, file.length(), System.currentTimeMillis() - start);
+            result.recordFailure(failure, stats);
+
+            log.error("❌ 进度 [{}/{}] 导入失败（未预期异常）: {}", current, result.getTotal(), fileName, e);
+        }
+
+        if (callback != null) {
+            FileImportStats finalStats = stats;
+            Platform.runLater(() -> callback.onFileComplete(finalStats));
+        }
+    }
+
+    /**
+     * 按表依赖关系把文件分组
+     *
+     * 通过 TableForestBuilder 构建所有文件对应表配置的森林，同一棵树（共享父表/子表）的文件
+     * 归入同一组，组内保持原有顺序串行导入，不同组之间互不影响、可以并行。
+     * 同名表（例如多个 World 地图文件）也归为同组。没有表配置的文件（首次导入、需自动建表）单独成组。
+     * 返回的组按文件总大小降序排列，让大组先启动，缩短整体耗时。
+     */
+    static List<List<File>> planImportGroups(List<File> files) {
+        Map<File, String> fileTables = new LinkedHashMap<>();
+        List<TableConf> confList = new ArrayList<>();
+        for (File file : files) {
+            String fileName = file.getName();
+            String tableName = fileName.substring(0, fileName.lastIndexOf('.'));
+            fileTables.put(file, tableName);
+            try {
+                confList.add(TabConfLoad.getTale(tableName, file.getAbsolutePath()));
+            } catch (Exception e) {
+                log.debug("表 {} 暂无配置，单独成组: {}", tableName, e.getMessage());
             }
+        }
 
-            // 完成回调（UI线程）
-            if (callback != null) {
-                Platform.runLater(() -> callback.onComplete(result));
+        TableForestBuilder.TreeBuildResult forest = TableForestBuilder.buildForest(confList);
+
+        // 并查集：同一棵树上的所有表合并为一个分组键
+        Map<String, String> unionParent = new HashMap<>();
+        for (TableNode node : forest.tableIndex.values()) {
+            for (TableNode child : node.children) {
+                union(unionParent, node.tableName, child.tableName);
             }
+        }
 
-            return result;
-        });
+        Map<String, List<File>> groups = new LinkedHashMap<>();
+        for (Map.Entry<File, String> entry : fileTables.entrySet()) {
+            groups.computeIfAbsent(find(unionParent, entry.getValue()), k -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        List<List<File>> planned = new ArrayList<>(groups.values());
+        planned.sort(Comparator.comparingLong((List<File> group) ->
+            group.stream().mapToLong(File::length).sum()).reversed());
+        return planned;
+    }
+
+    private static String find(Map<String, String> parent, String key) {
+        String root = key;
+        while (parent.containsKey(root)) {
+            root = parent.get(root);
+        }
+        // 路径压缩
+        String current = key;
+        while (!current.equals(root)) {
+            String next = parent.get(current);
+            parent.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<String, String> parent, String a, String b) {
+        String rootA = find(parent, a);
+        String rootB = find(parent, b);
+        if (!rootA.equals(rootB)) {
+            parent.put(rootB, rootA);
+        }
     }
 
     /**
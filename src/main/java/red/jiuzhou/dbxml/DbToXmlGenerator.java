@@ -1,11 +1,11 @@
 package red.jiuzhou.dbxml;
 
-import cn.hutool.core.io.FileUtil;
 import org.dom4j.*;
 import org.dom4j.io.OutputFormat;
 import org.dom4j.io.XMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.util.StringUtils;
 import red.jiuzhou.util.*;
@@ -16,12 +16,17 @@ import red.jiuzhou.validation.XmlFieldValueCorrector;
 import red.jiuzhou.validation.server.ServerComplianceFilter;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -36,8 +41,8 @@ public class DbToXmlGenerator {
     private static TableConf table;
     // 每页数据量
     private static final int PAGE_SIZE = 1000;
-    // 临时文件存放目录
-    private static final String TEMP_DIR = "temp_xml/";
+    // 同时在途的分页数：分页按序写入最终文件，窗口限制了内存中待写出的片段数量
+    private static final int PAGE_WINDOW = Math.max(2, Runtime.getRuntime().availableProcessors());
     private int total;
     private CounterUtil counterUtil = new CounterUtil();
     private static String mapType;
@@ -46,6 +51,9 @@ public class DbToXmlGenerator {
 
     private static final SubTablePreloader subTablePreloader = new SubTablePreloader();
 
+    // 主表（按 TableConf）与子表（按 ColumnMapping）的行投影计划，每次导出重新编译
+    private static final RowProjectionPlan.Cache rowPlans = new RowProjectionPlan.Cache();
+
     // ==================== 服务器合规性过滤器（2025-12-29新增）====================
     // 从102,825行服务器日志中提取的规则，确保导出的XML符合服务器要求
     // 配置项：server.compliance.enabled (默认true)
@@ -53,6 +61,32 @@ public class DbToXmlGenerator {
     private static final boolean COMPLIANCE_ENABLED =
         Boolean.parseBoolean(YamlUtils.getProperty("application.yml", "server.compliance.enabled", "true"));
 
+    // ==================== 流式导出（单次游标扫描）====================
+    // LIMIT/OFFSET 分页在大表上后段页会反复扫描前面的行（整体 O(n²)），且所有分页同时压向数据库。
+    // 流式模式只执行一次查询，按主键顺序通过服务端游标（fetchSize）逐批取行，直接写入 XML。
+    // 配置项：export.streaming.enabled (默认false)，也可通过 setStreamingMode 单独开启
+    private static final boolean STREAMING_ENABLED =
+        Boolean.parseBoolean(YamlUtils.getProperty("application.yml", "export.streaming.enabled", "false"));
+    // 服务端游标每次拉取的行数
+    private static final int STREAM_FETCH_SIZE = PAGE_SIZE;
+
+    private boolean streamingMode = STREAMING_ENABLED;
+    private ExportStats lastExportStats;
+
+    // ==================== 仅导出变更（增量导出）====================
+    // 通过 TableChangeTracker 的触发器版本号判断主表及子表自上次导出后是否有修改，未修改且导出文件完好时跳过
+    // 配置项：export.changed-only.enabled (默认false)，也可通过 setChangedOnly 单独开启
+    private static final boolean CHANGED_ONLY_ENABLED =
+        Boolean.parseBoolean(YamlUtils.getProperty("application.yml", "export.changed-only.enabled", "false"));
+
+    private boolean changedOnly = CHANGED_ONLY_ENABLED;
+    private boolean lastExportSkipped;
+    // 导出开始前获取的版本签名，导出成功后写入导出状态
+    private String pendingChangeSignature;
+
+    // 导出目录，为空时使用 file.exportDataPath
+    private String exportDir;
+
 
     public DbToXmlGenerator(String tabName, String mapType, String tabFilePath) {
         this.mapType = mapType;
@@ -61,11 +95,76 @@ public class DbToXmlGenerator {
             throw new RuntimeException("找不到表配置信息：" + tabName);
         }
         table.chk();
-        subTablePreloader.preloadAllSubTables(table);
         this.table = table;
     }
 
+    /**
+     * 设置是否使用流式导出模式（单次游标扫描，不再按 LIMIT/OFFSET 分页查询）
+     */
+    public void setStreamingMode(boolean streamingMode) {
+        this.streamingMode = streamingMode;
+    }
+
+    public boolean isStreamingMode() {
+        return streamingMode;
+    }
+
+    /**
+     * 设置是否只在数据变化时才重新导出（未变化时直接返回已有文件路径）
+     */
+    public void setChangedOnly(boolean changedOnly) {
+        this.changedOnly = changedOnly;
+    }
+
+    public boolean isChangedOnly() {
+        return changedOnly;
+    }
+
+    /**
+     * 设置导出目录（默认使用 file.exportDataPath），基准测试等场景用于避免覆盖正式导出文件
+     */
+    public void setExportDir(String exportDir) {
+        this.exportDir = exportDir;
+    }
+
+    /**
+     * 最近一次 processAndMerge 是否因数据未变化而跳过
+     */
+    public boolean isLastExportSkipped() {
+        return lastExportSkipped;
+    }
+
+    /**
+     * 获取最近一次流式导出的统计信息（行数、耗时、峰值堆内存），未执行流式导出时返回 null
+     */
+    public ExportStats getLastExportStats() {
+        return lastExportStats;
+    }
+
     public String processAndMerge() {
+        lastExportSkipped = false;
+        pendingChangeSignature = null;
+        if (changedOnly) {
+            String encodingMapType = mapType != null ? mapType : "";
+            String exportFile = getExportFilePath();
+            pendingChangeSignature = TableChangeTracker.captureSignature(
+                table.getAllTableNameList(), exportConfigFingerprint(encodingMapType));
+            if (TableChangeTracker.isUnchanged(table.getTableName(), encodingMapType, pendingChangeSignature, exportFile)) {
+                log.info("表 {} 自上次导出后无变化，跳过导出: {}", table.getTableName(), exportFile);
+                lastExportSkipped = true;
+                pendingChangeSignature = null;
+                return exportFile;
+            }
+        }
+        // 确定需要导出后再预加载子表，跳过时不产生子表查询
+        rowPlans.clear();
+        subTablePreloader.preloadAllSubTables(table);
+        if (streamingMode) {
+            if (StringUtils.hasLength(table.getXmlItemTag())) {
+                return processStreaming();
+            }
+            log.warn("表 {} 未配置 xml_item_tag，流式导出不适用，回退到分页导出", table.getTableName());
+        }
         try {
             // 0. 初始化字段顺序管理器（确保字段顺序稳定性）
             if (!XmlFieldOrderManager.initialize()) {
@@ -74,65 +173,177 @@ public class DbToXmlGenerator {
                 log.info("字段顺序管理器已初始化：{}", XmlFieldOrderManager.getStatistics());
             }
 
-            // 1. 获取总数据量
+            // 1. 获取总数据量（大表为估算值，实际以最后一个不满页为准）
             int totalRecords = DatabaseUtil.getTotalRowCount(table.getTableName());
             this.total = totalRecords;
             int totalPages = (totalRecords + PAGE_SIZE - 1) / PAGE_SIZE;
 
-            FileUtil.del(YamlUtils.getProperty("file.exportDataPath") + File.separator + TEMP_DIR);
-
-            // 2. 使用虚拟线程并行处理分页（Java 21+）
-            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
-                List<Runnable> tasks = new ArrayList<>();
-                for (int page = 0; page < totalPages; page++) {
-                    int offset = page * PAGE_SIZE;
-                    int finalPage = page;
-                    tasks.add(() -> {
-                        String fileName = TEMP_DIR + "part_" + finalPage + ".xml";
-                        log.info("开始处理分页：{}", finalPage);
-                        generateXmlPart(table, offset, PAGE_SIZE, fileName);
-                    });
+            String xmlFile = getExportFilePath();
+            String encodingMapType = mapType != null ? mapType : "";
+            FileEncodingDetector.EncodingInfo encoding = EncodingMetadataCache.getWithCache(table.getTableName(), encodingMapType);
+            log.info("✅ 导出时使用原始编码: 表={}, mapType={}, 编码={}", table.getTableName(), mapType, encoding);
+
+            // 2. 使用虚拟线程并行渲染分页，按页序直接写入最终文件（不再生成临时分页文件、不再 DOM 合并）
+            try (XmlExportWriter xmlWriter = openExportWriter(xmlFile, encoding);
+                 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                Deque<Future<PagePart>> inFlight = new ArrayDeque<>();
+                int nextPage = 0;
+                boolean lastPageReached = totalPages == 0;
+                while (!lastPageReached || !inFlight.isEmpty()) {
+                    // 3. 保持窗口内最多 PAGE_WINDOW 个分页在途
+                    while (!lastPageReached && inFlight.size() < PAGE_WINDOW) {
+                        int page = nextPage++;
+                        inFlight.add(executor.submit(() -> {
+                            log.info("开始处理分页：{}", page);
+                            return renderPage(page * PAGE_SIZE, PAGE_SIZE);
+                        }));
+                    }
+                    PagePart part;
+                    try {
+                        part = inFlight.poll().get();
+                    } catch (Exception e) {
+                        throw new RuntimeException("分页处理失败", e);
+                    }
+                    xmlWriter.writeRaw(part.fragment);
+                    // 不满一页说明已到末尾（估算行数偏小时也能导出完整数据）
+                    if (part.rowCount < PAGE_SIZE) {
+                        lastPageReached = true;
+                    }
                 }
+                xmlWriter.writeEndDocument();
+                xmlWriter.flush();
+            }
 
-                // 3. 提交所有任务并等待完成
-                tasks.stream()
-                    .map(executor::submit)
-                    .toList()
-                    .forEach(future -> {
-                        try {
-                            future.get();
-                        } catch (Exception e) {
-                            throw new RuntimeException("分页处理失败", e);
-                        }
-                    });
-            } // try-with-resources 自动关闭 executor
-
-            // 5. 合并所有临时文件
-            List<File> tempFileList = FileUtil.loopFiles(YamlUtils.getProperty("file.exportDataPath") + File.separator + TEMP_DIR).stream()
-                    .filter(file -> file.getName().endsWith(".xml"))
-                    .collect(Collectors.toList());
-            tempFileList.sort(Comparator.comparing(File::getName));
-            String exportedFilePath = mergeXmlFiles(tempFileList);
-
-            // 6. 清理临时文件
-            FileUtil.del(YamlUtils.getProperty("file.exportDataPath") + File.separator + TEMP_DIR);
+            // 4. 更新导出时间戳、后处理与往返一致性验证
+            finishExport(xmlFile, encodingMapType);
 
-            // 7. 输出字段值修正统计
+            // 5. 输出字段值修正统计
             String correctionStats = XmlFieldValueCorrector.getStatistics();
             if (!correctionStats.contains("未进行")) {
                 log.info("📊 {}", correctionStats);
             }
 
-            // 8. 返回导出的文件路径
-            return exportedFilePath;
+            // 6. 返回导出的文件路径
+            log.info("✅ 文件已导出到: {}", xmlFile);
+            return xmlFile;
 
         } catch (Exception e) {
             throw new RuntimeException("处理失败", e);
         }
     }
 
-    // 生成分页XML
-    private void generateXmlPart(TableConf table, int offset, int limit, String outputFileName) {
+    /**
+     * 流式导出：单次查询 + 服务端游标，逐批过滤后直接写入最终 XML 文件
+     *
+     * 与分页导出相比只扫描一次表、数据库上只有一个查询，
+     * 每批最多 STREAM_FETCH_SIZE 行在堆上，完成后输出行数/秒与峰值堆内存。
+     */
+    private String processStreaming() {
+        String tableName = table.getTableName();
+        if (!XmlFieldOrderManager.initialize()) {
+            log.warn("字段顺序管理器初始化失败，将使用默认顺序");
+        }
+        // 仅用于进度显示，大表使用估算值
+        this.total = DatabaseUtil.getTotalRowCount(tableName);
+
+        String sql = buildStreamingSql();
+        log.info("流式导出 sql:{}", sql);
+
+        String xmlFile = getExportFilePath();
+        String encodingMapType = mapType != null ? mapType : "";
+        FileEncodingDetector.EncodingInfo encoding = EncodingMetadataCache.getWithCache(tableName, encodingMapType);
+        log.info("✅ 导出时使用原始编码: 表={}, mapType={}, 编码={}", tableName, mapType, encoding);
+
+        MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+        long peakHeap = memoryBean.getHeapMemoryUsage().getUsed();
+        long rowCount = 0;
+        long startTime = System.nanoTime();
+
+        JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
+        List<String> listDbcolumnList = table.getListDbcolumnList();
+        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+
+        try (XmlExportWriter xmlWriter = openExportWriter(xmlFile, encoding);
+             Connection conn = DatabaseUtil.getConnection()) {
+
+            // PostgreSQL 只有在关闭自动提交时才使用服务端游标，否则 fetchSize 无效、结果集一次性全部载入
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(STREAM_FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    List<Map<String, Object>> chunk = new ArrayList<>(STREAM_FETCH_SIZE);
+                    while (rs.next()) {
+                        chunk.add(rowMapper.mapRow(rs, (int) rowCount++));
+                        if (chunk.size() >= STREAM_FETCH_SIZE) {
+                            writeChunk(xmlWriter, chunk, listDbcolumnList, jdbcTemplate);
+                            chunk.clear();
+                            peakHeap = Math.max(peakHeap, memoryBean.getHeapMemoryUsage().getUsed());
+                        }
+                    }
+                    writeChunk(xmlWriter, chunk, listDbcolumnList, jdbcTemplate);
+                    peakHeap = Math.max(peakHeap, memoryBean.getHeapMemoryUsage().getUsed());
+                }
+                conn.commit();
+            } catch (Exception e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+
+            xmlWriter.writeEndDocument();
+            xmlWriter.flush();
+        } catch (Exception e) {
+            log.error("err::::::::::::" + JSONRecord.getErrorMsg(e));
+            throw new RuntimeException("流式导出失败", e);
+        }
+
+        finishExport(xmlFile, encodingMapType);
+
+        lastExportStats = new ExportStats(tableName, rowCount, (System.nanoTime() - startTime) / 1_000_000, peakHeap);
+        log.info("📊 {}", lastExportStats);
+
+        String correctionStats = XmlFieldValueCorrector.getStatistics();
+        if (!correctionStats.contains("未进行")) {
+            log.info("📊 {}", correctionStats);
+        }
+        log.info("✅ 文件已导出到: {}", xmlFile);
+        return xmlFile;
+    }
+
+    /**
+     * 构建流式导出 SQL：未指定 ORDER BY 时按主键排序，保证导出顺序稳定
+     */
+    private String buildStreamingSql() {
+        String sql = table.getSql();
+        if (mapType != null && !mapType.isEmpty()) {
+            sql = sql.replace("$mapType", mapType);
+        }
+        if (!sql.toLowerCase().contains("order by")) {
+            String primaryKey = DatabaseUtil.getPrimaryKeyColumn(table.getTableName());
+            if (primaryKey != null) {
+                sql = sql + " ORDER BY \"" + primaryKey + "\"";
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * 将一批行过滤后逐条写出
+     */
+    private void writeChunk(XmlExportWriter xmlWriter, List<Map<String, Object>> chunk,
+                            List<String> listDbcolumnList, JdbcTemplate jdbcTemplate) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (Map<String, Object> itemMap : applyComplianceFilter(chunk)) {
+            writeItem(xmlWriter, itemMap, listDbcolumnList, jdbcTemplate);
+        }
+    }
+
+    // 渲染一个分页的 item 片段（缩进层级为根节点下一级）
+    private PagePart renderPage(int offset, int limit) {
         try {
             String sql = table.getSql();
             if(mapType != null && !mapType.isEmpty()){
@@ -144,166 +355,190 @@ public class DbToXmlGenerator {
             log.info("sql:{}", sql);
             JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
             List<Map<String, Object>> itemList = jdbcTemplate.queryForList(sql);
+            int rowCount = itemList.size();
 
             // ==================== 服务器合规性过滤（2025-12-29新增）====================
             // 应用从服务器日志反推的验证规则，确保导出的XML符合服务器要求
-            if (COMPLIANCE_ENABLED && complianceFilter.hasRules(table.getTableName())) {
-                int originalSize = itemList.size();
-                List<ServerComplianceFilter.FilterResult> filterResults =
-                    complianceFilter.filterBatch(table.getTableName(), itemList);
-
-                // 使用过滤后的数据替换原数据
-                itemList = filterResults.stream()
-                    .map(ServerComplianceFilter.FilterResult::getFilteredData)
-                    .collect(Collectors.toList());
-
-                // 统计过滤信息
-                long changedCount = filterResults.stream()
-                    .filter(ServerComplianceFilter.FilterResult::hasChanges)
-                    .count();
-                long totalRemovedFields = filterResults.stream()
-                    .mapToLong(r -> r.getRemovedFields().size())
-                    .sum();
-                long totalCorrectedFields = filterResults.stream()
-                    .mapToLong(r -> r.getCorrectedFields().size())
-                    .sum();
-
-                if (changedCount > 0) {
-                    log.info("✅ 服务器合规过滤 [{}]: 处理了{}/{}条记录，移除{}个字段，修正{}个字段值",
-                        table.getTableName(), changedCount, originalSize,
-                        totalRemovedFields, totalCorrectedFields);
-
-                    // 记录具体的变更（仅DEBUG级别，避免日志过多）
-                    if (log.isDebugEnabled()) {
-                        filterResults.stream()
-                            .filter(ServerComplianceFilter.FilterResult::hasChanges)
-                            .limit(5)  // 只记录前5条作为示例
-                            .forEach(result -> {
-                                if (!result.getRemovedFields().isEmpty()) {
-                                    log.debug("  移除字段: {}", result.getRemovedFields());
-                                }
-                                if (!result.getCorrectedFields().isEmpty()) {
-                                    log.debug("  修正字段: {}", result.getCorrectedFields());
-                                }
-                            });
-                    }
-                }
-            }
+            itemList = applyComplianceFilter(itemList);
 
             List<String> listDbcolumnList = table.getListDbcolumnList();
-            Document document = DocumentHelper.createDocument();
-            Element root = document.addElement(table.getXmlRootTag());
-
+            StringWriter fragment = new StringWriter();
+            XmlExportWriter pageWriter = new XmlExportWriter(fragment, 1);
             for (Map<String, Object> itemMap : itemList) {
-                Element element = null;
-                if(table.getXmlItemTag() != null && !table.getXmlItemTag().isEmpty()){
-                    element = root.addElement(table.getXmlItemTag());
-                }else{
-                    element = root;
-                }
-                Set<String> keySet = itemMap.keySet();
-
-                // ==================== 字段排序：使用XmlFieldOrderManager保证稳定顺序 ====================
-                // 1. 按照数据库定义顺序排序（同时自动过滤黑名单）
-                keySet = XmlFieldOrderManager.sortFields(table.getTableName(), keySet);
-
-                // 2. 统计过滤的字段数量
-                int originalCount = itemMap.keySet().size();
-                int filteredCount = originalCount - keySet.size();
-                if (filteredCount > 0) {
-                    log.info("表 {} 过滤了 {} 个黑名单字段", table.getTableName(), filteredCount);
-                }
-
-                // 3. 特殊字段顺序调整（attacks/skills）
-                keySet = reorderIfNeeded(keySet, "attacks", "skills");
-
-                if("world".equals(table.getTableName())){
-                    total = keySet.size();
-                }
-                for (String key : keySet) {
-
-                    if("world".equals(table.getTableName()) && "mapTp".equals(key)){
-                        continue;
-                    }
-                    if (itemMap.get(key) != null) {
-                        String value = String.valueOf(itemMap.get(key));
-
-                        // ==================== 字段值自动修正（确保符合服务器要求）====================
-                        value = XmlFieldValueCorrector.correctValue(table.getTableName(), key, value);
-
-                        if(key.startsWith("_attr_")){
-                            element.addAttribute(key.replace("_attr_", ""), value);
-                        }else{
-                            element.addElement(key).setText(value);
-                        }
-                    }
-                    // 跳过 NULL 值，不创建空节点（保持与原始 XML 一致）
-                    if (listDbcolumnList.contains(key)) {
-                        ColumnMapping columnMapping = table.getColumnMapping(key);
-                        String parentVal = getParentVal(itemMap, columnMapping);
-                        parseSubquery(element, columnMapping, jdbcTemplate, parentVal);
-                    }
-                    if("world".equals(table.getTableName())){
-                        counterUtil.increment();
-                    }
-                }
-                counterUtil.increment();
-                // 只在每10%进度时打印日志，减少日志输出频率
-                long count = counterUtil.getCount();
-                double progress = (count / (double) total * 100);
-                if (count == 1 || count == total || count % Math.max(1, total / 10) == 0) {
-                    log.info("进度：" + count + "/" + total + "，完成度：" + String.format("%.1f", progress) + "%");
-                }
+                writeItem(pageWriter, itemMap, listDbcolumnList, jdbcTemplate);
             }
-
-            // 保存为临时文件
-            FileUtil.writeString(document.asXML(), YamlUtils.getProperty("file.exportDataPath") + File.separator + outputFileName, StandardCharsets.UTF_16);
+            return new PagePart(fragment.toString(), rowCount);
         } catch (Exception e) {
             log.error("err::::::::::::" + JSONRecord.getErrorMsg(e));
             throw new RuntimeException("生成分页XML失败", e);
         }
     }
-    // 合并所有XML文件
-    private String mergeXmlFiles(List<File> xmlFiles) throws Exception {
-        Document document = DocumentHelper.createDocument();
-        Element root = document.addElement(table.getXmlRootTag());
-        if(table.getXmlRootAttr() != null && !table.getXmlRootAttr().trim().isEmpty()){
-            root.addAttribute(table.getXmlRootAttr().split("=")[0], table.getXmlRootAttr().split("=")[1]);
-        }
-
-        for (File file : xmlFiles) {
-            Document doc = DocumentHelper.parseText(FileUtil.readString(file, StandardCharsets.UTF_16));
-            Element childRoot = doc.getRootElement();
-            for (Iterator<?> it = childRoot.elementIterator(); it.hasNext(); ) {
-                Object obj = it.next();
-                if (obj instanceof Element) {
-                    Element element = (Element) obj;
-                    // 先从原来的 Document 移除
-                    element.detach();
-                    // 然后添加到新的 Document
-                    root.add(element);
+
+    /**
+     * 应用服务器合规性过滤（黑名单字段移除、值域修正），未启用或无规则时原样返回
+     */
+    private List<Map<String, Object>> applyComplianceFilter(List<Map<String, Object>> itemList) {
+        if (COMPLIANCE_ENABLED && complianceFilter.hasRules(table.getTableName())) {
+            int originalSize = itemList.size();
+            List<ServerComplianceFilter.FilterResult> filterResults =
+                complianceFilter.filterBatch(table.getTableName(), itemList);
+
+            // 使用过滤后的数据替换原数据
+            itemList = filterResults.stream()
+                .map(ServerComplianceFilter.FilterResult::getFilteredData)
+                .collect(Collectors.toList());
+
+            // 统计过滤信息
+            long changedCount = filterResults.stream()
+                .filter(ServerComplianceFilter.FilterResult::hasChanges)
+                .count();
+            long totalRemovedFields = filterResults.stream()
+                .mapToLong(r -> r.getRemovedFields().size())
+                .sum();
+            long totalCorrectedFields = filterResults.stream()
+                .mapToLong(r -> r.getCorrectedFields().size())
+                .sum();
+
+            if (changedCount > 0) {
+                log.info("✅ 服务器合规过滤 [{}]: 处理了{}/{}条记录，移除{}个字段，修正{}个字段值",
+                    table.getTableName(), changedCount, originalSize,
+                    totalRemovedFields, totalCorrectedFields);
+
+                // 记录具体的变更（仅DEBUG级别，避免日志过多）
+                if (log.isDebugEnabled()) {
+                    filterResults.stream()
+                        .filter(ServerComplianceFilter.FilterResult::hasChanges)
+                        .limit(5)  // 只记录前5条作为示例
+                        .forEach(result -> {
+                            if (!result.getRemovedFields().isEmpty()) {
+                                log.debug("  移除字段: {}", result.getRemovedFields());
+                            }
+                            if (!result.getCorrectedFields().isEmpty()) {
+                                log.debug("  修正字段: {}", result.getCorrectedFields());
+                            }
+                        });
                 }
             }
         }
-        String exportFileName = StringUtils.hasLength(table.getRealTableName()) ? table.getRealTableName() : table.getTableName();
-        String xmlFile = YamlUtils.getProperty("file.exportDataPath") + File.separator + exportFileName + ".xml";
-        // 传入表名和 mapType 以查询和恢复原始编码（支持 World 表）
-        saveFormatXml(document, xmlFile, table.getTableName(), mapType);
-        if(table.getFilePath().contains("AionMap")){
-            XmlStringModifier.insertStringAfterFirstLine(xmlFile);
+        return itemList;
+    }
+
+    /**
+     * 写出一行主表数据（含嵌套子表）
+     *
+     * dom4j 中属性始终位于开始标签内，与字段顺序无关，因此先写属性再按字段顺序写子节点和子表。
+     * 未配置 xml_item_tag 时字段直接写在根节点下（与原合并逻辑一致，只保留子节点）。
+     */
+    private void writeItem(XmlExportWriter xmlWriter, Map<String, Object> itemMap,
+                           List<String> listDbcolumnList, JdbcTemplate jdbcTemplate) throws IOException {
+        boolean hasItemTag = table.getXmlItemTag() != null && !table.getXmlItemTag().isEmpty();
+        if (hasItemTag) {
+            xmlWriter.writeStartElement(table.getXmlItemTag());
+        }
+        // ==================== 字段排序、黑名单过滤、值修正：按列集合预编译的投影计划 ====================
+        RowProjectionPlan plan = rowPlans.lookup(table, itemMap, columns -> RowProjectionPlan.compile(
+                table.getTableName(), columns,
+                key -> "world".equals(table.getTableName()) && "mapTp".equals(key),
+                key -> listDbcolumnList.contains(key) ? table.getColumnMapping(key) : null,
+                false));
+        String[] keys = plan.keys;
+
+        boolean world = "world".equals(table.getTableName());
+        if (world) {
+            total = plan.fieldCount;
+        }
+        // ==================== 字段值自动修正（确保符合服务器要求）====================
+        if (hasItemTag) {
+            plan.writeAttributes(xmlWriter, itemMap);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            plan.writeElement(xmlWriter, itemMap, i);
+            ColumnMapping columnMapping = plan.subqueries[i];
+            if (columnMapping != null) {
+                String parentVal = getParentVal(itemMap, columnMapping);
+                parseSubquery(xmlWriter, columnMapping, jdbcTemplate, parentVal);
+            }
+            if (world) {
+                counterUtil.increment();
+            }
+        }
+        if (hasItemTag) {
+            xmlWriter.writeEndElement();
         }
+        counterUtil.increment();
+        // 只在每10%进度时打印日志，减少日志输出频率
+        long count = counterUtil.getCount();
+        double progress = (count / (double) total * 100);
+        if (count == 1 || count == total || count % Math.max(1, total / 10) == 0) {
+            log.info("进度：" + count + "/" + total + "，完成度：" + String.format("%.1f", progress) + "%");
+        }
+    }
 
-        // 返回导出的文件绝对路径
-        log.info("✅ 文件已导出到: {}", xmlFile);
-        return xmlFile;
+    /**
+     * 导出配置指纹：表配置（含子表映射）、各表字段顺序与生效的黑名单字段、合规规则以及导出编码。
+     * 这些配置变化后即使数据未变，旧的导出文件也已过期，不能按"无变化"跳过。
+     */
+    private String exportConfigFingerprint(String encodingMapType) {
+        StringBuilder config = new StringBuilder()
+            .append(table).append('|').append(table.getXmlRootAttr()).append('|').append(table.getRealTableName()).append('\n');
+        for (String tableName : table.getAllTableNameList()) {
+            config.append(tableName).append(':')
+                .append(XmlFieldOrderManager.getOrderedFields(tableName)).append(':')
+                .append(XmlFieldBlacklist.getBlacklistedFields(tableName)).append('\n');
+        }
+        config.append("compliance:").append(COMPLIANCE_ENABLED);
+        if (COMPLIANCE_ENABLED) {
+            complianceFilter.getRule(table.getTableName()).ifPresent(rule -> config.append(':').append(rule.fingerprint()));
+        }
+        config.append("\nencoding:").append(EncodingMetadataCache.getWithCache(table.getTableName(), encodingMapType));
+        return cn.hutool.crypto.digest.DigestUtil.md5Hex(config.toString());
+    }
+
+    private String getExportFilePath() {
+        String exportFileName = StringUtils.hasLength(table.getRealTableName()) ? table.getRealTableName() : table.getTableName();
+        String dir = StringUtils.hasLength(exportDir) ? exportDir : YamlUtils.getProperty("file.exportDataPath");
+        return dir + File.separator + exportFileName + ".xml";
     }
 
+    /**
+     * 打开最终导出文件并写出声明与根节点开始标签
+     */
+    private XmlExportWriter openExportWriter(String xmlFile, FileEncodingDetector.EncodingInfo encoding) throws IOException {
+        OutputStream out = openExportStream(xmlFile, encoding);
+        XmlExportWriter xmlWriter = new XmlExportWriter(
+                new BufferedWriter(new OutputStreamWriter(out, encoding.toCharset())));
+        xmlWriter.writeStartDocument(createExportFormat(encoding).getEncoding());
+        xmlWriter.writeStartElement(table.getXmlRootTag());
+        if(table.getXmlRootAttr() != null && !table.getXmlRootAttr().trim().isEmpty()){
+            xmlWriter.writeAttribute(table.getXmlRootAttr().split("=")[0], table.getXmlRootAttr().split("=")[1]);
+        }
+        return xmlWriter;
+    }
+
+    /**
+     * 文件关闭后：更新导出时间戳（支持 World 表 mapType）、AionMap 后处理、往返一致性验证
+     */
+    private void finishExport(String xmlFile, String encodingMapType) {
+        EncodingMetadataManager.updateExportTime(table.getTableName(), encodingMapType);
+        if(table.getFilePath().contains("AionMap")){
+            try {
+                XmlStringModifier.insertStringAfterFirstLine(xmlFile);
+            } catch (IOException e) {
+                throw new UncheckedIOException("AionMap 导出后处理失败: " + xmlFile, e);
+            }
+        }
+        validateExportedFile(table.getTableName(), encodingMapType, xmlFile);
+        if (pendingChangeSignature != null) {
+            TableChangeTracker.recordExport(table.getTableName(), encodingMapType, pendingChangeSignature, xmlFile);
+            pendingChangeSignature = null;
+        }
+    }
 
     public double getProgress() {
         return (double) counterUtil.getCount() / total;
     }
 
-    private static void parseSubquery(Element element, ColumnMapping columnMapping, JdbcTemplate jdbcTemplate, String id) {
+    private static void parseSubquery(XmlExportWriter xmlWriter, ColumnMapping columnMapping, JdbcTemplate jdbcTemplate, String id) throws IOException {
         String sql = columnMapping.getSql().replace("#associated_filed", id);
         List<Map<String, Object>> subList = new ArrayList<>();
         if("world".equals(table.getTableName())){
@@ -315,73 +550,60 @@ public class DbToXmlGenerator {
         if (subList.isEmpty()) {
             return;
         }
-        Element subEle = createElement(element, columnMapping);
+        int wrapperDepth = openDataNodes(xmlWriter, columnMapping);
 
         for (Map<String, Object> subMap : subList) {
-            Element dataElement = subEle.addElement(columnMapping.getXmlTag());
-            Set<String> subKeySet = subMap.keySet();
-
-            // ==================== 子表字段排序：使用XmlFieldOrderManager ====================
-            subKeySet = XmlFieldOrderManager.sortFields(columnMapping.getTableName(), subKeySet);
-            subKeySet = reorderIfNeeded(subKeySet, "attacks", "skills");
-
-            for (String subKey : subKeySet) {
-                if(subKey.equals(columnMapping.getAssociatedFiled()) || columnMapping.getAssociatedFiled().contains(">" + subKey)){
-                    continue;
-                }
-                if(worldSpecialTabNames.contains(columnMapping.getTableName()) && "world__id".equals(subKey)){
-                    continue;
-                }
-                if("world".equals(table.getTableName()) && "mapTp".equals(subKey)){
-                    continue;
-                }
-                if(subKey.startsWith("_attr_") && subMap.get(subKey) != null){
-                    String subValue = String.valueOf(subMap.get(subKey));
-                    // 子表字段值也需要修正
-                    subValue = XmlFieldValueCorrector.correctValue(columnMapping.getTableName(), subKey, subValue);
-
-                    if(subKey.contains("__")){
-                        String[] attrArr = subKey.split("__");
-                        dataElement.element(attrArr[1]).addAttribute(attrArr[2], subValue);
-                    }else{
-                        dataElement.addAttribute(subKey.replace("_attr_", ""), subValue);
-                    }
-                }else if (subMap.get(subKey) != null) {
-                    String subValue = String.valueOf(subMap.get(subKey));
-                    // 子表字段值也需要修正
-                    subValue = XmlFieldValueCorrector.correctValue(columnMapping.getTableName(), subKey, subValue);
-
-                    dataElement.addElement(subKey).setText(subValue);
-                }
-
+            xmlWriter.writeStartElement(columnMapping.getXmlTag());
+            // ==================== 子表字段排序与值修正：按列集合预编译的投影计划 ====================
+            RowProjectionPlan plan = rowPlans.lookup(columnMapping, subMap, columns -> RowProjectionPlan.compile(
+                    columnMapping.getTableName(), columns, key -> isSkippedSubKey(columnMapping, key), null, true));
+
+            // 先写属性（_attr__子节点__属性 形式的子节点属性随对应子节点写出），再写子节点；子表字段值同样修正
+            plan.writeAttributes(xmlWriter, subMap);
+            for (int i = 0; i < plan.keys.length; i++) {
+                plan.writeElement(xmlWriter, subMap, i);
             }
             if (columnMapping.getList() != null && !columnMapping.getList().isEmpty()) {
                 for (ColumnMapping subColumnMapping : columnMapping.getList()) {
                     String parentVal = getParentVal(subMap, subColumnMapping);
-                    parseSubquery(dataElement, subColumnMapping, jdbcTemplate, parentVal);
+                    parseSubquery(xmlWriter, subColumnMapping, jdbcTemplate, parentVal);
                 }
             }
+            xmlWriter.writeEndElement();
+        }
+        for (int i = 0; i < wrapperDepth; i++) {
+            xmlWriter.writeEndElement();
+        }
+    }
 
+    private static boolean isSkippedSubKey(ColumnMapping columnMapping, String subKey) {
+        if(subKey.equals(columnMapping.getAssociatedFiled()) || columnMapping.getAssociatedFiled().contains(">" + subKey)){
+            return true;
         }
+        if(worldSpecialTabNames.contains(columnMapping.getTableName()) && "world__id".equals(subKey)){
+            return true;
+        }
+        return "world".equals(table.getTableName()) && "mapTp".equals(subKey);
     }
 
-    private static Element createElement(Element element, ColumnMapping columnMapping) {
+    /**
+     * 按 addDataNode（如 "a:b"）打开子表外层包装节点，返回打开的层数
+     */
+    private static int openDataNodes(XmlExportWriter xmlWriter, ColumnMapping columnMapping) throws IOException {
         String addDataNode = columnMapping.getAddDataNode();
         if(addDataNode.trim().isEmpty()){
-            return element;
+            return 0;
         }
-        String[] xmlTagArr = addDataNode.split(":");
-        for (String tag : xmlTagArr) {
-            try {
-                element = element.addElement(tag);
-            }catch (Exception e){
+        int depth = 0;
+        for (String tag : addDataNode.split(":")) {
+            if (tag.trim().isEmpty()) {
                 log.error("addDataNode {}::::::::::::tag {}" ,addDataNode, tag);
-                log.error("err::::::::::::" + JSONRecord.getErrorMsg(e));
+                continue;
             }
-
+            xmlWriter.writeStartElement(tag);
+            depth++;
         }
-        //element = element.addElement(columnMapping.getXmlTag());
-        return element;
+        return depth;
     }
 
     public static void saveFormatXml(Document document, String filePath, String tableName) throws Exception {
@@ -394,6 +616,36 @@ public class DbToXmlGenerator {
         log.info("✅ 导出时使用原始编码: 表={}, mapType={}, 编码={}", tableName, mapType, encoding);
         // =================================================
 
+        OutputFormat format = createExportFormat(encoding);
+        OutputStream fileOutputStream = openExportStream(filePath, encoding);
+
+        OutputStreamWriter writer = new OutputStreamWriter(fileOutputStream, encoding.toCharset());
+        XMLWriter xmlWriter = new XMLWriter(writer, format);
+        try {
+            xmlWriter.write(document);
+
+            // 更新导出时间戳（支持 World 表 mapType）
+            EncodingMetadataManager.updateExportTime(tableName, mapType != null ? mapType : "");
+
+            // ========== 自动验证往返一致性 ==========
+            xmlWriter.flush();
+            writer.flush();
+            fileOutputStream.flush();
+        } finally {
+            xmlWriter.close();
+            writer.close();
+        }
+
+        // 文件关闭后立即验证（确保所有数据已写入磁盘）
+        validateExportedFile(tableName, mapType, filePath);
+    }
+
+    /**
+     * 创建导出使用的输出格式（制表符缩进美化，保留文本空白）
+     *
+     * @param encoding 原始文件编码
+     */
+    private static OutputFormat createExportFormat(FileEncodingDetector.EncodingInfo encoding) {
         // 设置格式化方式
         // 美化格式（缩进 + 换行）
         OutputFormat format = OutputFormat.createPrettyPrint();
@@ -415,7 +667,13 @@ public class DbToXmlGenerator {
         format.setNewlines(true);
         // **关键：避免自动去除空格**
         format.setTrimText(false);
+        return format;
+    }
 
+    /**
+     * 打开导出文件输出流，按原始编码写入 BOM
+     */
+    private static OutputStream openExportStream(String filePath, FileEncodingDetector.EncodingInfo encoding) throws IOException {
         // ========== BOM 写入支持：确保往返一致性 ==========
         OutputStream fileOutputStream = Files.newOutputStream(Paths.get(filePath));
         if (encoding.hasBOM()) {
@@ -423,25 +681,13 @@ public class DbToXmlGenerator {
             log.debug("✅ 已写入 BOM 标记: {}", encoding.getEncoding());
         }
         // =================================================
+        return fileOutputStream;
+    }
 
-        OutputStreamWriter writer = new OutputStreamWriter(fileOutputStream, encoding.toCharset());
-        XMLWriter xmlWriter = new XMLWriter(writer, format);
-        try {
-            xmlWriter.write(document);
-
-            // 更新导出时间戳（支持 World 表 mapType）
-            EncodingMetadataManager.updateExportTime(tableName, mapType != null ? mapType : "");
-
-            // ========== 自动验证往返一致性 ==========
-            xmlWriter.flush();
-            writer.flush();
-            fileOutputStream.flush();
-        } finally {
-            xmlWriter.close();
-            writer.close();
-        }
-
-        // 文件关闭后立即验证（确保所有数据已写入磁盘）
+    /**
+     * 导出文件关闭后验证往返一致性
+     */
+    private static void validateExportedFile(String tableName, String mapType, String filePath) {
         try {
             RoundTripValidator.ValidationResult result =
                     RoundTripValidator.validateRoundTrip(tableName, mapType != null ? mapType : "", new File(filePath));
@@ -525,4 +771,49 @@ public class DbToXmlGenerator {
         return new LinkedHashSet<>(set); // 返回新的 LinkedHashSet 保证一致性
     }
 
+    /**
+     * 已渲染的分页片段
+     */
+    private static class PagePart {
+        private final String fragment;
+        private final int rowCount;
+
+        private PagePart(String fragment, int rowCount) {
+            this.fragment = fragment;
+            this.rowCount = rowCount;
+        }
+    }
+
+    /**
+     * 流式导出统计信息
+     */
+    public static class ExportStats {
+        private final String tableName;
+        private final long rowCount;
+        private final long elapsedMillis;
+        private final long peakHeapBytes;
+
+        public ExportStats(String tableName, long rowCount, long elapsedMillis, long peakHeapBytes) {
+            this.tableName = tableName;
+            this.rowCount = rowCount;
+            this.elapsedMillis = elapsedMillis;
+            this.peakHeapBytes = peakHeapBytes;
+        }
+
+        public String getTableName() { return tableName; }
+        public long getRowCount() { return rowCount; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public long getPeakHeapBytes() { return peakHeapBytes; }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? rowCount : rowCount * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("流式导出 [%s]: %d 行, 耗时 %d ms, %.0f 行/秒, 峰值堆内存 %.1f MB",
+                    tableName, rowCount, elapsedMillis, getRowsPerSecond(), peakHeapBytes / 1024.0 / 1024.0);
+        }
+    }
+
 }
@@ -0,0 +1,235 @@
+package red.jiuzhou.dbxml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.validation.XmlFieldOrderManager;
+import red.jiuzhou.validation.XmlFieldValueCorrector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * @className: red.jiuzhou.dbxml.RowProjectionPlan.java
+ * @description: 导出行投影计划
+ *
+ * 同一张表（或同一子表映射）的行通常列集合完全相同，字段排序、黑名单过滤、attacks/skills 调序、
+ * 属性/子节点区分和值修正规则只取决于（表, 列集合），因此按列集合编译一次：
+ * <ul>
+ *   <li>keys/names：过滤黑名单并跳过特殊字段后的输出顺序及写出名（属性去掉 _attr_ 前缀）</li>
+ *   <li>attribute/childTag：是否为属性；子表中 _attr__子节点__属性 形式的列记录所属子节点</li>
+ *   <li>childAttributes：子节点下标 → 挂在该子节点上的属性下标</li>
+ *   <li>correctors：{@link XmlFieldValueCorrector#bind} 绑定的修正函数，无规则时为 null</li>
+ *   <li>subqueries：主表列对应的嵌套子表映射</li>
+ * </ul>
+ * 之后每行只按下标遍历这些数组取值写出，不再逐行排序、构造集合或按表名前缀分派修正规则。
+ * 排序结果直接来自 {@link XmlFieldOrderManager#sortFields} 与 {@link DbToXmlGenerator#reorderIfNeeded}，与逐行计算一致。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+final class RowProjectionPlan {
+
+    private static final Logger log = LoggerFactory.getLogger(RowProjectionPlan.class);
+
+    private static final String ATTR_PREFIX = "_attr_";
+
+    // 编译时行的列名（按行内顺序），用于判断后续行能否复用
+    private final String[] columns;
+    // 编译时行的 keySet 实例：子表预加载的行共享同一实例，可按引用直接命中
+    private final Set<String> columnSet;
+
+    /** 过滤黑名单后的字段数（含被跳过的特殊字段） */
+    final int fieldCount;
+    /** 输出顺序的列名 */
+    final String[] keys;
+    /** 第 i 个字段对应的嵌套子表映射，没有时为 null */
+    final ColumnMapping[] subqueries;
+
+    private final String[] names;
+    private final boolean[] attribute;
+    private final String[] childTag;
+    private final int[][] childAttributes;
+    private final List<UnaryOperator<String>> correctors;
+
+    @SuppressWarnings("unchecked")
+    private RowProjectionPlan(String tableName, Set<String> columnSet, List<String> ordered,
+                              Predicate<String> skip, Function<String, ColumnMapping> subqueryOf,
+                              boolean splitChildAttributes) {
+        this.columnSet = columnSet;
+        this.columns = columnSet.toArray(new String[0]);
+        this.fieldCount = ordered.size();
+
+        List<String> emitted = new ArrayList<>(ordered.size());
+        for (String key : ordered) {
+            if (!skip.test(key)) {
+                emitted.add(key);
+            }
+        }
+
+        int n = emitted.size();
+        keys = emitted.toArray(new String[0]);
+        names = new String[n];
+        attribute = new boolean[n];
+        childTag = new String[n];
+        childAttributes = new int[n][];
+        correctors = new ArrayList<>(n);
+        subqueries = new ColumnMapping[n];
+
+        for (int i = 0; i < n; i++) {
+            String key = keys[i];
+            attribute[i] = key.startsWith(ATTR_PREFIX);
+            names[i] = attribute[i] ? key.replace(ATTR_PREFIX, "") : key;
+            if (attribute[i] && splitChildAttributes && key.contains("__")) {
+                String[] parts = key.split("__");
+                if (parts.length >= 3) {
+                    childTag[i] = parts[1];
+                    names[i] = parts[2];
+                }
+            }
+            correctors.add(XmlFieldValueCorrector.bind(tableName, key));
+            subqueries[i] = subqueryOf != null ? subqueryOf.apply(key) : null;
+        }
+
+        int[] none = new int[0];
+        for (int i = 0; i < n; i++) {
+            if (attribute[i]) {
+                continue;
+            }
+            int[] attached = none;
+            for (int j = 0; j < n; j++) {
+                if (childTag[j] != null && childTag[j].equals(keys[i])) {
+                    attached = Arrays.copyOf(attached, attached.length + 1);
+                    attached[attached.length - 1] = j;
+                }
+            }
+            childAttributes[i] = attached;
+        }
+    }
+
+    /**
+     * 编译一个列集合的投影计划
+     *
+     * @param tableName            表名（决定字段顺序、黑名单和修正规则）
+     * @param columnSet            行的列名集合（行内顺序）
+     * @param skip                 额外跳过的字段（如关联字段、world 的 mapTp）
+     * @param subqueryOf           列 → 嵌套子表映射，无子表时返回 null；子表行传 null
+     * @param splitChildAttributes 是否把 _attr__子节点__属性 识别为子节点属性（子表行）
+     */
+    static RowProjectionPlan compile(String tableName, Set<String> columnSet, Predicate<String> skip,
+                                     Function<String, ColumnMapping> subqueryOf, boolean splitChildAttributes) {
+        Set<String> ordered = DbToXmlGenerator.reorderIfNeeded(
+                XmlFieldOrderManager.sortFields(tableName, columnSet), "attacks", "skills");
+        int filteredCount = columnSet.size() - ordered.size();
+        if (filteredCount > 0) {
+            log.info("表 {} 过滤了 {} 个黑名单字段", tableName, filteredCount);
+        }
+        return new RowProjectionPlan(tableName, columnSet, new ArrayList<>(ordered), skip, subqueryOf,
+                splitChildAttributes);
+    }
+
+    /**
+     * 行的列集合（含顺序）与编译时相同
+     */
+    boolean matches(Map<String, ?> row) {
+        Set<String> keySet = row.keySet();
+        if (keySet == columnSet) {
+            return true;
+        }
+        if (keySet.size() != columns.length) {
+            return false;
+        }
+        int i = 0;
+        for (String key : keySet) {
+            if (!columns[i++].equals(key)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写出当前节点上的属性（挂在子节点上的属性除外），须在写任何子节点之前调用
+     */
+    void writeAttributes(XmlExportWriter writer, Map<String, ?> row) {
+        for (int i = 0; i < keys.length; i++) {
+            if (!attribute[i] || childTag[i] != null) {
+                continue;
+            }
+            Object raw = row.get(keys[i]);
+            if (raw != null) {
+                writer.writeAttribute(names[i], correct(i, String.valueOf(raw)));
+            }
+        }
+    }
+
+    /**
+     * 写出第 index 个字段的子节点及挂在它上面的属性；属性字段和 NULL 值不写（不创建空节点）
+     */
+    void writeElement(XmlExportWriter writer, Map<String, ?> row, int index) throws IOException {
+        if (attribute[index]) {
+            return;
+        }
+        Object raw = row.get(keys[index]);
+        if (raw == null) {
+            return;
+        }
+        String value = correct(index, String.valueOf(raw));
+        writer.writeStartElement(keys[index]);
+        for (int attr : childAttributes[index]) {
+            Object attrRaw = row.get(keys[attr]);
+            if (attrRaw != null) {
+                writer.writeAttribute(names[attr], correct(attr, String.valueOf(attrRaw)));
+            }
+        }
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private String correct(int index, String value) {
+        UnaryOperator<String> corrector = correctors.get(index);
+        return corrector == null ? value : corrector.apply(value);
+    }
+
+    /**
+     * 按导出上下文（主表 TableConf 或子表 ColumnMapping，按引用区分）缓存的计划；
+     * 每个上下文最多保留少量列集合，超出时重新开始（合规过滤可能让个别行缺列）
+     */
+    static final class Cache {
+        private static final int MAX_PLANS_PER_CONTEXT = 16;
+
+        private final Map<Object, RowProjectionPlan[]> plans = new ConcurrentHashMap<>();
+
+        RowProjectionPlan lookup(Object context, Map<String, ?> row, Function<Set<String>, RowProjectionPlan> compiler) {
+            RowProjectionPlan[] candidates = plans.get(context);
+            if (candidates != null) {
+                for (RowProjectionPlan plan : candidates) {
+                    if (plan.matches(row)) {
+                        return plan;
+                    }
+                }
+            }
+            RowProjectionPlan plan = compiler.apply(row.keySet());
+            plans.merge(context, new RowProjectionPlan[]{plan}, (existing, added) -> {
+                if (existing.length >= MAX_PLANS_PER_CONTEXT) {
+                    return added;
+                }
+                RowProjectionPlan[] merged = Arrays.copyOf(existing, existing.length + 1);
+                merged[existing.length] = added[0];
+                return merged;
+            });
+            return plan;
+        }
+
+        void clear() {
+            plans.clear();
+        }
+    }
+}
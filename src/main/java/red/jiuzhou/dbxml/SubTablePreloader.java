@@ -1,21 +1,45 @@
 package red.jiuzhou.dbxml;
 
-import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
 import red.jiuzhou.util.DatabaseUtil;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 子表预加载器
+ *
+ * 导出时每个主表行都要查询其子表数据，预加载把所有子表一次性读入内存，按关联字段分组。
+ *
+ * 存储结构（相比每行一个 LinkedCaseInsensitiveMap + 每次查询再排序）：
+ * - 通过服务端游标流式读取，每行只保存一个 Object[]，列名表由整张子表共享
+ * - 重复出现的短字符串值按表去重，减少重复对象
+ * - 加载时按 (关联键, 排序字段) 一次性排好序，同组的行在数组中连续存放，查询直接返回区间视图
+ * - 关联键全部为整数时使用 long[] 二分查找，否则使用字符串哈希索引
+ *
+ * getSubData 返回的行实现了 Map 接口（只读，按列名大小写不敏感读取），顺序与原实现一致：
+ * 组内保持 SQL 返回顺序，再按排序字段的字符串值稳定排序。
+ */
 public class SubTablePreloader {
     private static final Logger log = LoggerFactory.getLogger(SubTablePreloader.class);
 
+    /** 服务端游标每次拉取的行数 */
+    private static final int FETCH_SIZE = 5000;
+
+    /** 参与去重的字符串最大长度（长文本基本不重复，去重收益小） */
+    private static final int DEDUP_MAX_LENGTH = 64;
+
     /**
-     * 子表缓存结构：tableName -> (主键值 -> 子表数据列表)
+     * 子表缓存结构：tableName -> 已分组排序的子表数据
      */
-    private final Map<String, Map<String, List<Map<String, Object>>>> preloadedSubTableData = new HashMap<>();
-    private final Map<String, String> tableSortFieldMap = new HashMap<>();
+    private final Map<String, SubTableData> preloadedSubTableData = new ConcurrentHashMap<>();
 
     /**
      * 批量预加载表中所有子表数据（递归）
@@ -26,47 +50,35 @@ public class SubTablePreloader {
         if (tableConf.getList() == null || tableConf.getList().isEmpty()) {
             return;
         }
-        JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
 
         for (ColumnMapping mapping : tableConf.getList()) {
-            preload(mapping, jdbcTemplate);
-
+            preload(mapping);
         }
     }
 
     /**
      * 加载某个子表（递归嵌套）
      */
-    private void preload(ColumnMapping mapping, JdbcTemplate jdbcTemplate) {
+    private void preload(ColumnMapping mapping) {
         String preloadSql = buildPreloadSql(mapping);
         String tableName = mapping.getTableName();
 
         log.info("预加载子表 [{}] 数据...", tableName);
-        List<Map<String, Object>> rows;
         try {
-            rows = jdbcTemplate.queryForList(preloadSql);
+            long start = System.currentTimeMillis();
+            SubTableData data = load(preloadSql, mapping.getAssociatedFiled(), extractSortField(mapping.getSql()));
+            preloadedSubTableData.put(tableName, data);
+            log.info("预加载子表 [{}] 完成：{} 行，{} 组，耗时 {} ms",
+                    tableName, data.rows.size(), data.groupCount(), System.currentTimeMillis() - start);
         } catch (Exception e) {
             log.error("预加载子表 [{}] 数据失败：{}", tableName, e.getMessage());
             return;
         }
 
-        Map<String, List<Map<String, Object>>> grouped = rows.stream()
-                .filter(row -> row.get(mapping.getAssociatedFiled()) != null)
-                .collect(Collectors.groupingBy(row -> String.valueOf(row.get(mapping.getAssociatedFiled()))));
-
-        preloadedSubTableData.put(tableName, grouped);
-
-        // 自动提取排序字段并缓存
-        String sortField = extractSortField(mapping.getSql());
-        if (sortField != null) {
-            tableSortFieldMap.put(tableName, sortField);
-        }
-
         // 递归加载嵌套子表
         if (mapping.getList() != null && !mapping.getList().isEmpty()) {
             for (ColumnMapping sub : mapping.getList()) {
-                preload(sub, jdbcTemplate);
-
+                preload(sub);
             }
         }
     }
@@ -75,21 +87,62 @@ public class SubTablePreloader {
      * 获取子表数据（已按排序字段排好序）
      */
     public List<Map<String, Object>> getSubData(String tableName, String id) {
-        List<Map<String, Object>> data = Optional.ofNullable(preloadedSubTableData.get(tableName))
-                .map(map -> map.get(id))
-                .orElse(Collections.emptyList());
+        SubTableData data = preloadedSubTableData.get(tableName);
+        if (data == null || id == null) {
+            return Collections.emptyList();
+        }
+        return data.get(id);
+    }
+
+    /**
+     * 流式读取子表并构建分组索引
+     */
+    private static SubTableData load(String sql, String associatedField, String sortField) throws SQLException {
+        List<Object[]> rawRows = new ArrayList<>();
+        List<String> rawKeys = new ArrayList<>();
+        ColumnIndex columns;
+
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            // PostgreSQL 只有在关闭自动提交时才使用服务端游标，否则结果集一次性全部载入
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    ResultSetMetaData metaData = rs.getMetaData();
+                    int columnCount = metaData.getColumnCount();
+                    String[] names = new String[columnCount];
+                    for (int i = 0; i < columnCount; i++) {
+                        names[i] = JdbcUtils.lookupColumnName(metaData, i + 1);
+                    }
+                    columns = new ColumnIndex(names);
+                    int keyIndex = columns.indexOf(associatedField);
 
-        String sortKey = tableSortFieldMap.get(tableName);
-        if (sortKey != null) {
-            data = data.stream()
-                    .sorted(Comparator.comparing(m -> {
-                        Object val = m.get(sortKey);
-                        return val == null ? "" : val.toString();
-                    }))
-                    .collect(Collectors.toList());
+                    Map<String, String> dedup = new HashMap<>();
+                    while (rs.next()) {
+                        Object[] values = new Object[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            Object value = JdbcUtils.getResultSetValue(rs, i + 1);
+                            if (value instanceof String str && str.length() <= DEDUP_MAX_LENGTH) {
+                                value = dedup.computeIfAbsent(str, k -> k);
+                            }
+                            values[i] = value;
+                        }
+                        Object key = keyIndex < 0 ? null : values[keyIndex];
+                        if (key == null) {
+                            continue;
+                        }
+                        rawRows.add(values);
+                        rawKeys.add(String.valueOf(key));
+                    }
+                }
+            } finally {
+                conn.commit();
+                conn.setAutoCommit(autoCommit);
+            }
         }
 
-        return data;
+        return SubTableData.build(columns, rawRows, rawKeys, columns.indexOf(sortField));
     }
 
     /**
@@ -130,4 +183,228 @@ public class SubTablePreloader {
 
         return null;
     }
+
+    /**
+     * 整张子表共享的列名索引（读取时先精确匹配，再忽略大小写匹配，与 ColumnMapRowMapper 的行为一致）
+     */
+    private static final class ColumnIndex {
+        private final String[] names;
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final Map<String, Integer> lowerCase = new HashMap<>();
+        private final Set<String> keySet;
+
+        private ColumnIndex(String[] names) {
+            this.names = names;
+            for (int i = 0; i < names.length; i++) {
+                exact.putIfAbsent(names[i], i);
+                lowerCase.putIfAbsent(names[i].toLowerCase(Locale.ROOT), i);
+            }
+            this.keySet = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(names)));
+        }
+
+        private int indexOf(Object name) {
+            if (!(name instanceof String str)) {
+                return -1;
+            }
+            Integer index = exact.get(str);
+            if (index == null) {
+                index = lowerCase.get(str.toLowerCase(Locale.ROOT));
+            }
+            return index == null ? -1 : index;
+        }
+    }
+
+    /**
+     * 只读的行视图：值存放在 Object[] 中，列名由 ColumnIndex 共享
+     */
+    private static final class RowView extends AbstractMap<String, Object> {
+        private final ColumnIndex columns;
+        private final Object[] values;
+
+        private RowView(ColumnIndex columns, Object[] values) {
+            this.columns = columns;
+            this.values = values;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int index = columns.indexOf(key);
+            return index < 0 ? null : values[index];
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return columns.indexOf(key) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return columns.keySet;
+        }
+
+        @Override
+        public Set<Entry<String, Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Object>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < values.length;
+                        }
+
+                        @Override
+                        public Entry<String, Object> next() {
+                            if (index >= values.length) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = index++;
+                            return new SimpleImmutableEntry<>(columns.names[i], values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return values.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * 已分组排序的子表数据：同一关联键的行在 rows 中连续存放，groupStart[g]..groupStart[g+1] 为第 g 组
+     */
+    private static final class SubTableData {
+        private final List<Map<String, Object>> rows;
+        private final int[] groupStart;
+        /** 关联键全部为规范整数时使用（升序，可二分查找），否则为 null */
+        private final long[] longKeys;
+        /** 非整数关联键的索引：key -> 组号 */
+        private final Map<String, Integer> stringKeys;
+
+        private SubTableData(List<Map<String, Object>> rows, int[] groupStart, long[] longKeys, Map<String, Integer> stringKeys) {
+            this.rows = rows;
+            this.groupStart = groupStart;
+            this.longKeys = longKeys;
+            this.stringKeys = stringKeys;
+        }
+
+        private int groupCount() {
+            return groupStart.length - 1;
+        }
+
+        private List<Map<String, Object>> get(String id) {
+            int group;
+            if (longKeys != null) {
+                Long key = parseCanonicalLong(id);
+                group = key == null ? -1 : Arrays.binarySearch(longKeys, key);
+            } else {
+                Integer index = stringKeys.get(id);
+                group = index == null ? -1 : index;
+            }
+            if (group < 0) {
+                return Collections.emptyList();
+            }
+            return rows.subList(groupStart[group], groupStart[group + 1]);
+        }
+
+        private static SubTableData build(ColumnIndex columns, List<Object[]> rawRows, List<String> rawKeys, int sortIndex) {
+            int size = rawRows.size();
+
+            // 判断关联键是否可以使用 long 索引
+            long[] parsedKeys = new long[size];
+            boolean numericKeys = true;
+            for (int i = 0; i < size && numericKeys; i++) {
+                Long parsed = parseCanonicalLong(rawKeys.get(i));
+                if (parsed == null) {
+                    numericKeys = false;
+                } else {
+                    parsedKeys[i] = parsed;
+                }
+            }
+
+            // 排序字段的字符串值（与原实现相同：null 视为 ""）
+            String[] sortValues = null;
+            if (sortIndex >= 0) {
+                sortValues = new String[size];
+                for (int i = 0; i < size; i++) {
+                    Object value = rawRows.get(i)[sortIndex];
+                    sortValues[i] = value == null ? "" : value.toString();
+                }
+            }
+
+            // 按 (关联键, 排序值) 稳定排序，相同时保持 SQL 返回顺序
+            Integer[] order = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                order[i] = i;
+            }
+            final boolean useLong = numericKeys;
+            final String[] finalSortValues = sortValues;
+            Arrays.sort(order, (a, b) -> {
+                int cmp = useLong ? Long.compare(parsedKeys[a], parsedKeys[b]) : rawKeys.get(a).compareTo(rawKeys.get(b));
+                if (cmp == 0 && finalSortValues != null) {
+                    cmp = finalSortValues[a].compareTo(finalSortValues[b]);
+                }
+                return cmp;
+            });
+
+            List<Map<String, Object>> rows = new ArrayList<>(size);
+            List<Integer> starts = new ArrayList<>();
+            List<Long> longKeyList = useLong ? new ArrayList<>() : null;
+            Map<String, Integer> stringKeys = useLong ? null : new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                int source = order[i];
+                rows.add(new RowView(columns, rawRows.get(source)));
+                boolean newGroup = i == 0 || (useLong
+                        ? parsedKeys[source] != parsedKeys[order[i - 1]]
+                        : !rawKeys.get(source).equals(rawKeys.get(order[i - 1])));
+                if (newGroup) {
+                    if (useLong) {
+                        longKeyList.add(parsedKeys[source]);
+                    } else {
+                        stringKeys.put(rawKeys.get(source), starts.size());
+                    }
+                    starts.add(i);
+                }
+            }
+            starts.add(size);
+
+            int[] groupStart = starts.stream().mapToInt(Integer::intValue).toArray();
+            long[] longKeys = useLong ? longKeyList.stream().mapToLong(Long::longValue).toArray() : null;
+            return new SubTableData(Collections.unmodifiableList(rows), groupStart, longKeys, stringKeys);
+        }
+
+        /**
+         * 解析规范形式的整数（String.valueOf(long) 能还原为同一字符串），否则返回 null
+         */
+        private static Long parseCanonicalLong(String text) {
+            int length = text.length();
+            if (length == 0 || length > 19) {
+                return null;
+            }
+            int start = text.charAt(0) == '-' ? 1 : 0;
+            if (start == length || (text.charAt(start) == '0' && length - start > 1) || (start == 1 && text.charAt(1) == '0')) {
+                return null;
+            }
+            for (int i = start; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return null;
+                }
+            }
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
 }
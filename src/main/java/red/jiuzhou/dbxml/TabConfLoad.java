@@ -5,6 +5,7 @@ import com.alibaba.fastjson.JSON;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import red.jiuzhou.util.PathUtil;
+import red.jiuzhou.util.SchemaCatalog;
 import red.jiuzhou.util.YamlUtils;
 
 import org.springframework.core.io.ClassPathResource;
@@ -32,6 +33,11 @@ public class TabConfLoad {
     // 缓存有效期：5分钟
     private static final long CACHE_TTL_MS = 5 * 60 * 1000L;
 
+    static {
+        // 表结构变化（建表/改表/删表）时立即失效对应配置，不必等 TTL
+        SchemaCatalog.addInvalidationListener(TabConfLoad::invalidateCache);
+    }
+
     /**
      * 获取配置文件路径（延迟初始化）
      */
@@ -118,9 +124,10 @@ public class TabConfLoad {
             clearAllCache();
             return;
         }
+        // 表名忽略大小写匹配（SchemaCatalog 按库中实际表名通知，缓存键使用调用方传入的表名）
         String prefix = tabName + ":";
-        CONF_CACHE.entrySet().removeIf(e -> e.getKey().startsWith(prefix));
-        CACHE_TIMESTAMPS.entrySet().removeIf(e -> e.getKey().startsWith(prefix));
+        CONF_CACHE.entrySet().removeIf(e -> e.getKey().regionMatches(true, 0, prefix, 0, prefix.length()));
+        CACHE_TIMESTAMPS.entrySet().removeIf(e -> e.getKey().regionMatches(true, 0, prefix, 0, prefix.length()));
         log.info("缓存已失效: {}", tabName);
     }
 
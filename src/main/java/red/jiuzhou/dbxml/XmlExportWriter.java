@@ -0,0 +1,283 @@
+package red.jiuzhou.dbxml;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @className: red.jiuzhou.dbxml.XmlExportWriter.java
+ * @description: 单遍流式 XML 写出器
+ *
+ * 直接把根节点、item 节点及嵌套子表节点写入最终文件，不再构建 dom4j Document。
+ * 输出与原先的导出路径逐字节一致：分页 Document.asXML() → DocumentHelper.parseText 合并 →
+ * XMLWriter + OutputFormat.createPrettyPrint()（制表符缩进、trimText=false）：
+ * <ul>
+ *   <li>声明行后空一行，再写根节点（与 dom4j 2.x 行为相同）</li>
+ *   <li>无内容的节点输出为 &lt;tag/&gt;（空字符串文本同样视为无内容，重新解析时空文本节点不会保留），
+ *       纯文本节点不换行，含子节点的节点闭合标签单独缩进一行</li>
+ *   <li>转义规则与 dom4j 相同：文本转义 &amp; &lt; &gt;，属性额外转义 &quot;，其余控制字符输出为 &amp;#n;</li>
+ *   <li>按 XML 解析器的规范化处理换行：文本中 \r\n、\r 写为 \n；属性值中 \r\n、\r、\n、\t 写为空格</li>
+ * </ul>
+ * 开始标签延迟到第一个子内容出现时才闭合，因此属性可以在写入子节点前随时追加，
+ * 同名属性后写覆盖先写且保留原位置（与 Element.addAttribute 语义一致）。
+ *
+ * 非线程安全，一个实例只对应一个输出流。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class XmlExportWriter implements Closeable {
+
+    private static final String LINE_SEPARATOR = "\n";
+    private static final String INDENT = "\t";
+
+    private final Writer writer;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final int baseDepth;
+
+    /**
+     * @param writer 目标字符流（编码与 BOM 由调用方负责）
+     */
+    public XmlExportWriter(Writer writer) {
+        this(writer, 0);
+    }
+
+    /**
+     * @param writer    目标字符流
+     * @param baseDepth 起始缩进层级，用于单独渲染某个根节点下的片段（如并行分页的 item 片段）
+     */
+    public XmlExportWriter(Writer writer, int baseDepth) {
+        this.writer = writer;
+        this.baseDepth = baseDepth;
+    }
+
+    /**
+     * 写出 XML 声明（dom4j 对 "UTF8" 会改写为 "UTF-8"）
+     */
+    public void writeStartDocument(String encoding) throws IOException {
+        String declared = "UTF8".equals(encoding) ? "UTF-8" : encoding;
+        writer.write("<?xml version=\"1.0\" encoding=\"" + declared + "\"?>");
+        writer.write(LINE_SEPARATOR);
+    }
+
+    public void writeStartElement(String name) throws IOException {
+        Frame parent = stack.peek();
+        if (parent != null) {
+            closeStartTag(parent);
+            parent.hasElement = true;
+        }
+        writer.write(LINE_SEPARATOR);
+        writeIndent(baseDepth + stack.size());
+        writer.write('<');
+        writer.write(name);
+        stack.push(new Frame(name));
+    }
+
+    /**
+     * 追加当前节点的属性，必须在该节点写入任何文本或子节点之前调用；null 值表示移除该属性
+     */
+    public void writeAttribute(String name, String value) {
+        Frame current = stack.peek();
+        if (current == null || !current.startTagOpen) {
+            throw new IllegalStateException("属性必须在节点内容之前写入: " + name);
+        }
+        if (value == null) {
+            current.attributes.remove(name);
+        } else {
+            current.attributes.put(name, value);
+        }
+    }
+
+    /**
+     * 判断当前节点的开始标签是否仍可追加属性
+     */
+    public boolean canWriteAttribute() {
+        Frame current = stack.peek();
+        return current != null && current.startTagOpen;
+    }
+
+    public void writeCharacters(String text) throws IOException {
+        Frame current = stack.peek();
+        if (current == null) {
+            throw new IllegalStateException("文本必须位于节点内部");
+        }
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        closeStartTag(current);
+        current.hasContent = true;
+        writer.write(escapeElementText(text));
+    }
+
+    /**
+     * 写出只包含文本的简单节点，等价于 addElement(name).setText(text)
+     */
+    public void writeTextElement(String name, String text) throws IOException {
+        writeStartElement(name);
+        writeCharacters(text);
+        writeEndElement();
+    }
+
+    public void writeEndElement() throws IOException {
+        Frame current = stack.pop();
+        if (current.startTagOpen && !current.hasContent && !current.hasElement) {
+            writeAttributes(current);
+            writer.write("/>");
+            return;
+        }
+        closeStartTag(current);
+        if (current.hasElement) {
+            writer.write(LINE_SEPARATOR);
+            writeIndent(baseDepth + stack.size());
+        }
+        writer.write("</");
+        writer.write(current.name);
+        writer.write('>');
+    }
+
+    /**
+     * 关闭所有未闭合节点并写出文档末尾换行
+     */
+    public void writeEndDocument() throws IOException {
+        while (!stack.isEmpty()) {
+            writeEndElement();
+        }
+        writer.write(LINE_SEPARATOR);
+    }
+
+    /**
+     * 直接写入已渲染好的片段（由同格式、同层级的 XmlExportWriter 生成）
+     */
+    public void writeRaw(String fragment) throws IOException {
+        Frame current = stack.peek();
+        if (current != null && !fragment.isEmpty()) {
+            closeStartTag(current);
+            current.hasElement = true;
+        }
+        writer.write(fragment);
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void closeStartTag(Frame frame) throws IOException {
+        if (frame.startTagOpen) {
+            writeAttributes(frame);
+            writer.write('>');
+            frame.startTagOpen = false;
+        }
+    }
+
+    private void writeAttributes(Frame frame) throws IOException {
+        for (Map.Entry<String, String> attr : frame.attributes.entrySet()) {
+            writer.write(' ');
+            writer.write(attr.getKey());
+            writer.write("=\"");
+            writer.write(escapeAttributeValue(attr.getValue()));
+            writer.write('"');
+        }
+        frame.attributes.clear();
+    }
+
+    private void writeIndent(int depth) throws IOException {
+        for (int i = 0; i < depth; i++) {
+            writer.write(INDENT);
+        }
+    }
+
+    /**
+     * 文本转义（与 dom4j XMLWriter.escapeElementEntities 一致）
+     */
+    static String escapeElementText(String text) {
+        return escape(text, false);
+    }
+
+    /**
+     * 属性值转义（与 dom4j XMLWriter.escapeAttributeEntities 一致，使用双引号）
+     */
+    static String escapeAttributeValue(String text) {
+        return escape(text, true);
+    }
+
+    private static String escape(String text, boolean attribute) {
+        StringBuilder buffer = null;
+        int last = 0;
+        int size = text.length();
+        for (int i = 0; i < size; i++) {
+            char c = text.charAt(i);
+            String entity = null;
+            switch (c) {
+                case '<':
+                    entity = "&lt;";
+                    break;
+                case '>':
+                    entity = "&gt;";
+                    break;
+                case '&':
+                    entity = "&amp;";
+                    break;
+                case '"':
+                    if (attribute) {
+                        entity = "&quot;";
+                    }
+                    break;
+                case '\r':
+                    // 换行规范化：\r\n 只保留 \n，单独的 \r 视为 \n
+                    if (i + 1 < size && text.charAt(i + 1) == '\n') {
+                        entity = "";
+                    } else {
+                        entity = attribute ? " " : "\n";
+                    }
+                    break;
+                case '\t':
+                case '\n':
+                    // 属性值规范化：空白字符替换为空格；文本中保持原样
+                    if (attribute) {
+                        entity = " ";
+                    }
+                    break;
+                default:
+                    if (c < 32) {
+                        entity = "&#" + (int) c + ";";
+                    }
+                    break;
+            }
+            if (entity != null) {
+                if (buffer == null) {
+                    buffer = new StringBuilder(size + 16);
+                }
+                buffer.append(text, last, i).append(entity);
+                last = i + 1;
+            }
+        }
+        if (buffer == null) {
+            return text;
+        }
+        return buffer.append(text, last, size).toString();
+    }
+
+    /**
+     * 打开中的节点状态
+     */
+    private static final class Frame {
+        private final String name;
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private boolean startTagOpen = true;
+        private boolean hasContent;
+        private boolean hasElement;
+
+        private Frame(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -5,6 +5,9 @@ import org.dom4j.Attribute;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
+import org.dom4j.ElementHandler;
+import org.dom4j.ElementPath;
+import org.dom4j.io.SAXReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -17,6 +20,7 @@ import red.jiuzhou.util.FileEncodingDetector;
 import red.jiuzhou.util.EncodingFallbackStrategy;
 import red.jiuzhou.util.EncodingMetadataManager;
 import red.jiuzhou.util.BomAwareFileReader;
+import red.jiuzhou.util.CopyBulkLoader;
 import red.jiuzhou.util.SmartInsertExecutor;
 import red.jiuzhou.validation.XmlFieldValidator;
 import red.jiuzhou.batch.ConflictResolutionStrategy;
@@ -24,6 +28,7 @@ import red.jiuzhou.batch.DataConflictException;
 import red.jiuzhou.batch.BatchXmlImporter;
 
 import java.io.File;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -39,9 +44,29 @@ public class XmlToDbGenerator {
     private static final Logger log = LoggerFactory.getLogger(XmlToDbGenerator.class);
 
     private final TableConf table;
-    private final Document document;
+    private Document document;
     private double progress;
+    private int importedRecords;
     private String mapType;
+    private final String initialMapType;
+    private final File xmlFile;
+    private final FileEncodingDetector.EncodingInfo encoding;
+
+    // ==================== 流式导入（有界内存）====================
+    // DOM 模式需要把整个文件读成字符串再构建完整 Document，300MB 级的 XML 需要数 GB 堆。
+    // 流式模式逐个 item 解析，主表/子表行进入有界队列，满一批（默认 STREAM_BATCH_SIZE 行）即刷出。
+    // 配置项：import.streaming.enabled (默认false)；文件大于 import.streaming.threshold-mb (默认64MB) 时自动启用
+    private static final boolean STREAMING_ENABLED =
+        Boolean.parseBoolean(YamlUtils.getProperty("application.yml", "import.streaming.enabled", "false"));
+    private static final long STREAMING_THRESHOLD_BYTES =
+        Long.parseLong(YamlUtils.getProperty("application.yml", "import.streaming.threshold-mb", "64")) * 1024 * 1024;
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private boolean streamingMode;
+
+    // 写入批大小：COPY 批量加载时使用更大的批次（见 ImportOptions.bulkLoad）
+    private boolean bulkLoad;
+    private int batchSize = STREAM_BATCH_SIZE;
 
     private final List<Map<String, String>> mainTabList = new ArrayList<>();
     //private final Map<String, List<Map<String, String>>> subTabList = new HashMap<>();
@@ -77,6 +102,7 @@ public class XmlToDbGenerator {
 
     public XmlToDbGenerator(String tabName, String mapType, String filePath, String tabFielPath) {
         this.mapType = mapType;
+        this.initialMapType = mapType;
         try {
             TableConf table = TabConfLoad.getTale(tabName, tabFielPath);
             if (table == null) {
@@ -104,17 +130,48 @@ public class XmlToDbGenerator {
             EncodingMetadataManager.saveMetadata(tabName, mapType != null ? mapType : "", xmlFile, encoding);
             // =================================================
 
+            this.xmlFile = xmlFile;
+            this.encoding = encoding;
+
+            // 无 item 标签时整个根节点就是一条记录，无法按 item 流式处理
+            boolean hasItemTag = table.getXmlItemTag() != null && !table.getXmlItemTag().isEmpty();
+            this.streamingMode = hasItemTag && (STREAMING_ENABLED || xmlFile.length() >= STREAMING_THRESHOLD_BYTES);
+            if (streamingMode) {
+                log.info("使用流式导入模式: 文件大小 {} MB", xmlFile.length() / 1024 / 1024);
+            } else {
+                loadDocument();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+    }
+
+    /**
+     * 设置是否使用流式导入模式（表未配置 xml_item_tag 时不生效）
+     */
+    public void setStreamingMode(boolean streamingMode) {
+        this.streamingMode = streamingMode && table.getXmlItemTag() != null && !table.getXmlItemTag().isEmpty();
+    }
+
+    public boolean isStreamingMode() {
+        return streamingMode;
+    }
+
+    /**
+     * 以 DOM 方式完整读取文件
+     */
+    private Document loadDocument() throws Exception {
+        if (document == null) {
             // ========== 使用 BOM-aware 读取器，避免 "前言中不允许有内容" 错误 ==========
             String fileContent = BomAwareFileReader.readString(xmlFile, encoding);
             log.debug("文件内容长度: {} 字符, 是否以BOM开头: {}",
                      fileContent.length(), BomAwareFileReader.startsWithBOM(fileContent));
             // ==========================================================================
 
-            this.document = DocumentHelper.parseText(fileContent);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+            document = DocumentHelper.parseText(fileContent);
         }
-
+        return document;
     }
 
     /**
@@ -125,15 +182,22 @@ public class XmlToDbGenerator {
      * @param options Import options including conflict strategy
      */
     public void xmlTodb(String aiModule, List<String> selectedColumns, BatchXmlImporter.ImportOptions options) {
-        xmlToDb(table, document);
-        List<String> allTableNameList = table.getAllTableNameList();
-        if("world".equals(table.getTableName())){
-            allTableNameList = allTableNameList.stream()
-                    .map(tabName -> tabName + " where mapTp = '" + mapType + "'")
-                    .collect(Collectors.toList());
+        bulkLoad = options != null && options.isBulkLoad();
+        batchSize = bulkLoad ? CopyBulkLoader.BATCH_SIZE : STREAM_BATCH_SIZE;
+        if (streamingMode) {
+            if (selectedColumns == null) {
+                streamingXmlToDb(options);
+                return;
+            }
+            // AI 改写需要整表数据，回退到 DOM 模式
+            log.info("指定了 AI 处理字段，回退到 DOM 导入模式");
         }
-        // 按字符串长度倒序排序
-        allTableNameList.sort(Comparator.comparingInt(String::length).reversed());
+        try {
+            xmlToDb(table, loadDocument());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        List<String> allTableNameList = getTableNamesToClear();
 
         // 计算总数据量
         int totalMain = mainTabList.size();
@@ -204,9 +268,9 @@ public class XmlToDbGenerator {
             finalTableList.forEach(DatabaseUtil::delTable);
 
             // 2. 插入主表数据（使用智能插入执行器）
-            List<List<Map<String, String>>> mainBatches = splitList(mainTabList, 1000);
+            List<List<Map<String, String>>> mainBatches = splitList(mainTabList, batchSize);
             for (List<Map<String, String>> batch : mainBatches) {
-                SmartInsertExecutor.executeBatchInsert(table.getTableName(), batch, strategy);
+                SmartInsertExecutor.executeBatchInsert(table.getTableName(), batch, strategy, bulkLoad);
                 processedRecords[0] += batch.size();
                 printProgress(processedRecords[0], totalRecords);
             }
@@ -215,8 +279,8 @@ public class XmlToDbGenerator {
             for (Map.Entry<String, List<Map<String, String>>> entry : subTabList.entrySet()) {
                 String tableName = entry.getKey();
                 List<Map<String, String>> list = entry.getValue();
-                for (List<Map<String, String>> batch : splitList(list, 1000)) {
-                    SmartInsertExecutor.executeBatchInsert(tableName, batch, strategy);
+                for (List<Map<String, String>> batch : splitList(list, batchSize)) {
+                    SmartInsertExecutor.executeBatchInsert(tableName, batch, strategy, bulkLoad);
                     processedRecords[0] += batch.size();
                     printProgress(processedRecords[0], totalRecords);
                 }
@@ -239,6 +303,185 @@ public class XmlToDbGenerator {
         }
     }
 
+    /**
+     * 导入前需要清空的表（world 表按 mapType 条件删除），按名称长度倒序（子表先删）
+     */
+    private List<String> getTableNamesToClear() {
+        List<String> allTableNameList = table.getAllTableNameList();
+        if("world".equals(table.getTableName())){
+            allTableNameList = allTableNameList.stream()
+                    .map(tabName -> tabName + " where mapTp = '" + mapType + "'")
+                    .collect(Collectors.toList());
+        }
+        // 按字符串长度倒序排序
+        allTableNameList.sort(Comparator.comparingInt(String::length).reversed());
+        return allTableNameList;
+    }
+
+    /**
+     * 流式导入：两遍扫描，内存只与批大小相关
+     *
+     * 第一遍在事务外逐批验证并统计行数，存在错误则与 DOM 模式一样整体中止；
+     * 第二遍在同一个全局事务内清空旧数据，逐批通过 SmartInsertExecutor 写入，任何失败整体回滚。
+     * 刷出时先主表、再按层级顺序写子表，保证父记录总是先于子记录写入。
+     */
+    private void streamingXmlToDb(BatchXmlImporter.ImportOptions options) {
+        ConflictResolutionStrategy strategy = (options != null && options.getConflictStrategy() != null)
+            ? options.getConflictStrategy()
+            : ConflictResolutionStrategy.REPLACE_UPDATE;
+
+        // ==================== 第一遍：数据验证（在事务外进行，基于服务器日志分析）====================
+        log.info("开始数据验证（流式）...");
+        XmlFieldValidator.ValidationResult validation = new XmlFieldValidator.ValidationResult();
+        Map<String, int[]> rowCounts = new HashMap<>();
+        streamItems(() -> {
+            if (isQueueFull()) {
+                validateQueued(validation, rowCounts);
+            }
+        });
+        validateQueued(validation, rowCounts);
+
+        if (validation.hasWarnings()) {
+            log.warn("数据验证发现警告:\n{}", validation.getSummary());
+        }
+        if (validation.hasErrors()) {
+            String errorMsg = validation.getSummary();
+            log.error("数据验证失败:\n{}", errorMsg);
+            throw new RuntimeException("数据验证失败，中止导入。请修正以下错误后重试:\n" + errorMsg);
+        }
+        log.info("✅ 数据验证通过");
+
+        int totalRecords = rowCounts.values().stream().mapToInt(c -> c[0]).sum();
+        int totalMain = rowCounts.getOrDefault(table.getTableName(), new int[1])[0];
+        log.info("开始流式数据导入，总记录数: {} (主表: {}, 子表: {})，冲突策略: {}",
+            totalRecords, totalMain, totalRecords - totalMain, strategy.getDisplayName());
+
+        // ==================== 第二遍：统一事务内清空并分批写入 ====================
+        List<String> allTableNameList = getTableNamesToClear();
+        int[] processedRecords = {0};
+        mapType = initialMapType;
+        TransactionStatus globalTransaction = DatabaseUtil.beginTransaction();
+        try {
+            allTableNameList.forEach(DatabaseUtil::delTable);
+
+            streamItems(() -> {
+                if (isQueueFull()) {
+                    flushQueued(strategy, processedRecords, totalRecords);
+                }
+            });
+            flushQueued(strategy, processedRecords, totalRecords);
+
+            DatabaseUtil.commitTransaction(globalTransaction);
+            log.info("流式数据导入完成！共 {} 条记录", processedRecords[0]);
+
+        } catch (DataConflictException e) {
+            // 用户选择取消导入（冲突策略为CANCEL_IMPORT时触发）
+            log.warn("用户取消导入: {}", e.getMessage());
+            DatabaseUtil.rollbackTransaction(globalTransaction);
+            throw new RuntimeException("导入已取消: " + e.getMessage(), e);
+        } catch (Exception e) {
+            // 任何失败都回滚，保证数据一致性
+            log.error("导入失败，回滚事务: {}", e.getMessage());
+            DatabaseUtil.rollbackTransaction(globalTransaction);
+            throw new RuntimeException("数据导入失败，已回滚: " + e.getMessage(), e);
+        } finally {
+            mainTabList.clear();
+            subTabList.clear();
+        }
+    }
+
+    /**
+     * 逐个 item 流式解析文件：每个 item 解析完成后转换为行数据并立即从树上摘除，
+     * 因此内存中只保留当前 item 与尚未刷出的队列。
+     *
+     * @param afterItem 每个 item 转换完成后的回调（用于检查队列并刷出）
+     */
+    private void streamItems(Runnable afterItem) {
+        SAXReader reader = new SAXReader();
+        reader.setDefaultHandler(new ElementHandler() {
+            @Override
+            public void onStart(ElementPath elementPath) {
+            }
+
+            @Override
+            public void onEnd(ElementPath elementPath) {
+                // 只处理根节点的直接子节点：item 转换后摘除，其他节点直接摘除
+                if (elementPath.size() != 2) {
+                    return;
+                }
+                Element element = elementPath.getCurrent();
+                if (table.getXmlItemTag().equals(element.getName())) {
+                    collectItem(element);
+                    element.detach();
+                    afterItem.run();
+                } else {
+                    element.detach();
+                }
+            }
+        });
+        try (Reader in = BomAwareFileReader.openReader(xmlFile, encoding)) {
+            reader.read(in);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("流式解析XML失败: " + xmlFile.getName(), e);
+        }
+    }
+
+    private boolean isQueueFull() {
+        if (mainTabList.size() >= batchSize) {
+            return true;
+        }
+        for (List<Map<String, String>> list : subTabList.values()) {
+            if (list.size() >= batchSize) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 验证队列中的行（行号按表累计，与 DOM 模式的提示一致），验证后清空队列
+     */
+    private void validateQueued(XmlFieldValidator.ValidationResult total, Map<String, int[]> rowCounts) {
+        validateRows(table.getTableName(), mainTabList, total, rowCounts);
+        for (Map.Entry<String, List<Map<String, String>>> entry : subTabList.entrySet()) {
+            validateRows(entry.getKey(), entry.getValue(), total, rowCounts);
+        }
+        mainTabList.clear();
+        subTabList.clear();
+    }
+
+    private void validateRows(String tableName, List<Map<String, String>> rows,
+                              XmlFieldValidator.ValidationResult total, Map<String, int[]> rowCounts) {
+        int[] counter = rowCounts.computeIfAbsent(tableName, k -> new int[1]);
+        for (Map<String, String> row : rows) {
+            XmlFieldValidator.ValidationResult rowResult = XmlFieldValidator.validate(tableName, row, ++counter[0]);
+            total.getErrors().addAll(rowResult.getErrors());
+            total.getWarnings().addAll(rowResult.getWarnings());
+        }
+    }
+
+    /**
+     * 按 主表 → 子表（层级顺序）刷出队列中的行，刷出后清空队列
+     */
+    private void flushQueued(ConflictResolutionStrategy strategy, int[] processedRecords, int totalRecords) {
+        for (List<Map<String, String>> batch : splitList(mainTabList, batchSize)) {
+            SmartInsertExecutor.executeBatchInsert(table.getTableName(), batch, strategy, bulkLoad);
+            processedRecords[0] += batch.size();
+            printProgress(processedRecords[0], totalRecords);
+        }
+        for (Map.Entry<String, List<Map<String, String>>> entry : subTabList.entrySet()) {
+            for (List<Map<String, String>> batch : splitList(entry.getValue(), batchSize)) {
+                SmartInsertExecutor.executeBatchInsert(entry.getKey(), batch, strategy, bulkLoad);
+                processedRecords[0] += batch.size();
+                printProgress(processedRecords[0], totalRecords);
+            }
+        }
+        mainTabList.clear();
+        subTabList.clear();
+    }
+
     /**
      * Legacy method for backward compatibility
      * Calls new method with default options (REPLACE_UPDATE strategy)
@@ -253,11 +496,19 @@ public class XmlToDbGenerator {
         return progress;
     }
 
+    /**
+     * 已写入数据库的记录数（主表+子表）
+     */
+    public int getImportedRecords() {
+        return importedRecords;
+    }
+
     /**
      * 计算并打印进度
      */
     private void printProgress(int processed, int total) {
         progress = (double) processed / total;
+        importedRecords = processed;
         //System.out.printf("进度: %d/%d (%.2f%%)\n", processed, total, progress);
     }
 
@@ -273,40 +524,63 @@ public class XmlToDbGenerator {
             }
 
             for (Element element : elements) {
-
-                Iterator<Element> subEle = element.elementIterator();
-                // 使用 LinkedHashMap 保证字段顺序稳定（导入导出对称性）
-                Map<String, String> mainMap = new LinkedHashMap<>();
-                while (subEle.hasNext()) {
-                    Element subElement = subEle.next();
-                    if (!subElement.elements().isEmpty()) {
-                        //log.info("subEleName:::::{}", subElement.getName());
-                        generateSubSql(element, subElement, table.getColumnMappingByXmlTag(subElement.getName()), mainMap);
-                    } else {
-                        // 检查是否有 null="true" 属性标记（往返一致性）
-                        String nullAttr = subElement.attributeValue("null");
-                        if ("true".equals(nullAttr)) {
-                            mainMap.put(subElement.getName(), null);
-                        } else {
-                            mainMap.put(subElement.getName(), subElement.getText());
-                        }
-                    }
-                }
-                // 修复：遍历所有属性（之前只取第一个导致属性丢失）
-                element.attributeIterator().forEachRemaining(attr -> {
-                    mainMap.put("_attr_" + attr.getName(), attr.getValue());
-                });
-                if("world".equals(table.getTableName())){
-                    mapType = element.elementText("name");
-                    mainMap.put("mapTp", mapType);
-                }
-                mainTabList.add(mainMap);
+                collectItem(element);
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * 仅执行 XML → 行映射（不验证、不入库），返回 表名 → 行列表，主表在前
+     *
+     * 供基准测试分阶段计时使用，调用前后队列均为空
+     */
+    Map<String, List<Map<String, String>>> mapDocument(Document document) {
+        mainTabList.clear();
+        subTabList.clear();
+        xmlToDb(table, document);
+        Map<String, List<Map<String, String>>> rows = new LinkedHashMap<>();
+        rows.put(table.getTableName(), new ArrayList<>(mainTabList));
+        subTabList.forEach((tableName, list) -> rows.put(tableName, new ArrayList<>(list)));
+        mainTabList.clear();
+        subTabList.clear();
+        return rows;
+    }
+
+    /**
+     * 将一个 item 节点转换为主表行，嵌套子表行写入 subTabList
+     */
+    private void collectItem(Element element) {
+        Iterator<Element> subEle = element.elementIterator();
+        // 使用 LinkedHashMap 保证字段顺序稳定（导入导出对称性）
+        Map<String, String> mainMap = new LinkedHashMap<>();
+        while (subEle.hasNext()) {
+            Element subElement = subEle.next();
+            if (!subElement.elements().isEmpty()) {
+                //log.info("subEleName:::::{}", subElement.getName());
+                generateSubSql(element, subElement, table.getColumnMappingByXmlTag(subElement.getName()), mainMap);
+            } else {
+                // 检查是否有 null="true" 属性标记（往返一致性）
+                String nullAttr = subElement.attributeValue("null");
+                if ("true".equals(nullAttr)) {
+                    mainMap.put(subElement.getName(), null);
+                } else {
+                    mainMap.put(subElement.getName(), subElement.getText());
+                }
+            }
+        }
+        // 修复：遍历所有属性（之前只取第一个导致属性丢失）
+        element.attributeIterator().forEachRemaining(attr -> {
+            mainMap.put("_attr_" + attr.getName(), attr.getValue());
+        });
+        if("world".equals(table.getTableName())){
+            mapType = element.elementText("name");
+            mainMap.put("mapTp", mapType);
+        }
+        mainTabList.add(mainMap);
+    }
+
     private void generateSubSql(Element parentElement, Element element, ColumnMapping columnMaping, Map<String, String> parentMap) {
         if(columnMaping.getAddDataNode().contains(":")){
             String[] splitNodes = columnMaping.getAddDataNode().split(":");
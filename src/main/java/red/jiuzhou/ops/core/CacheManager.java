@@ -2,21 +2,30 @@ package red.jiuzhou.ops.core;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.YamlUtils;
 
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
 
 /**
  * 缓存管理器
  *
  * 提供内存缓存支持：
- * - TTL 过期控制
- * - LRU 淘汰策略
- * - 缓存统计
+ * - TTL 过期控制（每个区域有默认 TTL，put 时可单独指定）
+ * - 分区：按键前缀划分区域（char: / guild: / item: / 其他），各区域独立容量，互不挤占
+ * - LRU 淘汰策略：每个区域按键哈希分段加锁，段内为访问顺序链表，命中、写入、淘汰均为 O(1)
+ * - 按权重计算容量（默认每个条目权重为 1，可按区域设置 weigher）
+ * - 缓存统计：总计 + 各区域最近 60 分钟的命中/未命中/驱逐分布
  * - 线程安全
  *
+ * 过期条目在读取时惰性清除；写入时每段最多每分钟顺带清扫一次，不再需要后台清理线程。
+ *
+ * 区域容量与默认 TTL 可在 application.yml 中配置：
+ * ops.cache.&lt;区域&gt;.max-weight / ops.cache.&lt;区域&gt;.ttl-seconds，区域为 char、guild、item、default
+ *
  * @author yanxq
  * @date 2026-01-16
  */
@@ -26,29 +35,39 @@ public class CacheManager {
 
     private static CacheManager instance;
 
-    private final Map<String, CacheEntry<?>> cache = new ConcurrentHashMap<>();
-    private final int maxSize;
-    private final ScheduledExecutorService cleanupExecutor;
+    /** 每个区域的分段数（2 的幂） */
+    private static final int SEGMENTS = 16;
+
+    /** 写入时顺带清扫过期条目的最小间隔 */
+    private static final long SWEEP_INTERVAL_MS = 60_000;
+
+    private static final String DEFAULT_REGION = "default";
 
-    // Statistics
-    private final AtomicLong hits = new AtomicLong(0);
-    private final AtomicLong misses = new AtomicLong(0);
-    private final AtomicLong evictions = new AtomicLong(0);
+    /** 键前缀（含冒号）→ 区域 */
+    private final Map<String, Region> regionsByPrefix = new HashMap<>();
+    private final Map<String, Region> regions = new LinkedHashMap<>();
+    private final Region defaultRegion;
 
     private CacheManager() {
-        this(10000); // Default max 10000 entries
+        this(regionConfig("char", "角色", 4000, 300),
+                regionConfig("guild", "军团", 1000, 300),
+                regionConfig("item", "物品", 8000, 120),
+                regionConfig(DEFAULT_REGION, "其他", 2000, 300));
     }
 
-    private CacheManager(int maxSize) {
-        this.maxSize = maxSize;
-        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = new Thread(r, "cache-cleanup");
-            t.setDaemon(true);
-            return t;
-        });
-
-        // Schedule periodic cleanup
-        cleanupExecutor.scheduleAtFixedRate(this::cleanup, 1, 1, TimeUnit.MINUTES);
+    /**
+     * 指定区域配置创建（name 为 "default" 的区域接收未匹配前缀的键，未提供时自动补一个 1000 容量的默认区域）
+     */
+    CacheManager(RegionConfig... configs) {
+        for (RegionConfig config : configs) {
+            Region region = new Region(config);
+            regions.put(config.name(), region);
+            if (!DEFAULT_REGION.equals(config.name())) {
+                regionsByPrefix.put(config.name() + ":", region);
+            }
+        }
+        this.defaultRegion = regions.computeIfAbsent(DEFAULT_REGION,
+                k -> new Region(new RegionConfig(DEFAULT_REGION, "其他", 1000, 300)));
     }
 
     public static synchronized CacheManager getInstance() {
@@ -63,32 +82,39 @@ public class CacheManager {
     /**
      * 获取缓存值
      */
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> type) {
-        CacheEntry<?> entry = cache.get(key);
+        Region region = regionOf(key);
+        Segment segment = region.segmentOf(key);
+        long now = System.currentTimeMillis();
+        Object value = null;
 
-        if (entry == null) {
-            misses.incrementAndGet();
-            return null;
+        segment.lock.lock();
+        try {
+            CacheEntry entry = segment.map.get(key);
+            if (entry != null) {
+                if (entry.isExpired(now)) {
+                    segment.removeEntry(key, entry);
+                    region.recordExpiration();
+                } else {
+                    value = entry.value;
+                }
+            }
+        } finally {
+            segment.lock.unlock();
         }
 
-        if (entry.isExpired()) {
-            cache.remove(key);
-            misses.incrementAndGet();
-            evictions.incrementAndGet();
+        if (value == null) {
+            region.recordMiss();
             return null;
         }
+        region.recordHit();
 
-        entry.touch();
-        hits.incrementAndGet();
-
-        try {
-            return (T) entry.value;
-        } catch (ClassCastException e) {
+        if (!type.isInstance(value)) {
             log.warn("缓存类型不匹配: key={}, expected={}, actual={}",
-                    key, type.getName(), entry.value.getClass().getName());
+                    key, type.getName(), value.getClass().getName());
             return null;
         }
+        return type.cast(value);
     }
 
     /**
@@ -109,10 +135,10 @@ public class CacheManager {
     }
 
     /**
-     * 放入缓存（默认5分钟）
+     * 放入缓存（使用所在区域的默认 TTL）
      */
     public <T> void put(String key, T value) {
-        put(key, value, 300);
+        put(key, value, regionOf(key).config.ttlSeconds());
     }
 
     /**
@@ -123,21 +149,66 @@ public class CacheManager {
             return;
         }
 
-        // Evict if at capacity
-        if (cache.size() >= maxSize) {
-            evictOldest();
+        Region region = regionOf(key);
+        Segment segment = region.segmentOf(key);
+        int weight = Math.max(1, region.weigher.applyAsInt(value));
+        if (weight > segment.maxWeight) {
+            log.debug("条目权重 {} 超过分段容量 {}，不缓存: {}", weight, segment.maxWeight, key);
+            return;
         }
 
-        cache.put(key, new CacheEntry<>(value, ttlSeconds));
+        long now = System.currentTimeMillis();
+        int evicted = 0;
+        int expired = 0;
+
+        segment.lock.lock();
+        try {
+            CacheEntry previous = segment.map.put(key, new CacheEntry(value, now + ttlSeconds * 1000L, weight));
+            segment.weight += weight - (previous == null ? 0 : previous.weight);
+
+            if (now >= segment.nextSweep) {
+                expired = segment.sweepExpired(now);
+                segment.nextSweep = now + SWEEP_INTERVAL_MS;
+            }
+
+            // 从最久未访问的一端淘汰，直到回到容量以内
+            Iterator<Map.Entry<String, CacheEntry>> lru = segment.map.entrySet().iterator();
+            while (segment.weight > segment.maxWeight && lru.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = lru.next();
+                lru.remove();
+                segment.weight -= eldest.getValue().weight;
+                if (eldest.getValue().isExpired(now)) {
+                    expired++;
+                } else {
+                    evicted++;
+                }
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+
+        region.recordEvictions(evicted);
+        region.recordExpirations(expired);
     }
 
     /**
      * 移除缓存
      */
     public void remove(String key) {
-        CacheEntry<?> removed = cache.remove(key);
-        if (removed != null) {
-            evictions.incrementAndGet();
+        Region region = regionOf(key);
+        Segment segment = region.segmentOf(key);
+        boolean removed;
+
+        segment.lock.lock();
+        try {
+            CacheEntry entry = segment.map.get(key);
+            removed = entry != null && segment.removeEntry(key, entry);
+        } finally {
+            segment.lock.unlock();
+        }
+
+        if (removed) {
+            region.recordRemovals(1);
         }
     }
 
@@ -145,63 +216,136 @@ public class CacheManager {
      * 按前缀移除
      */
     public int removeByPrefix(String prefix) {
+        // 前缀正好是一个区域时只需清空该区域
+        Region exact = regionsByPrefix.get(prefix);
+        if (exact != null) {
+            return exact.clear();
+        }
+
         int removed = 0;
-        for (String key : cache.keySet()) {
-            if (key.startsWith(prefix)) {
-                cache.remove(key);
-                removed++;
+        for (Region region : regions.values()) {
+            int regionRemoved = 0;
+            for (Segment segment : region.segments) {
+                segment.lock.lock();
+                try {
+                    Iterator<Map.Entry<String, CacheEntry>> it = segment.map.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry<String, CacheEntry> entry = it.next();
+                        if (entry.getKey().startsWith(prefix)) {
+                            it.remove();
+                            segment.weight -= entry.getValue().weight;
+                            regionRemoved++;
+                        }
+                    }
+                } finally {
+                    segment.lock.unlock();
+                }
             }
+            region.recordRemovals(regionRemoved);
+            removed += regionRemoved;
         }
-        evictions.addAndGet(removed);
         return removed;
     }
 
     /**
-     * 检查是否存在
+     * 检查是否存在（不计入命中统计）
      */
     public boolean contains(String key) {
-        CacheEntry<?> entry = cache.get(key);
-        return entry != null && !entry.isExpired();
+        Segment segment = regionOf(key).segmentOf(key);
+        segment.lock.lock();
+        try {
+            CacheEntry entry = segment.map.get(key);
+            return entry != null && !entry.isExpired(System.currentTimeMillis());
+        } finally {
+            segment.lock.unlock();
+        }
     }
 
     /**
      * 清空缓存
      */
     public void clear() {
-        int size = cache.size();
-        cache.clear();
-        evictions.addAndGet(size);
+        int size = 0;
+        for (Region region : regions.values()) {
+            size += region.clear();
+        }
         log.info("缓存已清空，移除 {} 个条目", size);
     }
 
+    /**
+     * 设置区域的权重计算函数（默认每个条目权重为 1）
+     *
+     * @param regionName 区域名：char、guild、item、default
+     */
+    public void setWeigher(String regionName, ToIntFunction<Object> weigher) {
+        Region region = regions.get(regionName);
+        if (region == null) {
+            throw new IllegalArgumentException("未知缓存区域: " + regionName);
+        }
+        region.weigher = weigher;
+    }
+
     // ==================== 统计 ====================
 
     /**
      * 获取缓存大小
      */
     public int size() {
-        return cache.size();
+        int size = 0;
+        for (Region region : regions.values()) {
+            size += region.size();
+        }
+        return size;
     }
 
     /**
      * 获取命中率
      */
     public double getHitRate() {
-        long total = hits.get() + misses.get();
-        return total > 0 ? (double) hits.get() / total : 0;
+        long hits = 0;
+        long misses = 0;
+        for (Region region : regions.values()) {
+            hits += region.hits.sum();
+            misses += region.misses.sum();
+        }
+        long total = hits + misses;
+        return total > 0 ? (double) hits / total : 0;
     }
 
     /**
      * 获取统计信息
      */
     public CacheStats getStats() {
+        Map<String, RegionStats> regionStats = new LinkedHashMap<>();
+        int size = 0;
+        long maxSize = 0;
+        long hits = 0;
+        long misses = 0;
+        long evictions = 0;
+        long expirations = 0;
+        long removals = 0;
+        for (Region region : regions.values()) {
+            RegionStats stats = region.snapshot();
+            regionStats.put(stats.name(), stats);
+            size += stats.size();
+            maxSize += stats.maxWeight();
+            hits += stats.hits();
+            misses += stats.misses();
+            evictions += stats.evictions();
+            expirations += stats.expirations();
+            removals += stats.removals();
+        }
+        long total = hits + misses;
         return new CacheStats(
-                cache.size(),
-                maxSize,
-                hits.get(),
-                misses.get(),
-                evictions.get(),
-                getHitRate()
+                size,
+                (int) Math.min(Integer.MAX_VALUE, maxSize),
+                hits,
+                misses,
+                evictions,
+                expirations,
+                removals,
+                total > 0 ? (double) hits / total : 0,
+                regionStats
         );
     }
 
@@ -209,84 +353,298 @@ public class CacheManager {
      * 重置统计
      */
     public void resetStats() {
-        hits.set(0);
-        misses.set(0);
-        evictions.set(0);
+        for (Region region : regions.values()) {
+            region.resetStats();
+        }
+    }
+
+    /**
+     * 关闭缓存管理器（过期清理已改为写入时顺带进行，无后台线程需要停止，保留该方法以兼容调用方）
+     */
+    public void shutdown() {
+        log.debug("缓存管理器无后台线程，无需关闭");
     }
 
     // ==================== 内部方法 ====================
 
-    private void cleanup() {
-        int expired = 0;
-        for (Map.Entry<String, CacheEntry<?>> entry : cache.entrySet()) {
-            if (entry.getValue().isExpired()) {
-                cache.remove(entry.getKey());
-                expired++;
+    private Region regionOf(String key) {
+        int colon = key.indexOf(':');
+        if (colon > 0) {
+            Region region = regionsByPrefix.get(key.substring(0, colon + 1));
+            if (region != null) {
+                return region;
             }
         }
+        return defaultRegion;
+    }
 
-        if (expired > 0) {
-            evictions.addAndGet(expired);
-            log.debug("清理过期缓存: {} 个", expired);
-        }
+    private static RegionConfig regionConfig(String name, String displayName, long maxWeight, int ttlSeconds) {
+        long configuredWeight = Long.parseLong(YamlUtils.getPropertyOrDefault(
+                "ops.cache." + name + ".max-weight", String.valueOf(maxWeight)));
+        int configuredTtl = Integer.parseInt(YamlUtils.getPropertyOrDefault(
+                "ops.cache." + name + ".ttl-seconds", String.valueOf(ttlSeconds)));
+        return new RegionConfig(name, displayName, configuredWeight, configuredTtl);
     }
 
-    private void evictOldest() {
-        String oldestKey = null;
-        long oldestAccess = Long.MAX_VALUE;
+    // ==================== 内部类 ====================
 
-        for (Map.Entry<String, CacheEntry<?>> entry : cache.entrySet()) {
-            if (entry.getValue().lastAccess < oldestAccess) {
-                oldestAccess = entry.getValue().lastAccess;
-                oldestKey = entry.getKey();
+    /**
+     * 区域配置
+     *
+     * @param name 区域名，同时是键前缀（不含冒号）
+     * @param displayName 显示名
+     * @param maxWeight 区域总容量（权重之和）
+     * @param ttlSeconds 未指定 TTL 时的默认 TTL
+     */
+    record RegionConfig(String name, String displayName, long maxWeight, int ttlSeconds) {
+    }
+
+    /**
+     * 缓存区域：按键哈希分段，每段一把锁 + 一个访问顺序的 LinkedHashMap
+     */
+    private static final class Region {
+        final RegionConfig config;
+        final Segment[] segments = new Segment[SEGMENTS];
+        volatile ToIntFunction<Object> weigher = value -> 1;
+
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder expirations = new LongAdder();
+        final LongAdder removals = new LongAdder();
+        final RollingHistogram history = new RollingHistogram();
+
+        Region(RegionConfig config) {
+            this.config = config;
+            long perSegment = Math.max(1, (config.maxWeight() + SEGMENTS - 1) / SEGMENTS);
+            for (int i = 0; i < SEGMENTS; i++) {
+                segments[i] = new Segment(perSegment);
             }
         }
 
-        if (oldestKey != null) {
-            cache.remove(oldestKey);
-            evictions.incrementAndGet();
+        Segment segmentOf(String key) {
+            int h = key.hashCode();
+            h ^= (h >>> 16);
+            return segments[h & (SEGMENTS - 1)];
+        }
+
+        void recordHit() {
+            hits.increment();
+            history.record(RollingHistogram.HIT, 1);
+        }
+
+        void recordMiss() {
+            misses.increment();
+            history.record(RollingHistogram.MISS, 1);
+        }
+
+        void recordExpiration() {
+            recordExpirations(1);
+        }
+
+        void recordExpirations(int count) {
+            if (count > 0) {
+                expirations.add(count);
+                history.record(RollingHistogram.EVICTION, count);
+            }
+        }
+
+        void recordEvictions(int count) {
+            if (count > 0) {
+                evictions.add(count);
+                history.record(RollingHistogram.EVICTION, count);
+            }
+        }
+
+        void recordRemovals(int count) {
+            if (count > 0) {
+                removals.add(count);
+            }
+        }
+
+        int clear() {
+            int removed = 0;
+            for (Segment segment : segments) {
+                segment.lock.lock();
+                try {
+                    removed += segment.map.size();
+                    segment.map.clear();
+                    segment.weight = 0;
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            recordRemovals(removed);
+            return removed;
+        }
+
+        int size() {
+            int size = 0;
+            for (Segment segment : segments) {
+                segment.lock.lock();
+                try {
+                    size += segment.map.size();
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            return size;
+        }
+
+        long weight() {
+            long weight = 0;
+            for (Segment segment : segments) {
+                segment.lock.lock();
+                try {
+                    weight += segment.weight;
+                } finally {
+                    segment.lock.unlock();
+                }
+            }
+            return weight;
+        }
+
+        void resetStats() {
+            hits.reset();
+            misses.reset();
+            evictions.reset();
+            expirations.reset();
+            removals.reset();
+            history.reset();
+        }
+
+        RegionStats snapshot() {
+            long h = hits.sum();
+            long m = misses.sum();
+            return new RegionStats(
+                    config.name(),
+                    config.displayName(),
+                    size(),
+                    weight(),
+                    config.maxWeight(),
+                    config.ttlSeconds(),
+                    h,
+                    m,
+                    evictions.sum(),
+                    expirations.sum(),
+                    removals.sum(),
+                    h + m > 0 ? (double) h / (h + m) : 0,
+                    history.snapshot(RollingHistogram.HIT),
+                    history.snapshot(RollingHistogram.MISS),
+                    history.snapshot(RollingHistogram.EVICTION)
+            );
         }
     }
 
     /**
-     * 关闭缓存管理器
+     * 区域分段：访问顺序的 LinkedHashMap，表头即最久未访问的条目
      */
-    public void shutdown() {
-        cleanupExecutor.shutdown();
-        try {
-            if (!cleanupExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                cleanupExecutor.shutdownNow();
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final LinkedHashMap<String, CacheEntry> map = new LinkedHashMap<>(16, 0.75f, true);
+        final long maxWeight;
+        long weight;
+        long nextSweep;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        /** 调用方需持有锁 */
+        boolean removeEntry(String key, CacheEntry entry) {
+            if (map.remove(key) != null) {
+                weight -= entry.weight;
+                return true;
             }
-        } catch (InterruptedException e) {
-            cleanupExecutor.shutdownNow();
-            Thread.currentThread().interrupt();
+            return false;
         }
-    }
 
-    // ==================== 内部类 ====================
+        /** 调用方需持有锁 */
+        int sweepExpired(long now) {
+            int expired = 0;
+            Iterator<CacheEntry> it = map.values().iterator();
+            while (it.hasNext()) {
+                CacheEntry entry = it.next();
+                if (entry.isExpired(now)) {
+                    it.remove();
+                    weight -= entry.weight;
+                    expired++;
+                }
+            }
+            return expired;
+        }
+    }
 
-    private static class CacheEntry<T> {
-        final T value;
+    private static final class CacheEntry {
+        final Object value;
         final long expireTime;
-        volatile long lastAccess;
+        final int weight;
 
-        CacheEntry(T value, int ttlSeconds) {
+        CacheEntry(Object value, long expireTime, int weight) {
             this.value = value;
-            this.expireTime = System.currentTimeMillis() + ttlSeconds * 1000L;
-            this.lastAccess = System.currentTimeMillis();
+            this.expireTime = expireTime;
+            this.weight = weight;
         }
 
-        boolean isExpired() {
-            return System.currentTimeMillis() > expireTime;
+        boolean isExpired(long now) {
+            return now > expireTime;
         }
+    }
 
-        void touch() {
-            this.lastAccess = System.currentTimeMillis();
+    /**
+     * 最近 60 分钟的按分钟计数（环形缓冲，桶按分钟编号懒重置）
+     */
+    private static final class RollingHistogram {
+        static final int MINUTES = 60;
+        static final int HIT = 0;
+        static final int MISS = 1;
+        static final int EVICTION = 2;
+
+        private final AtomicLongArray stamps = new AtomicLongArray(MINUTES);
+        private final AtomicLongArray[] counts = {
+                new AtomicLongArray(MINUTES), new AtomicLongArray(MINUTES), new AtomicLongArray(MINUTES)
+        };
+
+        void record(int kind, int count) {
+            long minute = System.currentTimeMillis() / 60_000;
+            int index = (int) (minute % MINUTES);
+            long stamp = stamps.get(index);
+            if (stamp != minute && stamps.compareAndSet(index, stamp, minute)) {
+                for (AtomicLongArray array : counts) {
+                    array.set(index, 0);
+                }
+            }
+            counts[kind].addAndGet(index, count);
+        }
+
+        /**
+         * 按时间从早到晚返回最近 60 分钟的计数，最后一个元素为当前分钟
+         */
+        long[] snapshot(int kind) {
+            long now = System.currentTimeMillis() / 60_000;
+            long[] result = new long[MINUTES];
+            for (int i = 0; i < MINUTES; i++) {
+                long minute = now - (MINUTES - 1) + i;
+                int index = (int) (minute % MINUTES);
+                result[i] = stamps.get(index) == minute ? counts[kind].get(index) : 0;
+            }
+            return result;
+        }
+
+        void reset() {
+            for (int i = 0; i < MINUTES; i++) {
+                stamps.set(i, 0);
+                for (AtomicLongArray array : counts) {
+                    array.set(i, 0);
+                }
+            }
         }
     }
 
     /**
      * 缓存统计
+     *
+     * evictions 只统计容量淘汰，过期清除与显式移除分别计入 expirations / removals
      */
     public record CacheStats(
             int size,
@@ -294,12 +652,46 @@ public class CacheManager {
             long hits,
             long misses,
             long evictions,
-            double hitRate
+            long expirations,
+            long removals,
+            double hitRate,
+            Map<String, RegionStats> regions
+    ) {
+        public String getSummary() {
+            return String.format(
+                    "缓存: %d/%d | 命中率: %.1f%% | 命中: %d | 未命中: %d | 淘汰: %d | 过期: %d | 移除: %d",
+                    size, maxSize, hitRate * 100, hits, misses, evictions, expirations, removals
+            );
+        }
+    }
+
+    /**
+     * 区域统计
+     *
+     * hitHistory / missHistory / evictionHistory 为最近 60 分钟的按分钟计数，最后一个元素为当前分钟；
+     * evictionHistory 包含容量淘汰与过期清除
+     */
+    public record RegionStats(
+            String name,
+            String displayName,
+            int size,
+            long weight,
+            long maxWeight,
+            int ttlSeconds,
+            long hits,
+            long misses,
+            long evictions,
+            long expirations,
+            long removals,
+            double hitRate,
+            long[] hitHistory,
+            long[] missHistory,
+            long[] evictionHistory
     ) {
         public String getSummary() {
             return String.format(
-                    "缓存: %d/%d | 命中率: %.1f%% | 命中: %d | 未命中: %d | 驱逐: %d",
-                    size, maxSize, hitRate * 100, hits, misses, evictions
+                    "%s: %d/%d | 命中率: %.1f%% | 淘汰: %d | 过期: %d | 移除: %d",
+                    displayName, weight, maxWeight, hitRate * 100, evictions, expirations, removals
             );
         }
     }
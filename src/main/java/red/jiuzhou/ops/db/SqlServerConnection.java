@@ -3,8 +3,8 @@ package red.jiuzhou.ops.db;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import red.jiuzhou.ops.model.StoredProcedure;
+import red.jiuzhou.util.ConnectionPoolManager;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -38,6 +38,8 @@ public class SqlServerConnection {
     private int port = 1433;
 
     private final Map<String, JdbcTemplate> jdbcTemplates = new ConcurrentHashMap<>();
+    // 本连接创建的连接池名称（database -> poolName），close() 时释放
+    private final Map<String, String> poolNames = new ConcurrentHashMap<>();
     private DataSource currentDataSource;
     private String currentDatabase;
 
@@ -125,9 +127,6 @@ public class SqlServerConnection {
     }
 
     private DataSource createDataSource(String database) {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setDriverClassName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-
         // Handle "." as localhost for SQL Server local instance
         String host = ".".equals(serverHost) ? "localhost" : serverHost;
 
@@ -138,9 +137,11 @@ public class SqlServerConnection {
         );
 
         log.debug("SQL Server 连接 URL: {}", url);
-        dataSource.setUrl(url);
-        dataSource.setUsername(username);
-        dataSource.setPassword(password);
+        // 原 DriverManagerDataSource 每次调用都新建物理连接，改为共享的有界连接池
+        String poolName = String.format("mssql-%s@%s:%d/%s", username, host, port, database);
+        DataSource dataSource = ConnectionPoolManager.getOrCreatePool(
+                poolName, url, username, password, "com.microsoft.sqlserver.jdbc.SQLServerDriver");
+        poolNames.put(database, poolName);
 
         currentDataSource = dataSource;
         return dataSource;
@@ -447,6 +448,8 @@ public class SqlServerConnection {
      * Close all connections
      */
     public void close() {
+        poolNames.values().forEach(ConnectionPoolManager::closePool);
+        poolNames.clear();
         jdbcTemplates.clear();
         currentDataSource = null;
         log.info("已关闭所有 SQL Server 连接");
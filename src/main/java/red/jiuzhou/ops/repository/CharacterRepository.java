@@ -54,7 +54,7 @@ public class CharacterRepository implements GameRepository<GameCharacter, Intege
 
             if (!results.isEmpty()) {
                 GameCharacter character = GameCharacter.fromMap(results.get(0));
-                cache.put(cacheKey, character, 300); // 5 minutes TTL
+                cache.put(cacheKey, character);
                 return Optional.of(character);
             }
         } catch (Exception e) {
@@ -81,8 +81,8 @@ public class CharacterRepository implements GameRepository<GameCharacter, Intege
 
             if (!results.isEmpty()) {
                 GameCharacter character = GameCharacter.fromMap(results.get(0));
-                cache.put(cacheKey, character, 300);
-                cache.put(CACHE_PREFIX + character.charId(), character, 300);
+                cache.put(cacheKey, character);
+                cache.put(CACHE_PREFIX + character.charId(), character);
                 return Optional.of(character);
             }
         } catch (Exception e) {
@@ -54,7 +54,7 @@ public class GuildRepository implements GameRepository<GameGuild, Integer> {
 
             if (!results.isEmpty()) {
                 GameGuild guild = GameGuild.fromMap(results.get(0));
-                cache.put(cacheKey, guild, 300); // 5 minutes TTL
+                cache.put(cacheKey, guild);
                 return Optional.of(guild);
             }
         } catch (Exception e) {
@@ -81,8 +81,8 @@ public class GuildRepository implements GameRepository<GameGuild, Integer> {
 
             if (!results.isEmpty()) {
                 GameGuild guild = GameGuild.fromMap(results.get(0));
-                cache.put(cacheKey, guild, 300);
-                cache.put(CACHE_PREFIX + guild.guildId(), guild, 300);
+                cache.put(cacheKey, guild);
+                cache.put(CACHE_PREFIX + guild.guildId(), guild);
                 return Optional.of(guild);
             }
         } catch (Exception e) {
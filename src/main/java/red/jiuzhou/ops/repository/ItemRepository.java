@@ -54,7 +54,7 @@ public class ItemRepository implements GameRepository<GameItem, Long> {
 
             if (!results.isEmpty()) {
                 GameItem item = GameItem.fromMap(results.get(0));
-                cache.put(cacheKey, item, 120); // 2 minutes TTL (items change often)
+                cache.put(cacheKey, item);
                 return Optional.of(item);
             }
         } catch (Exception e) {
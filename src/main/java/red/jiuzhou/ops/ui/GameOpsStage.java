@@ -1088,11 +1088,40 @@ public class GameOpsStage extends Stage {
         grid.add(new Label("未命中次数:"), 0, row);
         grid.add(new Label(String.valueOf(stats.misses())), 1, row++);
 
-        grid.add(new Label("驱逐次数:"), 0, row);
+        grid.add(new Label("淘汰次数:"), 0, row);
         grid.add(new Label(String.valueOf(stats.evictions())), 1, row++);
 
+        grid.add(new Label("过期 / 移除:"), 0, row);
+        grid.add(new Label(stats.expirations() + " / " + stats.removals()), 1, row++);
+
         content.getChildren().add(grid);
 
+        // Per-region stats with last-60-minute histograms
+        GridPane regionGrid = new GridPane();
+        regionGrid.setHgap(16);
+        regionGrid.setVgap(6);
+        int regionRow = 0;
+        regionGrid.add(new Label("区域"), 0, regionRow);
+        regionGrid.add(new Label("容量"), 1, regionRow);
+        regionGrid.add(new Label("命中率"), 2, regionRow);
+        regionGrid.add(new Label("淘汰/过期"), 3, regionRow);
+        regionGrid.add(new Label("近60分钟命中率"), 4, regionRow);
+        regionGrid.add(new Label("近60分钟驱逐"), 5, regionRow++);
+        for (CacheManager.RegionStats region : stats.regions().values()) {
+            regionGrid.add(new Label(region.displayName()), 0, regionRow);
+            regionGrid.add(new Label(region.weight() + " / " + region.maxWeight()), 1, regionRow);
+            regionGrid.add(new Label(String.format("%.1f%%", region.hitRate() * 100)), 2, regionRow);
+            regionGrid.add(new Label(region.evictions() + " / " + region.expirations()), 3, regionRow);
+            Label hitSpark = new Label(hitRateSparkline(region.hitHistory(), region.missHistory()));
+            hitSpark.setStyle("-fx-font-family: monospace;");
+            hitSpark.setTooltip(new Tooltip(region.getSummary()));
+            regionGrid.add(hitSpark, 4, regionRow);
+            Label evictionSpark = new Label(countSparkline(region.evictionHistory()));
+            evictionSpark.setStyle("-fx-font-family: monospace;");
+            regionGrid.add(evictionSpark, 5, regionRow++);
+        }
+        content.getChildren().addAll(new Separator(), regionGrid);
+
         // Action buttons
         HBox actions = new HBox(12);
         actions.setAlignment(Pos.CENTER);
@@ -1246,6 +1275,41 @@ public class GameOpsStage extends Stage {
         });
     }
 
+    private static final char[] SPARK_LEVELS = {'▁', '▂', '▃', '▄', '▅', '▆', '▇', '█'};
+
+    /**
+     * Per-minute hit rate as a text sparkline (blank for minutes without lookups)
+     */
+    private static String hitRateSparkline(long[] hits, long[] misses) {
+        StringBuilder sb = new StringBuilder(hits.length);
+        for (int i = 0; i < hits.length; i++) {
+            long total = hits[i] + misses[i];
+            if (total == 0) {
+                sb.append(' ');
+            } else {
+                int level = (int) Math.round((double) hits[i] / total * (SPARK_LEVELS.length - 1));
+                sb.append(SPARK_LEVELS[level]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Per-minute counts as a text sparkline scaled to the busiest minute
+     */
+    private static String countSparkline(long[] counts) {
+        long max = Arrays.stream(counts).max().orElse(0);
+        StringBuilder sb = new StringBuilder(counts.length);
+        for (long count : counts) {
+            if (count == 0) {
+                sb.append(' ');
+            } else {
+                sb.append(SPARK_LEVELS[(int) ((count * (SPARK_LEVELS.length - 1) + max - 1) / max)]);
+            }
+        }
+        return sb.toString();
+    }
+
     private void showAlert(Alert.AlertType type, String title, String content) {
         Platform.runLater(() -> {
             Alert alert = new Alert(type);
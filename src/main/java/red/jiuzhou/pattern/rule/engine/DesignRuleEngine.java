@@ -3,10 +3,15 @@ package red.jiuzhou.pattern.rule.engine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import red.jiuzhou.analysis.ImpactAnalyzer;
+import red.jiuzhou.pattern.rule.engine.ExpressionEvaluator.CompiledModification;
 import red.jiuzhou.pattern.rule.model.*;
 
+import java.sql.ResultSetMetaData;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 设计规则引擎
@@ -15,6 +20,11 @@ import java.util.stream.Collectors;
  * 1. 预览 - 展示规则将产生的影响
  * 2. 执行 - 应用规则修改数据
  * 3. 回滚 - 撤销执行的修改
+ *
+ * 执行策略：
+ * - 所有修改都是 "#current 与数字的四则运算" 且目标字段为数值列时，整条规则下推为一条 UPDATE，
+ *   通过 RETURNING 取回旧值生成回滚数据
+ * - 其余规则每条 FieldModification 只编译一次，记录量大时并行分块求值，再按字段组合批量 UPDATE
  */
 public class DesignRuleEngine {
 
@@ -43,10 +53,36 @@ public class DesignRuleEngine {
     private final LinkedList<ExecutionResult> executionHistory = new LinkedList<>();
     private static final int MAX_HISTORY_SIZE = 50;
 
+    /** 记录数达到该值时并行求值 */
+    private static final int PARALLEL_THRESHOLD = 2000;
+
+    /** 批量 UPDATE / 回滚每批语句数 */
+    private static final int UPDATE_BATCH_SIZE = 1000;
+
+    /** 可下推为 SQL 算术的数值列类型 */
+    private static final Set<String> INTEGER_TYPES = new HashSet<>(Arrays.asList("int2", "int4", "int8"));
+    /** 整数列取值范围（下推前检查，超出时整条规则失败而不是写入时截断或报错） */
+    private static final Map<String, long[]> INTEGER_RANGES = Map.of(
+            "int2", new long[]{Short.MIN_VALUE, Short.MAX_VALUE},
+            "int4", new long[]{Integer.MIN_VALUE, Integer.MAX_VALUE},
+            "int8", new long[]{Long.MIN_VALUE, Long.MAX_VALUE});
+    private static final Set<String> FLOAT_TYPES = new HashSet<>(Arrays.asList("float4", "float8"));
+    private static final String NUMERIC_TYPE = "numeric";
+
+    /** 记录名称的候选字段 */
+    private static final String[] NAME_FIELDS = {"name", "name_id", "title", "desc", "description"};
+
+    /** 影响分析器（可选）：设置后预览会检查被修改的原值是否被其他表引用 */
+    private volatile ImpactAnalyzer impactAnalyzer;
+
     public DesignRuleEngine(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    public void setImpactAnalyzer(ImpactAnalyzer impactAnalyzer) {
+        this.impactAnalyzer = impactAnalyzer;
+    }
+
     /**
      * 预览规则效果
      *
@@ -85,27 +121,29 @@ public class DesignRuleEngine {
                 return result;
             }
 
-            // 计算每条记录的变更
-            List<PreviewResult.RecordChange> changes = new ArrayList<>();
+            // 计算每条记录的变更（规则只编译一次，记录量大时并行分块求值，结果保持原顺序）
+            List<CompiledModification> compiled = compileModifications(rule);
+            Stream<Map<String, Object>> recordStream = matchedRecords.size() >= PARALLEL_THRESHOLD
+                    ? matchedRecords.parallelStream() : matchedRecords.stream();
+            List<PreviewResult.RecordChange> changes = recordStream
+                    .map(record -> calculateChange(compiled, record))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList());
+
             Map<String, List<Double>> beforeValues = new HashMap<>();
             Map<String, List<Double>> afterValues = new HashMap<>();
 
-            for (Map<String, Object> record : matchedRecords) {
-                PreviewResult.RecordChange change = calculateChange(rule, record);
-                if (change != null) {
-                    changes.add(change);
-
-                    // 收集数值统计
-                    for (String field : change.getOriginalValues().keySet()) {
-                        Object oldVal = change.getOriginalValues().get(field);
-                        Object newVal = change.getNewValues().get(field);
-
-                        if (oldVal instanceof Number && newVal instanceof Number) {
-                            beforeValues.computeIfAbsent(field, k -> new ArrayList<>())
-                                .add(((Number) oldVal).doubleValue());
-                            afterValues.computeIfAbsent(field, k -> new ArrayList<>())
-                                .add(((Number) newVal).doubleValue());
-                        }
+            for (PreviewResult.RecordChange change : changes) {
+                // 收集数值统计
+                for (String field : change.getOriginalValues().keySet()) {
+                    Object oldVal = change.getOriginalValues().get(field);
+                    Object newVal = change.getNewValues().get(field);
+
+                    if (oldVal instanceof Number && newVal instanceof Number) {
+                        beforeValues.computeIfAbsent(field, k -> new ArrayList<>())
+                            .add(((Number) oldVal).doubleValue());
+                        afterValues.computeIfAbsent(field, k -> new ArrayList<>())
+                            .add(((Number) newVal).doubleValue());
                     }
                 }
             }
@@ -154,6 +192,17 @@ public class DesignRuleEngine {
             }
             result.setTargetTable(tableName);
 
+            // 获取主键字段（假设为id）
+            String pkField = detectPrimaryKey(tableName);
+
+            // 简单算术规则整体下推为一条 UPDATE
+            PushdownPlan pushdown = buildPushdown(rule, tableName, pkField);
+            if (pushdown != null) {
+                int affectedCount = executePushdown(pushdown, tableName, pkField, result);
+                completeExecution(rule, result, affectedCount);
+                return result;
+            }
+
             // 先预览获取变更数据
             PreviewResult preview = preview(rule);
             if (!preview.isSuccess()) {
@@ -169,34 +218,14 @@ public class DesignRuleEngine {
             // 保存回滚数据
             result.setRollbackData(preview.getRecordChanges());
 
-            // 获取主键字段（假设为id）
-            String pkField = detectPrimaryKey(tableName);
-
-            // 执行更新
-            int affectedCount = 0;
+            // 生成回滚SQL
             for (PreviewResult.RecordChange change : preview.getRecordChanges()) {
-                String updateSql = buildUpdateSql(tableName, pkField, change);
-                result.addExecutedSql(updateSql);
-
-                // 生成回滚SQL
-                String rollbackSql = buildRollbackSql(tableName, pkField, change);
-                result.addRollbackSql(rollbackSql);
-
-                // 执行更新
-                int updated = jdbcTemplate.update(updateSql);
-                affectedCount += updated;
+                result.addRollbackSql(buildRollbackSql(tableName, pkField, change));
             }
 
-            result.markComplete(affectedCount);
-
-            // 更新规则状态
-            rule.setStatus(DesignRule.RuleStatus.COMPLETED);
-            rule.setLastExecutedAt(java.time.LocalDateTime.now());
-
-            // 保存到历史
-            addToHistory(result);
-
-            log.info("规则执行完成: {} - 影响 {} 条记录", rule.getName(), affectedCount);
+            // 按修改字段组合分组，参数化批量更新
+            int affectedCount = executeBatchUpdate(tableName, pkField, preview.getRecordChanges(), result);
+            completeExecution(rule, result, affectedCount);
 
         } catch (Exception e) {
             log.error("规则执行失败", e);
@@ -235,10 +264,12 @@ public class DesignRuleEngine {
             List<String> rollbackSqls = new ArrayList<>(original.getRollbackSqls());
             Collections.reverse(rollbackSqls);
 
-            for (String sql : rollbackSqls) {
-                result.addExecutedSql(sql);
-                int updated = jdbcTemplate.update(sql);
-                affectedCount += updated;
+            for (int from = 0; from < rollbackSqls.size(); from += UPDATE_BATCH_SIZE) {
+                List<String> batch = rollbackSqls.subList(from, Math.min(from + UPDATE_BATCH_SIZE, rollbackSqls.size()));
+                result.getExecutedSqls().addAll(batch);
+                for (int updated : jdbcTemplate.batchUpdate(batch.toArray(new String[0]))) {
+                    affectedCount += Math.max(updated, 0);
+                }
             }
 
             result.markComplete(affectedCount);
@@ -285,9 +316,24 @@ public class DesignRuleEngine {
     }
 
     /**
-     * 计算单条记录的变更
+     * 编译规则中的所有字段修改（表达式为空的修改跳过）
      */
-    private PreviewResult.RecordChange calculateChange(DesignRule rule, Map<String, Object> record) {
+    private List<CompiledModification> compileModifications(DesignRule rule) {
+        List<CompiledModification> compiled = new ArrayList<>();
+        for (FieldModification mod : rule.getModifications()) {
+            CompiledModification c = evaluator.compile(mod);
+            if (c != null) {
+                compiled.add(c);
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * 计算单条记录的变更（可并行调用）
+     */
+    private PreviewResult.RecordChange calculateChange(List<CompiledModification> modifications,
+                                                       Map<String, Object> record) {
         // 获取记录ID和名称
         Object id = record.get("id");
         if (id == null) id = record.get("ID");
@@ -297,7 +343,7 @@ public class DesignRuleEngine {
         change.setOriginalRecord(new HashMap<>(record));
 
         // 应用每个修改规则
-        for (FieldModification mod : rule.getModifications()) {
+        for (CompiledModification mod : modifications) {
             Object originalValue = record.get(mod.getFieldName());
             Object newValue = evaluator.evaluate(mod, record);
 
@@ -320,8 +366,7 @@ public class DesignRuleEngine {
      */
     private String getRecordName(Map<String, Object> record) {
         // 尝试常见的名称字段
-        String[] nameFields = {"name", "name_id", "title", "desc", "description"};
-        for (String field : nameFields) {
+        for (String field : NAME_FIELDS) {
             Object value = record.get(field);
             if (value != null && !value.toString().isEmpty()) {
                 return value.toString();
@@ -377,6 +422,38 @@ public class DesignRuleEngine {
                     stats.getFieldName(), stats.getChangePercent() * 100));
             }
         }
+
+        // 检查被修改的原值是否被其他表引用（整次执行批量查询）
+        ImpactAnalyzer analyzer = impactAnalyzer;
+        String tableName = resolveTableName(rule);
+        if (analyzer == null || tableName == null) {
+            return;
+        }
+        Map<String, Map<String, String>> changedValues = new LinkedHashMap<>();
+        for (PreviewResult.RecordChange change : changes) {
+            for (Map.Entry<String, Object> entry : change.getOriginalValues().entrySet()) {
+                Object oldVal = entry.getValue();
+                Object newVal = change.getNewValues().get(entry.getKey());
+                if (oldVal != null && !Objects.equals(oldVal, newVal)) {
+                    changedValues.computeIfAbsent(entry.getKey(), k -> new LinkedHashMap<>())
+                        .putIfAbsent(String.valueOf(oldVal), newVal == null ? "" : String.valueOf(newVal));
+                }
+            }
+        }
+        for (Map.Entry<String, Map<String, String>> entry : changedValues.entrySet()) {
+            int referencedValues = 0;
+            int references = 0;
+            for (ImpactAnalyzer.ImpactReport report : analyzer.analyzeUpdateImpact(tableName, entry.getKey(), entry.getValue())) {
+                if (report.getReferenceCount() > 0) {
+                    referencedValues++;
+                    references += report.getReferenceCount();
+                }
+            }
+            if (referencedValues > 0) {
+                result.addWarning(String.format("字段 %s 有 %d 个原值被其他表引用（共 %d 处），修改后这些引用可能失效",
+                    entry.getKey(), referencedValues, references));
+            }
+        }
     }
 
     /**
@@ -388,23 +465,212 @@ public class DesignRuleEngine {
     }
 
     /**
-     * 构建UPDATE SQL
+     * 更新规则状态并保存到历史
      */
-    private String buildUpdateSql(String tableName, String pkField, PreviewResult.RecordChange change) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("UPDATE ").append(tableName).append(" SET ");
+    private void completeExecution(DesignRule rule, ExecutionResult result, int affectedCount) {
+        result.markComplete(affectedCount);
+
+        // 更新规则状态
+        rule.setStatus(DesignRule.RuleStatus.COMPLETED);
+        rule.setLastExecutedAt(java.time.LocalDateTime.now());
+
+        // 保存到历史
+        addToHistory(result);
+
+        log.info("规则执行完成: {} - 影响 {} 条记录", rule.getName(), affectedCount);
+    }
+
+    /**
+     * 下推 UPDATE 及其 RETURNING 中 __old_i / __new_i 对应的字段
+     */
+    private static final class PushdownPlan {
+        final String sql;
+        final List<String> fields;
+        /** 统计结果超出整数列范围的记录数，没有需要检查的列时为 null */
+        final String rangeCheckSql;
+        final List<String> rangeCheckedFields;
+
+        PushdownPlan(String sql, List<String> fields, String rangeCheckSql, List<String> rangeCheckedFields) {
+            this.sql = sql;
+            this.fields = fields;
+            this.rangeCheckSql = rangeCheckSql;
+            this.rangeCheckedFields = rangeCheckedFields;
+        }
+    }
+
+    /**
+     * 生成下推 UPDATE：所有修改均为简单算术、目标字段为数值列且互不重复时返回执行计划，否则返回 null。
+     *
+     * 取整规则与 ExpressionEvaluator 的结果标准化一致：整数列按 Math.round（FLOOR(x + 0.5)），
+     * numeric 列保留两位小数，浮点列直接写入。只更新值确实变化的行，RETURNING 返回旧值与新值。
+     * 整数列另外生成范围检查查询，执行前确认没有结果超出列类型范围。
+     *
+     * 字段名按原样（区分大小写）查找列类型，与 SQL 中加引号的列名一致。
+     */
+    private PushdownPlan buildPushdown(DesignRule rule, String tableName, String pkField) {
+        List<CompiledModification> modifications = compileModifications(rule);
+        if (modifications.isEmpty()) {
+            return null;
+        }
+        Map<String, String> columnTypes = getColumnTypes(tableName);
+        if (!columnTypes.containsKey(pkField)) {
+            return null;
+        }
 
         List<String> setClauses = new ArrayList<>();
-        for (Map.Entry<String, Object> entry : change.getNewValues().entrySet()) {
-            String field = entry.getKey();
-            Object value = entry.getValue();
-            setClauses.add(field + " = " + formatValue(value));
+        List<String> changedChecks = new ArrayList<>();
+        List<String> returning = new ArrayList<>();
+        returning.add("o." + quote(pkField) + " AS " + quote("__pk"));
+        List<String> rangeChecks = new ArrayList<>();
+        List<String> rangeCheckedFields = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < modifications.size(); i++) {
+            CompiledModification mod = modifications.get(i);
+            String field = mod.getFieldName();
+            String type = columnTypes.get(field);
+            if (type == null || !seen.add(field) || !mod.isSimpleArithmetic()) {
+                return null;
+            }
+            String newValue = toColumnValue(mod.toSqlArithmetic("t." + quote(field)), type);
+            String checkValue = toColumnValue(mod.toSqlArithmetic("o." + quote(field)), type);
+            if (newValue == null) {
+                return null;
+            }
+            setClauses.add(quote(field) + " = " + newValue);
+            changedChecks.add(checkValue + " IS DISTINCT FROM o." + quote(field));
+            returning.add("o." + quote(field) + " AS " + quote("__old_" + i));
+            returning.add("t." + quote(field) + " AS " + quote("__new_" + i));
+            long[] range = INTEGER_RANGES.get(type);
+            if (range != null) {
+                rangeChecks.add(toColumnValue(mod.toSqlArithmetic(quote(field)), type)
+                        + " NOT BETWEEN " + range[0] + " AND " + range[1]);
+                rangeCheckedFields.add(field + "(" + type + ")");
+            }
+        }
+        for (String nameField : NAME_FIELDS) {
+            if (columnTypes.containsKey(nameField)) {
+                returning.add("t." + quote(nameField) + " AS " + quote("__name_" + nameField));
+            }
         }
-        sb.append(String.join(", ", setClauses));
 
-        sb.append(" WHERE ").append(pkField).append(" = ").append(formatValue(change.getRecordId()));
+        List<String> fields = modifications.stream().map(CompiledModification::getFieldName).collect(Collectors.toList());
+        String oldColumns = Stream.concat(Stream.of(pkField), fields.stream())
+                .map(this::quote)
+                .collect(Collectors.joining(", "));
+        String sql = "UPDATE " + tableName + " AS t SET " + String.join(", ", setClauses)
+                + " FROM (SELECT " + oldColumns + " FROM " + tableName + " WHERE " + rule.toWhereClause() + ") AS o"
+                + " WHERE t." + quote(pkField) + " = o." + quote(pkField)
+                + " AND (" + String.join(" OR ", changedChecks) + ")"
+                + " RETURNING " + String.join(", ", returning);
+        String rangeCheckSql = rangeChecks.isEmpty() ? null
+                : "SELECT COUNT(*) FROM " + tableName + " WHERE (" + rule.toWhereClause() + ")"
+                  + " AND (" + String.join(" OR ", rangeChecks) + ")";
+        return new PushdownPlan(sql, fields, rangeCheckSql, rangeCheckedFields);
+    }
 
-        return sb.toString();
+    /**
+     * 把 float8 算术结果转换为目标列的取值
+     */
+    private String toColumnValue(String arithmetic, String columnType) {
+        if (INTEGER_TYPES.contains(columnType)) {
+            return "FLOOR(" + arithmetic + " + 0.5)";
+        }
+        if (FLOAT_TYPES.contains(columnType)) {
+            return arithmetic;
+        }
+        if (NUMERIC_TYPE.equals(columnType)) {
+            return "ROUND(CAST(" + arithmetic + " AS numeric), 2)";
+        }
+        return null;
+    }
+
+    /**
+     * 执行下推 UPDATE，并根据 RETURNING 的旧值生成回滚数据
+     */
+    private int executePushdown(PushdownPlan plan, String tableName, String pkField, ExecutionResult result) {
+        if (plan.rangeCheckSql != null) {
+            Long outOfRange = jdbcTemplate.queryForObject(plan.rangeCheckSql, Long.class);
+            if (outOfRange != null && outOfRange > 0) {
+                throw new IllegalStateException(String.format("%d 条记录的计算结果超出字段类型范围: %s",
+                        outOfRange, String.join(", ", plan.rangeCheckedFields)));
+            }
+        }
+        log.debug("规则下推SQL: {}", plan.sql);
+        result.addExecutedSql(plan.sql);
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(plan.sql);
+        List<PreviewResult.RecordChange> changes = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Map<String, Object> names = new HashMap<>();
+            for (String nameField : NAME_FIELDS) {
+                names.put(nameField, row.get("__name_" + nameField));
+            }
+            PreviewResult.RecordChange change = new PreviewResult.RecordChange(row.get("__pk"), getRecordName(names));
+            for (int i = 0; i < plan.fields.size(); i++) {
+                change.addChange(plan.fields.get(i), row.get("__old_" + i), row.get("__new_" + i));
+            }
+            changes.add(change);
+            result.addRollbackSql(buildRollbackSql(tableName, pkField, change));
+        }
+        result.setRollbackData(changes);
+        return rows.size();
+    }
+
+    /**
+     * 按修改字段组合分组，每组一条参数化 UPDATE 批量执行
+     */
+    private int executeBatchUpdate(String tableName, String pkField,
+                                   List<PreviewResult.RecordChange> changes, ExecutionResult result) {
+        Map<List<String>, List<Object[]>> groups = new LinkedHashMap<>();
+        for (PreviewResult.RecordChange change : changes) {
+            List<String> fields = new ArrayList<>(change.getNewValues().keySet());
+            Object[] args = new Object[fields.size() + 1];
+            for (int i = 0; i < fields.size(); i++) {
+                args[i] = change.getNewValues().get(fields.get(i));
+            }
+            args[fields.size()] = change.getRecordId();
+            groups.computeIfAbsent(fields, k -> new ArrayList<>()).add(args);
+        }
+
+        int affectedCount = 0;
+        for (Map.Entry<List<String>, List<Object[]>> group : groups.entrySet()) {
+            String updateSql = "UPDATE " + tableName + " SET "
+                    + group.getKey().stream().map(f -> f + " = ?").collect(Collectors.joining(", "))
+                    + " WHERE " + pkField + " = ?";
+            result.addExecutedSql(updateSql + " -- " + group.getValue().size() + " 条");
+            int[][] counts = jdbcTemplate.batchUpdate(updateSql, group.getValue(), UPDATE_BATCH_SIZE,
+                    (ps, args) -> {
+                        for (int i = 0; i < args.length; i++) {
+                            ps.setObject(i + 1, args[i]);
+                        }
+                    });
+            for (int[] batch : counts) {
+                for (int updated : batch) {
+                    // 部分驱动批量执行时只返回 SUCCESS_NO_INFO(-2)，按 1 行计
+                    affectedCount += updated == java.sql.Statement.SUCCESS_NO_INFO ? 1 : Math.max(updated, 0);
+                }
+            }
+        }
+        return affectedCount;
+    }
+
+    /**
+     * 查询表的列类型（列名 → 小写数据库类型名），列名保留原始大小写
+     */
+    private Map<String, String> getColumnTypes(String tableName) {
+        ResultSetExtractor<Map<String, String>> extractor = rs -> {
+            Map<String, String> types = new HashMap<>();
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                types.put(metaData.getColumnName(i), metaData.getColumnTypeName(i).toLowerCase());
+            }
+            return types;
+        };
+        return jdbcTemplate.query("SELECT * FROM " + tableName + " WHERE 1 = 0", extractor);
+    }
+
+    private String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
     }
 
     /**
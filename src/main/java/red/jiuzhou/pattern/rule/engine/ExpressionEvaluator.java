@@ -1,56 +1,119 @@
 package red.jiuzhou.pattern.rule.engine;
 
-import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import red.jiuzhou.pattern.rule.model.FieldModification;
 
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * 表达式求值器
  *
  * 基于 Spring Expression Language (SpEL) 实现
  * 支持设计师友好的表达式语法
+ *
+ * 性能要点：
+ * - 表达式按 SpEL 文本缓存，只解析一次；解析器使用 MIXED 编译模式，热点表达式会编译为字节码，编译失败自动回退解释执行
+ * - 求值上下文每线程一个，自定义函数只注册一次；记录字段不再逐个 setVariable，而是按需从当前记录读取
+ * - 实例线程安全，可在并行流中共享
  */
 public class ExpressionEvaluator {
 
-    private final ExpressionParser parser = new SpelExpressionParser();
+    private final ExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, ExpressionEvaluator.class.getClassLoader()));
+
+    /** SpEL 文本 → 已解析（可编译）的表达式 */
+    private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
+
+    /** 每线程复用的求值上下文 */
+    private final ThreadLocal<RecordEvaluationContext> contexts = ThreadLocal.withInitial(RecordEvaluationContext::new);
+
+    /** 只包含 #current、数字字面量与四则运算的表达式，可直接下推为 SQL */
+    private static final Pattern ARITHMETIC_ONLY = Pattern.compile("^[\\s\\d.+\\-*/()]+$");
+    private static final Pattern CURRENT_VARIABLE = Pattern.compile("#current\\b");
+
+    private static final Method CLAMP;
+    private static final Method PERCENT_CHANGE;
+    private static final Method ROUND_TO;
+    static {
+        try {
+            CLAMP = ExpressionEvaluator.class.getDeclaredMethod("clamp", double.class, double.class, double.class);
+            PERCENT_CHANGE = ExpressionEvaluator.class.getDeclaredMethod("percentChange", double.class, double.class);
+            ROUND_TO = ExpressionEvaluator.class.getDeclaredMethod("roundTo", double.class, int.class);
+        } catch (NoSuchMethodException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     /**
-     * 计算表达式
+     * 预编译字段修改规则，同一条规则对多条记录求值时只需编译一次
      *
      * @param modification 字段修改规则
-     * @param record 当前记录数据
-     * @return 计算结果
+     * @return 编译结果，表达式为空时返回 null
      */
-    public Object evaluate(FieldModification modification, Map<String, Object> record) {
+    public CompiledModification compile(FieldModification modification) {
         String spelExpr = modification.toSpelExpression();
         if (spelExpr == null || spelExpr.isEmpty()) {
             return null;
         }
+        return new CompiledModification(modification.getFieldName(), spelExpr, parse(spelExpr));
+    }
 
-        // 获取当前字段值
-        Object currentValue = record.get(modification.getFieldName());
-
-        // 构建求值上下文
-        StandardEvaluationContext context = createContext(currentValue, record);
-
+    /**
+     * 使用预编译的规则计算表达式
+     *
+     * @param compiled 预编译规则
+     * @param record 当前记录数据
+     * @return 计算结果
+     */
+    public Object evaluate(CompiledModification compiled, Map<String, Object> record) {
+        Object currentValue = record.get(compiled.getFieldName());
+        RecordEvaluationContext context = contexts.get();
+        context.bind(toNumber(currentValue), record);
         try {
-            Expression expression = parser.parseExpression(spelExpr);
-            Object result = expression.getValue(context);
-
-            // 处理数值类型转换
+            Object result = compiled.expression.getValue(context);
             return normalizeResult(result, currentValue);
         } catch (Exception e) {
             throw new ExpressionEvaluationException(
-                "表达式求值失败: " + spelExpr + ", 错误: " + e.getMessage(), e);
+                "表达式求值失败: " + compiled.getSpel() + ", 错误: " + e.getMessage(), e);
+        } finally {
+            context.bind(null, null);
+        }
+    }
+
+    private Expression parse(String spelExpr) {
+        try {
+            return expressionCache.computeIfAbsent(spelExpr, parser::parseExpression);
+        } catch (Exception e) {
+            throw new ExpressionEvaluationException(
+                "表达式解析失败: " + spelExpr + ", 错误: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 计算表达式
+     *
+     * @param modification 字段修改规则
+     * @param record 当前记录数据
+     * @return 计算结果
+     */
+    public Object evaluate(FieldModification modification, Map<String, Object> record) {
+        CompiledModification compiled = compile(modification);
+        if (compiled == null) {
+            return null;
         }
+        return evaluate(compiled, record);
     }
 
     /**
@@ -73,46 +136,43 @@ public class ExpressionEvaluator {
     }
 
     /**
-     * 创建SpEL求值上下文
+     * 每线程复用的求值上下文
+     *
+     * #current / #当前值 为当前字段的数值，其余变量按需从当前记录读取（字段名中的 "-" 可写作 "_"），
+     * 自定义函数在创建时注册一次
      */
-    private StandardEvaluationContext createContext(Object currentValue, Map<String, Object> record) {
-        StandardEvaluationContext context = new StandardEvaluationContext();
-
-        // 设置当前值变量
-        context.setVariable("current", toNumber(currentValue));
-        context.setVariable("当前值", toNumber(currentValue));
-
-        // 设置记录中的所有字段为变量
-        for (Map.Entry<String, Object> entry : record.entrySet()) {
-            String varName = sanitizeVariableName(entry.getKey());
-            context.setVariable(varName, entry.getValue());
-        }
-
-        // 注册自定义函数
-        registerCustomFunctions(context);
-
-        return context;
-    }
+    private static final class RecordEvaluationContext extends StandardEvaluationContext {
+        private Object current;
+        private Map<String, Object> record;
 
-    /**
-     * 注册自定义函数
-     */
-    private void registerCustomFunctions(StandardEvaluationContext context) {
-        try {
+        RecordEvaluationContext() {
             // CLAMP(value, min, max)
-            context.registerFunction("CLAMP",
-                ExpressionEvaluator.class.getDeclaredMethod("clamp", double.class, double.class, double.class));
-
+            registerFunction("CLAMP", CLAMP);
             // PERCENT_CHANGE(base, percent) - 增加/减少百分比
-            context.registerFunction("PERCENT_CHANGE",
-                ExpressionEvaluator.class.getDeclaredMethod("percentChange", double.class, double.class));
-
+            registerFunction("PERCENT_CHANGE", PERCENT_CHANGE);
             // ROUND(value, decimals)
-            context.registerFunction("ROUND_TO",
-                ExpressionEvaluator.class.getDeclaredMethod("roundTo", double.class, int.class));
+            registerFunction("ROUND_TO", ROUND_TO);
+        }
 
-        } catch (NoSuchMethodException e) {
-            // 忽略，自定义函数可选
+        void bind(Object current, Map<String, Object> record) {
+            this.current = current;
+            this.record = record;
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            if ("current".equals(name) || "当前值".equals(name)) {
+                return current;
+            }
+            Object function = super.lookupVariable(name);
+            if (function != null || record == null) {
+                return function;
+            }
+            Object value = record.get(name);
+            if (value == null && name.indexOf('_') >= 0) {
+                value = record.get(name.replace("_", "-"));
+            }
+            return value;
         }
     }
 
@@ -142,8 +202,11 @@ public class ExpressionEvaluator {
         if (result instanceof Number) {
             double doubleResult = ((Number) result).doubleValue();
 
+            if (originalValue instanceof Short) {
+                return (short) roundInRange(doubleResult, Short.MIN_VALUE, Short.MAX_VALUE, "smallint");
+            }
             if (originalValue instanceof Integer) {
-                return (int) Math.round(doubleResult);
+                return (int) roundInRange(doubleResult, Integer.MIN_VALUE, Integer.MAX_VALUE, "integer");
             }
             if (originalValue instanceof Long) {
                 return Math.round(doubleResult);
@@ -166,11 +229,14 @@ public class ExpressionEvaluator {
     }
 
     /**
-     * 清理变量名（移除特殊字符）
+     * 四舍五入到整数，超出目标类型范围时抛出异常（不截断）
      */
-    private String sanitizeVariableName(String name) {
-        // 将下划线转驼峰，便于在表达式中使用
-        return name.replace("-", "_");
+    private static long roundInRange(double value, long min, long max, String typeName) {
+        if (Double.isNaN(value) || value < min - 0.5 || value >= max + 0.5) {
+            throw new ExpressionEvaluationException(
+                    String.format("计算结果 %s 超出 %s 范围 [%d, %d]", value, typeName, min, max));
+        }
+        return Math.round(value);
     }
 
     // ========== 自定义函数 ==========
@@ -199,6 +265,47 @@ public class ExpressionEvaluator {
         return Math.round(value * factor) / factor;
     }
 
+    /**
+     * 预编译的字段修改规则
+     */
+    public static final class CompiledModification {
+        private final String fieldName;
+        private final String spel;
+        private final Expression expression;
+
+        CompiledModification(String fieldName, String spel, Expression expression) {
+            this.fieldName = fieldName;
+            this.spel = spel;
+            this.expression = expression;
+        }
+
+        public String getFieldName() { return fieldName; }
+
+        public String getSpel() { return spel; }
+
+        /**
+         * 是否为只含 #current、数字字面量与四则运算的简单算术表达式
+         */
+        public boolean isSimpleArithmetic() {
+            return CURRENT_VARIABLE.matcher(spel).find()
+                    && ARITHMETIC_ONLY.matcher(CURRENT_VARIABLE.matcher(spel).replaceAll("0")).matches();
+        }
+
+        /**
+         * 转换为 SQL 算术表达式（按 float8 计算，与 Java double 一致；空值按 0 处理，与 #current 的取值规则一致）
+         *
+         * @param columnSql 当前字段在 SQL 中的引用
+         * @return SQL 表达式，非简单算术表达式时返回 null
+         */
+        public String toSqlArithmetic(String columnSql) {
+            if (!isSimpleArithmetic()) {
+                return null;
+            }
+            return "(" + CURRENT_VARIABLE.matcher(spel)
+                    .replaceAll(Matcher.quoteReplacement("COALESCE(CAST(" + columnSql + " AS float8), 0)")) + ")";
+        }
+    }
+
     /**
      * 表达式求值异常
      */
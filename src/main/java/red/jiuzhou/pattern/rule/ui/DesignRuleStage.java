@@ -14,9 +14,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 import red.jiuzhou.analysis.aion.AionMechanismCategory;
+import red.jiuzhou.analysis.aion.MechanismRelationshipService;
 import red.jiuzhou.pattern.rule.engine.DesignRuleEngine;
 import red.jiuzhou.pattern.rule.model.*;
 import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.SpringContextHolder;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -38,6 +40,9 @@ public class DesignRuleStage extends Stage {
     private final JdbcTemplate jdbcTemplate;
     private final DesignRuleEngine engine;
 
+    /** 影响分析器的后台加载任务（首次需读取关系报告），预览/执行不等待它完成 */
+    private CompletableFuture<MechanismRelationshipService> impactAnalyzerLoad;
+
     /**
      * 无参构造函数，使用DatabaseUtil获取JdbcTemplate
      */
@@ -108,6 +113,7 @@ public class DesignRuleStage extends Stage {
         this.engine = new DesignRuleEngine(jdbcTemplate);
         initUI();
         initNewRule();
+        loadImpactAnalyzerAsync();
     }
 
     private void initUI() {
@@ -761,6 +767,37 @@ public class DesignRuleStage extends Stage {
         return rule;
     }
 
+    /**
+     * 后台加载共享的影响分析器（关系图窗口与本工作台共用 Spring 管理的 MechanismRelationshipService）
+     */
+    private void loadImpactAnalyzerAsync() {
+        impactAnalyzerLoad = CompletableFuture.supplyAsync(() -> {
+            MechanismRelationshipService service = SpringContextHolder.getBean(MechanismRelationshipService.class);
+            service.loadImpactAnalyzer();
+            return service;
+        });
+        impactAnalyzerLoad.exceptionally(e -> {
+            log.warn("加载影响分析器失败，预览不检查引用: {}", e.getMessage());
+            return null;
+        });
+    }
+
+    /**
+     * 挂接影响分析器，预览时检查被修改的原值是否被其他表引用；尚未加载完成时本次预览不检查，不阻塞
+     */
+    private void attachImpactAnalyzer() {
+        if (impactAnalyzerLoad == null || !impactAnalyzerLoad.isDone() || impactAnalyzerLoad.isCompletedExceptionally()) {
+            log.info("影响分析器尚未加载完成，本次不检查引用");
+            engine.setImpactAnalyzer(null);
+            return;
+        }
+        try {
+            engine.setImpactAnalyzer(impactAnalyzerLoad.join().getImpactAnalyzer());
+        } catch (Exception e) {
+            log.warn("获取影响分析器失败，预览不检查引用: {}", e.getMessage());
+        }
+    }
+
     private void doPreview() {
         DesignRule rule = buildRuleFromUI();
 
@@ -774,6 +811,7 @@ public class DesignRuleStage extends Stage {
         previewBtn.setText("预览中...");
 
         CompletableFuture.runAsync(() -> {
+            attachImpactAnalyzer();
             PreviewResult result = engine.preview(rule);
 
             Platform.runLater(() -> {
@@ -840,6 +878,7 @@ public class DesignRuleStage extends Stage {
             executeBtn.setText("执行中...");
 
             CompletableFuture.runAsync(() -> {
+                attachImpactAnalyzer();
                 ExecutionResult execResult = engine.execute(currentRule);
 
                 Platform.runLater(() -> {
@@ -0,0 +1,184 @@
+package red.jiuzhou.relationship;
+
+import java.util.Arrays;
+
+/**
+ * Compact open-addressing set of primitive {@code long} values.
+ *
+ * <p>Used to hold 64-bit hashes of column values: roughly 16 bytes per value instead of a boxed
+ * {@code String} entry in a {@code HashSet}. Not thread-safe.</p>
+ */
+final class LongHashSet {
+
+    private static final long EMPTY = 0L;
+
+    private long[] table;
+    private int size;
+    private boolean containsEmpty;
+
+    LongHashSet() {
+        this(16);
+    }
+
+    LongHashSet(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+        table = new long[capacity];
+    }
+
+    boolean add(long value) {
+        if (value == EMPTY) {
+            if (containsEmpty) {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        while (table[slot] != EMPTY) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        size++;
+        if (size * 2 > table.length) {
+            rehash(table.length << 1);
+        }
+        return true;
+    }
+
+    boolean contains(long value) {
+        if (value == EMPTY) {
+            return containsEmpty;
+        }
+        int mask = table.length - 1;
+        int slot = mix(value) & mask;
+        long current;
+        while ((current = table[slot]) != EMPTY) {
+            if (current == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of values of this set that are also contained in {@code other}.
+     */
+    int countContainedIn(LongHashSet other) {
+        int count = containsEmpty && other.containsEmpty ? 1 : 0;
+        for (long value : table) {
+            if (value != EMPTY && other.contains(value)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * All values in table order (for persistence; rebuild with {@link #add(long)}).
+     */
+    long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (containsEmpty) {
+            values[i++] = EMPTY;
+        }
+        for (long value : table) {
+            if (value != EMPTY) {
+                values[i++] = value;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The {@code k} smallest values in ascending order (a bottom-k sketch when the values are hashes).
+     */
+    long[] smallest(int k) {
+        int limit = Math.min(k, size);
+        long[] heap = new long[limit];   // max-heap of the smallest values seen so far
+        int filled = 0;
+        if (containsEmpty && limit > 0) {
+            heap[filled++] = EMPTY;
+            siftUp(heap, filled - 1);
+        }
+        for (long value : table) {
+            if (value == EMPTY) {
+                continue;
+            }
+            if (filled < limit) {
+                heap[filled++] = value;
+                siftUp(heap, filled - 1);
+            } else if (limit > 0 && value < heap[0]) {
+                heap[0] = value;
+                siftDown(heap, 0, filled);
+            }
+        }
+        Arrays.sort(heap, 0, filled);
+        return filled == heap.length ? heap : Arrays.copyOf(heap, filled);
+    }
+
+    private void rehash(int capacity) {
+        long[] old = table;
+        table = new long[capacity];
+        int mask = capacity - 1;
+        for (long value : old) {
+            if (value == EMPTY) {
+                continue;
+            }
+            int slot = mix(value) & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+        }
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void siftUp(long[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent] >= heap[index]) {
+                return;
+            }
+            long tmp = heap[parent];
+            heap[parent] = heap[index];
+            heap[index] = tmp;
+            index = parent;
+        }
+    }
+
+    private static void siftDown(long[] heap, int index, int size) {
+        while (true) {
+            int left = index * 2 + 1;
+            if (left >= size) {
+                return;
+            }
+            int largest = left + 1 < size && heap[left + 1] > heap[left] ? left + 1 : left;
+            if (heap[index] >= heap[largest]) {
+                return;
+            }
+            long tmp = heap[index];
+            heap[index] = heap[largest];
+            heap[largest] = tmp;
+            index = largest;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package red.jiuzhou.relationship;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.relationship.XmlRelationshipAnalyzer.ColumnCollector;
+import red.jiuzhou.relationship.XmlRelationshipAnalyzer.ColumnKey;
+import red.jiuzhou.relationship.XmlRelationshipAnalyzer.Relationship;
+import red.jiuzhou.util.YamlUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent per-file column state for {@link XmlRelationshipAnalyzer#analyzeIncremental}.
+ *
+ * <p>For every XML file the store keeps its modification time, size, content hash and collected
+ * columns (value hash sets and leading values, from which the bottom-k sketches are derived). The
+ * columns survive restarts in a gzip file below {@code relationship.column-store-dir}; the detected
+ * relationships of the last run are kept in memory only. A change of the analyser configuration or
+ * of the sketch parameters discards everything.</p>
+ *
+ * <p>One instance per set of base directories is shared in-process; callers synchronise on it.</p>
+ */
+final class RelationshipColumnStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RelationshipColumnStore.class);
+
+    private static final int MAGIC = 0x4A5A5243;   // "JZRC"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Map<String, RelationshipColumnStore> INSTANCES = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private String fingerprint = "";
+    private Map<String, FileColumns> files = new LinkedHashMap<>();
+    private Map<ColumnKey, List<Relationship>> relationships;
+    private boolean loaded;
+
+    /**
+     * Collected columns of one XML file, keyed by its absolute path.
+     */
+    static final class FileColumns {
+        final String path;
+        final String fileKey;
+        final long modified;
+        final long size;
+        final String contentHash;
+        final List<ColumnCollector> columns;
+
+        FileColumns(String path, String fileKey, long modified, long size, String contentHash,
+                    List<ColumnCollector> columns) {
+            this.path = path;
+            this.fileKey = fileKey;
+            this.modified = modified;
+            this.size = size;
+            this.contentHash = contentHash;
+            this.columns = columns;
+        }
+
+        /**
+         * Same columns for a file that was touched but whose content did not change.
+         */
+        FileColumns withTimestamp(long modified, long size) {
+            return new FileColumns(path, fileKey, modified, size, contentHash, columns);
+        }
+    }
+
+    private RelationshipColumnStore(Path file) {
+        this.file = file;
+    }
+
+    static RelationshipColumnStore forDirectories(List<Path> baseDirs) {
+        String key = baseDirs.stream()
+            .map(dir -> dir.toAbsolutePath().normalize().toString())
+            .collect(Collectors.joining("|"));
+        return INSTANCES.computeIfAbsent(key, k -> {
+            String dir = YamlUtils.getProperty("application.yml", "relationship.column-store-dir", "cache/relationship-columns");
+            return new RelationshipColumnStore(Paths.get(dir, DigestUtil.md5Hex(k) + ".bin"));
+        });
+    }
+
+    static String contentHash(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtil.md5Hex(in);
+        } catch (IOException e) {
+            log.warn("Failed to hash XML file: {}", file, e);
+            return "";
+        }
+    }
+
+    /**
+     * Load the stored columns on first use and drop them when the configuration fingerprint differs.
+     */
+    void open(String configFingerprint) {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+        if (!configFingerprint.equals(fingerprint)) {
+            if (!files.isEmpty()) {
+                log.info("Relationship analyser configuration changed, discarding {} stored files", files.size());
+            }
+            files = new LinkedHashMap<>();
+            relationships = null;
+            fingerprint = configFingerprint;
+        }
+    }
+
+    FileColumns get(String path) {
+        return files.get(path);
+    }
+
+    Collection<FileColumns> files() {
+        return Collections.unmodifiableCollection(files.values());
+    }
+
+    /**
+     * Relationships of the previous run grouped by source column, or {@code null} if there was none
+     * in this process.
+     */
+    Map<ColumnKey, List<Relationship>> getRelationships() {
+        return relationships;
+    }
+
+    /**
+     * Replace the stored state with the result of a run (removed files drop out) and write it to
+     * disk when any file was added, changed or removed.
+     */
+    void replace(List<FileColumns> scanned, Map<ColumnKey, List<Relationship>> relationships, boolean changed) {
+        Map<String, FileColumns> map = new LinkedHashMap<>(scanned.size() * 2);
+        for (FileColumns entry : scanned) {
+            map.put(entry.path, entry);
+        }
+        files = map;
+        this.relationships = relationships;
+        if (changed) {
+            save();
+        }
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(file)), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.info("Relationship column store format mismatch, ignoring {}", file);
+                return;
+            }
+            String storedFingerprint = in.readUTF();
+            int fileCount = in.readInt();
+            Map<String, FileColumns> map = new LinkedHashMap<>(fileCount * 2);
+            for (int i = 0; i < fileCount; i++) {
+                String path = in.readUTF();
+                String fileKey = in.readUTF();
+                long modified = in.readLong();
+                long size = in.readLong();
+                String contentHash = in.readUTF();
+                String fileName = XmlRelationshipAnalyzer.baseFileName(Paths.get(path));
+                int columnCount = in.readInt();
+                List<ColumnCollector> columns = new ArrayList<>(columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    columns.add(ColumnCollector.readFrom(in, fileKey, fileName));
+                }
+                map.put(path, new FileColumns(path, fileKey, modified, size, contentHash, columns));
+            }
+            fingerprint = storedFingerprint;
+            files = map;
+            log.info("Loaded relationship column store: {} files", map.size());
+        } catch (IOException e) {
+            log.warn("Failed to read relationship column store, all files will be parsed: {}", e.getMessage());
+        }
+    }
+
+    private void save() {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(Files.newOutputStream(tmp)), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(fingerprint);
+                out.writeInt(files.size());
+                for (FileColumns entry : files.values()) {
+                    out.writeUTF(entry.path);
+                    out.writeUTF(entry.fileKey);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.size);
+                    out.writeUTF(entry.contentHash);
+                    out.writeInt(entry.columns.size());
+                    for (ColumnCollector column : entry.columns) {
+                        column.writeTo(out);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to save relationship column store: {}", e.getMessage());
+        }
+    }
+}
@@ -1,34 +1,37 @@
 package red.jiuzhou.relationship;
 
 import cn.hutool.core.io.FileUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.serializer.SerializerFeature;
-import org.dom4j.Attribute;
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.StringUtils;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.InputSource;
 
 import red.jiuzhou.util.DatabaseUtil;
 import red.jiuzhou.util.YamlUtils;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.StringReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -38,9 +41,11 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Analyse XML datasets to detect value-based relationships between columns across files.
@@ -53,6 +58,16 @@ public final class XmlRelationshipAnalyzer {
 
     private static final Logger log = LoggerFactory.getLogger(XmlRelationshipAnalyzer.class);
 
+    /** bottom-k sketch size used for the containment pre-check */
+    private static final int SKETCH_SIZE = 128;
+    /** slack below {@code minSourceCoverage} accepted from the sketch estimate before exact counting */
+    private static final double SKETCH_COVERAGE_TOLERANCE = 0.15;
+    /** distinct values kept verbatim per column for samples */
+    private static final int LEADING_VALUE_LIMIT = 64;
+
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY =
+        ThreadLocal.withInitial(XmlRelationshipAnalyzer::buildSafeInputFactory);
+
     private XmlRelationshipAnalyzer() {
     }
 
@@ -72,8 +87,8 @@ public final class XmlRelationshipAnalyzer {
 
         List<Path> baseDirs = parseConfiguredPaths(configuredPaths);
         AnalyzerConfig config = AnalyzerConfig.defaultConfig();
-        RelationshipReport report = analyze(baseDirs, config, null);
-        persistReport(report);
+        RelationshipReport report = analyzeIncremental(baseDirs, config, null);
+        persistReportIfChanged(report);
         return report;
     }
 
@@ -90,8 +105,8 @@ public final class XmlRelationshipAnalyzer {
         }
 
         List<Path> baseDirs = parseConfiguredPaths(configuredPaths);
-        RelationshipReport report = analyze(baseDirs, config, options);
-        persistReport(report);
+        RelationshipReport report = analyzeIncremental(baseDirs, config, options);
+        persistReportIfChanged(report);
         return report;
     }
 
@@ -117,12 +132,173 @@ public final class XmlRelationshipAnalyzer {
             .filter(column -> column.isLikelyKey(config))
             .collect(Collectors.toList());
 
-        Map<String, List<ColumnCollector>> valueIndex = buildValueIndex(keyColumns, config, options);
-        List<Relationship> relationships = detectRelationships(allColumns, keyColumns, valueIndex, config, options);
+        List<Relationship> relationships = detectRelationships(allColumns, keyColumns, config, options);
 
         return new RelationshipReport(baseDirs, config, allColumns, keyColumns, relationships);
     }
 
+    /**
+     * Analyse {@code baseDirs} against the persistent {@link RelationshipColumnStore}.
+     *
+     * <p>A file whose modification time and size are unchanged, or whose content hash still matches,
+     * reuses its stored columns; only new or edited files are parsed. When relationships from an
+     * earlier run are held in memory, only the pairs touching a changed file are scored again: sources
+     * in changed files are matched against every key column, other sources keep their relationships
+     * to unchanged files and are matched against the changed files' key columns only. A source whose
+     * earlier list was cut at {@code maxRelationshipsPerSource} and lost an entry is matched in full,
+     * since a candidate dropped by the cut may now qualify. The result equals a full {@link #analyze}.</p>
+     */
+    public static RelationshipReport analyzeIncremental(List<Path> baseDirs,
+                                                        AnalyzerConfig config,
+                                                        AnalysisOptions options) {
+        Objects.requireNonNull(config, "config must not be null");
+        if (baseDirs == null || baseDirs.isEmpty()) {
+            return RelationshipReport.empty(Collections.emptyList(), config);
+        }
+
+        RelationshipColumnStore store = RelationshipColumnStore.forDirectories(baseDirs);
+        synchronized (store) {
+            store.open(configFingerprint(config));
+            List<Path[]> files = listXmlFiles(baseDirs, options);
+            List<RelationshipColumnStore.FileColumns> scanned = files.parallelStream()
+                .map(entry -> {
+                    checkCancellation(options);
+                    return resolveFile(store, entry[0], entry[1], config, options);
+                })
+                .collect(Collectors.toList());
+
+            Set<String> changedFiles = new LinkedHashSet<>();
+            Set<String> scannedPaths = new HashSet<>();
+            boolean storeChanged = false;
+            Map<ColumnKey, ColumnCollector> collectors = new LinkedHashMap<>();
+            for (RelationshipColumnStore.FileColumns file : scanned) {
+                scannedPaths.add(file.path);
+                RelationshipColumnStore.FileColumns stored = store.get(file.path);
+                if (stored == null || stored.columns != file.columns) {
+                    changedFiles.add(file.fileKey);
+                }
+                storeChanged |= stored != file;
+                for (ColumnCollector column : file.columns) {
+                    collectors.put(column.getKey(), column);
+                }
+            }
+            for (RelationshipColumnStore.FileColumns stored : store.files()) {
+                if (!scannedPaths.contains(stored.path)) {
+                    changedFiles.add(stored.fileKey);
+                    storeChanged = true;
+                }
+            }
+
+            List<ColumnCollector> allColumns = new ArrayList<>(collectors.values());
+            allColumns.parallelStream()
+                .filter(column -> !column.isPrepared())
+                .forEach(column -> column.prepare(config));
+            List<ColumnCollector> keyColumns = allColumns.stream()
+                .filter(column -> column.isLikelyKey(config))
+                .collect(Collectors.toList());
+
+            Map<ColumnKey, List<Relationship>> previous = store.getRelationships();
+            Map<ColumnKey, List<Relationship>> relationships;
+            Set<String> affectedFiles = ConcurrentHashMap.newKeySet();
+            affectedFiles.addAll(changedFiles);
+            if (previous == null) {
+                List<ColumnCollector> targets = relationshipTargets(keyColumns);
+                relationships = bySource(allColumns, allColumns.parallelStream()
+                    .map(source -> detectForSource(source, targets, config, options))
+                    .collect(Collectors.toList()));
+            } else if (changedFiles.isEmpty()) {
+                relationships = previous;
+            } else {
+                relationships = rescoreChanged(allColumns, keyColumns, previous, changedFiles, affectedFiles,
+                    config, options);
+            }
+
+            store.replace(scanned, relationships, storeChanged);
+            log.info("Incremental relationship analysis: {} files, {} changed, {}",
+                scanned.size(), changedFiles.size(), previous == null ? "full scoring" : "partial scoring");
+            return new RelationshipReport(baseDirs, config, allColumns, keyColumns,
+                flattenRelationships(relationships), changedFiles, affectedFiles, previous != null);
+        }
+    }
+
+    /**
+     * Stored columns for an unchanged file, otherwise a fresh parse.
+     */
+    private static RelationshipColumnStore.FileColumns resolveFile(RelationshipColumnStore store,
+                                                                   Path baseDir,
+                                                                   Path file,
+                                                                   AnalyzerConfig config,
+                                                                   AnalysisOptions options) {
+        String path = file.toAbsolutePath().normalize().toString();
+        RelationshipColumnStore.FileColumns stored = store.get(path);
+        long modified;
+        long size;
+        try {
+            modified = Files.getLastModifiedTime(file).toMillis();
+            size = Files.size(file);
+        } catch (IOException e) {
+            log.warn("Failed to stat XML file: {}", file, e);
+            modified = -1L;
+            size = -1L;
+        }
+        if (stored != null && stored.modified == modified && stored.size == size) {
+            return stored;
+        }
+
+        String contentHash = RelationshipColumnStore.contentHash(file);
+        if (stored != null && stored.contentHash.equals(contentHash)) {
+            return stored.withTimestamp(modified, size);
+        }
+
+        notifyProgress(options, file);
+        return new RelationshipColumnStore.FileColumns(path, buildFileKey(baseDir, file), modified, size,
+            contentHash, new ArrayList<>(parseFile(baseDir, file, config, options).values()));
+    }
+
+    private static Map<ColumnKey, List<Relationship>> rescoreChanged(List<ColumnCollector> allColumns,
+                                                                     List<ColumnCollector> keyColumns,
+                                                                     Map<ColumnKey, List<Relationship>> previous,
+                                                                     Set<String> changedFiles,
+                                                                     Set<String> affectedFiles,
+                                                                     AnalyzerConfig config,
+                                                                     AnalysisOptions options) {
+        List<ColumnCollector> targets = relationshipTargets(keyColumns);
+        List<ColumnCollector> changedTargets = targets.stream()
+            .filter(column -> changedFiles.contains(column.getFileKey()))
+            .collect(Collectors.toList());
+
+        return bySource(allColumns, allColumns.parallelStream()
+            .map(source -> {
+                if (changedFiles.contains(source.getFileKey())) {
+                    return detectForSource(source, targets, config, options);
+                }
+                List<Relationship> earlier = previous.getOrDefault(source.getKey(), Collections.emptyList());
+                List<Relationship> kept = earlier.stream()
+                    .filter(relationship -> !changedFiles.contains(relationship.getTargetFileKey()))
+                    .collect(Collectors.toList());
+                if (kept.size() < earlier.size() && isTruncated(earlier.size(), config)) {
+                    // the cut may now admit or drop relationships to unchanged files as well
+                    affectedFiles.add(source.getFileKey());
+                    return detectForSource(source, targets, config, options);
+                }
+                if (changedTargets.isEmpty()) {
+                    return kept;
+                }
+                int keptCount = kept.size();
+                kept.addAll(detectForSource(source, changedTargets, config, options));
+                if (kept.size() > keptCount && isTruncated(kept.size(), config)) {
+                    affectedFiles.add(source.getFileKey());
+                }
+                return limitPerSource(kept, config);
+            })
+            .collect(Collectors.toList()));
+    }
+
+    private static String configFingerprint(AnalyzerConfig config) {
+        return DigestUtil.md5Hex(JSON.toJSONString(config.toMap())
+            + "|" + SKETCH_SIZE + "|" + LEADING_VALUE_LIMIT);
+    }
+
     /**
      * Convert the comma-separated configuration string into existing directories.
      */
@@ -143,62 +319,119 @@ public final class XmlRelationshipAnalyzer {
         return paths;
     }
 
+    /**
+     * Collect column values from every XML file. Files are parsed in parallel, each with a
+     * thread-local StAX reader, and values are kept as 64-bit hashes rather than strings.
+     */
     private static Map<ColumnKey, ColumnCollector> collectColumns(List<Path> baseDirs,
                                                                   AnalyzerConfig config,
                                                                   AnalysisOptions options) {
+        List<Path[]> files = listXmlFiles(baseDirs, options);
+
+        List<Map<ColumnKey, ColumnCollector>> perFile = files.parallelStream()
+            .map(entry -> {
+                checkCancellation(options);
+                notifyProgress(options, entry[1]);
+                return parseFile(entry[0], entry[1], config, options);
+            })
+            .collect(Collectors.toList());
+
+        // column keys include the file key, so per-file results never collide; merge in walk order
         Map<ColumnKey, ColumnCollector> collectors = new LinkedHashMap<>();
-        SAXReader reader = buildSafeSaxReader();
+        for (Map<ColumnKey, ColumnCollector> fileColumns : perFile) {
+            collectors.putAll(fileColumns);
+        }
+        return collectors;
+    }
 
+    /**
+     * XML files below each base directory, as {@code {baseDir, file}} pairs in walk order.
+     */
+    private static List<Path[]> listXmlFiles(List<Path> baseDirs, AnalysisOptions options) {
+        List<Path[]> files = new ArrayList<>();
         for (Path baseDir : baseDirs) {
             checkCancellation(options);
-            try {
-                Files.walk(baseDir)
-                    .filter(path -> Files.isRegularFile(path) && path.toString().toLowerCase(Locale.ROOT).endsWith(".xml"))
-                    .forEach(path -> {
-                        checkCancellation(options);
-                        notifyProgress(options, path);
-                        parseFile(reader, baseDir, path, collectors, config, options);
-                    });
-            } catch (AnalysisCancelledException cancel) {
-                throw cancel;
+            try (Stream<Path> walk = Files.walk(baseDir)) {
+                walk.filter(path -> Files.isRegularFile(path) && path.toString().toLowerCase(Locale.ROOT).endsWith(".xml"))
+                    .forEach(path -> files.add(new Path[]{baseDir, path}));
             } catch (Exception e) {
                 log.warn("Failed to walk directory {}", baseDir, e);
             }
         }
-
-        return collectors;
+        return files;
     }
 
-    private static SAXReader buildSafeSaxReader() {
-        SAXReader reader = new SAXReader();
-        reader.setValidation(false);
-        reader.setEntityResolver(getEmptyEntityResolver());
-        return reader;
+    private static XMLInputFactory buildSafeInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
     }
 
-    private static EntityResolver getEmptyEntityResolver() {
-        return (publicId, systemId) -> new InputSource(new StringReader(""));
-    }
+    /**
+     * Stream a single file. Mirrors the former DOM traversal: every attribute becomes a column
+     * ({@code path/@name}) and every element without child elements contributes its direct text
+     * to the column {@code path}. A file that fails to parse contributes nothing.
+     */
+    private static Map<ColumnKey, ColumnCollector> parseFile(Path baseDir,
+                                                             Path file,
+                                                             AnalyzerConfig config,
+                                                             AnalysisOptions options) {
+        Map<ColumnKey, ColumnCollector> collectors = new LinkedHashMap<>();
+        String fileKey = buildFileKey(baseDir, file);
+        ColumnTraversalContext context = new ColumnTraversalContext(fileKey, file);
 
-    private static void parseFile(SAXReader reader,
-                                  Path baseDir,
-                                  Path file,
-                                  Map<ColumnKey, ColumnCollector> collectors,
-                                  AnalyzerConfig config,
-                                  AnalysisOptions options) {
-        checkCancellation(options);
-        try {
-            Document document = reader.read(file.toFile());
-            Element root = document.getRootElement();
-            if (root == null) {
-                return;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                Deque<ElementFrame> stack = new ArrayDeque<>();
+                int elementCount = 0;
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        if ((++elementCount & 0x3FF) == 0) {
+                            checkCancellation(options);
+                        }
+                        ElementFrame parent = stack.peek();
+                        String name = reader.getLocalName();
+                        String path = parent == null ? name : parent.path + "/" + name;
+                        if (parent != null) {
+                            parent.text = null;
+                        }
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            String attributeName = reader.getAttributeLocalName(i);
+                            ColumnKey key = new ColumnKey(fileKey, path + "/@" + attributeName);
+                            collectors.computeIfAbsent(key,
+                                k -> new ColumnCollector(k, context, attributeName, true))
+                                .addValue(reader.getAttributeValue(i), config);
+                        }
+                        stack.push(new ElementFrame(name, path));
+                    } else if (event == XMLStreamConstants.CHARACTERS
+                        || event == XMLStreamConstants.CDATA
+                        || event == XMLStreamConstants.SPACE) {
+                        ElementFrame current = stack.peek();
+                        if (current != null && current.text != null) {
+                            current.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        ElementFrame frame = stack.pop();
+                        if (frame.text != null) {
+                            ColumnKey key = new ColumnKey(fileKey, frame.path);
+                            collectors.computeIfAbsent(key,
+                                k -> new ColumnCollector(k, context, frame.name, false))
+                                .addValue(frame.text.toString(), config);
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
             }
-            String fileKey = buildFileKey(baseDir, file);
-            ColumnTraversalContext context = new ColumnTraversalContext(fileKey, file);
-            traverseElement(root, root.getName(), context, collectors, config, options);
-        } catch (DocumentException e) {
+        } catch (XMLStreamException | IOException e) {
             log.warn("Failed to parse XML file: {}", file, e);
+            return Collections.emptyMap();
         }
+        return collectors;
     }
 
     private static String buildFileKey(Path baseDir, Path file) {
@@ -211,62 +444,36 @@ public final class XmlRelationshipAnalyzer {
         return relative.toString().replace(File.separatorChar, '/');
     }
 
-    private static void traverseElement(Element element,
-                                        String currentPath,
-                                        ColumnTraversalContext context,
-                                        Map<ColumnKey, ColumnCollector> collectors,
-                                        AnalyzerConfig config,
-                                        AnalysisOptions options) {
-        checkCancellation(options);
-        if (element == null) {
-            return;
-        }
-
-        // record attributes for this element
-        for (Attribute attribute : element.attributes()) {
-            if (attribute == null) {
-                continue;
-            }
-            ColumnKey key = new ColumnKey(context.fileKey,
-                currentPath + "/@" + attribute.getName());
-            ColumnCollector collector = collectors.computeIfAbsent(key,
-                k -> new ColumnCollector(k, context, attribute.getName(), true));
-            collector.addValue(attribute.getValue(), config);
-        }
-
-        List<Element> children = element.elements();
-        if (children == null || children.isEmpty()) {
-            ColumnKey key = new ColumnKey(context.fileKey, currentPath);
-            ColumnCollector collector = collectors.computeIfAbsent(key,
-                k -> new ColumnCollector(k, context, element.getName(), false));
-            collector.addValue(element.getText(), config);
-            return;
-        }
+    /**
+     * Element currently open while streaming; {@code text} is dropped once a child element appears.
+     */
+    private static final class ElementFrame {
+        private final String name;
+        private final String path;
+        private StringBuilder text = new StringBuilder();
 
-        for (Element child : children) {
-            if (child == null) {
-                continue;
-            }
-            String childPath = currentPath + "/" + child.getName();
-            traverseElement(child, childPath, context, collectors, config, options);
+        ElementFrame(String name, String path) {
+            this.name = name;
+            this.path = path;
         }
     }
 
-    private static Map<String, List<ColumnCollector>> buildValueIndex(List<ColumnCollector> keyColumns,
-                                                                     AnalyzerConfig config,
-                                                                     AnalysisOptions options) {
-        Map<String, List<ColumnCollector>> valueIndex = new HashMap<>();
-        for (ColumnCollector column : keyColumns) {
-            checkCancellation(options);
-            if (column.isOverflow()) {
-                continue;
-            }
-            for (String value : column.getValues()) {
-                checkCancellation(options);
-                valueIndex.computeIfAbsent(value, k -> new ArrayList<>()).add(column);
-            }
-        }
-        return valueIndex;
+    /**
+     * 64-bit hash of a trimmed column value: FNV-1a over the chars followed by the murmur3
+     * finaliser, so both the hash-set slots and the bottom-k ordering are well mixed.
+     */
+    static long hashValue(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
     }
 
     private static void notifyProgress(AnalysisOptions options, Path file) {
@@ -292,63 +499,108 @@ public final class XmlRelationshipAnalyzer {
         }
     }
 
+    /**
+     * Find candidate relationships for every source column against the key columns.
+     *
+     * <p>Each pair first passes the cheap semantic check, then a containment estimate from the
+     * source's bottom-k sketch: the k smallest value hashes are a uniform sample of its distinct
+     * values, so the fraction found in the target's hash set estimates the source coverage. Only
+     * pairs whose estimate comes close to {@code minSourceCoverage} are counted exactly.</p>
+     */
     private static List<Relationship> detectRelationships(List<ColumnCollector> allColumns,
                                                            List<ColumnCollector> keyColumns,
-                                                           Map<String, List<ColumnCollector>> valueIndex,
                                                            AnalyzerConfig config,
                                                            AnalysisOptions options) {
+        allColumns.parallelStream().forEach(column -> column.prepare(config));
+        List<ColumnCollector> targets = relationshipTargets(keyColumns);
+        return flattenRelationships(bySource(allColumns, allColumns.parallelStream()
+            .map(source -> detectForSource(source, targets, config, options))
+            .collect(Collectors.toList())));
+    }
+
+    private static List<ColumnCollector> relationshipTargets(List<ColumnCollector> keyColumns) {
+        return keyColumns.stream()
+            .filter(column -> !column.isOverflow())
+            .collect(Collectors.toList());
+    }
+
+    private static Map<ColumnKey, List<Relationship>> bySource(List<ColumnCollector> sources,
+                                                               List<List<Relationship>> perSource) {
+        Map<ColumnKey, List<Relationship>> result = new LinkedHashMap<>();
+        for (int i = 0; i < sources.size(); i++) {
+            if (!perSource.get(i).isEmpty()) {
+                result.put(sources.get(i).getKey(), perSource.get(i));
+            }
+        }
+        return result;
+    }
+
+    private static List<Relationship> flattenRelationships(Map<ColumnKey, List<Relationship>> bySource) {
         List<Relationship> relationships = new ArrayList<>();
+        bySource.values().forEach(relationships::addAll);
+        relationships.sort(Comparator.comparing(Relationship::getConfidence).reversed());
+        return relationships;
+    }
 
-        for (ColumnCollector source : allColumns) {
-            checkCancellation(options);
-            if (source.isOverflow() || source.uniqueValueCount() < config.minSourceUniqueValues) {
+    private static List<Relationship> detectForSource(ColumnCollector source,
+                                                      List<ColumnCollector> targets,
+                                                      AnalyzerConfig config,
+                                                      AnalysisOptions options) {
+        checkCancellation(options);
+        if (source.isOverflow() || source.uniqueValueCount() < config.minSourceUniqueValues) {
+            return Collections.emptyList();
+        }
+
+        long[] sketch = source.getSketch();
+        int minSketchHits = Math.max(1,
+            (int) Math.floor(sketch.length * (config.minSourceCoverage - SKETCH_COVERAGE_TOLERANCE)));
+
+        List<Relationship> sourceRels = new ArrayList<>();
+        for (ColumnCollector target : targets) {
+            if (source == target) {
+                continue;
+            }
+            Optional<SemanticMatch> semanticMatch = assessSemanticCompatibility(source, target, config);
+            if (!semanticMatch.isPresent()) {
                 continue;
             }
 
-            Map<ColumnCollector, MatchStats> matchMap = new HashMap<>();
-            for (String value : source.getValues()) {
-                checkCancellation(options);
-                List<ColumnCollector> candidates = valueIndex.get(value);
-                if (candidates == null) {
-                    continue;
-                }
-                for (ColumnCollector candidate : candidates) {
-                    if (source == candidate) {
-                        continue;
-                    }
-                    matchMap.computeIfAbsent(candidate, key -> new MatchStats(config.sampleSize))
-                        .record(value);
+            LongHashSet targetValues = target.getValueHashes();
+            int sketchHits = 0;
+            for (long hash : sketch) {
+                if (targetValues.contains(hash)) {
+                    sketchHits++;
                 }
             }
-
-            if (matchMap.isEmpty()) {
+            if (sketchHits < minSketchHits) {
                 continue;
             }
 
-            List<Relationship> sourceRels = matchMap.entrySet().stream()
-                .map(entry -> buildRelationship(source, entry.getKey(), entry.getValue(), config, options))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .sorted(Comparator.comparing(Relationship::getConfidence).reversed())
-                .collect(Collectors.toList());
+            int matchCount = source.getValueHashes().countContainedIn(targetValues);
+            buildRelationship(source, target, matchCount, semanticMatch.get(), config)
+                .ifPresent(sourceRels::add);
+        }
 
-            if (config.maxRelationshipsPerSource > 0 && sourceRels.size() > config.maxRelationshipsPerSource) {
-                relationships.addAll(sourceRels.subList(0, config.maxRelationshipsPerSource));
-            } else {
-                relationships.addAll(sourceRels);
-            }
+        return limitPerSource(sourceRels, config);
+    }
+
+    private static List<Relationship> limitPerSource(List<Relationship> sourceRels, AnalyzerConfig config) {
+        sourceRels.sort(Comparator.comparing(Relationship::getConfidence).reversed());
+        if (isTruncated(sourceRels.size(), config)) {
+            return new ArrayList<>(sourceRels.subList(0, config.maxRelationshipsPerSource));
         }
+        return sourceRels;
+    }
 
-        relationships.sort(Comparator.comparing(Relationship::getConfidence).reversed());
-        return relationships;
+    private static boolean isTruncated(int relationshipCount, AnalyzerConfig config) {
+        return config.maxRelationshipsPerSource > 0 && relationshipCount >= config.maxRelationshipsPerSource;
     }
 
     private static Optional<Relationship> buildRelationship(ColumnCollector source,
                                                             ColumnCollector target,
-                                                            MatchStats stats,
-                                                            AnalyzerConfig config,
-                                                            AnalysisOptions options) {
-        int matchCount = stats.getMatchCount();
+                                                            int matchCount,
+                                                            SemanticMatch semanticMatch,
+                                                            AnalyzerConfig config) {
         if (matchCount < config.minMatchCount) {
             return Optional.empty();
         }
@@ -365,12 +617,7 @@ public final class XmlRelationshipAnalyzer {
             return Optional.empty();
         }
 
-        Optional<SemanticMatch> semanticMatch = assessSemanticCompatibility(source, target, config);
-        if (!semanticMatch.isPresent()) {
-            return Optional.empty();
-        }
-
-        double confidence = computeConfidence(sourceCoverage, targetCoverage, source, target, semanticMatch.get(), config);
+        double confidence = computeConfidence(sourceCoverage, targetCoverage, source, target, semanticMatch, config);
 
         Relationship relationship = new Relationship(
             source,
@@ -379,8 +626,8 @@ public final class XmlRelationshipAnalyzer {
             sourceCoverage,
             targetCoverage,
             confidence,
-            semanticMatch.get().getNameSimilarity(),
-            stats.getSamples()
+            semanticMatch.getNameSimilarity(),
+            source.getMatchedSamples(target, config.sampleSize)
         );
 
         return Optional.of(relationship);
@@ -482,6 +729,13 @@ public final class XmlRelationshipAnalyzer {
         }
     }
 
+    private static void persistReportIfChanged(RelationshipReport report) {
+        if (report.isIncremental() && report.getChangedFiles().isEmpty()) {
+            return;
+        }
+        persistReport(report);
+    }
+
     private static void persistReport(RelationshipReport report) {
         String confPath = YamlUtils.getProperty("file.confPath");
         if (!StringUtils.hasLength(confPath)) {
@@ -510,13 +764,20 @@ public final class XmlRelationshipAnalyzer {
         }
 
         String getFileName() {
-            String filename = filePath.getFileName().toString();
-            int idx = filename.lastIndexOf('.');
-            return idx == -1 ? filename : filename.substring(0, idx);
+            return baseFileName(filePath);
         }
     }
 
-    private static final class ColumnCollector {
+    /**
+     * File name without extension, as shown for a column's file.
+     */
+    static String baseFileName(Path filePath) {
+        String filename = filePath.getFileName().toString();
+        int idx = filename.lastIndexOf('.');
+        return idx == -1 ? filename : filename.substring(0, idx);
+    }
+
+    static final class ColumnCollector {
         private static final Set<String> GENERIC_TOKENS = new HashSet<>(Arrays.asList(
             "data", "value", "values", "info", "list", "node", "detail", "attr", "attribute",
             "adddatanode", "group", "item", "items", "entry", "entries", "record", "records"
@@ -525,21 +786,84 @@ public final class XmlRelationshipAnalyzer {
         private final String fileName;
         private final String columnName;
         private final boolean attribute;
-        private final LinkedHashSet<String> values = new LinkedHashSet<>();
-        private final LinkedHashSet<String> samples = new LinkedHashSet<>();
+        private final LongHashSet values;
+        /** first distinct values in document order (column samples and relationship sample values) */
+        private final List<String> leadingValues;
         private int totalCount;
         private int blankCount;
-        private boolean overflow = false;
+        private boolean overflow;
         private final Set<String> nameTokens;
+        private int sampleSize;
+        private long[] sketch;
+        private SemanticKind semanticKind;
 
         ColumnCollector(ColumnKey key, ColumnTraversalContext context, String columnName, boolean attribute) {
+            this(key, context.getFileName(), columnName, attribute, new LongHashSet(), new ArrayList<>(), 0, 0, false);
+        }
+
+        private ColumnCollector(ColumnKey key,
+                                String fileName,
+                                String columnName,
+                                boolean attribute,
+                                LongHashSet values,
+                                List<String> leadingValues,
+                                int totalCount,
+                                int blankCount,
+                                boolean overflow) {
             this.key = key;
-            this.fileName = context.getFileName();
+            this.fileName = fileName;
             this.columnName = columnName;
             this.attribute = attribute;
+            this.values = values;
+            this.leadingValues = leadingValues;
+            this.totalCount = totalCount;
+            this.blankCount = blankCount;
+            this.overflow = overflow;
             this.nameTokens = Collections.unmodifiableSet(tokenizeName(columnName));
         }
 
+        /**
+         * Serialise the collected state (not the derived sketch) for {@link RelationshipColumnStore}.
+         */
+        void writeTo(DataOutput out) throws IOException {
+            out.writeUTF(key.columnPath);
+            out.writeUTF(columnName);
+            out.writeBoolean(attribute);
+            out.writeInt(totalCount);
+            out.writeInt(blankCount);
+            out.writeBoolean(overflow);
+            long[] hashes = values.toArray();
+            out.writeInt(hashes.length);
+            for (long hash : hashes) {
+                out.writeLong(hash);
+            }
+            out.writeInt(leadingValues.size());
+            for (String value : leadingValues) {
+                out.writeUTF(value);
+            }
+        }
+
+        static ColumnCollector readFrom(DataInput in, String fileKey, String fileName) throws IOException {
+            String columnPath = in.readUTF();
+            String columnName = in.readUTF();
+            boolean attribute = in.readBoolean();
+            int totalCount = in.readInt();
+            int blankCount = in.readInt();
+            boolean overflow = in.readBoolean();
+            int hashCount = in.readInt();
+            LongHashSet values = new LongHashSet(hashCount);
+            for (int i = 0; i < hashCount; i++) {
+                values.add(in.readLong());
+            }
+            int leadingCount = in.readInt();
+            List<String> leadingValues = new ArrayList<>(leadingCount);
+            for (int i = 0; i < leadingCount; i++) {
+                leadingValues.add(in.readUTF());
+            }
+            return new ColumnCollector(new ColumnKey(fileKey, columnPath), fileName, columnName, attribute,
+                values, leadingValues, totalCount, blankCount, overflow);
+        }
+
         void addValue(String rawValue, AnalyzerConfig config) {
             totalCount++;
             if (rawValue == null) {
@@ -562,12 +886,24 @@ public final class XmlRelationshipAnalyzer {
                 return;
             }
 
-            values.add(value);
-            if (samples.size() < config.sampleSize) {
-                samples.add(value);
+            if (values.add(hashValue(value)) && leadingValues.size() < Math.max(config.sampleSize, LEADING_VALUE_LIMIT)) {
+                leadingValues.add(value);
             }
         }
 
+        /**
+         * Freeze derived state before the (parallel) relationship detection phase.
+         */
+        void prepare(AnalyzerConfig config) {
+            sampleSize = config.sampleSize;
+            sketch = values.smallest(SKETCH_SIZE);
+            semanticKind = SemanticKind.from(this, config);
+        }
+
+        boolean isPrepared() {
+            return sketch != null;
+        }
+
         boolean isOverflow() {
             return overflow;
         }
@@ -576,8 +912,32 @@ public final class XmlRelationshipAnalyzer {
             return values.size();
         }
 
-        Set<String> getValues() {
-            return Collections.unmodifiableSet(values);
+        LongHashSet getValueHashes() {
+            return values;
+        }
+
+        long[] getSketch() {
+            return sketch;
+        }
+
+        /**
+         * Leading values of this column that also occur in {@code target}.
+         */
+        List<String> getMatchedSamples(ColumnCollector target, int limit) {
+            List<String> matched = new ArrayList<>(limit);
+            for (String value : leadingValues) {
+                if (matched.size() >= limit) {
+                    break;
+                }
+                if (target.values.contains(hashValue(value))) {
+                    matched.add(value);
+                }
+            }
+            return matched;
+        }
+
+        ColumnKey getKey() {
+            return key;
         }
 
         String getFileKey() {
@@ -648,7 +1008,7 @@ public final class XmlRelationshipAnalyzer {
         }
 
         List<String> getSamples() {
-            return new ArrayList<>(samples);
+            return new ArrayList<>(leadingValues.subList(0, Math.min(sampleSize, leadingValues.size())));
         }
 
         Set<String> getNameTokens() {
@@ -660,7 +1020,7 @@ public final class XmlRelationshipAnalyzer {
         }
 
         SemanticKind getSemanticKind(AnalyzerConfig config) {
-            return SemanticKind.from(this, config);
+            return semanticKind != null ? semanticKind : SemanticKind.from(this, config);
         }
 
         boolean isEnumLike(AnalyzerConfig config) {
@@ -779,7 +1139,7 @@ public final class XmlRelationshipAnalyzer {
         }
     }
 
-    private static final class ColumnKey {
+    static final class ColumnKey {
         private final String fileKey;
         private final String columnPath;
 
@@ -803,31 +1163,6 @@ public final class XmlRelationshipAnalyzer {
         }
     }
 
-    private static final class MatchStats {
-        private final int sampleSize;
-        private final LinkedHashSet<String> samples = new LinkedHashSet<>();
-        private int matchCount;
-
-        MatchStats(int sampleSize) {
-            this.sampleSize = sampleSize;
-        }
-
-        void record(String value) {
-            matchCount++;
-            if (samples.size() < sampleSize) {
-                samples.add(value);
-            }
-        }
-
-        int getMatchCount() {
-            return matchCount;
-        }
-
-        List<String> getSamples() {
-            return new ArrayList<>(samples);
-        }
-    }
-
     public static final class AnalysisCancelledException extends RuntimeException {
         AnalysisCancelledException() {
             super("analysis_cancelled");
@@ -970,6 +1305,9 @@ public final class XmlRelationshipAnalyzer {
         private final List<ColumnCollector> columns;
         private final List<ColumnCollector> keyColumns;
         private final List<Relationship> relationships;
+        private final Set<String> changedFiles;
+        private final Set<String> affectedFiles;
+        private final boolean incremental;
         private final Instant generatedAt;
 
         RelationshipReport(List<Path> baseDirectories,
@@ -977,11 +1315,26 @@ public final class XmlRelationshipAnalyzer {
                            List<ColumnCollector> columns,
                            List<ColumnCollector> keyColumns,
                            List<Relationship> relationships) {
+            this(baseDirectories, config, columns, keyColumns, relationships,
+                Collections.emptySet(), Collections.emptySet(), false);
+        }
+
+        RelationshipReport(List<Path> baseDirectories,
+                           AnalyzerConfig config,
+                           List<ColumnCollector> columns,
+                           List<ColumnCollector> keyColumns,
+                           List<Relationship> relationships,
+                           Set<String> changedFiles,
+                           Set<String> affectedFiles,
+                           boolean incremental) {
             this.baseDirectories = Collections.unmodifiableList(new ArrayList<>(baseDirectories));
             this.config = config;
             this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
             this.keyColumns = Collections.unmodifiableList(new ArrayList<>(keyColumns));
             this.relationships = Collections.unmodifiableList(new ArrayList<>(relationships));
+            this.changedFiles = Collections.unmodifiableSet(new LinkedHashSet<>(changedFiles));
+            this.affectedFiles = Collections.unmodifiableSet(new LinkedHashSet<>(affectedFiles));
+            this.incremental = incremental;
             this.generatedAt = Instant.now();
         }
 
@@ -989,10 +1342,38 @@ public final class XmlRelationshipAnalyzer {
             return new RelationshipReport(baseDirectories, config, Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
         }
 
+        public List<Path> getBaseDirectories() {
+            return baseDirectories;
+        }
+
         public List<Relationship> getRelationships() {
             return relationships;
         }
 
+        /**
+         * Whether the relationships were updated from a previous analysis rather than scored from scratch.
+         */
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        /**
+         * File keys parsed again or removed since the previous analysis; only meaningful when
+         * {@link #isIncremental()}, empty when nothing changed.
+         */
+        public Set<String> getChangedFiles() {
+            return changedFiles;
+        }
+
+        /**
+         * {@link #getChangedFiles()} plus files of source columns whose relationships to unchanged files
+         * were re-ranked under {@code maxRelationshipsPerSource}: every relationship that differs from the
+         * previous analysis has its source or target in one of these files.
+         */
+        public Set<String> getAffectedFiles() {
+            return affectedFiles;
+        }
+
         public List<RelationshipSnapshot> getRelationshipSnapshots() {
             List<RelationshipSnapshot> snapshots = new ArrayList<>(relationships.size());
             for (Relationship relationship : relationships) {
@@ -1,20 +1,18 @@
 package red.jiuzhou.search;
 
-import lombok.Data;
-import lombok.extern.slf4j.Slf4j;
-import red.jiuzhou.safety.DataSafetyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.YamlUtils;
 import org.w3c.dom.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.*;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
 import javax.xml.xpath.*;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.UnaryOperator;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
@@ -29,13 +27,28 @@ import java.util.stream.Collectors;
  * - 支持条件替换（如等级范围、属性条件）
  * - 自动检测关联配置
  * - 多线程并行搜索
+ * - 持久化索引（{@link XmlSearchIndex}）：文本/ID/属性/正则查询走索引，XPath 与未建索引的文件回退到 DOM 扫描
+ * - 未建索引文件的文本/正则查询走内存映射流式扫描（{@link XmlStreamSearcher}），不构建 DOM
  */
-@Slf4j
 public class GlobalSearchEngine {
 
+    private static final Logger log = LoggerFactory.getLogger(GlobalSearchEngine.class);
+
     // 虚拟线程执行器（Java 21+）
     private final ExecutorService executorService = Executors.newVirtualThreadPerTaskExecutor();
     private final Map<String, List<String>> relationshipMap = new HashMap<>();
+    private final XmlStreamSearcher streamSearcher = new XmlStreamSearcher();
+    private final XmlStreamRewriter rewriter = new XmlStreamRewriter();
+    private final boolean indexEnabled = Boolean.parseBoolean(
+        YamlUtils.getProperty("application.yml", "search.index.enabled", "true"));
+
+    public GlobalSearchEngine() {
+        // 预先为配置的 XML 根目录建立索引，对话框中逐文件搜索时即可命中
+        String xmlRoot = YamlUtils.getProperty("application.yml", "aion.xmlPath", "");
+        if (indexEnabled && !xmlRoot.isEmpty() && Files.isDirectory(Paths.get(xmlRoot))) {
+            XmlSearchIndex.forRoot(Paths.get(xmlRoot)).startBackgroundIndexing();
+        }
+    }
 
     // 搜索模式枚举
     public enum SearchMode {
@@ -48,7 +61,6 @@ public class GlobalSearchEngine {
     }
 
     // 搜索结果
-    @Data
     public static class SearchResult {
         private String filePath;
         private int lineNumber;
@@ -60,6 +72,78 @@ public class GlobalSearchEngine {
         private List<String> relatedFiles; // 关联文件
         private Map<String, String> attributes; // 元素属性
 
+        public String getFilePath() {
+            return filePath;
+        }
+
+        public void setFilePath(String filePath) {
+            this.filePath = filePath;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public void setLineNumber(int lineNumber) {
+            this.lineNumber = lineNumber;
+        }
+
+        public String getElementPath() {
+            return elementPath;
+        }
+
+        public void setElementPath(String elementPath) {
+            this.elementPath = elementPath;
+        }
+
+        public String getMatchedText() {
+            return matchedText;
+        }
+
+        public void setMatchedText(String matchedText) {
+            this.matchedText = matchedText;
+        }
+
+        public String getContextBefore() {
+            return contextBefore;
+        }
+
+        public void setContextBefore(String contextBefore) {
+            this.contextBefore = contextBefore;
+        }
+
+        public String getContextAfter() {
+            return contextAfter;
+        }
+
+        public void setContextAfter(String contextAfter) {
+            this.contextAfter = contextAfter;
+        }
+
+        public Element getElement() {
+            return element;
+        }
+
+        public void setElement(Element element) {
+            this.element = element;
+        }
+
+        public List<String> getRelatedFiles() {
+            return relatedFiles;
+        }
+
+        public void setRelatedFiles(List<String> relatedFiles) {
+            this.relatedFiles = relatedFiles;
+        }
+
+        public Map<String, String> getAttributes() {
+            return attributes;
+        }
+
+        public void setAttributes(Map<String, String> attributes) {
+            this.attributes = attributes;
+        }
+
         public String getDisplayText() {
             return String.format("[%s:%d] %s\n%s",
                 new File(filePath).getName(), lineNumber, elementPath, matchedText);
@@ -67,7 +151,6 @@ public class GlobalSearchEngine {
     }
 
     // 替换选项
-    @Data
     public static class ReplaceOptions {
         private boolean caseSensitive = true;
         private boolean wholeWord = false;
@@ -83,8 +166,76 @@ public class GlobalSearchEngine {
 
         private ConditionEvaluator conditionEvaluator;
 
+        // 同一条件的流式版本（按名称取属性或子元素文本），null 表示不限制
+        private XmlStreamRewriter.ElementCondition valueCondition;
+
+        public boolean isCaseSensitive() {
+            return caseSensitive;
+        }
+
+        public void setCaseSensitive(boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+        }
+
+        public boolean isWholeWord() {
+            return wholeWord;
+        }
+
+        public void setWholeWord(boolean wholeWord) {
+            this.wholeWord = wholeWord;
+        }
+
+        public boolean isUseRegex() {
+            return useRegex;
+        }
+
+        public void setUseRegex(boolean useRegex) {
+            this.useRegex = useRegex;
+        }
+
+        public boolean isPreview() {
+            return preview;
+        }
+
+        public void setPreview(boolean preview) {
+            this.preview = preview;
+        }
+
+        public String getCondition() {
+            return condition;
+        }
+
+        public void setCondition(String condition) {
+            this.condition = condition;
+        }
+
+        public boolean isBackup() {
+            return backup;
+        }
+
+        public void setBackup(boolean backup) {
+            this.backup = backup;
+        }
+
+        public ConditionEvaluator getConditionEvaluator() {
+            return conditionEvaluator;
+        }
+
+        public void setConditionEvaluator(ConditionEvaluator conditionEvaluator) {
+            this.conditionEvaluator = conditionEvaluator;
+        }
+
+        public XmlStreamRewriter.ElementCondition getValueCondition() {
+            return valueCondition;
+        }
+
+        public void setValueCondition(XmlStreamRewriter.ElementCondition valueCondition) {
+            this.valueCondition = valueCondition;
+        }
+
         public void parseCondition() {
             if (condition == null || condition.isEmpty()) {
+                valueCondition = null;
                 conditionEvaluator = element -> true;
                 return;
             }
@@ -97,17 +248,9 @@ public class GlobalSearchEngine {
                 String operator = parts[1];
                 String value = parts[2].replace("'", "").replace("\"", "");
 
-                conditionEvaluator = element -> {
-                    String attrValue = element.getAttribute(attribute);
-                    if (attrValue.isEmpty()) {
-                        // 尝试从子元素获取
-                        NodeList children = element.getElementsByTagName(attribute);
-                        if (children.getLength() > 0) {
-                            attrValue = children.item(0).getTextContent();
-                        }
-                    }
-
-                    if (attrValue.isEmpty()) return false;
+                valueCondition = lookup -> {
+                    String attrValue = lookup.apply(attribute);
+                    if (attrValue == null || attrValue.isEmpty()) return false;
 
                     try {
                         switch (operator) {
@@ -134,7 +277,19 @@ public class GlobalSearchEngine {
                         return attrValue.compareTo(value) > 0;
                     }
                 };
+                conditionEvaluator = element -> valueCondition.test(name -> {
+                    String attrValue = element.getAttribute(name);
+                    if (attrValue.isEmpty()) {
+                        // 尝试从子元素获取
+                        NodeList children = element.getElementsByTagName(name);
+                        if (children.getLength() > 0) {
+                            attrValue = children.item(0).getTextContent();
+                        }
+                    }
+                    return attrValue;
+                });
             } else {
+                valueCondition = null;
                 conditionEvaluator = element -> true;
             }
         }
@@ -171,9 +326,16 @@ public class GlobalSearchEngine {
             throw new IllegalArgumentException("Invalid directory: " + directory);
         }
 
-        List<Path> xmlFiles = Files.walk(dir)
-            .filter(path -> path.toString().toLowerCase().endsWith(".xml"))
-            .collect(Collectors.toList());
+        List<Path> xmlFiles;
+        try (java.util.stream.Stream<Path> walk = Files.walk(dir)) {
+            xmlFiles = walk
+                .filter(path -> path.toString().toLowerCase().endsWith(".xml"))
+                .collect(Collectors.toList());
+        }
+
+        if (indexEnabled && XmlSearchIndex.findCovering(dir) == null) {
+            XmlSearchIndex.forRoot(dir).startBackgroundIndexing();
+        }
 
         return searchInFiles(xmlFiles, searchText, mode);
     }
@@ -183,15 +345,41 @@ public class GlobalSearchEngine {
      */
     public List<SearchResult> searchInFiles(List<Path> files, String searchText,
                                            SearchMode mode) throws Exception {
-        List<Future<List<SearchResult>>> futures = new ArrayList<>();
+        return searchFiles(files, searchText, mode).getResults();
+    }
 
-        for (Path file : files) {
+    /**
+     * 在多个文件中搜索，同时返回结果是否因流式扫描达到上限而被截断。
+     * 文件列表应一次传入，引擎在整批文件上并行查索引/流式扫描。
+     */
+    public SearchOutcome searchFiles(List<Path> files, String searchText,
+                                     SearchMode mode) throws Exception {
+        SearchMode resolved = mode == SearchMode.SMART ? resolveSmartMode(searchText) : mode;
+
+        List<SearchResult> allResults = new ArrayList<>();
+        boolean truncated = false;
+        List<Path> toScan = files;
+        if (indexEnabled && resolved != SearchMode.XPATH) {
+            toScan = searchWithIndex(files, searchText, resolved, allResults);
+        }
+
+        if (resolved == SearchMode.TEXT || resolved == SearchMode.REGEX) {
+            XmlStreamSearcher.StreamResult streamResult = streamSearcher.search(toScan, searchText,
+                resolved == SearchMode.REGEX, executorService);
+            for (XmlSearchIndex.Hit hit : streamResult.getHits()) {
+                allResults.add(toSearchResult(hit));
+            }
+            truncated = streamResult.isTruncated();
+            toScan = Collections.emptyList();
+        }
+
+        List<Future<List<SearchResult>>> futures = new ArrayList<>();
+        for (Path file : toScan) {
             Future<List<SearchResult>> future = executorService.submit(() ->
                 searchInFile(file, searchText, mode));
             futures.add(future);
         }
 
-        List<SearchResult> allResults = new ArrayList<>();
         for (Future<List<SearchResult>> future : futures) {
             try {
                 allResults.addAll(future.get(30, TimeUnit.SECONDS));
@@ -203,7 +391,105 @@ public class GlobalSearchEngine {
         // 检测关联文件
         detectRelatedFiles(allResults);
 
-        return allResults;
+        return new SearchOutcome(allResults, truncated);
+    }
+
+    /**
+     * 多文件搜索结果
+     */
+    public static class SearchOutcome {
+        private final List<SearchResult> results;
+        private final boolean truncated;
+
+        public SearchOutcome(List<SearchResult> results, boolean truncated) {
+            this.results = results;
+            this.truncated = truncated;
+        }
+
+        public List<SearchResult> getResults() {
+            return results;
+        }
+
+        /**
+         * 流式扫描是否因达到结果上限（search.stream.max-results）而提前停止
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+
+    /**
+     * 智能模式识别（与 smartSearch 规则一致），以便在解析文件前决定能否走索引
+     */
+    private SearchMode resolveSmartMode(String searchText) {
+        if (searchText.startsWith("/")) {
+            return SearchMode.XPATH;
+        }
+        if (searchText.contains("=")) {
+            return SearchMode.ATTRIBUTE;
+        }
+        if (searchText.matches("^\\d+$")) {
+            return SearchMode.ID;
+        }
+        return SearchMode.TEXT;
+    }
+
+    /**
+     * 通过持久化索引查询，命中结果加入 results，返回需要回退到 DOM 扫描的文件
+     */
+    private List<Path> searchWithIndex(List<Path> files, String searchText, SearchMode mode,
+                                       List<SearchResult> results) {
+        XmlSearchIndex.QueryType type;
+        switch (mode) {
+            case ID:
+                type = XmlSearchIndex.QueryType.ID;
+                break;
+            case ATTRIBUTE:
+                type = XmlSearchIndex.QueryType.ATTRIBUTE;
+                break;
+            case REGEX:
+                type = XmlSearchIndex.QueryType.REGEX;
+                break;
+            default:
+                type = XmlSearchIndex.QueryType.TEXT;
+        }
+
+        // 按所属索引分组，不在任何索引根目录下的文件直接扫描
+        Map<XmlSearchIndex, List<Path>> byIndex = new LinkedHashMap<>();
+        List<Path> fallback = new ArrayList<>();
+        for (Path file : files) {
+            XmlSearchIndex index = XmlSearchIndex.findCovering(file);
+            if (index == null) {
+                fallback.add(file);
+            } else {
+                byIndex.computeIfAbsent(index, k -> new ArrayList<>()).add(file);
+            }
+        }
+
+        for (Map.Entry<XmlSearchIndex, List<Path>> entry : byIndex.entrySet()) {
+            XmlSearchIndex.QueryResult queryResult = entry.getKey().query(entry.getValue(), type, searchText);
+            for (XmlSearchIndex.Hit hit : queryResult.getHits()) {
+                results.add(toSearchResult(hit));
+            }
+            fallback.addAll(queryResult.getUnindexedFiles());
+            if (!queryResult.getUnindexedFiles().isEmpty()) {
+                entry.getKey().startBackgroundIndexing();
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * 索引/流式扫描的命中转换为搜索结果（不带 DOM 元素，替换时按元素路径定位）
+     */
+    private SearchResult toSearchResult(XmlSearchIndex.Hit hit) {
+        SearchResult result = new SearchResult();
+        result.setFilePath(hit.getFilePath());
+        result.setLineNumber(hit.getLineNumber());
+        result.setElementPath(hit.getElementPath());
+        result.setMatchedText(hit.getMatchedText());
+        result.setAttributes(hit.getAttributes());
+        return result;
     }
 
     /**
@@ -449,15 +735,26 @@ public class GlobalSearchEngine {
     }
 
     /**
-     * 获取元素的XPath路径
+     * 获取元素的XPath路径（非根元素带同名序号，与索引/流式扫描的路径一致，替换时据此定位）
      */
     private String getElementPath(Element element) {
         StringBuilder path = new StringBuilder();
         Node current = element;
 
         while (current != null && current.getNodeType() == Node.ELEMENT_NODE) {
-            path.insert(0, "/" + current.getNodeName());
-            current = current.getParentNode();
+            Node parent = current.getParentNode();
+            if (parent != null && parent.getNodeType() == Node.ELEMENT_NODE) {
+                int ordinal = 1;
+                for (Node sibling = current.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling()) {
+                    if (sibling.getNodeType() == Node.ELEMENT_NODE && sibling.getNodeName().equals(current.getNodeName())) {
+                        ordinal++;
+                    }
+                }
+                path.insert(0, "/" + current.getNodeName() + "[" + ordinal + "]");
+            } else {
+                path.insert(0, "/" + current.getNodeName());
+            }
+            current = parent;
         }
 
         return path.toString();
@@ -514,59 +811,29 @@ public class GlobalSearchEngine {
 
     /**
      * 批量替换功能
+     *
+     * 按文件分组后交给 {@link XmlStreamRewriter} 流式改写：不加载 DOM，写临时文件后原子替换，多个文件并行处理
      */
     public Map<String, Integer> replaceAll(List<SearchResult> searchResults,
                                           String replaceText, ReplaceOptions options) throws Exception {
-        Map<String, Integer> replaceCount = new HashMap<>();
-        Map<String, Document> documentCache = new HashMap<>();
-
         // 解析条件
         options.parseCondition();
 
+        // 文件 -> 元素路径 -> 替换函数（同一元素的多个结果依次应用）
+        Map<String, Map<String, UnaryOperator<String>>> edits = new LinkedHashMap<>();
         for (SearchResult result : searchResults) {
-            String filePath = result.getFilePath();
-
-            // 检查条件
-            if (options.getConditionEvaluator() != null &&
-                !options.getConditionEvaluator().evaluate(result.getElement())) {
+            String matchedText = result.getMatchedText();
+            if (matchedText == null || matchedText.isEmpty()) {
                 continue;
             }
-
-            // 加载或获取文档
-            Document doc = documentCache.get(filePath);
-            if (doc == null) {
-                doc = loadDocument(filePath);
-                documentCache.put(filePath, doc);
-            }
-
-            // 执行替换
-            Element element = result.getElement();
-            String originalText = element.getTextContent();
-            String newText = performReplace(originalText, result.getMatchedText(),
-                                           replaceText, options);
-
-            if (!originalText.equals(newText)) {
-                element.setTextContent(newText);
-                replaceCount.merge(filePath, 1, Integer::sum);
-            }
+            UnaryOperator<String> replacer = text -> performReplace(text, matchedText, replaceText, options);
+            edits.computeIfAbsent(result.getFilePath(), k -> new LinkedHashMap<>())
+                .merge(result.getElementPath(), replacer,
+                    (a, b) -> text -> b.apply(a.apply(text)));
         }
 
-        // 保存修改的文档
-        if (!options.isPreview()) {
-            for (Map.Entry<String, Document> entry : documentCache.entrySet()) {
-                String filePath = entry.getKey();
-                Document doc = entry.getValue();
-
-                if (replaceCount.containsKey(filePath)) {
-                    if (options.isBackup()) {
-                        backupFile(filePath);
-                    }
-                    saveDocument(doc, filePath);
-                }
-            }
-        }
-
-        return replaceCount;
+        return rewriter.rewrite(edits, options.getValueCondition(),
+            !options.isPreview(), options.isBackup(), executorService);
     }
 
     /**
@@ -597,49 +864,6 @@ public class GlobalSearchEngine {
         }
     }
 
-    /**
-     * 加载XML文档
-     */
-    private Document loadDocument(String filePath) throws Exception {
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-
-        // 处理UTF-16编码
-        try (InputStream is = Files.newInputStream(Paths.get(filePath))) {
-            byte[] bytes = readAllBytesCompat(is);
-            String content = new String(bytes, StandardCharsets.UTF_16);
-            if (!content.startsWith("<?xml")) {
-                content = new String(bytes, StandardCharsets.UTF_8);
-            }
-            return builder.parse(new ByteArrayInputStream(
-                content.getBytes(StandardCharsets.UTF_8)));
-        }
-    }
-
-    /**
-     * 保存XML文档
-     */
-    private void saveDocument(Document doc, String filePath) throws Exception {
-        TransformerFactory transformerFactory = TransformerFactory.newInstance();
-        Transformer transformer = transformerFactory.newTransformer();
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-16");
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
-
-        DOMSource source = new DOMSource(doc);
-        StreamResult result = new StreamResult(new File(filePath));
-        transformer.transform(source, result);
-    }
-
-    /**
-     * 备份文件
-     */
-    private void backupFile(String filePath) throws IOException {
-        Path source = Paths.get(filePath);
-        Path backup = Paths.get(filePath + ".bak");
-        Files.copy(source, backup, StandardCopyOption.REPLACE_EXISTING);
-    }
-
     /**
      * 关闭搜索引擎
      */
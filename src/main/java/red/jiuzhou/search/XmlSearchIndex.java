@@ -0,0 +1,876 @@
+package red.jiuzhou.search;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.DefaultHandler;
+import red.jiuzhou.util.BomAwareFileReader;
+import red.jiuzhou.util.FileEncodingDetector;
+import red.jiuzhou.util.YamlUtils;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @className: red.jiuzhou.search.XmlSearchIndex.java
+ * @description: XML 目录的持久化搜索索引
+ *
+ * 每个 XML 文件用 SAX 流式解析一次，保存为一个索引段（cache/search-index/&lt;根目录摘要&gt;/&lt;文件摘要&gt;.seg）：
+ * 逐元素记录 父元素、元素名、同名序号、行号、属性、直接文本，查询时解压索引段即可匹配，不再解析 XML。
+ * 清单文件记录每个文件的 mtime/大小/MD5 与文本三元组的布隆过滤器；查询先用布隆过滤器排除
+ * 不可能包含查询词的文件，只加载候选文件的索引段。
+ *
+ * 增量更新：mtime 与大小都未变的文件跳过；变了但 MD5 相同只刷新 mtime；否则重建该文件的索引段。
+ * 尚未建立索引或索引已过期的文件由调用方回退到 DOM 扫描（见 {@link QueryResult#getUnindexedFiles()}）。
+ *
+ * 结果中的元素路径带同名序号（如 /item_templates/item_template[12]/id），可直接作为 XPath 定位元素。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class XmlSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlSearchIndex.class);
+
+    private static final int MANIFEST_MAGIC = 0x4A5A5349;
+    private static final int SEGMENT_MAGIC = 0x4A5A5345;
+    private static final int FORMAT_VERSION = 1;
+    private static final String MANIFEST_FILE = "manifest.bin";
+
+    /** 布隆过滤器：每个三元组 10 位、7 次哈希，误判率约 1% */
+    private static final int BLOOM_BITS_PER_TERM = 10;
+    private static final int BLOOM_HASHES = 7;
+
+    /** 内存中保留的已解码索引段数量上限（软引用，内存紧张时可回收） */
+    private static final int SEGMENT_CACHE_SIZE = 64;
+
+    private static final Map<Path, XmlSearchIndex> INSTANCES = new ConcurrentHashMap<>();
+
+    /** 查询类型 */
+    public enum QueryType {
+        TEXT,       // 文本包含（不区分大小写）
+        ID,         // id 属性或 id 子元素等于查询值
+        ATTRIBUTE,  // 属性名=值（值为包含匹配，可省略）
+        REGEX       // 正则，字面前缀用于过滤候选文件
+    }
+
+    private final Path root;
+    private final Path indexDir;
+    private final Map<String, FileEntry> files = new ConcurrentHashMap<>();
+    private final Map<String, SoftReference<Segment>> segmentCache =
+            Collections.synchronizedMap(new LinkedHashMap<String, SoftReference<Segment>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, SoftReference<Segment>> eldest) {
+                    return size() > SEGMENT_CACHE_SIZE;
+                }
+            });
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "xml-search-indexer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    private XmlSearchIndex(Path root) {
+        this.root = root;
+        String baseDir = YamlUtils.getProperty("application.yml", "search.index.dir", "cache/search-index");
+        this.indexDir = Paths.get(baseDir, DigestUtil.md5Hex(root.toString()));
+        loadManifest();
+    }
+
+    /**
+     * 获取指定根目录的索引（同一目录共享一个实例）
+     */
+    public static XmlSearchIndex forRoot(Path root) {
+        Path normalized = root.toAbsolutePath().normalize();
+        return INSTANCES.computeIfAbsent(normalized, XmlSearchIndex::new);
+    }
+
+    /**
+     * 查找覆盖指定文件的已打开索引，没有时返回 null
+     */
+    public static XmlSearchIndex findCovering(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        for (XmlSearchIndex index : INSTANCES.values()) {
+            if (normalized.startsWith(index.root)) {
+                return index;
+            }
+        }
+        return null;
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * 已建立索引的文件数
+     */
+    public int getIndexedFileCount() {
+        return files.size();
+    }
+
+    /**
+     * 在后台线程增量刷新索引（已有刷新在进行时忽略）
+     */
+    public void startBackgroundIndexing() {
+        if (refreshing.compareAndSet(false, true)) {
+            indexer.submit(() -> {
+                try {
+                    refresh();
+                } catch (Exception e) {
+                    log.error("搜索索引刷新失败: {}", root, e);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    public boolean isRefreshing() {
+        return refreshing.get();
+    }
+
+    /**
+     * 增量刷新：新增/修改的文件重建索引段，删除的文件移除索引
+     */
+    public synchronized void refresh() throws IOException {
+        long start = System.currentTimeMillis();
+        Set<String> seen = new HashSet<>();
+        int rebuilt = 0;
+        int touched = 0;
+
+        List<Path> xmlFiles;
+        try (Stream<Path> walk = Files.walk(root)) {
+            xmlFiles = walk.filter(p -> p.toString().toLowerCase().endsWith(".xml")).collect(Collectors.toList());
+        }
+        Files.createDirectories(indexDir);
+
+        for (Path file : xmlFiles) {
+            String key = keyOf(file);
+            seen.add(key);
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            long mtime = attrs.lastModifiedTime().toMillis();
+            long size = attrs.size();
+            FileEntry entry = files.get(key);
+            if (entry != null && entry.mtime == mtime && entry.size == size) {
+                continue;
+            }
+
+            String hash = DigestUtil.md5Hex(file.toFile());
+            if (entry != null && entry.hash.equals(hash)) {
+                files.put(key, entry.withStat(mtime, size));
+                touched++;
+                continue;
+            }
+
+            try {
+                files.put(key, indexFile(file, key, mtime, size, hash));
+                rebuilt++;
+            } catch (Exception e) {
+                log.warn("建立搜索索引失败，查询时将回退到 DOM 扫描: {} - {}", file, e.getMessage());
+                files.remove(key);
+            }
+        }
+
+        int removed = 0;
+        for (Iterator<Map.Entry<String, FileEntry>> it = files.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, FileEntry> entry = it.next();
+            if (!seen.contains(entry.getKey())) {
+                Files.deleteIfExists(indexDir.resolve(entry.getValue().segmentName));
+                segmentCache.remove(entry.getValue().segmentName);
+                it.remove();
+                removed++;
+            }
+        }
+
+        saveManifest();
+        log.info("搜索索引刷新完成: {} 共 {} 个文件，重建 {}，仅更新时间 {}，移除 {}，耗时 {} ms",
+                root, files.size(), rebuilt, touched, removed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 查询
+     *
+     * @param candidates 要查询的文件
+     * @param type 查询类型
+     * @param query 查询内容（ATTRIBUTE 为 "属性名=值"）
+     * @return 命中结果，以及未建立索引或索引已过期、需要调用方自行扫描的文件
+     */
+    public QueryResult query(List<Path> candidates, QueryType type, String query) {
+        Matcher matcher = compileMatcher(type, query);
+        long[] trigrams = trigramsOf(matcher.literal);
+
+        List<Path> unindexed = new ArrayList<>();
+        List<FileEntry> toScan = new ArrayList<>();
+        for (Path file : candidates) {
+            FileEntry entry = files.get(keyOf(file));
+            if (entry == null || !entry.isCurrent(file)) {
+                unindexed.add(file);
+            } else if (entry.mightContainAll(trigrams)) {
+                toScan.add(entry);
+            }
+        }
+
+        Stream<FileEntry> stream = toScan.size() > 4 ? toScan.parallelStream() : toScan.stream();
+        List<Hit> hits = stream
+                .flatMap(entry -> {
+                    try {
+                        return matcher.match(entry.path, loadSegment(entry)).stream();
+                    } catch (IOException e) {
+                        log.warn("读取索引段失败: {} - {}", entry.path, e.getMessage());
+                        synchronized (unindexed) {
+                            unindexed.add(Paths.get(entry.path));
+                        }
+                        return Stream.empty();
+                    }
+                })
+                .collect(Collectors.toList());
+        return new QueryResult(hits, unindexed);
+    }
+
+    // ==================== 索引构建 ====================
+
+    private FileEntry indexFile(Path file, String key, long mtime, long size, String hash) throws Exception {
+        Segment segment = parse(file.toFile());
+
+        Set<Long> terms = new HashSet<>();
+        for (int i = 0; i < segment.size(); i++) {
+            addTrigrams(segment.text[i], terms);
+            for (String value : segment.attrValues[i]) {
+                addTrigrams(value, terms);
+            }
+        }
+        long[] bloom = new long[Math.max(1, (terms.size() * BLOOM_BITS_PER_TERM + 63) / 64)];
+        for (long term : terms) {
+            bloomAdd(bloom, term);
+        }
+
+        String segmentName = DigestUtil.md5Hex(key) + ".seg";
+        writeSegment(indexDir.resolve(segmentName), segment);
+        segmentCache.put(segmentName, new SoftReference<>(segment));
+        return new FileEntry(key, mtime, size, hash, segmentName, bloom);
+    }
+
+    /**
+     * SAX 流式解析，逐元素记录结构与直接文本
+     */
+    private static Segment parse(File xmlFile) throws Exception {
+        SegmentBuilder builder = new SegmentBuilder();
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        SAXParser parser = factory.newSAXParser();
+        FileEncodingDetector.EncodingInfo encoding = FileEncodingDetector.detect(xmlFile);
+        try (Reader in = BomAwareFileReader.openReader(xmlFile, encoding)) {
+            parser.parse(new InputSource(in), builder);
+        }
+        return builder.build();
+    }
+
+    private static final class SegmentBuilder extends DefaultHandler {
+        private final List<Integer> parents = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> ordinals = new ArrayList<>();
+        private final List<Integer> lines = new ArrayList<>();
+        private final List<String[]> attrNames = new ArrayList<>();
+        private final List<String[]> attrValues = new ArrayList<>();
+        private final List<String> texts = new ArrayList<>();
+        private final Map<String, String> dedup = new HashMap<>();
+
+        private final Deque<Integer> stack = new ArrayDeque<>();
+        private final Deque<Map<String, Integer>> childCounts = new ArrayDeque<>();
+        private final Deque<StringBuilder> textBuffers = new ArrayDeque<>();
+        private Locator locator;
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            this.locator = locator;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            String name = intern(qName);
+            int parent = stack.isEmpty() ? -1 : stack.peek();
+            int ordinal = childCounts.isEmpty() ? 1 : childCounts.peek().merge(name, 1, Integer::sum);
+
+            String[] aNames = new String[attributes.getLength()];
+            String[] aValues = new String[attributes.getLength()];
+            for (int i = 0; i < aNames.length; i++) {
+                aNames[i] = intern(attributes.getQName(i));
+                aValues[i] = attributes.getValue(i);
+            }
+
+            int index = names.size();
+            parents.add(parent);
+            names.add(name);
+            ordinals.add(ordinal);
+            lines.add(locator == null ? 0 : locator.getLineNumber());
+            attrNames.add(aNames);
+            attrValues.add(aValues);
+            texts.add(null);
+
+            stack.push(index);
+            childCounts.push(new HashMap<>());
+            textBuffers.push(new StringBuilder());
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (!textBuffers.isEmpty()) {
+                textBuffers.peek().append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            int index = stack.pop();
+            childCounts.pop();
+            String text = textBuffers.pop().toString().trim();
+            if (!text.isEmpty()) {
+                texts.set(index, text.length() <= 64 ? intern(text) : text);
+            }
+        }
+
+        private String intern(String value) {
+            return dedup.computeIfAbsent(value, k -> k);
+        }
+
+        Segment build() {
+            int n = names.size();
+            Segment segment = new Segment(n);
+            for (int i = 0; i < n; i++) {
+                segment.parent[i] = parents.get(i);
+                segment.name[i] = names.get(i);
+                segment.ordinal[i] = ordinals.get(i);
+                segment.line[i] = lines.get(i);
+                segment.attrNames[i] = attrNames.get(i);
+                segment.attrValues[i] = attrValues.get(i);
+                segment.text[i] = texts.get(i);
+            }
+            return segment;
+        }
+    }
+
+    // ==================== 查询匹配 ====================
+
+    private static Matcher compileMatcher(QueryType type, String query) {
+        switch (type) {
+            case ID:
+                return new Matcher(query) {
+                    @Override
+                    void matchElement(String file, Segment segment, int i, List<Hit> hits) {
+                        for (int a = 0; a < segment.attrNames[i].length; a++) {
+                            if ("id".equals(segment.attrNames[i][a]) && query.equals(segment.attrValues[i][a])) {
+                                hits.add(segment.hit(file, i, "id=\"" + query + "\""));
+                            }
+                        }
+                        // <id>xxx</id> 子元素：命中其父元素（条目本身）
+                        if ("id".equals(segment.name[i]) && query.equals(segment.text[i]) && segment.parent[i] >= 0) {
+                            hits.add(segment.hit(file, segment.parent[i], "<id>" + query + "</id>"));
+                        }
+                    }
+                };
+            case ATTRIBUTE: {
+                String[] parts = query.split("=", 2);
+                String attrName = parts[0].trim();
+                String attrValue = parts.length > 1 ? parts[1].trim() : "";
+                return new Matcher(attrValue) {
+                    @Override
+                    void matchElement(String file, Segment segment, int i, List<Hit> hits) {
+                        for (int a = 0; a < segment.attrNames[i].length; a++) {
+                            if (attrName.equals(segment.attrNames[i][a])
+                                    && (attrValue.isEmpty() || segment.attrValues[i][a].contains(attrValue))) {
+                                hits.add(segment.hit(file, i, attrName + "=\"" + segment.attrValues[i][a] + "\""));
+                                break;
+                            }
+                        }
+                    }
+                };
+            }
+            case REGEX: {
+                Pattern pattern = Pattern.compile(query);
+                return new Matcher(literalPrefix(query)) {
+                    @Override
+                    void matchElement(String file, Segment segment, int i, List<Hit> hits) {
+                        if (segment.text[i] != null) {
+                            java.util.regex.Matcher m = pattern.matcher(segment.text[i]);
+                            if (m.find()) {
+                                hits.add(segment.hit(file, i, m.group()));
+                            }
+                        }
+                        for (int a = 0; a < segment.attrNames[i].length; a++) {
+                            java.util.regex.Matcher m = pattern.matcher(segment.attrValues[i][a]);
+                            if (m.find()) {
+                                hits.add(segment.hit(file, i, segment.attrNames[i][a] + "=\"" + m.group() + "\""));
+                            }
+                        }
+                    }
+                };
+            }
+            default:
+                return new Matcher(query) {
+                    @Override
+                    void matchElement(String file, Segment segment, int i, List<Hit> hits) {
+                        if (segment.text[i] != null && containsIgnoreCase(segment.text[i], query)) {
+                            hits.add(segment.hit(file, i, extractContext(segment.text[i], query)));
+                        }
+                        for (int a = 0; a < segment.attrNames[i].length; a++) {
+                            if (containsIgnoreCase(segment.attrValues[i][a], query)) {
+                                hits.add(segment.hit(file, i,
+                                        segment.attrNames[i][a] + "=\"" + segment.attrValues[i][a] + "\""));
+                            }
+                        }
+                    }
+                };
+        }
+    }
+
+    /**
+     * 查询匹配器，literal 为用于布隆过滤的字面量（不区分大小写）
+     */
+    private abstract static class Matcher {
+        final String literal;
+
+        Matcher(String literal) {
+            this.literal = literal == null ? "" : literal;
+        }
+
+        List<Hit> match(String file, Segment segment) {
+            List<Hit> hits = new ArrayList<>();
+            for (int i = 0; i < segment.size(); i++) {
+                matchElement(file, segment, i, hits);
+            }
+            return hits;
+        }
+
+        abstract void matchElement(String file, Segment segment, int i, List<Hit> hits);
+    }
+
+    /**
+     * 正则开头的字面量部分（遇到元字符为止），用于过滤候选文件
+     *
+     * 顶层有未转义的 | 时各分支的开头互不相同，含 (? 内联标志/特殊分组时字面量的含义可能改变，
+     * 这两种情况都返回空串（不做过滤），避免漏掉只包含其他分支的文件。
+     */
+    static String literalPrefix(String regex) {
+        if (hasTopLevelAlternation(regex) || regex.contains("(?")) {
+            return "";
+        }
+        StringBuilder literal = new StringBuilder();
+        int i = regex.startsWith("^") ? 1 : 0;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if ("\\.[]{}()*+?^$|".indexOf(c) >= 0) {
+                // 紧跟量词的最后一个字符不一定出现
+                if ((c == '*' || c == '?' || c == '{') && literal.length() > 0) {
+                    literal.setLength(literal.length() - 1);
+                }
+                break;
+            }
+            literal.append(c);
+        }
+        return literal.toString();
+    }
+
+    /**
+     * 是否有不在分组、字符类内且未转义的 |
+     */
+    private static boolean hasTopLevelAlternation(String regex) {
+        int depth = 0;
+        boolean inClass = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (inClass) {
+                if (c == ']') {
+                    inClass = false;
+                }
+            } else if (c == '[') {
+                inClass = true;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+            } else if (c == '|' && depth == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsIgnoreCase(String text, String query) {
+        int max = text.length() - query.length();
+        for (int i = 0; i <= max; i++) {
+            if (text.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String extractContext(String text, String searchText) {
+        int index = text.toLowerCase().indexOf(searchText.toLowerCase());
+        if (index == -1) return text;
+
+        int start = Math.max(0, index - 50);
+        int end = Math.min(text.length(), index + searchText.length() + 50);
+
+        String context = text.substring(start, end);
+        if (start > 0) context = "..." + context;
+        if (end < text.length()) context = context + "...";
+        return context;
+    }
+
+    // ==================== 三元组与布隆过滤器 ====================
+
+    private static void addTrigrams(String value, Set<Long> terms) {
+        if (value == null || value.length() < 3) {
+            return;
+        }
+        String lower = value.toLowerCase();
+        for (int i = 0; i + 3 <= lower.length(); i++) {
+            terms.add(trigram(lower, i));
+        }
+    }
+
+    private static long[] trigramsOf(String literal) {
+        if (literal.length() < 3) {
+            return new long[0];
+        }
+        String lower = literal.toLowerCase();
+        return java.util.stream.IntStream.rangeClosed(0, lower.length() - 3)
+                .mapToLong(i -> trigram(lower, i))
+                .distinct()
+                .toArray();
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    private static void bloomAdd(long[] bloom, long term) {
+        long h = mix(term);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        long bits = (long) bloom.length * 64;
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            long bit = Math.floorMod(h1 + (long) k * h2, bits);
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static boolean bloomMightContain(long[] bloom, long term) {
+        long h = mix(term);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32);
+        long bits = (long) bloom.length * 64;
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            long bit = Math.floorMod(h1 + (long) k * h2, bits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== 持久化 ====================
+
+    private Segment loadSegment(FileEntry entry) throws IOException {
+        SoftReference<Segment> ref = segmentCache.get(entry.segmentName);
+        Segment segment = ref == null ? null : ref.get();
+        if (segment == null) {
+            segment = readSegment(indexDir.resolve(entry.segmentName));
+            segmentCache.put(entry.segmentName, new SoftReference<>(segment));
+        }
+        return segment;
+    }
+
+    private static void writeSegment(Path target, Segment segment) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp), 1 << 16)))) {
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(segment.size());
+            for (int i = 0; i < segment.size(); i++) {
+                out.writeInt(segment.parent[i]);
+                writeString(out, segment.name[i]);
+                out.writeInt(segment.ordinal[i]);
+                out.writeInt(segment.line[i]);
+                out.writeShort(segment.attrNames[i].length);
+                for (int a = 0; a < segment.attrNames[i].length; a++) {
+                    writeString(out, segment.attrNames[i][a]);
+                    writeString(out, segment.attrValues[i][a]);
+                }
+                writeString(out, segment.text[i]);
+            }
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Segment readSegment(Path source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(source), 1 << 16)))) {
+            if (in.readInt() != SEGMENT_MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("索引段格式不匹配: " + source);
+            }
+            int n = in.readInt();
+            Segment segment = new Segment(n);
+            Map<String, String> dedup = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                segment.parent[i] = in.readInt();
+                segment.name[i] = dedup.computeIfAbsent(readString(in), k -> k);
+                segment.ordinal[i] = in.readInt();
+                segment.line[i] = in.readInt();
+                int attrCount = in.readUnsignedShort();
+                segment.attrNames[i] = new String[attrCount];
+                segment.attrValues[i] = new String[attrCount];
+                for (int a = 0; a < attrCount; a++) {
+                    segment.attrNames[i][a] = dedup.computeIfAbsent(readString(in), k -> k);
+                    segment.attrValues[i][a] = readString(in);
+                }
+                segment.text[i] = readString(in);
+            }
+            return segment;
+        }
+    }
+
+    private void loadManifest() {
+        Path manifest = indexDir.resolve(MANIFEST_FILE);
+        if (!Files.exists(manifest)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(manifest))))) {
+            if (in.readInt() != MANIFEST_MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.info("搜索索引格式已变化，将重建: {}", indexDir);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = readString(in);
+                long mtime = in.readLong();
+                long size = in.readLong();
+                String hash = readString(in);
+                String segmentName = readString(in);
+                long[] bloom = new long[in.readInt()];
+                for (int b = 0; b < bloom.length; b++) {
+                    bloom[b] = in.readLong();
+                }
+                if (Files.exists(indexDir.resolve(segmentName))) {
+                    files.put(path, new FileEntry(path, mtime, size, hash, segmentName, bloom));
+                }
+            }
+            log.info("已加载搜索索引: {} 共 {} 个文件", root, files.size());
+        } catch (IOException e) {
+            log.warn("读取搜索索引清单失败，将重建: {} - {}", manifest, e.getMessage());
+            files.clear();
+        }
+    }
+
+    private void saveManifest() throws IOException {
+        Path manifest = indexDir.resolve(MANIFEST_FILE);
+        Path tmp = indexDir.resolve(MANIFEST_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+            out.writeInt(MANIFEST_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            List<FileEntry> entries = new ArrayList<>(files.values());
+            out.writeInt(entries.size());
+            for (FileEntry entry : entries) {
+                writeString(out, entry.path);
+                out.writeLong(entry.mtime);
+                out.writeLong(entry.size);
+                writeString(out, entry.hash);
+                writeString(out, entry.segmentName);
+                out.writeInt(entry.bloom.length);
+                for (long word : entry.bloom) {
+                    out.writeLong(word);
+                }
+            }
+        }
+        Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** 长度 + UTF-8 字节，-1 表示 null（writeUTF 有 64KB 限制，长文本不适用） */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String keyOf(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    // ==================== 数据结构 ====================
+
+    /**
+     * 清单中的文件记录
+     */
+    private static final class FileEntry {
+        final String path;
+        final long mtime;
+        final long size;
+        final String hash;
+        final String segmentName;
+        final long[] bloom;
+
+        FileEntry(String path, long mtime, long size, String hash, String segmentName, long[] bloom) {
+            this.path = path;
+            this.mtime = mtime;
+            this.size = size;
+            this.hash = hash;
+            this.segmentName = segmentName;
+            this.bloom = bloom;
+        }
+
+        FileEntry withStat(long newMtime, long newSize) {
+            return new FileEntry(path, newMtime, newSize, hash, segmentName, bloom);
+        }
+
+        boolean isCurrent(Path file) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                return attrs.lastModifiedTime().toMillis() == mtime && attrs.size() == size;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        boolean mightContainAll(long[] trigrams) {
+            for (long trigram : trigrams) {
+                if (!bloomMightContain(bloom, trigram)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 一个文件的元素记录（列式存储）
+     */
+    private static final class Segment {
+        final int[] parent;
+        final String[] name;
+        final int[] ordinal;
+        final int[] line;
+        final String[][] attrNames;
+        final String[][] attrValues;
+        final String[] text;
+
+        Segment(int n) {
+            parent = new int[n];
+            name = new String[n];
+            ordinal = new int[n];
+            line = new int[n];
+            attrNames = new String[n][];
+            attrValues = new String[n][];
+            text = new String[n];
+        }
+
+        int size() {
+            return name.length;
+        }
+
+        /** 带同名序号的路径，如 /item_templates/item_template[12]/id */
+        String path(int i) {
+            Deque<String> parts = new ArrayDeque<>();
+            for (int cur = i; cur >= 0; cur = parent[cur]) {
+                parts.push(parent[cur] < 0 ? name[cur] : name[cur] + "[" + ordinal[cur] + "]");
+            }
+            return "/" + String.join("/", parts);
+        }
+
+        Hit hit(String file, int i, String matchedText) {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            for (int a = 0; a < attrNames[i].length; a++) {
+                attributes.put(attrNames[i][a], attrValues[i][a]);
+            }
+            return new Hit(file, path(i), line[i], matchedText, attributes);
+        }
+    }
+
+    /**
+     * 命中结果
+     */
+    public static final class Hit {
+        private final String filePath;
+        private final String elementPath;
+        private final int lineNumber;
+        private final String matchedText;
+        private final Map<String, String> attributes;
+
+        Hit(String filePath, String elementPath, int lineNumber, String matchedText, Map<String, String> attributes) {
+            this.filePath = filePath;
+            this.elementPath = elementPath;
+            this.lineNumber = lineNumber;
+            this.matchedText = matchedText;
+            this.attributes = attributes;
+        }
+
+        public String getFilePath() { return filePath; }
+        public String getElementPath() { return elementPath; }
+        public int getLineNumber() { return lineNumber; }
+        public String getMatchedText() { return matchedText; }
+        public Map<String, String> getAttributes() { return attributes; }
+    }
+
+    /**
+     * 查询结果
+     */
+    public static final class QueryResult {
+        private final List<Hit> hits;
+        private final List<Path> unindexedFiles;
+
+        QueryResult(List<Hit> hits, List<Path> unindexedFiles) {
+            this.hits = hits;
+            this.unindexedFiles = unindexedFiles;
+        }
+
+        public List<Hit> getHits() { return hits; }
+
+        /** 未建立索引或索引已过期的文件，需由调用方扫描 */
+        public List<Path> getUnindexedFiles() { return unindexedFiles; }
+    }
+}
@@ -0,0 +1,455 @@
+package red.jiuzhou.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.BomAwareFileReader;
+import red.jiuzhou.util.FileEncodingDetector;
+
+import javax.xml.stream.*;
+import javax.xml.stream.events.*;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * @className: red.jiuzhou.search.XmlStreamRewriter.java
+ * @description: 基于 StAX 的 XML 流式改写
+ *
+ * 逐事件读取并原样写出，只在目标元素（以带同名序号的元素路径指定，与 {@link XmlSearchIndex} 一致）处
+ * 缓冲该元素的子树：用缓冲内容判断条件（属性或首个同名后代元素的文本），满足时对元素的直接文本
+ * 应用替换函数。内存占用只与最大的目标元素有关，与文件大小无关。
+ *
+ * 写出到同目录的临时文件后原子重命名覆盖原文件；备份通过硬链接保留原文件内容（不支持时回退为复制）。
+ * 预览模式只统计不写文件。多个文件并行处理，返回每个文件的修改数量。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class XmlStreamRewriter {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlStreamRewriter.class);
+
+    /**
+     * 元素条件：lookup 按名称返回属性值或首个同名后代元素的文本，不存在时返回空字符串
+     */
+    public interface ElementCondition {
+        boolean test(Function<String, String> lookup);
+    }
+
+    private final XMLInputFactory inputFactory;
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    public XmlStreamRewriter() {
+        inputFactory = XMLInputFactory.newInstance();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    /**
+     * 改写多个文件
+     *
+     * @param edits 文件 → (元素路径 → 文本替换函数)
+     * @param condition 元素条件，null 表示不限制
+     * @param write false 为预览，只统计
+     * @param backup 写回前保留 .bak 备份
+     * @param executor 执行器
+     * @return 文件 → 修改的元素数（只包含有修改的文件）
+     */
+    public Map<String, Integer> rewrite(Map<String, Map<String, UnaryOperator<String>>> edits,
+                                        ElementCondition condition, boolean write, boolean backup,
+                                        ExecutorService executor) throws Exception {
+        Semaphore permits = new Semaphore(Runtime.getRuntime().availableProcessors());
+        Map<String, Future<Integer>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, UnaryOperator<String>>> entry : edits.entrySet()) {
+            futures.put(entry.getKey(), executor.submit(() -> {
+                permits.acquire();
+                try {
+                    return rewriteFile(Paths.get(entry.getKey()), entry.getValue(), condition, write, backup);
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<Integer>> entry : futures.entrySet()) {
+            try {
+                int count = entry.getValue().get();
+                if (count > 0) {
+                    counts.put(entry.getKey(), count);
+                }
+            } catch (ExecutionException e) {
+                throw new RuntimeException("替换失败: " + entry.getKey(), e.getCause());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 改写单个文件，返回修改的元素数
+     */
+    int rewriteFile(Path file, Map<String, UnaryOperator<String>> targets, ElementCondition condition,
+                    boolean write, boolean backup) throws IOException, XMLStreamException {
+        FileEncodingDetector.EncodingInfo encoding = FileEncodingDetector.detect(file.toFile());
+        Path temp = write ? Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp") : null;
+
+        int changed;
+        try (Reader in = BomAwareFileReader.openReader(file.toFile(), encoding);
+             OutputStream out = temp != null ? Files.newOutputStream(temp) : OutputStream.nullOutputStream()) {
+            Charset charset = writeBom(out, encoding);
+            // 包一层 BufferedWriter：写出器不再校验声明编码与 OutputStreamWriter 的字符集名是否一致（UTF-16LE + BOM 声明为 UTF-16）
+            Writer textOut = new BufferedWriter(new OutputStreamWriter(out, charset));
+            XMLEventReader reader = inputFactory.createXMLEventReader(in);
+            Emitter writer = new Emitter(outputFactory.createXMLStreamWriter(textOut), charset);
+            try {
+                changed = process(reader, writer, targets, condition);
+                writer.flush();
+            } finally {
+                reader.close();
+                writer.close();
+            }
+            textOut.flush();
+        } catch (IOException | XMLStreamException | RuntimeException e) {
+            if (temp != null) {
+                Files.deleteIfExists(temp);
+            }
+            throw e;
+        }
+
+        if (temp != null) {
+            if (changed > 0) {
+                if (backup) {
+                    backupFile(file);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.deleteIfExists(temp);
+            }
+        }
+        return changed;
+    }
+
+    private int process(XMLEventReader reader, Emitter writer, Map<String, UnaryOperator<String>> targets,
+                        ElementCondition condition) throws XMLStreamException {
+        Deque<Map<String, Integer>> childCounts = new ArrayDeque<>();
+        Deque<String> paths = new ArrayDeque<>();
+
+        List<XMLEvent> buffer = new ArrayList<>();
+        List<String> bufferPaths = new ArrayList<>();
+        int bufferDepth = 0;
+        int changed = 0;
+
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                String name = qualifiedName(event.asStartElement());
+                String path;
+                if (paths.isEmpty()) {
+                    path = "/" + name;
+                } else {
+                    int ordinal = childCounts.peek().merge(name, 1, Integer::sum);
+                    path = paths.peek() + "/" + name + "[" + ordinal + "]";
+                }
+                paths.push(path);
+                childCounts.push(new HashMap<>());
+
+                if (bufferDepth > 0 || targets.containsKey(path)) {
+                    buffer.add(event);
+                    bufferPaths.add(path);
+                    bufferDepth++;
+                    continue;
+                }
+            } else if (event.isEndElement()) {
+                paths.pop();
+                childCounts.pop();
+                if (bufferDepth > 0) {
+                    buffer.add(event);
+                    bufferPaths.add(null);
+                    if (--bufferDepth == 0) {
+                        changed += applyEdits(buffer, bufferPaths, targets, condition);
+                        for (XMLEvent buffered : buffer) {
+                            if (buffered != null) {
+                                writer.add(buffered);
+                            }
+                        }
+                        buffer.clear();
+                        bufferPaths.clear();
+                    }
+                    continue;
+                }
+            } else if (bufferDepth > 0) {
+                buffer.add(event);
+                bufferPaths.add(null);
+                continue;
+            }
+            writer.add(event);
+        }
+        return changed;
+    }
+
+    /**
+     * 对缓冲子树中的目标元素（含嵌套的目标）应用替换，被合并掉的文本事件置为 null
+     */
+    private int applyEdits(List<XMLEvent> buffer, List<String> bufferPaths, Map<String, UnaryOperator<String>> targets,
+                           ElementCondition condition) {
+        int changed = 0;
+        for (int start = 0; start < buffer.size(); start++) {
+            String path = bufferPaths.get(start);
+            UnaryOperator<String> replacer = path == null ? null : targets.get(path);
+            if (replacer == null) {
+                continue;
+            }
+            int from = start;
+            int end = endOf(buffer, start);
+            if (condition != null && !condition.test(name -> lookup(buffer, from, end, name))) {
+                continue;
+            }
+
+            // 元素的直接文本
+            List<Integer> textEvents = new ArrayList<>();
+            StringBuilder text = new StringBuilder();
+            int depth = 0;
+            for (int i = start + 1; i < end; i++) {
+                XMLEvent event = buffer.get(i);
+                if (event == null) {
+                    continue;
+                }
+                if (event.isStartElement()) {
+                    depth++;
+                } else if (event.isEndElement()) {
+                    depth--;
+                } else if (depth == 0 && event.isCharacters()) {
+                    textEvents.add(i);
+                    text.append(event.asCharacters().getData());
+                }
+            }
+            if (textEvents.isEmpty()) {
+                continue;
+            }
+
+            String original = text.toString();
+            String replaced = replacer.apply(original);
+            if (original.equals(replaced)) {
+                continue;
+            }
+            int first = textEvents.get(0);
+            buffer.set(first, buffer.get(first).asCharacters().isCData()
+                    ? eventFactory.createCData(replaced)
+                    : eventFactory.createCharacters(replaced));
+            for (int i = 1; i < textEvents.size(); i++) {
+                buffer.set(textEvents.get(i), null);
+            }
+            changed++;
+        }
+        return changed;
+    }
+
+    private static int endOf(List<XMLEvent> buffer, int start) {
+        int depth = 0;
+        for (int i = start; i < buffer.size(); i++) {
+            XMLEvent event = buffer.get(i);
+            if (event == null) {
+                continue;
+            }
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement() && --depth == 0) {
+                return i;
+            }
+        }
+        return buffer.size() - 1;
+    }
+
+    /**
+     * 条件取值：先取属性，再取首个同名后代元素的文本
+     */
+    private static String lookup(List<XMLEvent> buffer, int start, int end, String name) {
+        Iterator<Attribute> attributes = buffer.get(start).asStartElement().getAttributes();
+        while (attributes.hasNext()) {
+            Attribute attribute = attributes.next();
+            if (qualifiedName(attribute.getName()).equals(name)) {
+                return attribute.getValue();
+            }
+        }
+        for (int i = start + 1; i < end; i++) {
+            XMLEvent event = buffer.get(i);
+            if (event != null && event.isStartElement() && qualifiedName(event.asStartElement()).equals(name)) {
+                StringBuilder text = new StringBuilder();
+                for (int j = i + 1, depth = 0; j < end && depth >= 0; j++) {
+                    XMLEvent inner = buffer.get(j);
+                    if (inner == null) {
+                        continue;
+                    }
+                    if (inner.isStartElement()) {
+                        depth++;
+                    } else if (inner.isEndElement()) {
+                        depth--;
+                    } else if (inner.isCharacters()) {
+                        text.append(inner.asCharacters().getData());
+                    }
+                }
+                return text.toString();
+            }
+        }
+        return "";
+    }
+
+    private static String qualifiedName(StartElement element) {
+        return qualifiedName(element.getName());
+    }
+
+    private static String qualifiedName(javax.xml.namespace.QName name) {
+        return name.getPrefix() == null || name.getPrefix().isEmpty()
+                ? name.getLocalPart()
+                : name.getPrefix() + ":" + name.getLocalPart();
+    }
+
+    /**
+     * 事件写出：空元素保持 &lt;a/&gt; 形式，XML 声明保留源文件的编码声明，其余事件原样写出
+     */
+    private static final class Emitter {
+        private final XMLStreamWriter out;
+        private final Charset charset;
+        private StartElement pendingStart;
+
+        Emitter(XMLStreamWriter out, Charset charset) {
+            this.out = out;
+            this.charset = charset;
+        }
+
+        void add(XMLEvent event) throws XMLStreamException {
+            if (pendingStart != null) {
+                StartElement start = pendingStart;
+                pendingStart = null;
+                if (event.isEndElement()) {
+                    writeStart(start, true);
+                    return;
+                }
+                writeStart(start, false);
+            }
+
+            switch (event.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    pendingStart = event.asStartElement();
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    out.writeEndElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    out.writeCharacters(event.asCharacters().getData());
+                    break;
+                case XMLStreamConstants.CDATA:
+                    out.writeCData(event.asCharacters().getData());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    out.writeComment(((Comment) event).getText());
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    ProcessingInstruction pi = (ProcessingInstruction) event;
+                    out.writeProcessingInstruction(pi.getTarget(), pi.getData());
+                    break;
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    out.writeEntityRef(((EntityReference) event).getName());
+                    break;
+                case XMLStreamConstants.DTD:
+                    out.writeDTD(((DTD) event).getDocumentTypeDeclaration());
+                    break;
+                case XMLStreamConstants.START_DOCUMENT:
+                    StartDocument document = (StartDocument) event;
+                    if (document.encodingSet()) {
+                        // 从 Reader 读取时解析器不回传声明的编码名，按实际写出的字符集声明
+                        String declared = document.getCharacterEncodingScheme() != null
+                                ? document.getCharacterEncodingScheme()
+                                : charset.name().startsWith("UTF-16") ? "UTF-16" : charset.name();
+                        out.writeStartDocument(declared, document.getVersion());
+                    } else {
+                        out.writeStartDocument(document.getVersion());
+                    }
+                    out.writeCharacters("\n");
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    out.writeEndDocument();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void writeStart(StartElement start, boolean empty) throws XMLStreamException {
+            String prefix = start.getName().getPrefix();
+            String local = start.getName().getLocalPart();
+            String uri = start.getName().getNamespaceURI();
+            if (empty) {
+                out.writeEmptyElement(prefix, local, uri);
+            } else {
+                out.writeStartElement(prefix, local, uri);
+            }
+            Iterator<Namespace> namespaces = start.getNamespaces();
+            while (namespaces.hasNext()) {
+                Namespace namespace = namespaces.next();
+                out.writeNamespace(namespace.getPrefix(), namespace.getNamespaceURI());
+            }
+            Iterator<Attribute> attributes = start.getAttributes();
+            while (attributes.hasNext()) {
+                Attribute attribute = attributes.next();
+                javax.xml.namespace.QName name = attribute.getName();
+                if (name.getPrefix() == null || name.getPrefix().isEmpty()) {
+                    out.writeAttribute(name.getLocalPart(), attribute.getValue());
+                } else {
+                    out.writeAttribute(name.getPrefix(), name.getNamespaceURI(), name.getLocalPart(), attribute.getValue());
+                }
+            }
+        }
+
+        void flush() throws XMLStreamException {
+            out.flush();
+        }
+
+        void close() throws XMLStreamException {
+            out.close();
+        }
+    }
+
+    /**
+     * 按源文件编码写出（保留 BOM），返回写出文本使用的字符集
+     */
+    private static Charset writeBom(OutputStream out, FileEncodingDetector.EncodingInfo encoding) throws IOException {
+        Charset charset = encoding.toCharset();
+        if (StandardCharsets.UTF_16.equals(charset)) {
+            // UTF-16 编码器自带大端 BOM
+            return charset;
+        }
+        if (encoding.hasBOM()) {
+            if (StandardCharsets.UTF_16LE.equals(charset)) {
+                out.write(new byte[]{(byte) 0xFF, (byte) 0xFE});
+            } else if (StandardCharsets.UTF_16BE.equals(charset)) {
+                out.write(new byte[]{(byte) 0xFE, (byte) 0xFF});
+            } else if (StandardCharsets.UTF_8.equals(charset)) {
+                out.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+            }
+        }
+        return charset;
+    }
+
+    /**
+     * 备份：优先用硬链接指向原文件内容（原子替换后原内容仍由 .bak 保留），不支持时复制
+     */
+    private static void backupFile(Path file) throws IOException {
+        Path backup = file.resolveSibling(file.getFileName() + ".bak");
+        Files.deleteIfExists(backup);
+        try {
+            Files.createLink(backup, file);
+        } catch (UnsupportedOperationException | IOException e) {
+            log.debug("无法创建硬链接备份，改为复制: {}", backup);
+            Files.copy(file, backup, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,535 @@
+package red.jiuzhou.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.FileEncodingDetector;
+import red.jiuzhou.util.YamlUtils;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @className: red.jiuzhou.search.XmlStreamSearcher.java
+ * @description: 不建 DOM 的 XML 流式文本/正则搜索
+ *
+ * 文件通过内存映射读取：UTF-16 文件直接按字节序视为字符缓冲区（零拷贝），其他编码解码一次后扫描。
+ * 正则在整个字符序列上查找，命中后只向前推进一个轻量的标签扫描器，得到外层元素的路径（带同名序号，
+ * 与 {@link XmlSearchIndex} 一致，可作为 XPath 定位）和行号，并只解析该元素的开始标签取属性。
+ * 注释、处理指令、DOCTYPE 与标签名中的命中会被忽略；同一元素的同一文本/属性只报告一次。
+ *
+ * 匹配在原始文本上进行，实体（如 &amp;amp;）不会被解码。
+ *
+ * 多个文件在调用方提供的执行器上并发扫描，并发度由信号量限制；结果数达到上限或调用线程被中断时
+ * 取消剩余文件。映射使用受限 Arena，扫描结束立即解除映射，不会在 Windows 上锁住文件影响后续替换写回。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class XmlStreamSearcher {
+
+    private static final Logger log = LoggerFactory.getLogger(XmlStreamSearcher.class);
+
+    private final int parallelism;
+    private final int maxResults;
+
+    public XmlStreamSearcher() {
+        int configured = Integer.parseInt(YamlUtils.getProperty("application.yml", "search.stream.parallelism", "0"));
+        this.parallelism = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        this.maxResults = Integer.parseInt(YamlUtils.getProperty("application.yml", "search.stream.max-results", "5000"));
+    }
+
+    /**
+     * 在多个文件中搜索
+     *
+     * @param files 文件列表
+     * @param query 查询内容
+     * @param regex true 为正则（结果为匹配到的文本），false 为不区分大小写的文本包含（结果为匹配处上下文）
+     * @param executor 执行扫描任务的执行器
+     */
+    public StreamResult search(List<Path> files, String query, boolean regex,
+                               ExecutorService executor) throws InterruptedException {
+        Pattern pattern = regex
+                ? Pattern.compile(query)
+                : Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+        Semaphore permits = new Semaphore(parallelism);
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        AtomicInteger found = new AtomicInteger();
+        List<XmlSearchIndex.Hit> hits = Collections.synchronizedList(new ArrayList<>());
+
+        List<Future<?>> futures = new ArrayList<>(files.size());
+        for (Path file : files) {
+            futures.add(executor.submit(() -> {
+                permits.acquire();
+                try {
+                    if (cancelled.get()) {
+                        return null;
+                    }
+                    List<XmlSearchIndex.Hit> fileHits = scanFile(file, pattern, regex, query, cancelled);
+                    hits.addAll(fileHits);
+                    if (found.addAndGet(fileHits.size()) >= maxResults) {
+                        cancelled.set(true);
+                    }
+                } catch (IOException e) {
+                    log.error("Error searching in file: " + file, e);
+                } finally {
+                    permits.release();
+                }
+                return null;
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (CancellationException ignored) {
+                    // 达到上限后取消的文件
+                } catch (ExecutionException e) {
+                    log.error("Stream search failed", e.getCause());
+                }
+                if (cancelled.get()) {
+                    futures.forEach(f -> f.cancel(true));
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            futures.forEach(f -> f.cancel(true));
+            throw e;
+        }
+
+        if (cancelled.get()) {
+            log.info("流式搜索结果达到上限 {}，已停止扫描剩余文件", maxResults);
+            List<XmlSearchIndex.Hit> kept = hits.size() > maxResults ? new ArrayList<>(hits.subList(0, maxResults)) : hits;
+            return new StreamResult(kept, true);
+        }
+        return new StreamResult(hits, false);
+    }
+
+    /**
+     * 流式搜索结果，truncated 表示达到 search.stream.max-results 上限后停止了扫描
+     */
+    public static final class StreamResult {
+        private final List<XmlSearchIndex.Hit> hits;
+        private final boolean truncated;
+
+        StreamResult(List<XmlSearchIndex.Hit> hits, boolean truncated) {
+            this.hits = hits;
+            this.truncated = truncated;
+        }
+
+        public List<XmlSearchIndex.Hit> getHits() { return hits; }
+
+        /** 结果是否因达到上限而不完整 */
+        public boolean isTruncated() { return truncated; }
+    }
+
+    /**
+     * 扫描单个文件
+     */
+    List<XmlSearchIndex.Hit> scanFile(Path file, Pattern pattern, boolean regex, String query,
+                                      AtomicBoolean cancelled) throws IOException {
+        List<XmlSearchIndex.Hit> hits = new ArrayList<>();
+        FileEncodingDetector.EncodingInfo encoding = FileEncodingDetector.detect(file.toFile());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             Arena arena = Arena.ofConfined()) {
+            long size = channel.size();
+            if (size == 0) {
+                return hits;
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("文件过大，无法映射: " + file);
+            }
+            ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size, arena).asByteBuffer();
+            CharSequence chars = charView(bytes, encoding);
+
+            TagCursor cursor = new TagCursor(chars);
+            Matcher matcher = pattern.matcher(chars);
+            String lastKey = null;
+            String filePath = file.toString();
+            while (matcher.find()) {
+                if (cancelled.get() || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                TagCursor.Location location = cursor.locate(matcher.start());
+                if (location == null) {
+                    continue;
+                }
+                String key = location.elementPath + '@' + location.attrName;
+                if (key.equals(lastKey)) {
+                    continue;
+                }
+                lastKey = key;
+
+                String matchedText;
+                if (location.attrName != null) {
+                    matchedText = location.attrName + "=\"" + (regex ? matcher.group() : location.attrValue) + "\"";
+                } else {
+                    matchedText = regex ? matcher.group() : extractContext(location.text, query);
+                }
+                hits.add(new XmlSearchIndex.Hit(filePath, location.elementPath, location.line, matchedText,
+                        cursor.attributesAt(location.tagStart)));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * 映射缓冲区的字符视图：UTF-16 直接视为 CharBuffer，其他编码解码为堆上字符缓冲
+     */
+    private static CharSequence charView(ByteBuffer bytes, FileEncodingDetector.EncodingInfo encoding) {
+        int b0 = bytes.limit() > 0 ? bytes.get(0) & 0xFF : -1;
+        int b1 = bytes.limit() > 1 ? bytes.get(1) & 0xFF : -1;
+
+        if (encoding.isUTF16()) {
+            ByteOrder order;
+            int skip = 0;
+            if (b0 == 0xFE && b1 == 0xFF) {
+                order = ByteOrder.BIG_ENDIAN;
+                skip = 2;
+            } else if (b0 == 0xFF && b1 == 0xFE) {
+                order = ByteOrder.LITTLE_ENDIAN;
+                skip = 2;
+            } else if ("UTF-16LE".equals(encoding.getEncoding()) || (b0 != 0 && b1 == 0)) {
+                order = ByteOrder.LITTLE_ENDIAN;
+            } else {
+                order = ByteOrder.BIG_ENDIAN;
+            }
+            return bytes.position(skip).slice().order(order).asCharBuffer();
+        }
+
+        if (b0 == 0xEF && b1 == 0xBB && bytes.limit() > 2 && (bytes.get(2) & 0xFF) == 0xBF) {
+            bytes.position(3);
+        }
+        return encoding.toCharset().decode(bytes);
+    }
+
+    private static String extractContext(String text, String searchText) {
+        int index = text.toLowerCase().indexOf(searchText.toLowerCase());
+        if (index == -1) return text;
+
+        int start = Math.max(0, index - 50);
+        int end = Math.min(text.length(), index + searchText.length() + 50);
+
+        String context = text.substring(start, end);
+        if (start > 0) context = "..." + context;
+        if (end < text.length()) context = context + "...";
+        return context;
+    }
+
+    /**
+     * 只进不退的标签扫描器：维护元素栈、同名序号与行号，定位命中位置所在的元素
+     */
+    static final class TagCursor {
+
+        /** 命中位置 */
+        static final class Location {
+            final String elementPath;
+            final int tagStart;
+            final int line;
+            final String attrName;   // 属性值中的命中，文本命中为 null
+            final String attrValue;
+            final String text;       // 文本命中所在的文本段
+
+            Location(String elementPath, int tagStart, int line, String attrName, String attrValue, String text) {
+                this.elementPath = elementPath;
+                this.tagStart = tagStart;
+                this.line = line;
+                this.attrName = attrName;
+                this.attrValue = attrValue;
+                this.text = text;
+            }
+        }
+
+        private static final class Frame {
+            final String name;
+            final int ordinal;
+            final int tagStart;
+            Map<String, Integer> childCounts;
+
+            Frame(String name, int ordinal, int tagStart) {
+                this.name = name;
+                this.ordinal = ordinal;
+                this.tagStart = tagStart;
+            }
+
+            int peekOrdinal(String child) {
+                return childCounts == null ? 1 : childCounts.getOrDefault(child, 0) + 1;
+            }
+
+            int nextOrdinal(String child) {
+                if (childCounts == null) {
+                    childCounts = new HashMap<>();
+                }
+                return childCounts.merge(child, 1, Integer::sum);
+            }
+        }
+
+        private final CharSequence chars;
+        private final List<Frame> stack = new ArrayList<>();
+        private int pos;
+        private int line = 1;
+
+        TagCursor(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        /**
+         * 推进到 target 并返回其所在元素；位于注释、处理指令、DOCTYPE、结束标签或标签名中时返回 null
+         */
+        Location locate(int target) {
+            while (pos <= target) {
+                char c = chars.charAt(pos);
+                if (c != '<') {
+                    if (pos == target) {
+                        return textLocation(target, line);
+                    }
+                    if (c == '\n') {
+                        line++;
+                    }
+                    pos++;
+                    continue;
+                }
+
+                int end = constructEnd(pos);
+                if (target <= end) {
+                    return locateInConstruct(pos, end, target);
+                }
+                apply(pos, end);
+                line += countNewlines(pos, end + 1);
+                pos = end + 1;
+            }
+            // target 落在已处理过的同一文本段内
+            return textLocation(target, line - countNewlines(target, pos));
+        }
+
+        private Location locateInConstruct(int start, int end, int target) {
+            int targetLine = line + countNewlines(start, target);
+            if (startsWith(start, "<![CDATA[")) {
+                if (stack.isEmpty()) {
+                    return null;
+                }
+                return textIn(targetLine, chars.subSequence(start + 9, Math.max(start + 9, end - 2)).toString());
+            }
+            if (chars.length() > start + 1 && "!?/".indexOf(chars.charAt(start + 1)) >= 0) {
+                return null;
+            }
+
+            // 开始标签：找到包含 target 的属性值
+            int i = start + 1;
+            int nameEnd = skipName(i);
+            String name = chars.subSequence(i, nameEnd).toString();
+            i = nameEnd;
+            while (i < end) {
+                i = skipSpaces(i);
+                int attrNameEnd = skipName(i);
+                if (attrNameEnd == i) {
+                    break;
+                }
+                String attrName = chars.subSequence(i, attrNameEnd).toString();
+                i = skipSpaces(attrNameEnd);
+                if (i >= end || chars.charAt(i) != '=') {
+                    break;
+                }
+                i = skipSpaces(i + 1);
+                char quote = chars.charAt(i);
+                int valueStart = i + 1;
+                int valueEnd = indexOf(quote, valueStart);
+                if (target >= valueStart && target < valueEnd) {
+                    String parentPath = currentPath();
+                    int ordinal = stack.isEmpty() ? 0 : stack.get(stack.size() - 1).peekOrdinal(name);
+                    String path = ordinal == 0 ? "/" + name : parentPath + "/" + name + "[" + ordinal + "]";
+                    return new Location(path, start, targetLine, attrName,
+                            chars.subSequence(valueStart, valueEnd).toString(), null);
+                }
+                i = valueEnd + 1;
+            }
+            return null;
+        }
+
+        private Location textLocation(int target, int targetLine) {
+            if (stack.isEmpty()) {
+                return null;
+            }
+            int from = target;
+            while (from > 0 && chars.charAt(from - 1) != '>') {
+                from--;
+            }
+            int to = target;
+            while (to < chars.length() && chars.charAt(to) != '<') {
+                to++;
+            }
+            return textIn(targetLine, chars.subSequence(from, to).toString().trim());
+        }
+
+        private Location textIn(int targetLine, String text) {
+            Frame top = stack.get(stack.size() - 1);
+            return new Location(currentPath(), top.tagStart, targetLine, null, null, text);
+        }
+
+        /**
+         * 处理一个完整的标签/注释/指令，维护元素栈
+         */
+        private void apply(int start, int end) {
+            if (chars.length() <= start + 1) {
+                return;
+            }
+            char next = chars.charAt(start + 1);
+            if (next == '/') {
+                if (!stack.isEmpty()) {
+                    stack.remove(stack.size() - 1);
+                }
+                return;
+            }
+            if (next == '!' || next == '?') {
+                return;
+            }
+            String name = chars.subSequence(start + 1, skipName(start + 1)).toString();
+            int ordinal = stack.isEmpty() ? 0 : stack.get(stack.size() - 1).nextOrdinal(name);
+            if (chars.charAt(end - 1) != '/') {
+                stack.add(new Frame(name, ordinal, start));
+            }
+        }
+
+        private String currentPath() {
+            StringBuilder path = new StringBuilder();
+            for (Frame frame : stack) {
+                path.append('/').append(frame.name);
+                if (frame.ordinal > 0) {
+                    path.append('[').append(frame.ordinal).append(']');
+                }
+            }
+            return path.toString();
+        }
+
+        /**
+         * 解析开始标签中的属性（仅对命中的元素调用）
+         */
+        Map<String, String> attributesAt(int tagStart) {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            int end = constructEnd(tagStart);
+            int i = skipName(tagStart + 1);
+            while (i < end) {
+                i = skipSpaces(i);
+                int nameEnd = skipName(i);
+                if (nameEnd == i) {
+                    break;
+                }
+                String name = chars.subSequence(i, nameEnd).toString();
+                i = skipSpaces(nameEnd);
+                if (i >= end || chars.charAt(i) != '=') {
+                    break;
+                }
+                i = skipSpaces(i + 1);
+                char quote = chars.charAt(i);
+                int valueEnd = indexOf(quote, i + 1);
+                attributes.put(name, chars.subSequence(i + 1, valueEnd).toString());
+                i = valueEnd + 1;
+            }
+            return attributes;
+        }
+
+        /**
+         * 从 '<' 开始的结构的结束位置（'>' 的下标）
+         */
+        private int constructEnd(int start) {
+            if (startsWith(start, "<!--")) {
+                return indexOf("-->", start + 4) + 2;
+            }
+            if (startsWith(start, "<![CDATA[")) {
+                return indexOf("]]>", start + 9) + 2;
+            }
+            if (startsWith(start, "<?")) {
+                return indexOf("?>", start + 2) + 1;
+            }
+            boolean isDoctype = startsWith(start, "<!");
+            char quote = 0;
+            int depth = 0;
+            for (int i = start + 1; i < chars.length(); i++) {
+                char c = chars.charAt(i);
+                if (quote != 0) {
+                    if (c == quote) quote = 0;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (isDoctype && c == '[') {
+                    depth++;
+                } else if (isDoctype && c == ']') {
+                    depth--;
+                } else if (c == '>' && depth <= 0) {
+                    return i;
+                }
+            }
+            return chars.length() - 1;
+        }
+
+        private boolean startsWith(int start, String prefix) {
+            if (start + prefix.length() > chars.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (chars.charAt(start + i) != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int indexOf(String s, int from) {
+            for (int i = from; i + s.length() <= chars.length(); i++) {
+                if (startsWith(i, s)) {
+                    return i;
+                }
+            }
+            return chars.length() - s.length();
+        }
+
+        private int indexOf(char c, int from) {
+            for (int i = from; i < chars.length(); i++) {
+                if (chars.charAt(i) == c) {
+                    return i;
+                }
+            }
+            return chars.length();
+        }
+
+        private int skipName(int i) {
+            while (i < chars.length()) {
+                char c = chars.charAt(i);
+                if (Character.isWhitespace(c) || c == '>' || c == '/' || c == '=') {
+                    break;
+                }
+                i++;
+            }
+            return i;
+        }
+
+        private int skipSpaces(int i) {
+            while (i < chars.length() && Character.isWhitespace(chars.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private int countNewlines(int from, int to) {
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (chars.charAt(i) == '\n') {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -13,7 +13,15 @@ import red.jiuzhou.tabmapping.MappingLoader;
 import red.jiuzhou.tabmapping.TableMapping;
 import red.jiuzhou.util.DatabaseUtil;
 import red.jiuzhou.util.XmlUtil;
-
+import red.jiuzhou.util.YamlUtils;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -23,7 +31,7 @@ import java.util.stream.Collectors;
  *
  * 功能特性：
  * - 基于现有映射配置的字段级过滤
- * - 双向增量同步
+ * - 双向增量同步（行哈希在数据库端比较，只读回有差异的主键，按批集合式写入）
  * - 智能冲突解决
  * - 可视化同步进度
  */
@@ -31,6 +39,16 @@ public class TableSyncService {
 
     private static final Logger log = LoggerFactory.getLogger(TableSyncService.class);
 
+    /** 差异主键每批写入的数量 */
+    private static final int SYNC_BATCH_SIZE = Integer.parseInt(
+            YamlUtils.getProperty("application.yml", "sync.hash-diff.batch-size", "1000"));
+
+    /** 差异查询的游标每次读取行数 */
+    private static final int DIFF_FETCH_SIZE = 5000;
+
+    /** 时间戳冲突策略使用的字段 */
+    private static final String TIMESTAMP_FIELD = "updated_at";
+
     // 同步方向枚举
     public enum SyncDirection {
         SVR_TO_CLT,    // 服务端到客户端
@@ -170,141 +188,275 @@ public class TableSyncService {
     }
 
     /**
-     * 服务端到客户端同步
+     * 服务端到客户端同步：新增客户端缺少的记录，更新内容不同的记录
      */
-    private void syncSvrToClt(TableMapping mapping, String keyField, SyncResult result) {
-        // 构建字段映射
-        Set<String> sameFields = mapping.getSameFieldsSet();
-        List<String> targetFields = new ArrayList<>(sameFields);
-
-        // 构建SQL查询（只查询需要同步的字段）
-        String selectSql = buildSelectSql(mapping.svr_tab, targetFields);
-        String updateSql = buildUpdateSql(mapping.clt_tab, targetFields, keyField);
-        String insertSql = buildInsertSql(mapping.clt_tab, targetFields);
-
-        // 查询服务端数据
-        List<Map<String, Object>> svrData = jdbcTemplate.queryForList(selectSql);
-        result.totalRecords = svrData.size();
+    private void syncSvrToClt(TableMapping mapping, String keyField, SyncResult result) throws SQLException {
+        hashDiffSync(mapping, keyField, SyncDirection.SVR_TO_CLT, ConflictResolution.SVR_PRIORITY, result);
+    }
 
-        // 获取客户端现有数据
-        Map<Object, Map<String, Object>> cltDataMap = getClientDataMap(mapping.clt_tab, keyField);
+    /**
+     * 客户端到服务端同步：新增服务端缺少的记录，更新内容不同的记录
+     */
+    private void syncCltToSvr(TableMapping mapping, String keyField, SyncResult result) throws SQLException {
+        hashDiffSync(mapping, keyField, SyncDirection.CLT_TO_SVR, ConflictResolution.CLT_PRIORITY, result);
+    }
 
-        int syncedCount = 0;
-        int skippedCount = 0;
+    /**
+     * 双向同步：两端各自缺少的记录互相补齐，两端都有但内容不同的记录按冲突策略处理
+     */
+    private void syncBiDirectional(TableMapping mapping, String keyField,
+                                 ConflictResolution conflictStrategy, SyncResult result) throws SQLException {
+        hashDiffSync(mapping, keyField, SyncDirection.BI_DIRECTIONAL, conflictStrategy, result);
+    }
 
-        for (Map<String, Object> svrRecord : svrData) {
-            Object keyValue = svrRecord.get(keyField);
+    /**
+     * 基于行哈希的差异同步
+     *
+     * 两端的行哈希（同名字段拼成 ROW 文本后取 md5）在数据库中计算并按主键做外连接，
+     * 只把缺失或哈希不同的主键以游标流式读回；这些主键按目标动作分桶，
+     * 每满一批用一条 INSERT ... SELECT / UPDATE ... FROM 从另一端直接写入，
+     * 整张表在一个事务内完成，失败时整表回滚。两端的数据都不会整表载入内存。
+     */
+    private void hashDiffSync(TableMapping mapping, String keyField, SyncDirection direction,
+                              ConflictResolution conflictStrategy, SyncResult result) throws SQLException {
 
-            if (progressListener != null) {
-                progressListener.onProgress(mapping.svr_tab, syncedCount + skippedCount, result.totalRecords);
-            }
+        List<String> valueFields = new ArrayList<>(new TreeSet<>(mapping.getSameFieldsSet()));
+        valueFields.remove(keyField);
+        List<String> writeFields = new ArrayList<>(valueFields);
+        writeFields.add(0, keyField);
 
+        try (Connection conn = DatabaseUtil.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
             try {
-                Map<String, Object> cltRecord = cltDataMap.get(keyValue);
-
-                if (cltRecord == null) {
-                    // 客户端不存在，插入新记录
-                    Map<String, Object> insertData = filterFields(svrRecord, targetFields);
-                    jdbcTemplate.update(insertSql, insertData.values().toArray());
-                    syncedCount++;
-
-                } else {
-                    // 检查是否需要更新
-                    if (needsUpdate(svrRecord, cltRecord, targetFields)) {
-                        Map<String, Object> updateData = filterFields(svrRecord, targetFields);
-                        updateData.put(keyField, keyValue);
-                        jdbcTemplate.update(updateSql, updateData.values().toArray());
-                        syncedCount++;
+                // 时间戳字段参与写入，但不参与哈希比较
+                List<String> hashFields = new ArrayList<>(valueFields);
+                String timestampField = null;
+                if (direction == SyncDirection.BI_DIRECTIONAL && conflictStrategy == ConflictResolution.TIMESTAMP) {
+                    timestampField = findTimestampField(conn, mapping);
+                    if (timestampField == null) {
+                        log.warn("表 {} / {} 缺少 {} 字段，时间戳冲突策略按手动处理",
+                                mapping.svr_tab, mapping.clt_tab, TIMESTAMP_FIELD);
                     } else {
-                        skippedCount++;
+                        hashFields.remove(timestampField);
                     }
                 }
 
-            } catch (Exception e) {
-                result.errors.add("处理记录 " + keyValue + " 时出错: " + e.getMessage());
-                skippedCount++;
+                int svrCount;
+                int cltCount;
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT (SELECT COUNT(*) FROM " + quote(mapping.svr_tab)
+                             + "), (SELECT COUNT(*) FROM " + quote(mapping.clt_tab) + ")")) {
+                    rs.next();
+                    svrCount = rs.getInt(1);
+                    cltCount = rs.getInt(2);
+                }
+                switch (direction) {
+                    case SVR_TO_CLT:
+                        result.totalRecords = svrCount;
+                        break;
+                    case CLT_TO_SVR:
+                        result.totalRecords = cltCount;
+                        break;
+                    default:
+                        // 双向同步的总数为两端主键并集，差异读完后修正
+                        result.totalRecords = Math.max(svrCount, cltCount);
+                        break;
+                }
+
+                String svrKeyType = keyColumnType(conn, mapping.svr_tab, keyField);
+                String cltKeyType = keyColumnType(conn, mapping.clt_tab, keyField);
+                DiffBatcher batcher = new DiffBatcher(conn, mapping, keyField, writeFields, valueFields,
+                        svrKeyType, cltKeyType, result);
+                int onlySvr = 0;
+                int onlyClt = 0;
+                int changed = 0;
+
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.setFetchSize(DIFF_FETCH_SIZE);
+                    try (ResultSet rs = stmt.executeQuery(buildDiffSql(mapping, keyField, hashFields, timestampField,
+                            direction, svrKeyType, cltKeyType))) {
+                        while (rs.next()) {
+                            Object svrKey = rs.getObject(1);
+                            Object cltKey = rs.getObject(2);
+                            if (cltKey == null) {
+                                onlySvr++;
+                                batcher.add(Target.INSERT_CLT, svrKey);
+                            } else if (svrKey == null) {
+                                onlyClt++;
+                                batcher.add(Target.INSERT_SVR, cltKey);
+                            } else {
+                                changed++;
+                                Target target = resolveChanged(direction, conflictStrategy,
+                                        timestampField == null ? null : (Boolean) rs.getObject(3));
+                                if (target == null) {
+                                    log.warn("发现冲突记录，表: {}, 主键: {}, 需要手动处理", mapping.svr_tab, svrKey);
+                                } else {
+                                    batcher.add(target, target == Target.UPDATE_CLT ? svrKey : cltKey);
+                                }
+                            }
+                            if (progressListener != null && (onlySvr + onlyClt + changed) % DIFF_FETCH_SIZE == 0) {
+                                progressListener.onProgress(mapping.svr_tab, onlySvr + onlyClt + changed, result.totalRecords);
+                            }
+                        }
+                    }
+                }
+                batcher.flushAll();
+                conn.commit();
+
+                switch (direction) {
+                    case SVR_TO_CLT:
+                        result.skippedRecords = svrCount - onlySvr - changed;
+                        break;
+                    case CLT_TO_SVR:
+                        result.skippedRecords = cltCount - onlyClt - changed;
+                        break;
+                    default:
+                        result.totalRecords = svrCount + onlyClt;
+                        result.skippedRecords = svrCount - onlySvr - changed;
+                        result.conflictRecords = changed;
+                        break;
+                }
+                log.info("表 {} 差异同步完成: 仅服务端 {}, 仅客户端 {}, 内容不同 {}, 写入 {}",
+                        mapping.svr_tab, onlySvr, onlyClt, changed, result.syncedRecords);
+            } catch (SQLException | RuntimeException e) {
+                conn.rollback();
+                result.syncedRecords = 0;
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
         }
-
-        result.syncedRecords = syncedCount;
-        result.skippedRecords = skippedCount;
     }
 
     /**
-     * 客户端到服务端同步（逻辑与服务端到客户端类似）
+     * 差异查询：两端按主键外连接，只返回一端缺失或行哈希不同的主键。
+     * 单向同步只需要源端的记录，用左/右连接省掉另一端独有的主键。
+     * 两端主键类型不同时统一转换为比较类型再连接，结果按原始主键去重（一端主键不唯一或转换后相等时不重复计数）。
      */
-    private void syncCltToSvr(TableMapping mapping, String keyField, SyncResult result) {
-        // 与 syncSvrToClt 逻辑类似，只是方向相反
-        // 实现略...
+    private String buildDiffSql(TableMapping mapping, String keyField, List<String> valueFields,
+                                String timestampField, SyncDirection direction,
+                                String svrKeyType, String cltKeyType) {
+        String join;
+        switch (direction) {
+            case SVR_TO_CLT:
+                join = "LEFT JOIN";
+                break;
+            case CLT_TO_SVR:
+                join = "RIGHT JOIN";
+                break;
+            default:
+                join = "FULL JOIN";
+                break;
+        }
+        String compareType = compareKeyType(direction, svrKeyType, cltKeyType);
+        String newer = timestampField == null ? "" : ", s.ts > c.ts";
+        return "SELECT DISTINCT ON (s.k, c.k) s.k, c.k" + newer
+                + " FROM (" + buildHashSql(mapping.svr_tab, keyField, valueFields, timestampField,
+                        svrKeyType.equals(compareType) ? null : compareType) + ") s "
+                + join + " (" + buildHashSql(mapping.clt_tab, keyField, valueFields, timestampField,
+                        cltKeyType.equals(compareType) ? null : compareType) + ") c"
+                + " ON s.kc = c.kc"
+                + " WHERE s.k IS NULL OR c.k IS NULL OR s.h <> c.h"
+                + " ORDER BY s.k, c.k";
     }
 
     /**
-     * 双向同步
+     * 单表行哈希：主键 + 比较用主键 + md5(同名字段 ROW 文本)。按文本取哈希，两端字段类型不同（如 int 与 varchar）时也能比较
+     *
+     * @param castType 比较用主键需要转换成的类型，null 表示不转换
      */
-    private void syncBiDirectional(TableMapping mapping, String keyField,
-                                 ConflictResolution conflictStrategy, SyncResult result) {
-
-        // 获取两端数据
-        Map<Object, Map<String, Object>> svrDataMap = getServerDataMap(mapping.svr_tab, keyField);
-        Map<Object, Map<String, Object>> cltDataMap = getClientDataMap(mapping.clt_tab, keyField);
-
-        Set<Object> allKeys = new HashSet<>();
-        allKeys.addAll(svrDataMap.keySet());
-        allKeys.addAll(cltDataMap.keySet());
-
-        result.totalRecords = allKeys.size();
-
-        int syncedCount = 0;
-        int skippedCount = 0;
-        int conflictCount = 0;
+    private String buildHashSql(String tableName, String keyField, List<String> valueFields, String timestampField,
+                                String castType) {
+        String row = valueFields.stream().map(TableSyncService::quote).collect(Collectors.joining(", "));
+        String hash = valueFields.isEmpty() ? "''" : "md5(ROW(" + row + ")::text)";
+        String ts = timestampField == null ? "" : ", " + quote(timestampField) + " AS ts";
+        String key = quote(keyField);
+        String compareKey = castType == null ? key : key + "::" + castType;
+        return "SELECT " + key + " AS k, " + compareKey + " AS kc, " + hash + " AS h" + ts
+                + " FROM " + quote(tableName) + " WHERE " + key + " IS NOT NULL";
+    }
 
-        Set<String> sameFields = mapping.getSameFieldsSet();
+    /**
+     * 主键比较类型：两端相同时直接比较；单向同步转换为写入端（目标表）的类型；
+     * 双向同步两端都可能被写入，按文本比较
+     */
+    private static String compareKeyType(SyncDirection direction, String svrKeyType, String cltKeyType) {
+        if (svrKeyType.equals(cltKeyType)) {
+            return svrKeyType;
+        }
+        switch (direction) {
+            case SVR_TO_CLT:
+                return cltKeyType;
+            case CLT_TO_SVR:
+                return svrKeyType;
+            default:
+                return "text";
+        }
+    }
 
-        for (Object key : allKeys) {
-            if (progressListener != null) {
-                progressListener.onProgress(mapping.svr_tab, syncedCount + skippedCount + conflictCount, result.totalRecords);
+    /**
+     * 主键列的类型名（pg_type.typname，如 int4、varchar），可直接用于类型转换与 createArrayOf
+     */
+    private static String keyColumnType(Connection conn, String tableName, String keyField) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT t.typname FROM pg_attribute a JOIN pg_type t ON t.oid = a.atttypid"
+                        + " WHERE a.attrelid = to_regclass(?) AND a.attname = ? AND NOT a.attisdropped")) {
+            ps.setString(1, quote(tableName));
+            ps.setString(2, keyField);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("表 " + tableName + " 缺少主键字段 " + keyField);
+                }
+                return rs.getString(1);
             }
+        }
+    }
 
-            Map<String, Object> svrRecord = svrDataMap.get(key);
-            Map<String, Object> cltRecord = cltDataMap.get(key);
-
-            try {
-                if (svrRecord == null && cltRecord != null) {
-                    // 只有客户端有，同步到服务端
-                    syncCltToSvrRecord(mapping, keyField, cltRecord, sameFields);
-                    syncedCount++;
-
-                } else if (cltRecord == null && svrRecord != null) {
-                    // 只有服务端有，同步到客户端
-                    syncSvrToCltRecord(mapping, keyField, svrRecord, sameFields);
-                    syncedCount++;
-
-                } else if (svrRecord != null && cltRecord != null) {
-                    // 两边都有，检查是否有冲突
-                    if (hasConflict(svrRecord, cltRecord, sameFields)) {
-                        conflictCount++;
-                        resolveConflict(mapping, keyField, svrRecord, cltRecord, sameFields, conflictStrategy);
-                        syncedCount++;
-                    } else {
-                        skippedCount++;
-                    }
+    /**
+     * 两端都有但内容不同的记录写往哪一端，返回 null 表示留待手动处理
+     */
+    private static Target resolveChanged(SyncDirection direction, ConflictResolution strategy, Boolean svrNewer) {
+        if (direction == SyncDirection.SVR_TO_CLT) {
+            return Target.UPDATE_CLT;
+        }
+        if (direction == SyncDirection.CLT_TO_SVR) {
+            return Target.UPDATE_SVR;
+        }
+        switch (strategy) {
+            case SVR_PRIORITY:
+                return Target.UPDATE_CLT;
+            case CLT_PRIORITY:
+                return Target.UPDATE_SVR;
+            case TIMESTAMP:
+                if (svrNewer == null) {
+                    return null;
                 }
+                return svrNewer ? Target.UPDATE_CLT : Target.UPDATE_SVR;
+            default:
+                return null;
+        }
+    }
 
-            } catch (Exception e) {
-                result.errors.add("处理记录 " + key + " 时出错: " + e.getMessage());
-                skippedCount++;
+    /**
+     * 两端都有 updated_at 字段时返回该字段名，否则返回 null
+     */
+    private String findTimestampField(Connection conn, TableMapping mapping) throws SQLException {
+        DatabaseMetaData metaData = conn.getMetaData();
+        for (String table : new String[]{mapping.svr_tab, mapping.clt_tab}) {
+            try (ResultSet rs = metaData.getColumns(null, null, table, TIMESTAMP_FIELD)) {
+                if (!rs.next()) {
+                    return null;
+                }
             }
         }
-
-        result.syncedRecords = syncedCount;
-        result.skippedRecords = skippedCount;
-        result.conflictRecords = conflictCount;
+        return TIMESTAMP_FIELD;
     }
 
     // 辅助方法实现
     private boolean tableExists(String tableName) {
         try {
-            jdbcTemplate.queryForObject("SELECT 1 FROM " + tableName + " LIMIT 1", Integer.class);
+            jdbcTemplate.queryForObject("SELECT 1 FROM " + quote(tableName) + " LIMIT 1", Integer.class);
             return true;
         } catch (Exception e) {
             return false;
@@ -316,129 +468,111 @@ public class TableSyncService {
         return "id";
     }
 
-    private String buildSelectSql(String tableName, List<String> fields) {
-        String fieldStr = String.join(", ", fields);
-        return "SELECT " + fieldStr + " FROM " + tableName;
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
     }
 
-    private String buildInsertSql(String tableName, List<String> fields) {
-        String fieldStr = String.join(", ", fields);
-        String placeholders = String.join(", ", Collections.nCopies(fields.size(), "?"));
-        return "INSERT INTO " + tableName + " (" + fieldStr + ") VALUES (" + placeholders + ")";
-    }
-
-    private String buildUpdateSql(String tableName, List<String> fields, String keyField) {
-        String setClause = fields.stream()
-                .filter(f -> !f.equals(keyField))
-                .map(f -> f + " = ?")
-                .collect(Collectors.joining(", "));
-        return "UPDATE " + tableName + " SET " + setClause + " WHERE " + keyField + " = ?";
-    }
-
-    private Map<Object, Map<String, Object>> getServerDataMap(String tableName, String keyField) {
-        String sql = "SELECT * FROM " + tableName;
-        List<Map<String, Object>> data = jdbcTemplate.queryForList(sql);
-
-        Map<Object, Map<String, Object>> dataMap = new HashMap<>();
-        for (Map<String, Object> record : data) {
-            dataMap.put(record.get(keyField), record);
-        }
-        return dataMap;
-    }
-
-    private Map<Object, Map<String, Object>> getClientDataMap(String tableName, String keyField) {
-        // 与 getServerDataMap 逻辑相同
-        return getServerDataMap(tableName, keyField);
+    /**
+     * 差异主键的写入去向
+     */
+    private enum Target {
+        INSERT_CLT, UPDATE_CLT, INSERT_SVR, UPDATE_SVR
     }
 
-    private Map<String, Object> filterFields(Map<String, Object> source, List<String> fields) {
-        Map<String, Object> filtered = new HashMap<>();
-        for (String field : fields) {
-            if (source.containsKey(field)) {
-                filtered.put(field, source.get(field));
+    /**
+     * 按写入去向缓存差异主键，每满一批执行一条集合式语句
+     */
+    private class DiffBatcher {
+        private final Connection conn;
+        private final TableMapping mapping;
+        private final SyncResult result;
+        private final Map<Target, String> sqls = new EnumMap<>(Target.class);
+        private final Map<Target, List<Object>> pending = new EnumMap<>(Target.class);
+        private final String svrKeyType;
+        private final String cltKeyType;
+        private int written;
+
+        DiffBatcher(Connection conn, TableMapping mapping, String keyField,
+                    List<String> writeFields, List<String> valueFields,
+                    String svrKeyType, String cltKeyType, SyncResult result) {
+            this.conn = conn;
+            this.mapping = mapping;
+            this.result = result;
+            this.svrKeyType = svrKeyType;
+            this.cltKeyType = cltKeyType;
+            String svr = quote(mapping.svr_tab);
+            String clt = quote(mapping.clt_tab);
+            sqls.put(Target.INSERT_CLT, buildInsertSql(clt, svr, keyField, writeFields));
+            sqls.put(Target.INSERT_SVR, buildInsertSql(svr, clt, keyField, writeFields));
+            if (!valueFields.isEmpty()) {
+                sqls.put(Target.UPDATE_CLT, buildUpdateSql(clt, svr, keyField, valueFields,
+                        svrKeyType.equals(cltKeyType) ? null : cltKeyType));
+                sqls.put(Target.UPDATE_SVR, buildUpdateSql(svr, clt, keyField, valueFields,
+                        svrKeyType.equals(cltKeyType) ? null : svrKeyType));
+            }
+            for (Target target : Target.values()) {
+                pending.put(target, new ArrayList<>());
             }
         }
-        return filtered;
-    }
 
-    private boolean needsUpdate(Map<String, Object> source, Map<String, Object> target, List<String> fields) {
-        for (String field : fields) {
-            Object sourceValue = source.get(field);
-            Object targetValue = target.get(field);
-
-            if (sourceValue == null && targetValue == null) {
-                continue;
+        void add(Target target, Object key) throws SQLException {
+            List<Object> keys = pending.get(target);
+            keys.add(key);
+            if (keys.size() >= SYNC_BATCH_SIZE) {
+                flush(target);
             }
+        }
 
-            if (sourceValue == null || !sourceValue.equals(targetValue)) {
-                return true;
+        void flushAll() throws SQLException {
+            for (Target target : Target.values()) {
+                flush(target);
             }
         }
-        return false;
-    }
-
-    private boolean hasConflict(Map<String, Object> svrRecord, Map<String, Object> cltRecord, Set<String> sameFields) {
-        for (String field : sameFields) {
-            Object svrValue = svrRecord.get(field);
-            Object cltValue = cltRecord.get(field);
 
-            if (svrValue == null && cltValue == null) {
-                continue;
+        private void flush(Target target) throws SQLException {
+            List<Object> keys = pending.get(target);
+            if (keys.isEmpty()) {
+                return;
             }
-
-            if (svrValue == null || !svrValue.equals(cltValue)) {
-                return true;
+            // 除主键外没有同名字段时不生成 UPDATE，内容不同的记录无需写入
+            String sql = sqls.get(target);
+            if (sql != null) {
+                // 主键数组的类型取自数据来源端
+                boolean fromSvr = target == Target.INSERT_CLT || target == Target.UPDATE_CLT;
+                Array keyArray = conn.createArrayOf(fromSvr ? svrKeyType : cltKeyType, keys.toArray());
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    ps.setArray(1, keyArray);
+                    result.syncedRecords += ps.executeUpdate();
+                } finally {
+                    keyArray.free();
+                }
+            }
+            written += keys.size();
+            keys.clear();
+            if (progressListener != null) {
+                progressListener.onProgress(mapping.svr_tab, written, result.totalRecords);
             }
         }
-        return false;
-    }
 
-    private void resolveConflict(TableMapping mapping, String keyField,
-                               Map<String, Object> svrRecord, Map<String, Object> cltRecord,
-                               Set<String> sameFields, ConflictResolution strategy) {
-
-        switch (strategy) {
-            case SVR_PRIORITY:
-                syncSvrToCltRecord(mapping, keyField, svrRecord, sameFields);
-                break;
-            case CLT_PRIORITY:
-                syncCltToSvrRecord(mapping, keyField, cltRecord, sameFields);
-                break;
-            case TIMESTAMP:
-                resolveByTimestamp(mapping, keyField, svrRecord, cltRecord, sameFields);
-                break;
-            case MANUAL:
-                // 记录冲突，等待手动处理
-                log.warn("发现冲突记录，表: {}, 主键: {}, 需要手动处理", mapping.svr_tab, svrRecord.get(keyField));
-                break;
+        private String buildInsertSql(String target, String source, String keyField, List<String> fields) {
+            String fieldStr = fields.stream().map(TableSyncService::quote).collect(Collectors.joining(", "));
+            return "INSERT INTO " + target + " (" + fieldStr + ") SELECT " + fieldStr
+                    + " FROM " + source + " WHERE " + quote(keyField) + " = ANY(?)";
         }
-    }
-
-    private void syncSvrToCltRecord(TableMapping mapping, String keyField,
-                                  Map<String, Object> svrRecord, Set<String> sameFields) {
-        List<String> fields = new ArrayList<>(sameFields);
-        Map<String, Object> updateData = filterFields(svrRecord, fields);
-        updateData.put(keyField, svrRecord.get(keyField));
 
-        String updateSql = buildUpdateSql(mapping.clt_tab, fields, keyField);
-        jdbcTemplate.update(updateSql, updateData.values().toArray());
-    }
-
-    private void syncCltToSvrRecord(TableMapping mapping, String keyField,
-                                  Map<String, Object> cltRecord, Set<String> sameFields) {
-        List<String> fields = new ArrayList<>(sameFields);
-        Map<String, Object> updateData = filterFields(cltRecord, fields);
-        updateData.put(keyField, cltRecord.get(keyField));
-
-        String updateSql = buildUpdateSql(mapping.svr_tab, fields, keyField);
-        jdbcTemplate.update(updateSql, updateData.values().toArray());
-    }
-
-    private void resolveByTimestamp(TableMapping mapping, String keyField,
-                                  Map<String, Object> svrRecord, Map<String, Object> cltRecord,
-                                  Set<String> sameFields) {
-        // 假设有 updated_at 字段，根据时间戳决定优先级
-        // 实现略...
+        /**
+         * @param targetKeyType 源端主键需要转换成的目标端主键类型，null 表示两端类型相同
+         */
+        private String buildUpdateSql(String target, String source, String keyField, List<String> fields,
+                                      String targetKeyType) {
+            String setClause = fields.stream()
+                    .map(f -> quote(f) + " = s." + quote(f))
+                    .collect(Collectors.joining(", "));
+            String sourceKey = "s." + quote(keyField) + (targetKeyType == null ? "" : "::" + targetKeyType);
+            return "UPDATE " + target + " t SET " + setClause + " FROM " + source + " s"
+                    + " WHERE t." + quote(keyField) + " = " + sourceKey
+                    + " AND s." + quote(keyField) + " = ANY(?)";
+        }
     }
 
     private void loadLastSyncTimes() {
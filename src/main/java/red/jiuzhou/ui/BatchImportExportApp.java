@@ -35,6 +35,7 @@ public class BatchImportExportApp {
 
     private TextArea resultArea;
     private TextField directoryField;
+    private CheckBox changedOnlyCheck;
     private Stage currentStage;
 
     public void show(Stage primaryStage) {
@@ -78,7 +79,10 @@ public class BatchImportExportApp {
         spinner.setVisible(false);
         spinner.setPrefSize(24, 24);
 
-        HBox buttonBox = new HBox(15, batchExportBtn, batchImportBtn, spinner);
+        changedOnlyCheck = new CheckBox("仅导出有变化的表");
+        changedOnlyCheck.setTooltip(new Tooltip("主表及子表自上次导出后没有任何修改、且导出文件未被改动时跳过该表"));
+
+        HBox buttonBox = new HBox(15, batchExportBtn, changedOnlyCheck, batchImportBtn, spinner);
         buttonBox.setAlignment(Pos.CENTER);
         buttonBox.setPadding(new Insets(10));
 
@@ -183,13 +187,15 @@ public class BatchImportExportApp {
 
                 int successCount = 0;
                 int failedCount = 0;
+                int unchangedCount = 0;
+                boolean changedOnly = changedOnlyCheck.isSelected();
                 StringBuilder failedFiles = new StringBuilder();
 
                 for (File xmlFile : xmlFiles) {
                     String tableName = xmlFile.getName().replace(".xml", "");
 
                     // 创建final变量供Lambda表达式使用
-                    final int currentIndex = successCount + failedCount + 1;
+                    final int currentIndex = successCount + failedCount + unchangedCount + 1;
                     final String currentTableName = tableName;
                     final int totalFiles = xmlFiles.size();
 
@@ -237,7 +243,13 @@ public class BatchImportExportApp {
                             exportedFilePath = generator.processAndMerge();
                         } else {
                             DbToXmlGenerator generator = new DbToXmlGenerator(tableName, mapType, tabFilePath);
+                            generator.setChangedOnly(changedOnly);
                             exportedFilePath = generator.processAndMerge();
+                            if (generator.isLastExportSkipped()) {
+                                unchangedCount++;
+                                Platform.runLater(() -> resultArea.appendText("  ⏭️ 无变化，跳过\n"));
+                                continue;
+                            }
                         }
 
                         // ==================== 导出后验证（2025-12-29新增）====================
@@ -282,6 +294,7 @@ public class BatchImportExportApp {
 
                 int finalSuccessCount = successCount;
                 int finalFailedCount = failedCount;
+                int finalUnchangedCount = unchangedCount;
                 String finalFailedFiles = failedFiles.toString();
 
                 Platform.runLater(() -> {
@@ -289,6 +302,9 @@ public class BatchImportExportApp {
                     resultArea.appendText("批量导出完成！\n");
                     resultArea.appendText(String.format("成功: %d 个\n", finalSuccessCount));
                     resultArea.appendText(String.format("失败: %d 个\n", finalFailedCount));
+                    if (changedOnly) {
+                        resultArea.appendText(String.format("无变化跳过: %d 个\n", finalUnchangedCount));
+                    }
 
                     if (finalFailedCount > 0) {
                         resultArea.appendText("\n失败文件列表:\n");
@@ -298,7 +314,7 @@ public class BatchImportExportApp {
                     resultArea.appendText("========================================\n");
                 });
 
-                log.info("批量导出完成: 成功={}, 失败={}", successCount, failedCount);
+                log.info("批量导出完成: 成功={}, 失败={}, 无变化跳过={}", successCount, failedCount, unchangedCount);
 
             } catch (Exception ex) {
                 log.error("批量导出出错: {}", XmlUtil.getErrorMsg(ex));
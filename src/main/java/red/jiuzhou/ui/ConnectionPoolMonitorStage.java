@@ -0,0 +1,77 @@
+package red.jiuzhou.ui;
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import red.jiuzhou.ui.components.ConnectionPoolStatusPane;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * @className: red.jiuzhou.ui.ConnectionPoolMonitorStage.java
+ * @description: 数据库连接池监控窗口
+ *
+ * 展示 {@link red.jiuzhou.util.ConnectionPoolManager} 管理的所有连接池的实时指标，窗口显示期间每 2 秒刷新，
+ * 关闭后停止刷新。用于排查并行导入/分页导出时的连接等待与获取超时。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class ConnectionPoolMonitorStage extends Stage {
+
+    private static final Duration REFRESH_INTERVAL = Duration.seconds(2);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private final ConnectionPoolStatusPane statusPane = new ConnectionPoolStatusPane();
+    private final Label updatedLabel = new Label();
+    private final Timeline refreshTimeline;
+
+    public ConnectionPoolMonitorStage() {
+        setTitle("数据库连接池监控");
+        setWidth(900);
+        setHeight(400);
+
+        Button refreshBtn = new Button("🔄 刷新");
+        refreshBtn.setOnAction(e -> refresh());
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox toolbar = new HBox(10, updatedLabel, spacer, refreshBtn);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        toolbar.setPadding(new Insets(0, 0, 10, 0));
+
+        ScrollPane scrollPane = new ScrollPane(statusPane);
+        scrollPane.setFitToWidth(true);
+
+        BorderPane root = new BorderPane();
+        root.setPadding(new Insets(10));
+        root.setTop(toolbar);
+        root.setCenter(scrollPane);
+        setScene(new Scene(root));
+
+        refreshTimeline = new Timeline(new KeyFrame(REFRESH_INTERVAL, e -> refresh()));
+        refreshTimeline.setCycleCount(Animation.INDEFINITE);
+        setOnShown(e -> {
+            refresh();
+            refreshTimeline.play();
+        });
+        setOnHidden(e -> refreshTimeline.stop());
+    }
+
+    private void refresh() {
+        statusPane.refresh();
+        updatedLabel.setText("更新于 " + LocalTime.now().format(TIME_FORMAT));
+    }
+}
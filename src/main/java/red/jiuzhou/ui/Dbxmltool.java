@@ -765,6 +765,20 @@ public class Dbxmltool extends Application {
         ));
         localizationDedupeBtn.setStyle("-fx-background-color: #E0F7FA;");
 
+        // 连接池监控按钮 - 数据库连接池实时指标
+        Button connectionPoolBtn = new Button("🔌 连接池");
+        connectionPoolBtn.setTooltip(new Tooltip(
+            "数据库连接池实时监控\n\n" +
+            "🎯 核心功能:\n" +
+            "• 各连接池活跃/空闲/上限\n" +
+            "• 等待连接的线程数\n" +
+            "• 获取连接耗时 P50/P95/P99\n" +
+            "• 获取超时次数\n\n" +
+            "💡 适用场景:\n" +
+            "→ 批量导入导出变慢时排查连接等待\n" +
+            "→ 调整连接池大小前观察实际占用"
+        ));
+
         // 机制关系图按钮 - 27个机制间的依赖关系可视化
         Button mechanismRelationBtn = new Button("🔗 关系图");
         mechanismRelationBtn.setTooltip(new Tooltip(
@@ -986,6 +1000,19 @@ public class Dbxmltool extends Application {
             }
         });
 
+        // 连接池监控 - 打开连接池监控窗口
+        connectionPoolBtn.setOnAction(event -> {
+            try {
+                log.info("打开连接池监控窗口");
+                ConnectionPoolMonitorStage stage = new ConnectionPoolMonitorStage();
+                stage.initOwner(primaryStage);
+                stage.show();
+            } catch (Exception e) {
+                log.error("打开连接池监控窗口失败", e);
+                showError("打开连接池监控窗口失败: " + e.getMessage());
+            }
+        });
+
         // 机制关系图 - 打开机制关系图可视化窗口
         mechanismRelationBtn.setOnAction(event -> {
             try {
@@ -1002,12 +1029,14 @@ public class Dbxmltool extends Application {
 
         // 搜索替换 - 打开全局搜索替换工具
         searchReplaceBtn.setOnAction(event -> {
-            // SearchReplaceDialog 依赖 GlobalSearchEngine（使用 Lombok，暂时禁用）
-            javafx.scene.control.Alert alert = new javafx.scene.control.Alert(javafx.scene.control.Alert.AlertType.INFORMATION);
-            alert.setTitle("功能提示");
-            alert.setHeaderText("搜索替换功能暂时不可用");
-            alert.setContentText("该功能依赖的组件使用了 Lombok，在 Java 25 环境下暂时禁用。\n\n请使用其他搜索功能或等待后续更新。");
-            alert.showAndWait();
+            try {
+                log.info("打开全局搜索替换工具");
+                SearchReplaceDialog dialog = new SearchReplaceDialog(primaryStage);
+                dialog.show();
+            } catch (Exception e) {
+                log.error("打开全局搜索替换工具失败", e);
+                showError("打开全局搜索替换工具失败: " + e.getMessage());
+            }
         });
 
         // 数据验证 - 显示校验使用说明
@@ -1116,7 +1145,8 @@ public class Dbxmltool extends Application {
         // 工具栏按钮优化说明：
         // ✅ 移除重复：删除工具栏中的"数据校验"（表格视图中已有）
         // ✅ 整合功能：合并"关联分析"和"关系图"为一个按钮（多Tab窗口）
-        // ✅ 清理禁用：移除5个临时禁用的按钮（查找替换、批量编辑、数据恢复、操作日志、备份中心）
+        // ✅ 清理禁用：移除4个临时禁用的按钮（批量编辑、数据恢复、操作日志、备份中心）
+        // ✅ 恢复可用：查找替换（GlobalSearchEngine 已移除 Lombok）放回设计工具分组
         // ✅ 优化分组：按使用频率重新组织（核心功能 > 分析工具 > 设计工具 > 专业工具）
 
         // 优化后的工具栏布局（共8个按钮，从原来的16个精简）：
@@ -1146,12 +1176,14 @@ public class Dbxmltool extends Application {
             // 高级设计和配置功能
             designRuleBtn,       // 📐 设计规则
             configEditorBtn,     // ⚙ 配置管理
+            searchReplaceBtn,    // 🔎 查找替换
             new Separator(),
 
             // ========== 专业工具模块 ==========
             // 特殊领域的专业工具
             gameToolsBtn,        // 🎯 刷怪工具
             localizationDedupeBtn, // 🌏 本地化去重
+            connectionPoolBtn,   // 🔌 连接池
 
             // 状态信息区域（右对齐）
             spacer, statusLabel
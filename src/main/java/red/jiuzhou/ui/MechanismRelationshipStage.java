@@ -36,6 +36,7 @@ import red.jiuzhou.analysis.aion.mechanism.MechanismNode;
 import red.jiuzhou.analysis.aion.mechanism.MechanismRelationship;
 import red.jiuzhou.analysis.aion.mechanism.MechanismRelationshipGraph;
 import red.jiuzhou.ui.canvas.ForceDirectedLayout;
+import red.jiuzhou.util.SpringContextHolder;
 
 import java.util.List;
 import java.util.Map;
@@ -99,7 +100,7 @@ public class MechanismRelationshipStage extends Stage {
     private static final int MAX_ANIMATION_FRAMES = 150;
 
     public MechanismRelationshipStage() {
-        this.relationshipService = new MechanismRelationshipService();
+        this.relationshipService = SpringContextHolder.getBean(MechanismRelationshipService.class);
         initializeUI();
         loadData();
     }
@@ -17,8 +17,9 @@ import javafx.scene.text.FontWeight;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.util.Duration;
-import lombok.Data;
 import red.jiuzhou.safety.DataSafetyManager;
+import red.jiuzhou.ui.components.ConnectionPoolStatusPane;
+import red.jiuzhou.util.ConnectionPoolManager;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -70,6 +71,8 @@ public class OperationMonitorPanel extends Stage {
     private ProgressBar memoryUsageBar;
     private Label memoryUsageLabel;
 
+    private ConnectionPoolStatusPane connectionPoolPane;
+
     private ComboBox<String> logTypeFilter;
     private ComboBox<String> logStatusFilter;
     private TextField logSearchField;
@@ -81,7 +84,6 @@ public class OperationMonitorPanel extends Stage {
     /**
      * 审计日志条目
      */
-    @Data
     public static class AuditLogEntry {
         private LocalDateTime timestamp;
         private String operation;
@@ -91,6 +93,21 @@ public class OperationMonitorPanel extends Stage {
         private String transactionId;
         private String details;
 
+        public LocalDateTime getTimestamp() { return timestamp; }
+        public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
+        public String getOperation() { return operation; }
+        public void setOperation(String operation) { this.operation = operation; }
+        public String getUser() { return user; }
+        public void setUser(String user) { this.user = user; }
+        public String getFile() { return file; }
+        public void setFile(String file) { this.file = file; }
+        public boolean isSuccess() { return success; }
+        public void setSuccess(boolean success) { this.success = success; }
+        public String getTransactionId() { return transactionId; }
+        public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+        public String getDetails() { return details; }
+        public void setDetails(String details) { this.details = details; }
+
         public String getTimestampStr() {
             return timestamp.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
         }
@@ -103,7 +120,6 @@ public class OperationMonitorPanel extends Stage {
     /**
      * 活跃操作
      */
-    @Data
     public static class ActiveOperation {
         private String transactionId;
         private String operation;
@@ -112,6 +128,19 @@ public class OperationMonitorPanel extends Stage {
         private int filesProcessed;
         private int totalFiles;
 
+        public String getTransactionId() { return transactionId; }
+        public void setTransactionId(String transactionId) { this.transactionId = transactionId; }
+        public String getOperation() { return operation; }
+        public void setOperation(String operation) { this.operation = operation; }
+        public LocalDateTime getStartTime() { return startTime; }
+        public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; }
+        public String getStatus() { return status; }
+        public void setStatus(String status) { this.status = status; }
+        public int getFilesProcessed() { return filesProcessed; }
+        public void setFilesProcessed(int filesProcessed) { this.filesProcessed = filesProcessed; }
+        public int getTotalFiles() { return totalFiles; }
+        public void setTotalFiles(int totalFiles) { this.totalFiles = totalFiles; }
+
         public String getStartTimeStr() {
             return startTime.format(DateTimeFormatter.ofPattern("HH:mm:ss"));
         }
@@ -607,7 +636,10 @@ public class OperationMonitorPanel extends Stage {
 
         threadPoolBox.getChildren().addAll(threadTitle, threadGrid);
 
-        pane.getChildren().addAll(backupStatus, resourceBox, threadPoolBox);
+        // 数据库连接池状态
+        connectionPoolPane = new ConnectionPoolStatusPane();
+
+        pane.getChildren().addAll(backupStatus, resourceBox, threadPoolBox, connectionPoolPane);
         return pane;
     }
 
@@ -907,6 +939,10 @@ public class OperationMonitorPanel extends Stage {
                 memoryUsageLabel.setText(memoryStr);
             });
 
+            // 连接池：活跃/空闲/等待、获取连接耗时分位数
+            List<ConnectionPoolManager.PoolMetrics> poolMetrics = ConnectionPoolManager.getAllMetrics();
+            Platform.runLater(() -> connectionPoolPane.update(poolMetrics));
+
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -18,6 +18,7 @@ import javafx.scene.input.ClipboardContent;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
@@ -30,9 +31,11 @@ import red.jiuzhou.analysis.aion.IdNameResolver;
 import red.jiuzhou.dbxml.*;
 import red.jiuzhou.agent.context.ContextCollector;
 import red.jiuzhou.agent.context.DesignContext;
+import red.jiuzhou.ui.components.LazyRowList;
 import red.jiuzhou.ui.components.OperationLogPanel;
 import red.jiuzhou.util.DatabaseUtil;
 import red.jiuzhou.util.JSONRecord;
+import red.jiuzhou.util.KeysetPageSource;
 import red.jiuzhou.util.YamlUtils;
 import red.jiuzhou.util.YmlConfigUtil;
 import red.jiuzhou.validation.DatabaseValidationService;
@@ -71,8 +74,12 @@ public class PaginatedTable{
 
     private TableView<Map<String, Object>> tableView;
     // 总行数
-    private int totalRows;
-    private Pagination pagination;
+    private long totalRows;
+    // 当前浏览的数据源（keyset 分块 + 预取）与虚拟滚动行列表，筛选或排序变化时整体替换
+    private KeysetPageSource pageSource;
+    private LazyRowList rowList;
+    // 表头排序（由数据库排序，不在客户端对行列表排序）
+    private List<KeysetPageSource.SortKey> sortKeys = Collections.emptyList();
     private TextField searchField;
     private Label progressLabel;
     private  ProgressBar progressBar;
@@ -116,6 +123,19 @@ public class PaginatedTable{
             tableView.getSelectionModel().setCellSelectionEnabled(true);
             // 多选
             tableView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
+            // 点击表头排序时按新的排序重新查询，行列表只包含已加载的数据块，不能在客户端排序
+            tableView.setSortPolicy(tv -> {
+                List<KeysetPageSource.SortKey> newSortKeys = new ArrayList<>();
+                for (TableColumn<Map<String, Object>, ?> column : tv.getSortOrder()) {
+                    newSortKeys.add(KeysetPageSource.SortKey.column(column.getText(),
+                            column.getSortType() == TableColumn.SortType.DESCENDING));
+                }
+                if (!newSortKeys.equals(sortKeys)) {
+                    sortKeys = newSortKeys;
+                    Platform.runLater(this::refreshTotalRowsAsync);
+                }
+                return true;
+            });
 
             tableView.setOnKeyPressed(event -> {
                 if (event.getCode() == KeyCode.C && event.isControlDown()) {
@@ -228,10 +248,8 @@ public class PaginatedTable{
             progressBox = new VBox(5, progressLabel, new Region());
             progressBox.setPadding(new Insets(10));
 
-            // 创建 Pagination 控件（初始页数设为1，稍后异步加载总行数后更新）
-            pagination = new Pagination(1, 0);
-            pagination.setMaxPageIndicatorCount(10);
-            pagination.setPageFactory(this::createPage);
+            // 整表虚拟滚动：行按块惰性加载，不再分 15 行一页
+            VBox.setVgrow(tableView, Priority.ALWAYS);
 
             // 创建操作日志面板
             logPanel = new OperationLogPanel();
@@ -241,9 +259,8 @@ public class PaginatedTable{
             rightControl.getChildren().add(tabPane);
             // 添加到右侧面板
             rightControl.getChildren().addAll(searchBox, progressBox);
-            rightControl.getChildren().add(pagination);
+            rightControl.getChildren().add(tableView);
             rightControl.getChildren().add(logPanel); // 添加日志面板
-            //VBox vBox = new VBox(searchBox, progressBox, pagination);
 
             // 添加初始化日志
             logPanel.info("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
@@ -253,56 +270,11 @@ public class PaginatedTable{
             if ("world".equals(tabName) && mapType != null) {
                 logPanel.info("地图类型: " + mapType);
             }
-            logPanel.info("页面大小: " + DatabaseUtil.ROWS_PER_PAGE + " 行/页");
             logPanel.info("正在统计总行数...");
             logPanel.info("加载耗时: " + (System.currentTimeMillis() - startTime) + " ms");
 
-            // ==================== 异步加载总行数（性能优化）====================
-            // 在后台线程查询总行数，避免阻塞UI
-            javafx.concurrent.Task<Integer> countTask = new javafx.concurrent.Task<>() {
-                @Override
-                protected Integer call() throws Exception {
-                    return DatabaseUtil.getTotalRowCount(tabName + buildWhereClause());
-                }
-
-                @Override
-                protected void succeeded() {
-                    totalRows = getValue();
-                    int pageCount = (int) Math.ceil((double) totalRows / DatabaseUtil.ROWS_PER_PAGE);
-
-                    Platform.runLater(() -> {
-                        // 更新分页控件
-                        pagination.setPageCount(Math.max(1, pageCount));
-
-                        // 更新日志
-                        logPanel.success(String.format("总行数统计完成: %,d 行", totalRows));
-                        logPanel.info("总页数: " + pageCount);
-                        logPanel.success("系统就绪，可以开始操作");
-                        logPanel.info("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
-                    });
-                }
-
-                @Override
-                protected void failed() {
-                    Throwable ex = getException();
-                    log.error("获取总行数失败: {}", ex.getMessage(), ex);
-
-                    Platform.runLater(() -> {
-                        logPanel.error("获取总行数失败: " + ex.getMessage());
-                        logPanel.warning("使用默认分页，可能显示不完整");
-                        logPanel.info("━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━━");
-
-                        // 设置一个默认值
-                        totalRows = 1000;
-                        pagination.setPageCount(10);
-                    });
-                }
-            };
-
-            // 启动异步任务
-            Thread countThread = new Thread(countTask);
-            countThread.setDaemon(true);
-            countThread.start();
+            // 异步加载数据块与总行数，避免阻塞UI
+            refreshTotalRowsAsync();
 
             return rightControl;
         } catch (Exception e) {
@@ -342,7 +314,6 @@ public class PaginatedTable{
                 column.setCellValueFactory(cellData ->
                         new ReadOnlyObjectWrapper<>(cellData.getValue().get(columnName))
                 );
-
                 // 检测是否是ID引用字段，添加NAME显示
                 final boolean isIdField = idNameResolver.isIdField(columnName);
                 if (isIdField) {
@@ -404,6 +375,14 @@ public class PaginatedTable{
     }
 
     public String buildWhereClause() {
+        String condition = buildFilterCondition();
+        return condition.isEmpty() ? "" : " WHERE " + condition;
+    }
+
+    /**
+     * 筛选条件（不含 WHERE）
+     */
+    private String buildFilterCondition() {
         if (filterList == null || filterList.isEmpty()) {
             return "";
         }
@@ -412,8 +391,7 @@ public class PaginatedTable{
         for (String condition : filterList) {
             joiner.add(condition);
         }
-
-        return " WHERE " + joiner.toString();
+        return joiner.toString();
     }
     /**
      * 弹出一个窗口，展示两列小列表
@@ -472,94 +450,6 @@ public class PaginatedTable{
     }
 
 
-    /**
-     * 创建某个分页的数据页面（异步加载优化）
-     */
-    private VBox createPage(int pageIndex) {
-        syncTabFilePath();  // 同步最新路径，确保分页查询使用正确的配置
-        // 创建加载指示器
-        ProgressIndicator loadingIndicator = new ProgressIndicator();
-        loadingIndicator.setPrefSize(50, 50);
-        Label loadingLabel = new Label("正在加载数据...");
-        loadingLabel.setStyle("-fx-font-size: 14px; -fx-text-fill: #666;");
-
-        VBox loadingBox = new VBox(10, loadingIndicator, loadingLabel);
-        loadingBox.setAlignment(Pos.CENTER);
-        loadingBox.setPrefHeight(400);
-
-        VBox pageBox = new VBox(loadingBox);
-
-        // 在后台线程异步加载数据
-        javafx.concurrent.Task<List<Map<String, Object>>> loadTask = new javafx.concurrent.Task<>() {
-            @Override
-            protected List<Map<String, Object>> call() throws Exception {
-                return DatabaseUtil.fetchPageData(tabName, pageIndex, buildWhereClause(), tabFilePath);
-            }
-
-            @Override
-            protected void succeeded() {
-                List<Map<String, Object>> data = getValue();
-                // 在 JavaFX 线程更新 UI
-                Platform.runLater(() -> {
-                    ObservableList<Map<String, Object>> observableData =
-                            FXCollections.observableArrayList(data);
-                    tableView.setItems(observableData);
-
-                    // 移除加载指示器，显示表格
-                    pageBox.getChildren().clear();
-                    pageBox.getChildren().add(tableView);
-
-                    if (logPanel != null) {
-                        logPanel.info(String.format("加载第 %d 页数据完成，共 %d 条记录",
-                                pageIndex + 1, data.size()));
-                    }
-                });
-            }
-
-            @Override
-            protected void failed() {
-                Throwable ex = getException();
-                log.error("加载数据失败: {}", ex.getMessage(), ex);
-
-                Platform.runLater(() -> {
-                    // 显示错误信息
-                    Label errorLabel = new Label("❌ 数据加载失败");
-                    errorLabel.setStyle("-fx-font-size: 16px; -fx-text-fill: #f44336; -fx-font-weight: bold;");
-
-                    Label errorDetail = new Label(ex.getMessage());
-                    errorDetail.setStyle("-fx-font-size: 12px; -fx-text-fill: #666;");
-                    errorDetail.setWrapText(true);
-                    errorDetail.setMaxWidth(600);
-
-                    Button retryButton = new Button("🔄 重试");
-                    retryButton.setStyle("-fx-background-color: #2196F3; -fx-text-fill: white;");
-                    retryButton.setOnAction(e -> {
-                        // 重新加载当前页
-                        pagination.setPageFactory(PaginatedTable.this::createPage);
-                    });
-
-                    VBox errorBox = new VBox(15, errorLabel, errorDetail, retryButton);
-                    errorBox.setAlignment(Pos.CENTER);
-                    errorBox.setPadding(new Insets(50));
-
-                    pageBox.getChildren().clear();
-                    pageBox.getChildren().add(errorBox);
-
-                    if (logPanel != null) {
-                        logPanel.error("加载第 " + (pageIndex + 1) + " 页数据失败: " + ex.getMessage());
-                    }
-                });
-            }
-        };
-
-        // 在后台线程池执行任务
-        Thread loadThread = new Thread(loadTask);
-        loadThread.setDaemon(true);
-        loadThread.start();
-
-        return pageBox;
-    }
-
     /**
      * 按 ID 查询
      */
@@ -704,7 +594,7 @@ public class PaginatedTable{
         // ==================== 数据量预警机制（2025-12-29新增）====================
         // 导出前检查数据量，大表需要二次确认，避免误操作
         try {
-            int rowCount = DatabaseUtil.getTotalRowCount(tabName + buildWhereClause());
+            int rowCount = (int) Math.min(Integer.MAX_VALUE, KeysetPageSource.countRows(tabName, buildFilterCondition()));
 
             // 数据量预警阈值
             final int WARNING_THRESHOLD = 10000;  // 1万行
@@ -1430,48 +1320,58 @@ public class PaginatedTable{
     }
 
     /**
-     * 异步刷新总行数和分页（性能优化方法）
-     * 在后台线程查询总行数，避免阻塞UI
+     * 按当前筛选条件与表头排序重建数据源并异步刷新总行数（性能优化方法）
+     * 第一块数据与行数统计并行加载，行数统计完成前即可浏览
      */
     private void refreshTotalRowsAsync() {
-        javafx.concurrent.Task<Integer> countTask = new javafx.concurrent.Task<>() {
+        if (pageSource != null) {
+            pageSource.close();
+        }
+        String filter = buildFilterCondition();
+        String confPath = syncTabFilePath();
+        pageSource = new KeysetPageSource(tabName, confPath, filter, sortKeys, executor);
+        LazyRowList list = new LazyRowList(pageSource, ex -> {
+            log.error("加载数据失败: {}", ex.getMessage(), ex);
+            if (logPanel != null) {
+                logPanel.error("加载数据失败: " + ex.getMessage());
+            }
+        });
+        rowList = list;
+        tableView.setItems(list);
+        tableView.scrollTo(0);
+
+        javafx.concurrent.Task<Long> countTask = new javafx.concurrent.Task<>() {
             @Override
-            protected Integer call() throws Exception {
-                return DatabaseUtil.getTotalRowCount(tabName + buildWhereClause());
+            protected Long call() throws Exception {
+                return KeysetPageSource.countRows(tabName, confPath, filter);
             }
 
             @Override
             protected void succeeded() {
-                totalRows = getValue();
-                int pageCount = (int) Math.ceil((double) totalRows / DatabaseUtil.ROWS_PER_PAGE);
-
-                Platform.runLater(() -> {
-                    pagination.setPageCount(Math.max(1, pageCount));
-                    pagination.setCurrentPageIndex(0);
-                    pagination.setPageFactory(PaginatedTable.this::createPage);
+                // 统计期间筛选条件已变化时丢弃
+                if (rowList != list) {
+                    return;
+                }
+                list.resize(getValue());
+                totalRows = list.size();
 
-                    if (logPanel != null) {
-                        logPanel.info(String.format("总行数: %,d 行, 总页数: %d", totalRows, pageCount));
-                    }
-                });
+                if (logPanel != null) {
+                    logPanel.info(String.format("总行数: %,d 行（%s分页）", totalRows,
+                            pageSource.isKeyset() ? "主键 keyset " : "OFFSET "));
+                }
             }
 
             @Override
             protected void failed() {
                 Throwable ex = getException();
                 log.error("刷新总行数失败: {}", ex.getMessage(), ex);
-
-                Platform.runLater(() -> {
-                    if (logPanel != null) {
-                        logPanel.error("刷新总行数失败: " + ex.getMessage());
-                    }
-                });
+                if (logPanel != null) {
+                    logPanel.error("刷新总行数失败: " + ex.getMessage());
+                }
             }
         };
 
-        Thread countThread = new Thread(countTask);
-        countThread.setDaemon(true);
-        countThread.start();
+        executor.submit(countTask);
     }
 
     /**
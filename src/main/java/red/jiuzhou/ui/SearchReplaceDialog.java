@@ -15,17 +15,17 @@ import javafx.scene.paint.Color;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
-import lombok.extern.slf4j.Slf4j;
 import red.jiuzhou.search.GlobalSearchEngine;
 import red.jiuzhou.search.GlobalSearchEngine.SearchResult;
 import red.jiuzhou.search.GlobalSearchEngine.ReplaceOptions;
 import red.jiuzhou.util.YamlUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -39,9 +39,10 @@ import java.util.stream.Collectors;
  * - 批量操作
  * - 关联文件提示
  */
-@Slf4j
 public class SearchReplaceDialog extends Stage {
 
+    private static final Logger log = LoggerFactory.getLogger(SearchReplaceDialog.class);
+
     private final GlobalSearchEngine searchEngine;
     private final ObservableList<SearchResultItem> searchResults = FXCollections.observableArrayList();
 
@@ -438,40 +439,37 @@ public class SearchReplaceDialog extends Stage {
         progressBar.setVisible(true);
         statusLabel.setText("正在搜索...");
 
-        Task<List<SearchResult>> searchTask = new Task<List<SearchResult>>() {
+        Task<GlobalSearchEngine.SearchOutcome> searchTask = new Task<GlobalSearchEngine.SearchOutcome>() {
             @Override
-            protected List<SearchResult> call() throws Exception {
+            protected GlobalSearchEngine.SearchOutcome call() throws Exception {
                 List<Path> searchPaths = getSearchPaths();
                 GlobalSearchEngine.SearchMode mode = searchModeCombo.getValue();
 
-                List<SearchResult> results = new ArrayList<>();
-                AtomicInteger processed = new AtomicInteger(0);
-
-                for (Path path : searchPaths) {
-                    if (isCancelled()) break;
-
-                    List<SearchResult> pathResults = searchEngine.searchInFiles(
-                        Collections.singletonList(path), searchText, mode);
-                    results.addAll(pathResults);
-
-                    int current = processed.incrementAndGet();
-                    updateProgress(current, searchPaths.size());
-                    updateMessage("已搜索 " + current + "/" + searchPaths.size() + " 个文件");
-                }
-
-                return results;
+                // 整个文件列表一次提交：引擎在全部文件上并行查索引/流式扫描，分开提交会限制并行度
+                updateProgress(-1, 1);
+                updateMessage("正在搜索 " + searchPaths.size() + " 个文件...");
+                return searchEngine.searchFiles(searchPaths, searchText, mode);
             }
 
             @Override
             protected void succeeded() {
-                List<SearchResult> results = getValue();
+                GlobalSearchEngine.SearchOutcome outcome = getValue();
+                List<SearchResult> results = outcome.getResults();
                 Platform.runLater(() -> {
                     searchResults.addAll(results.stream()
                         .map(SearchResultItem::new)
                         .collect(Collectors.toList()));
 
+                    progressBar.progressProperty().unbind();
+                    statusLabel.textProperty().unbind();
                     progressBar.setVisible(false);
-                    statusLabel.setText("搜索完成，找到 " + results.size() + " 个结果");
+                    if (outcome.isTruncated()) {
+                        statusLabel.setText("搜索完成，结果已达上限，仅显示前 " + results.size() + " 个结果");
+                        showAlert("搜索结果过多，已在 " + results.size() + " 个结果处停止扫描，请缩小搜索范围或细化搜索条件",
+                            Alert.AlertType.WARNING);
+                    } else {
+                        statusLabel.setText("搜索完成，找到 " + results.size() + " 个结果");
+                    }
 
                     if (results.isEmpty()) {
                         showAlert("未找到匹配的内容", Alert.AlertType.INFORMATION);
@@ -482,6 +480,8 @@ public class SearchReplaceDialog extends Stage {
             @Override
             protected void failed() {
                 Platform.runLater(() -> {
+                    progressBar.progressProperty().unbind();
+                    statusLabel.textProperty().unbind();
                     progressBar.setVisible(false);
                     statusLabel.setText("搜索失败");
                     Throwable ex = getException();
@@ -549,7 +549,7 @@ public class SearchReplaceDialog extends Stage {
                                                      totalFiles, totalReplacements));
 
                     if (options.isPreview()) {
-                        showReplacePreview(result);
+                        showReplacePreview(result, replaceAll);
                     } else {
                         showAlert(String.format("成功替换 %d 个文件中的 %d 处内容",
                                               totalFiles, totalReplacements),
@@ -588,7 +588,9 @@ public class SearchReplaceDialog extends Stage {
                     paths.addAll(getAllXmlFiles("D:\\workspace\\dbxmlTool\\data\\DATA\\CLT_DATA"));
                     break;
                 case "所有XML":
-                    paths.addAll(getAllXmlFiles("D:\\workspace\\dbxmlTool\\data\\DATA"));
+                    // 优先使用配置的 XML 根目录（GlobalSearchEngine 启动时为其建立索引）
+                    String xmlRoot = YamlUtils.getProperty("application.yml", "aion.xmlPath", "");
+                    paths.addAll(getAllXmlFiles(xmlRoot.isEmpty() ? "D:\\workspace\\dbxmlTool\\data\\DATA" : xmlRoot));
                     break;
                 case "自定义路径":
                     String customPath = customPathField.getText();
@@ -610,9 +612,11 @@ public class SearchReplaceDialog extends Stage {
             return new ArrayList<>();
         }
 
-        return java.nio.file.Files.walk(dir)
-            .filter(path -> path.toString().toLowerCase().endsWith(".xml"))
-            .collect(Collectors.toList());
+        try (java.util.stream.Stream<Path> walk = java.nio.file.Files.walk(dir)) {
+            return walk
+                .filter(path -> path.toString().toLowerCase().endsWith(".xml"))
+                .collect(Collectors.toList());
+        }
     }
 
     private void showPreview(SearchResultItem item) {
@@ -647,7 +651,10 @@ public class SearchReplaceDialog extends Stage {
         previewArea.setText(preview.toString());
     }
 
-    private void showReplacePreview(Map<String, Integer> result) {
+    /**
+     * 显示预览统计，确认后按同一范围（全部或仅勾选项）实际执行替换
+     */
+    private void showReplacePreview(Map<String, Integer> result, boolean replaceAll) {
         StringBuilder preview = new StringBuilder();
         preview.append("替换预览（尚未实际执行）:\n");
         for (int i = 0; i < 50; i++) preview.append("=");
@@ -673,7 +680,7 @@ public class SearchReplaceDialog extends Stage {
         alert.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 previewCheck.setSelected(false);
-                performReplace(true);
+                performReplace(replaceAll);
             }
         });
     }
@@ -0,0 +1,77 @@
+package red.jiuzhou.ui.components;
+
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import red.jiuzhou.util.ConnectionPoolManager;
+
+import java.util.List;
+
+/**
+ * @className: red.jiuzhou.ui.components.ConnectionPoolStatusPane.java
+ * @description: 数据库连接池状态面板
+ *
+ * 每个池一行：占用比例、活跃/空闲/上限、等待线程数、获取连接耗时分位数与超时次数；
+ * 有线程等待或发生过超时的池标红。数据来自 {@link ConnectionPoolManager#getAllMetrics()}，
+ * 可在后台线程采集后通过 {@link #update(List)} 在 FX 线程刷新。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class ConnectionPoolStatusPane extends VBox {
+
+    private final VBox rows = new VBox(6);
+
+    public ConnectionPoolStatusPane() {
+        super(10);
+        setPadding(new Insets(15));
+        setStyle("-fx-background-color: white; -fx-border-color: #dee2e6; -fx-border-radius: 5;");
+
+        Label title = new Label("🔌 数据库连接池");
+        title.setFont(Font.font("Arial", FontWeight.BOLD, 14));
+
+        rows.getChildren().add(new Label("暂无连接池"));
+        getChildren().addAll(title, rows);
+    }
+
+    /**
+     * 采集并刷新（须在 FX 线程调用）
+     */
+    public void refresh() {
+        update(ConnectionPoolManager.getAllMetrics());
+    }
+
+    /**
+     * 用已采集的指标刷新（须在 FX 线程调用）
+     */
+    public void update(List<ConnectionPoolManager.PoolMetrics> poolMetrics) {
+        rows.getChildren().clear();
+        if (poolMetrics.isEmpty()) {
+            rows.getChildren().add(new Label("暂无连接池"));
+        }
+        for (ConnectionPoolManager.PoolMetrics m : poolMetrics) {
+            HBox row = new HBox(10);
+            row.setAlignment(Pos.CENTER_LEFT);
+            Label name = new Label(m.getPoolName());
+            name.setFont(Font.font("Arial", FontWeight.BOLD, 12));
+            name.setPrefWidth(180);
+            ProgressBar usage = new ProgressBar(m.getMax() > 0 ? (double) m.getActive() / m.getMax() : 0);
+            usage.setPrefWidth(120);
+            Label detail = new Label(String.format(
+                "活跃 %d / 空闲 %d / 上限 %d  等待 %d  获取 P50 %.2f ms, P95 %.2f ms, P99 %.2f ms  超时 %d",
+                m.getActive(), m.getIdle(), m.getMax(), m.getPendingThreads(),
+                m.getAcquirePercentileMillis(0.5), m.getAcquirePercentileMillis(0.95),
+                m.getAcquirePercentileMillis(0.99), m.getTimeoutCount()));
+            if (m.getPendingThreads() > 0 || m.getTimeoutCount() > 0) {
+                detail.setStyle("-fx-text-fill: #dc3545;");
+            }
+            row.getChildren().addAll(name, usage, detail);
+            rows.getChildren().add(row);
+        }
+    }
+}
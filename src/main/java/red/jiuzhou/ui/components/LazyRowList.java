@@ -0,0 +1,127 @@
+package red.jiuzhou.ui.components;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import red.jiuzhou.util.KeysetPageSource;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * @className: red.jiuzhou.ui.components.LazyRowList.java
+ * @description: TableView 虚拟滚动用的惰性行列表
+ *
+ * 列表长度等于整表（或筛选结果）的行数，TableView 只对可见行调用 get()：
+ * 行所在数据块已缓存时直接返回，否则先返回空占位行并异步加载该块（同时预取相邻块），
+ * 加载完成后在 FX 线程以替换事件刷新对应行。读到末尾时按实际行数修正列表长度。
+ * 所有方法只能在 FX 线程调用。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class LazyRowList extends ObservableListBase<Map<String, Object>> {
+
+    private static final Map<String, Object> PLACEHOLDER = Collections.emptyMap();
+
+    private final KeysetPageSource source;
+    private final Consumer<Throwable> onError;
+    private final Set<Integer> requested = new HashSet<>();
+    private int size;
+
+    public LazyRowList(KeysetPageSource source, Consumer<Throwable> onError) {
+        this.source = source;
+        this.onError = onError;
+        // 不等行数统计，先加载第一块；不满一块时可直接确定长度
+        request(0);
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        int blockSize = source.getBlockSize();
+        int block = index / blockSize;
+        List<Map<String, Object>> rows = source.getBlockIfCached(block);
+        int offset = index % blockSize;
+        if (rows != null && offset < rows.size()) {
+            return rows.get(offset);
+        }
+        if (rows == null) {
+            request(block);
+        }
+        return PLACEHOLDER;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** 数据块是否已加载（未加载的行显示为空占位行） */
+    public boolean isLoaded(int index) {
+        List<Map<String, Object>> rows = source.getBlockIfCached(index / source.getBlockSize());
+        return rows != null && index % source.getBlockSize() < rows.size();
+    }
+
+    /**
+     * 设置行数（行数统计完成后调用）；已读到末尾时以实际行数为准
+     */
+    public void resize(long rowCount) {
+        long known = source.getKnownSize();
+        setSize(known >= 0 ? known : rowCount);
+    }
+
+    private void request(int block) {
+        if (!requested.add(block)) {
+            return;
+        }
+        source.loadBlock(block).whenComplete((rows, ex) -> Platform.runLater(() -> {
+            requested.remove(block);
+            if (ex != null) {
+                onError.accept(ex);
+                return;
+            }
+            onBlockLoaded(block, rows);
+        }));
+    }
+
+    private void onBlockLoaded(int block, List<Map<String, Object>> rows) {
+        int blockSize = source.getBlockSize();
+        long known = source.getKnownSize();
+        if (known >= 0) {
+            setSize(known);
+        } else if (rows.size() == blockSize && (long) (block + 1) * blockSize >= size) {
+            // 行数统计偏小（估算值或达到计数上限）：末尾块是满的，向后多露出一块
+            setSize((long) (block + 1) * blockSize + 1);
+        }
+
+        int from = block * blockSize;
+        int to = Math.min(size, from + rows.size());
+        if (from >= to) {
+            return;
+        }
+        beginChange();
+        for (int i = from; i < to; i++) {
+            nextSet(i, PLACEHOLDER);
+        }
+        endChange();
+    }
+
+    private void setSize(long rowCount) {
+        int newSize = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(0, rowCount));
+        if (newSize == size) {
+            return;
+        }
+        int oldSize = size;
+        beginChange();
+        if (newSize > oldSize) {
+            size = newSize;
+            nextAdd(oldSize, newSize);
+        } else {
+            size = newSize;
+            nextRemove(newSize, Collections.nCopies(oldSize - newSize, PLACEHOLDER));
+        }
+        endChange();
+    }
+}
@@ -2193,9 +2193,18 @@ public class DatabaseMappingManager {
         content.append(String.format("插入: %d 行\n", result.insertedRows));
         content.append(String.format("更新: %d 行\n", result.updatedRows));
         content.append(String.format("跳过: %d 行 (因无主键或类型不匹配)\n", result.skippedRows));
+        if (result.unchangedRows > 0) {
+            content.append(String.format("其中内容未变化: %d 行\n", result.unchangedRows));
+        }
+        if (result.deletedRows > 0) {
+            content.append(String.format("删除: %d 行\n", result.deletedRows));
+        }
         content.append("\n");
 
         content.append(String.format("耗时: %d ms\n", result.durationMs));
+        if (!result.phaseTimings.isEmpty()) {
+            content.append("阶段耗时: ").append(result.getTimingSummary()).append("\n");
+        }
 
         if (result.message != null && !result.message.isEmpty()) {
             content.append("\n").append(result.message);
@@ -2,9 +2,8 @@ package red.jiuzhou.ui.mapping;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.SchemaCatalog;
 
-import java.sql.*;
 import java.util.*;
 
 /**
@@ -258,42 +257,21 @@ public class DatabaseTableScanner {
     /**
      * 扫描数据库中的所有表
      *
+     * 从 SchemaCatalog 读取（一次批量加载，DDL 时精确失效），不再逐表查询字段
+     *
      * @return 表信息列表
      */
     public static List<TableInfo> scanAllTables() {
         List<TableInfo> tables = new ArrayList<>();
 
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String dbName = DatabaseUtil.getDbName();
-
-            log.info("开始扫描数据库表: {}", dbName);
-
-            // 查询所有表
-            String sql = "SELECT TABLE_NAME, TABLE_COMMENT, TABLE_ROWS " +
-                        "FROM information_schema.TABLES " +
-                        "WHERE TABLE_SCHEMA = ? " +
-                        "ORDER BY TABLE_NAME";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, dbName);
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    String tableName = rs.getString("TABLE_NAME");
-                    String tableComment = rs.getString("TABLE_COMMENT");
-                    int tableRows = rs.getInt("TABLE_ROWS");
-
-                    TableInfo tableInfo = new TableInfo(tableName);
-                    tableInfo.setTableComment(tableComment);
-                    tableInfo.setRowCount(tableRows);
-
-                    // 加载表的字段信息
-                    loadTableColumns(conn, dbName, tableInfo);
-
+        try {
+            SchemaCatalog catalog = SchemaCatalog.get();
+            for (String tableName : catalog.getTableNames()) {
+                TableInfo tableInfo = toTableInfo(catalog.getTable(tableName));
+                if (tableInfo != null) {
                     tables.add(tableInfo);
                 }
             }
-
             log.info("成功扫描 {} 个表", tables.size());
 
         } catch (Exception e) {
@@ -304,43 +282,28 @@ public class DatabaseTableScanner {
     }
 
     /**
-     * 加载表的字段信息
+     * 元信息目录中的表转换为 TableInfo
      */
-    private static void loadTableColumns(Connection conn, String dbName, TableInfo tableInfo) {
-        try {
-            // 查询字段信息
-            String sql = "SELECT " +
-                        "COLUMN_NAME, DATA_TYPE, COLUMN_TYPE, " +
-                        "IS_NULLABLE, COLUMN_DEFAULT, COLUMN_COMMENT, " +
-                        "COLUMN_KEY, ORDINAL_POSITION " +
-                        "FROM information_schema.COLUMNS " +
-                        "WHERE TABLE_SCHEMA = ? AND TABLE_NAME = ? " +
-                        "ORDER BY ORDINAL_POSITION";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, dbName);
-                pstmt.setString(2, tableInfo.getTableName());
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    String columnName = rs.getString("COLUMN_NAME");
-                    ColumnInfo columnInfo = new ColumnInfo(columnName);
-
-                    columnInfo.setDataType(rs.getString("DATA_TYPE"));
-                    columnInfo.setColumnType(rs.getString("COLUMN_TYPE"));
-                    columnInfo.setNullable("YES".equals(rs.getString("IS_NULLABLE")));
-                    columnInfo.setColumnDefault(rs.getString("COLUMN_DEFAULT"));
-                    columnInfo.setComment(rs.getString("COLUMN_COMMENT"));
-                    columnInfo.setPrimaryKey("PRI".equals(rs.getString("COLUMN_KEY")));
-                    columnInfo.setOrdinalPosition(rs.getInt("ORDINAL_POSITION"));
-
-                    tableInfo.addColumn(columnInfo);
-                }
-            }
-
-        } catch (Exception e) {
-            log.error("加载表字段信息失败: {}", tableInfo.getTableName(), e);
+    public static TableInfo toTableInfo(SchemaCatalog.TableMeta table) {
+        if (table == null) {
+            return null;
         }
+        TableInfo tableInfo = new TableInfo(table.getName());
+        tableInfo.setTableComment(table.getComment());
+        tableInfo.setRowCount((int) Math.min(Integer.MAX_VALUE, table.getEstimatedRows()));
+
+        for (SchemaCatalog.ColumnMeta column : table.getColumns()) {
+            ColumnInfo columnInfo = new ColumnInfo(column.getName());
+            columnInfo.setDataType(column.getDataType());
+            columnInfo.setColumnType(column.getColumnType());
+            columnInfo.setNullable(column.isNullable());
+            columnInfo.setColumnDefault(column.getDefaultValue());
+            columnInfo.setComment(column.getComment());
+            columnInfo.setPrimaryKey(column.isPrimaryKey());
+            columnInfo.setOrdinalPosition(column.getOrdinalPosition());
+            tableInfo.addColumn(columnInfo);
+        }
+        return tableInfo;
     }
 
     /**
@@ -386,30 +349,12 @@ public class DatabaseTableScanner {
      * @return 表名列表
      */
     public static List<String> getTableNameList() {
-        List<String> tableNames = new ArrayList<>();
-
-        try (Connection conn = DatabaseUtil.getConnection()) {
-            String dbName = DatabaseUtil.getDbName();
-
-            String sql = "SELECT TABLE_NAME " +
-                        "FROM information_schema.TABLES " +
-                        "WHERE TABLE_SCHEMA = ? " +
-                        "ORDER BY TABLE_NAME";
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-                pstmt.setString(1, dbName);
-                ResultSet rs = pstmt.executeQuery();
-
-                while (rs.next()) {
-                    tableNames.add(rs.getString("TABLE_NAME"));
-                }
-            }
-
+        try {
+            return SchemaCatalog.get().getTableNames();
         } catch (Exception e) {
             log.error("获取表名列表失败", e);
+            return new ArrayList<>();
         }
-
-        return tableNames;
     }
 
     /**
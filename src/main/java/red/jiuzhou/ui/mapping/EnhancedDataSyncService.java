@@ -3,9 +3,11 @@ package red.jiuzhou.ui.mapping;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import red.jiuzhou.util.DatabaseUtil;
+import red.jiuzhou.util.YamlUtils;
 
 import java.sql.*;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 增强版数据同步服务
@@ -19,6 +21,11 @@ import java.util.*;
  *    - 同步时考虑上层主表的主键对照
  *    - 保持层级关系的一致性
  *
+ * 3. 集合式同步（默认，sync.set-based.enabled）：
+ *    - 源表去重后写入临时暂存表，子表外键通过临时映射表一次性替换
+ *    - 按模式执行 UPDATE ... FROM / INSERT ... SELECT WHERE NOT EXISTS / DELETE ... WHERE NOT EXISTS
+ *    - 每张表固定几条语句，不再逐行 COUNT 探测 + 单行写入；各阶段耗时记录在 phaseTimings
+ *
  * @author yanxq
  * @date 2025-01-13
  * @version 2.0
@@ -27,6 +34,16 @@ public class EnhancedDataSyncService {
 
     private static final Logger log = LoggerFactory.getLogger(EnhancedDataSyncService.class);
 
+    /** 是否使用集合式同步（关闭后回退到逐行探测 + 单行写入） */
+    private static final boolean SET_BASED_ENABLED = Boolean.parseBoolean(
+            YamlUtils.getProperty("application.yml", "sync.set-based.enabled", "true"));
+
+    /** 外键映射写入临时表时每批的行数 */
+    private static final int MAPPING_BATCH_SIZE = 5000;
+
+    private static final String STAGE_TABLE = "_sync_stage";
+    private static final String FK_MAP_TABLE = "_sync_fk_map";
+
     /**
      * 同步模式
      */
@@ -88,15 +105,38 @@ public class EnhancedDataSyncService {
         public int insertedRows;        // 新增记录数
         public int updatedRows;         // 更新记录数
         public int skippedRows;         // 跳过记录数
+        public int deletedRows;         // 删除记录数（仅完全同步）
+        public int unchangedRows;       // 匹配但内容相同、未实际写入的记录数（已计入 updatedRows）
         public int totalRows;           // 总记录数
         public String message;
         public List<String> errors;
         public List<String> warnings;
         public long durationMs;
+        public Map<String, Long> phaseTimings;  // 各阶段耗时（毫秒），按执行顺序
 
         public EnhancedSyncResult() {
             this.errors = new ArrayList<>();
             this.warnings = new ArrayList<>();
+            this.phaseTimings = new LinkedHashMap<>();
+        }
+
+        /**
+         * 记录一个阶段的耗时
+         *
+         * @param phase 阶段名
+         * @param startNanos 阶段开始时的 System.nanoTime()
+         */
+        public void recordPhase(String phase, long startNanos) {
+            phaseTimings.merge(phase, (System.nanoTime() - startNanos) / 1_000_000, Long::sum);
+        }
+
+        /**
+         * 各阶段耗时摘要，例如 "字段结构 3 ms, 暂存 120 ms, 更新 80 ms"
+         */
+        public String getTimingSummary() {
+            return phaseTimings.entrySet().stream()
+                    .map(e -> e.getKey() + " " + e.getValue() + " ms")
+                    .collect(Collectors.joining(", "));
         }
     }
 
@@ -151,7 +191,9 @@ public class EnhancedDataSyncService {
             conn.setAutoCommit(false);  // 开启事务
 
             // 步骤1：更新字段结构
+            long phaseStart = System.nanoTime();
             result.schemaUpdates = updateTableSchema(conn, sourceTableInfo, targetTableInfo);
+            result.recordPhase("字段结构", phaseStart);
             log.info("字段结构更新完成，修改了 {} 个字段", result.schemaUpdates);
 
             // 步骤2：获取主键字段
@@ -178,10 +220,13 @@ public class EnhancedDataSyncService {
             // 步骤4：同步数据（根据选择的模式）
             syncDataIncremental(conn, sourceTable, targetTable, primaryKeyColumn, commonFields, syncMode, result);
 
+            long commitStart = System.nanoTime();
             conn.commit();
+            result.recordPhase("提交", commitStart);
             result.success = true;
-            log.info("主表同步成功: 新增={}, 更新={}, 跳过={}",
-                    result.insertedRows, result.updatedRows, result.skippedRows);
+            log.info("主表同步成功: 新增={}, 更新={}, 跳过={}, 删除={}, 耗时分布: {}",
+                    result.insertedRows, result.updatedRows, result.skippedRows, result.deletedRows,
+                    result.getTimingSummary());
 
         } catch (Exception e) {
             result.success = false;
@@ -444,7 +489,9 @@ public class EnhancedDataSyncService {
             conn.setAutoCommit(false);
 
             // 步骤1：更新字段结构
+            long phaseStart = System.nanoTime();
             result.schemaUpdates = updateTableSchema(conn, sourceTableInfo, targetTableInfo);
+            result.recordPhase("字段结构", phaseStart);
 
             // 步骤2：获取外键字段（指向父表）
             String foreignKeyColumn = inferForeignKeyColumn(sourceTableInfo);
@@ -478,10 +525,13 @@ public class EnhancedDataSyncService {
                     primaryKeyColumn, foreignKeyColumn, commonFields,
                     parentKeyMapping, syncMode, result);
 
+            long commitStart = System.nanoTime();
             conn.commit();
+            result.recordPhase("提交", commitStart);
             result.success = true;
-            log.info("子表同步成功: 新增={}, 更新={}, 跳过={}",
-                    result.insertedRows, result.updatedRows, result.skippedRows);
+            log.info("子表同步成功: 新增={}, 更新={}, 跳过={}, 删除={}, 耗时分布: {}",
+                    result.insertedRows, result.updatedRows, result.skippedRows, result.deletedRows,
+                    result.getTimingSummary());
 
         } catch (Exception e) {
             result.success = false;
@@ -552,6 +602,10 @@ public class EnhancedDataSyncService {
                                            EnhancedSyncResult result) throws SQLException {
 
         log.info("数据同步模式: {}", syncMode.getDisplayName());
+        if (SET_BASED_ENABLED) {
+            syncDataSetBased(conn, sourceTable, targetTable, primaryKeyColumn, null, commonFields, null, syncMode, result);
+            return;
+        }
 
         // 构建字段列表（使用反引号保护字段名，防止与保留关键字冲突）
         String fieldList = commonFields.stream()
@@ -693,6 +747,7 @@ public class EnhancedDataSyncService {
                 // 如果是完全同步模式，删除目标表中不存在于源表的记录
                 if (syncMode == SyncMode.FULL_SYNC) {
                     int deletedCount = deleteOrphanedRecords(conn, sourceTable, targetTable, primaryKeyColumn);
+                    result.deletedRows = deletedCount;
                     result.message = String.format("完全同步：删除了 %d 条目标表中多余的记录", deletedCount);
                     log.info("完全同步模式：删除了 {} 条目标表中多余的记录", deletedCount);
                 }
@@ -721,6 +776,212 @@ public class EnhancedDataSyncService {
         }
     }
 
+    /**
+     * 集合式同步：源表 → 临时暂存表（按主键去重、替换外键）→ 按模式批量更新/新增/删除
+     *
+     * 计数与逐行同步一致：主键为空、外键未在父表映射中找到、源表内主键重复（只保留最后一行）的行计入跳过；
+     * 只更新模式下不存在的行、只新增模式下已存在的行同样计入跳过。
+     * 匹配行只写入内容确实不同的记录，但与逐行同步一样全部计入 updatedRows（未变化的另计 unchangedRows）。
+     *
+     * @param primaryKeyColumn 主键列，复合主键以逗号分隔
+     * @param foreignKeyColumn 外键列（可为 null）
+     * @param parentKeyMapping 父表主键映射 源值 → 目标值（可为 null，为空时不替换外键）
+     */
+    static void syncDataSetBased(Connection conn,
+                                 String sourceTable,
+                                 String targetTable,
+                                 String primaryKeyColumn,
+                                 String foreignKeyColumn,
+                                 List<String> commonFields,
+                                 Map<String, String> parentKeyMapping,
+                                 SyncMode syncMode,
+                                 EnhancedSyncResult result) throws SQLException {
+
+        List<String> keyColumns = new ArrayList<>();
+        for (String key : primaryKeyColumn.split(",")) {
+            String column = findField(commonFields, key.trim());
+            if (column == null) {
+                throw new SQLException("主键字段 " + key.trim() + " 不在源表与目标表的共同字段中");
+            }
+            keyColumns.add(column);
+        }
+        String fkColumn = foreignKeyColumn == null ? null : findField(commonFields, foreignKeyColumn);
+        boolean mapForeignKey = fkColumn != null && parentKeyMapping != null && !parentKeyMapping.isEmpty();
+
+        String source = quote(sourceTable);
+        String target = quote(targetTable);
+        String fieldList = commonFields.stream().map(EnhancedDataSyncService::quote).collect(Collectors.joining(", "));
+        String keyList = keyColumns.stream().map(EnhancedDataSyncService::quote).collect(Collectors.joining(", "));
+        String keyJoin = keyColumns.stream()
+                .map(k -> "t." + quote(k) + " = s." + quote(k))
+                .collect(Collectors.joining(" AND "));
+        String keyNotNull = keyColumns.stream()
+                .map(k -> "src." + quote(k) + " IS NOT NULL")
+                .collect(Collectors.joining(" AND "));
+
+        try (Statement stmt = conn.createStatement()) {
+            // 阶段1：暂存（源表按主键去重，外键替换为目标父表主键）
+            long phaseStart = System.nanoTime();
+            result.totalRows = queryCount(stmt, "SELECT COUNT(*) FROM " + source);
+
+            String fromClause = source + " src";
+            String whereClause = keyNotNull;
+            String selectList = commonFields.stream().map(f -> "src." + quote(f)).collect(Collectors.joining(", "));
+            if (mapForeignKey) {
+                loadForeignKeyMapping(conn, stmt, source, fkColumn, parentKeyMapping);
+                fromClause += " LEFT JOIN " + FK_MAP_TABLE + " m ON m.source_fk = src." + quote(fkColumn);
+                whereClause += " AND (src." + quote(fkColumn) + " IS NULL OR m.source_fk IS NOT NULL)";
+                selectList = commonFields.stream()
+                        .map(f -> f.equals(fkColumn)
+                                ? "COALESCE(m.target_fk, src." + quote(f) + ") AS " + quote(f)
+                                : "src." + quote(f))
+                        .collect(Collectors.joining(", "));
+
+                int unmapped = queryCount(stmt, "SELECT COUNT(*) FROM " + source + " src LEFT JOIN " + FK_MAP_TABLE
+                        + " m ON m.source_fk = src." + quote(fkColumn)
+                        + " WHERE src." + quote(fkColumn) + " IS NOT NULL AND m.source_fk IS NULL");
+                if (unmapped > 0) {
+                    result.warnings.add(String.format("跳过 %d 条记录：外键值未在父表映射中找到（目标表中对应记录保留不动）", unmapped));
+                }
+            }
+
+            stmt.execute("DROP TABLE IF EXISTS " + STAGE_TABLE);
+            stmt.execute(String.format("CREATE TEMP TABLE %s ON COMMIT DROP AS SELECT %s FROM %s WITH NO DATA",
+                    STAGE_TABLE, fieldList, source));
+            String dedupOrder = keyColumns.stream().map(k -> "src." + quote(k)).collect(Collectors.joining(", "));
+            int staged = stmt.executeUpdate(String.format(
+                    "INSERT INTO %s (%s) SELECT DISTINCT ON (%s) %s FROM %s WHERE %s ORDER BY %s, src.ctid DESC",
+                    STAGE_TABLE, fieldList, dedupOrder, selectList, fromClause, whereClause, dedupOrder));
+            stmt.execute(String.format("CREATE INDEX ON %s (%s)", STAGE_TABLE, keyList));
+            stmt.execute("ANALYZE " + STAGE_TABLE);
+            result.skippedRows += result.totalRows - staged;
+
+            int matched = queryCount(stmt, String.format("SELECT COUNT(*) FROM %s s JOIN %s t ON %s",
+                    STAGE_TABLE, target, keyJoin));
+            int missing = staged - matched;
+            result.recordPhase("暂存", phaseStart);
+            log.info("暂存完成: 源表 {} 行, 暂存 {} 行, 目标已存在 {} 行, 新记录 {} 行",
+                    result.totalRows, staged, matched, missing);
+
+            // 阶段2：更新已存在的记录（只写入内容不同的行）
+            if (syncMode == SyncMode.INCREMENTAL || syncMode == SyncMode.UPDATE_ONLY || syncMode == SyncMode.FULL_SYNC) {
+                phaseStart = System.nanoTime();
+                List<String> valueColumns = commonFields.stream()
+                        .filter(f -> !keyColumns.contains(f))
+                        .collect(Collectors.toList());
+                int written = 0;
+                if (!valueColumns.isEmpty()) {
+                    String setClause = valueColumns.stream()
+                            .map(f -> quote(f) + " = s." + quote(f))
+                            .collect(Collectors.joining(", "));
+                    String targetRow = valueColumns.stream().map(f -> "t." + quote(f)).collect(Collectors.joining(", "));
+                    String stagedRow = valueColumns.stream().map(f -> "s." + quote(f)).collect(Collectors.joining(", "));
+                    written = stmt.executeUpdate(String.format(
+                            "UPDATE %s t SET %s FROM %s s WHERE %s AND ROW(%s) IS DISTINCT FROM ROW(%s)",
+                            target, setClause, STAGE_TABLE, keyJoin, targetRow, stagedRow));
+                }
+                result.updatedRows += matched;
+                result.unchangedRows += matched - written;
+                result.recordPhase("更新", phaseStart);
+            } else {
+                result.skippedRows += matched;
+            }
+
+            // 阶段3：新增不存在的记录
+            if (syncMode == SyncMode.INCREMENTAL || syncMode == SyncMode.INSERT_ONLY || syncMode == SyncMode.FULL_SYNC) {
+                phaseStart = System.nanoTime();
+                result.insertedRows += stmt.executeUpdate(String.format(
+                        "INSERT INTO %s (%s) SELECT %s FROM %s s WHERE NOT EXISTS (SELECT 1 FROM %s t WHERE %s)",
+                        target, fieldList,
+                        commonFields.stream().map(f -> "s." + quote(f)).collect(Collectors.joining(", ")),
+                        STAGE_TABLE, target, keyJoin));
+                result.recordPhase("新增", phaseStart);
+            } else {
+                result.skippedRows += missing;
+            }
+
+            // 阶段4：完全同步时删除源表中不存在的记录
+            // 源表按暂存时的条件和外键替换投影后比较；外键未映射而被跳过的行另按原始键保留，不能当作多余删除
+            if (syncMode == SyncMode.FULL_SYNC) {
+                phaseStart = System.nanoTime();
+                String deleteSql = String.format(
+                        "DELETE FROM %s t WHERE NOT EXISTS (SELECT 1 FROM %s WHERE %s AND %s)",
+                        target, fromClause, whereClause, mappedKeyMatch(keyColumns, mapForeignKey ? fkColumn : null));
+                if (mapForeignKey) {
+                    deleteSql += String.format(
+                            " AND NOT EXISTS (SELECT 1 FROM %s WHERE src.%s IS NOT NULL AND m.source_fk IS NULL AND %s)",
+                            fromClause, quote(fkColumn), mappedKeyMatch(keyColumns, null));
+                }
+                int deletedCount = stmt.executeUpdate(deleteSql);
+                result.deletedRows += deletedCount;
+                result.message = String.format("完全同步：删除了 %d 条目标表中多余的记录", deletedCount);
+                log.info("完全同步模式：删除了 {} 条目标表中多余的记录", deletedCount);
+                result.recordPhase("删除", phaseStart);
+            }
+        }
+    }
+
+    /**
+     * 目标行 t 与源表行 src 的主键匹配条件；fkColumn 非空时该列按映射表 m 替换为目标父表主键（与暂存时一致）
+     */
+    private static String mappedKeyMatch(List<String> keyColumns, String fkColumn) {
+        return keyColumns.stream()
+                .map(k -> "t." + quote(k) + " = " + (k.equals(fkColumn)
+                        ? "COALESCE(m.target_fk, src." + quote(k) + ")"
+                        : "src." + quote(k)))
+                .collect(Collectors.joining(" AND "));
+    }
+
+    /**
+     * 将父表主键映射写入临时表（列类型与源表外键列一致，避免比较时的类型转换）
+     */
+    private static void loadForeignKeyMapping(Connection conn, Statement stmt, String source,
+                                              String fkColumn, Map<String, String> parentKeyMapping) throws SQLException {
+        stmt.execute("DROP TABLE IF EXISTS " + FK_MAP_TABLE);
+        stmt.execute(String.format(
+                "CREATE TEMP TABLE %s ON COMMIT DROP AS SELECT %s AS source_fk, %s AS target_fk FROM %s WITH NO DATA",
+                FK_MAP_TABLE, quote(fkColumn), quote(fkColumn), source));
+        try (PreparedStatement insert = conn.prepareStatement(
+                "INSERT INTO " + FK_MAP_TABLE + " (source_fk, target_fk) VALUES (?, ?)")) {
+            int pending = 0;
+            for (Map.Entry<String, String> entry : parentKeyMapping.entrySet()) {
+                // Types.OTHER 由服务端按列类型解析字符串
+                insert.setObject(1, entry.getKey(), Types.OTHER);
+                insert.setObject(2, entry.getValue(), Types.OTHER);
+                insert.addBatch();
+                if (++pending == MAPPING_BATCH_SIZE) {
+                    insert.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+            }
+        }
+        stmt.execute(String.format("CREATE INDEX ON %s (source_fk)", FK_MAP_TABLE));
+        stmt.execute("ANALYZE " + FK_MAP_TABLE);
+    }
+
+    private static int queryCount(Statement stmt, String sql) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static String findField(List<String> fields, String name) {
+        for (String field : fields) {
+            if (field.equalsIgnoreCase(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
     /**
      * 同步子表数据（考虑父表主键映射）
      */
@@ -734,6 +995,12 @@ public class EnhancedDataSyncService {
                                                     SyncMode syncMode,
                                                     EnhancedSyncResult result) throws SQLException {
 
+        if (SET_BASED_ENABLED) {
+            syncDataSetBased(conn, sourceTable, targetTable, primaryKeyColumn, foreignKeyColumn,
+                    commonFields, parentKeyMapping, syncMode, result);
+            return;
+        }
+
         // 如果没有父表映射，直接调用普通同步
         if (parentKeyMapping == null || parentKeyMapping.isEmpty()) {
             syncDataIncremental(conn, sourceTable, targetTable, primaryKeyColumn, commonFields, syncMode, result);
@@ -1,14 +1,10 @@
 package red.jiuzhou.ui.mapping;
 
-import com.alibaba.fastjson.JSON;
-import com.alibaba.fastjson.serializer.SerializerFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import red.jiuzhou.util.SchemaCatalog;
 
 import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -16,260 +12,77 @@ import java.util.concurrent.ConcurrentHashMap;
  * 表结构缓存管理器
  *
  * 设计思路：
- * 1. 首次加载：从数据库扫描所有表结构，生成缓存文件
- * 2. 后续加载：优先从缓存文件读取（毫秒级），后台异步验证数据库
+ * 1. 表结构统一来自 {@link SchemaCatalog}（一次 pg_catalog 查询加载，DDL 事件失效）
+ * 2. 本类只维护 TableInfo 视图，SchemaCatalog 版本变化时重建，不再有文件缓存和 TTL
  * 3. DDL文件支持：可以从DDL文件解析表结构作为补充/验证
- * 4. 增量更新：只更新变化的表，不是每次全量扫描
- *
- * 性能优化：
- * - 缓存文件存储，快速启动
- * - 并发加载，多线程处理
- * - 懒加载字段详情
- * - 智能刷新机制
  *
  * 准确性保证：
- * - 带时间戳的版本控制
- * - 后台校验数据库变化
- * - DDL文件对比验证
- * - 强制刷新选项
+ * - 建表/改表后由 SchemaCatalog 失效对应表（事件触发器或 executeSqlScript 钩子）
+ * - 强制刷新选项：重新加载整个 SchemaCatalog
  *
  * @author yanxq
  * @date 2025-01-13
- * @version 2.0
+ * @version 3.0
  */
 public class TableStructureCache {
 
     private static final Logger log = LoggerFactory.getLogger(TableStructureCache.class);
 
-    // 缓存文件路径
-    private static final String CACHE_DIR = "cache";
-    private static final String CACHE_FILE = CACHE_DIR + "/table_structure_cache.json";
-
-    // 缓存有效期（毫秒）- 默认1小时
-    private static final long CACHE_VALIDITY_MS = 60 * 60 * 1000;
+    // 旧版文件缓存路径（仅用于清理遗留文件）
+    private static final String LEGACY_CACHE_FILE = "cache/table_structure_cache.json";
 
-    // 内存缓存
+    // 内存缓存（SchemaCatalog 的 TableInfo 视图）
     private static final Map<String, DatabaseTableScanner.TableInfo> tableCache =
         new ConcurrentHashMap<>();
 
-    // 缓存元数据
-    private static CacheMetadata metadata;
+    // 构建 tableCache 时的 SchemaCatalog 版本
+    private static volatile long catalogVersion = -1;
 
     /**
-     * 缓存元数据
-     */
-    public static class CacheMetadata {
-        public long timestamp;           // 缓存时间戳
-        public String databaseName;      // 数据库名
-        public int tableCount;           // 表数量
-        public String version;           // 缓存版本
-
-        public CacheMetadata() {
-            this.timestamp = System.currentTimeMillis();
-            this.version = "2.0";
-        }
-
-        public boolean isValid() {
-            long age = System.currentTimeMillis() - timestamp;
-            return age < CACHE_VALIDITY_MS;
-        }
-
-        public long getAgeMinutes() {
-            return (System.currentTimeMillis() - timestamp) / 1000 / 60;
-        }
-    }
-
-    /**
-     * 缓存数据结构
-     */
-    private static class CacheData {
-        public CacheMetadata metadata;
-        public List<DatabaseTableScanner.TableInfo> tables;
-
-        public CacheData() {
-            this.metadata = new CacheMetadata();
-            this.tables = new ArrayList<>();
-        }
-    }
-
-    /**
-     * 加载表结构（智能缓存策略）
+     * 加载表结构
      *
-     * @param forceRefresh 是否强制刷新
+     * @param forceRefresh 是否强制刷新（重新加载 SchemaCatalog）
      * @return 表信息列表
      */
-    public static List<DatabaseTableScanner.TableInfo> loadTableStructures(boolean forceRefresh) {
-
-        // 1. 如果强制刷新，直接从数据库加载
+    public static synchronized List<DatabaseTableScanner.TableInfo> loadTableStructures(boolean forceRefresh) {
+        SchemaCatalog catalog = SchemaCatalog.get();
         if (forceRefresh) {
-            log.info("强制刷新：从数据库加载表结构");
-            return loadFromDatabaseAndCache();
+            log.info("强制刷新：重新加载表结构目录");
+            catalog.reloadAll();
         }
 
-        // 2. 尝试从内存缓存加载
-        if (!tableCache.isEmpty() && metadata != null && metadata.isValid()) {
-            log.info("从内存缓存加载 {} 个表（缓存年龄: {} 分钟）",
-                tableCache.size(), metadata.getAgeMinutes());
+        long version = catalog.getVersion();
+        if (!tableCache.isEmpty() && version == catalogVersion) {
+            log.info("从内存缓存加载 {} 个表（目录版本: {}）", tableCache.size(), version);
             return new ArrayList<>(tableCache.values());
         }
 
-        // 3. 尝试从文件缓存加载
-        List<DatabaseTableScanner.TableInfo> cachedTables = loadFromCacheFile();
-        if (cachedTables != null && !cachedTables.isEmpty()) {
-            log.info("从文件缓存加载 {} 个表（缓存年龄: {} 分钟）",
-                cachedTables.size(), metadata.getAgeMinutes());
-
-            // 加载到内存缓存
-            tableCache.clear();
-            for (DatabaseTableScanner.TableInfo table : cachedTables) {
-                tableCache.put(table.getTableName(), table);
-            }
-
-            // 启动后台验证（可选）
-            startBackgroundValidation();
-
-            return cachedTables;
-        }
-
-        // 4. 缓存未命中，从数据库加载
-        log.info("缓存未命中，从数据库加载表结构");
-        return loadFromDatabaseAndCache();
-    }
-
-    /**
-     * 从数据库加载并缓存
-     */
-    private static List<DatabaseTableScanner.TableInfo> loadFromDatabaseAndCache() {
         List<DatabaseTableScanner.TableInfo> tables = DatabaseTableScanner.scanAllTables();
-
-        // 保存到内存缓存
-        tableCache.clear();
+        Map<String, DatabaseTableScanner.TableInfo> loaded = new HashMap<>();
         for (DatabaseTableScanner.TableInfo table : tables) {
-            tableCache.put(table.getTableName(), table);
+            loaded.put(table.getTableName(), table);
         }
+        tableCache.putAll(loaded);
+        tableCache.keySet().retainAll(loaded.keySet());
+        catalogVersion = version;
 
-        // 保存到文件缓存
-        saveToCacheFile(tables);
-
+        log.info("从表结构目录构建 {} 个表（目录版本: {}）", tables.size(), version);
         return tables;
     }
 
     /**
-     * 从缓存文件加载
-     */
-    private static List<DatabaseTableScanner.TableInfo> loadFromCacheFile() {
-        try {
-            File cacheFile = new File(CACHE_FILE);
-            if (!cacheFile.exists()) {
-                log.info("缓存文件不存在: {}", CACHE_FILE);
-                return null;
-            }
-
-            String json = new String(Files.readAllBytes(Paths.get(CACHE_FILE)),
-                StandardCharsets.UTF_8);
-
-            CacheData cacheData = JSON.parseObject(json, CacheData.class);
-
-            if (cacheData == null || cacheData.metadata == null) {
-                log.warn("缓存文件格式错误");
-                return null;
-            }
-
-            metadata = cacheData.metadata;
-
-            // 检查缓存是否过期
-            if (!metadata.isValid()) {
-                log.info("缓存已过期（年龄: {} 分钟），需要刷新", metadata.getAgeMinutes());
-                return null;
-            }
-
-            log.info("成功从缓存文件加载 {} 个表", cacheData.tables.size());
-            return cacheData.tables;
-
-        } catch (Exception e) {
-            log.error("加载缓存文件失败", e);
-            return null;
-        }
-    }
-
-    /**
-     * 保存到缓存文件
-     */
-    private static void saveToCacheFile(List<DatabaseTableScanner.TableInfo> tables) {
-        try {
-            // 创建缓存目录
-            File cacheDir = new File(CACHE_DIR);
-            if (!cacheDir.exists()) {
-                cacheDir.mkdirs();
-            }
-
-            // 构建缓存数据
-            CacheData cacheData = new CacheData();
-            cacheData.metadata = new CacheMetadata();
-            cacheData.metadata.tableCount = tables.size();
-            cacheData.tables = tables;
-
-            // 更新元数据
-            metadata = cacheData.metadata;
-
-            // 序列化为JSON
-            String json = JSON.toJSONString(cacheData,
-                SerializerFeature.PrettyFormat,
-                SerializerFeature.WriteMapNullValue);
-
-            // 写入文件
-            Files.write(Paths.get(CACHE_FILE), json.getBytes(StandardCharsets.UTF_8));
-
-            log.info("成功保存缓存文件: {} (包含 {} 个表)", CACHE_FILE, tables.size());
-
-        } catch (Exception e) {
-            log.error("保存缓存文件失败", e);
-        }
-    }
-
-    /**
-     * 启动后台验证（异步）
-     * 在后台检查数据库是否有变化
-     */
-    private static void startBackgroundValidation() {
-        Thread validationThread = new Thread(() -> {
-            try {
-                Thread.sleep(3000);  // 延迟3秒后开始验证
-
-                log.info("后台验证：检查数据库表结构变化");
-
-                // 快速检查表数量是否变化
-                List<String> currentTables = DatabaseTableScanner.getTableNameList();
-
-                if (currentTables.size() != tableCache.size()) {
-                    log.warn("表数量变化：缓存={}, 数据库={}, 建议刷新",
-                        tableCache.size(), currentTables.size());
-                } else {
-                    log.info("后台验证：表结构无明显变化");
-                }
-
-            } catch (Exception e) {
-                log.error("后台验证失败", e);
-            }
-        });
-
-        validationThread.setName("TableStructure-BackgroundValidation");
-        validationThread.setDaemon(true);
-        validationThread.start();
-    }
-
-    /**
-     * 清除所有缓存
+     * 清除所有缓存（重新加载 SchemaCatalog，并删除旧版遗留的缓存文件）
      */
     public static void clearCache() {
         tableCache.clear();
-        metadata = null;
+        catalogVersion = -1;
+        SchemaCatalog.get().reloadAll();
 
         try {
-            File cacheFile = new File(CACHE_FILE);
+            File cacheFile = new File(LEGACY_CACHE_FILE);
             if (cacheFile.exists()) {
                 cacheFile.delete();
-                log.info("已删除缓存文件: {}", CACHE_FILE);
+                log.info("已删除旧版缓存文件: {}", LEGACY_CACHE_FILE);
             }
         } catch (Exception e) {
             log.error("删除缓存文件失败", e);
@@ -280,16 +93,7 @@ public class TableStructureCache {
      * 获取缓存统计信息
      */
     public static String getCacheStats() {
-        if (metadata == null) {
-            return "无缓存";
-        }
-
-        return String.format(
-            "缓存: %d 个表 | 年龄: %d 分钟 | 状态: %s",
-            tableCache.size(),
-            metadata.getAgeMinutes(),
-            metadata.isValid() ? "有效" : "已过期"
-        );
+        return String.format("缓存: %d 个表 | %s", tableCache.size(), SchemaCatalog.get().getStats());
     }
 
     /**
@@ -3,10 +3,13 @@ package red.jiuzhou.util;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 
 /**
@@ -76,6 +79,22 @@ public class BomAwareFileReader {
         return readString(new File(filePath), encoding);
     }
 
+    /**
+     * 打开文件的流式字符读取器（自动跳过 BOM，不把整个文件读入内存）
+     *
+     * 与 readString 相同，过滤掉所有 U+FEFF 字符，适用于大文件的流式 XML 解析。
+     * 调用方负责关闭返回的 Reader。
+     *
+     * @param file     文件对象
+     * @param encoding 编码信息
+     * @return 已去除 BOM 的字符流
+     * @throws IOException IO异常
+     */
+    public static Reader openReader(File file, FileEncodingDetector.EncodingInfo encoding) throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), encoding.toCharset());
+        return new BomFilterReader(new BufferedReader(reader, 64 * 1024));
+    }
+
     /**
      * 检测并移除字符串开头的 BOM 字符
      *
@@ -173,4 +192,42 @@ public class BomAwareFileReader {
 
         return report.toString();
     }
+
+    /**
+     * 过滤 U+FEFF 字符的 Reader
+     */
+    private static class BomFilterReader extends FilterReader {
+
+        BomFilterReader(Reader in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int c;
+            do {
+                c = super.read();
+            } while (c == '\uFEFF');
+            return c;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read;
+            do {
+                read = super.read(cbuf, off, len);
+                if (read <= 0) {
+                    return read;
+                }
+                int kept = off;
+                for (int i = off; i < off + read; i++) {
+                    if (cbuf[i] != '\uFEFF') {
+                        cbuf[kept++] = cbuf[i];
+                    }
+                }
+                read = kept - off;
+            } while (read == 0);
+            return read;
+        }
+    }
 }
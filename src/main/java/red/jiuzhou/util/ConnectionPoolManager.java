@@ -0,0 +1,302 @@
+package red.jiuzhou.util;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @className: red.jiuzhou.util.ConnectionPoolManager.java
+ * @description: 统一的数据库连接池管理
+ *
+ * DatabaseUtil（默认库及按库名切换的 JdbcTemplate）、SqlServerConnection 以及 Spring 容器中的
+ * DataSource 都从这里获取连接池，每个池有上限与超时，避免虚拟线程导入/导出时无限制地新建连接。
+ *
+ * 每个池都挂载了指标采集器，可通过 {@link #getAllMetrics()} 获取活跃/空闲连接数、等待线程数、
+ * 获取连接耗时直方图等，供运维监控面板展示。
+ *
+ * 配置项（application.yml，所有池共用）：
+ * <pre>
+ * db.pool.maximum-pool-size        最大连接数（默认10）
+ * db.pool.minimum-idle             最小空闲连接（默认2）
+ * db.pool.connection-timeout-ms    获取连接超时（默认30000）
+ * db.pool.idle-timeout-ms          空闲回收时间（默认600000）
+ * db.pool.max-lifetime-ms          连接最长存活（默认1800000）
+ * db.pool.leak-detection-threshold-ms 连接泄漏检测阈值（默认0，关闭）
+ * </pre>
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class ConnectionPoolManager {
+
+    private static final Logger log = LoggerFactory.getLogger(ConnectionPoolManager.class);
+
+    private static final Map<String, HikariDataSource> POOLS = new ConcurrentHashMap<>();
+    private static final Map<String, PoolMetricsTracker> TRACKERS = new ConcurrentHashMap<>();
+
+    /** 获取连接耗时直方图的桶上界（毫秒），最后一个桶为 +∞ */
+    private static final double[] ACQUIRE_BUCKETS_MS = {0.1, 0.5, 1, 5, 10, 50, 100, 500, 1000, 5000};
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(ConnectionPoolManager::closeAll, "connection-pool-shutdown"));
+    }
+
+    /**
+     * 获取（不存在则创建）指定名称的连接池
+     *
+     * @param poolName        池名称，同名复用同一个池
+     * @param url             JDBC URL
+     * @param username        用户名
+     * @param password        密码
+     * @param driverClassName 驱动类名（可为空，由 URL 推断）
+     */
+    public static HikariDataSource getOrCreatePool(String poolName, String url, String username,
+                                                   String password, String driverClassName) {
+        return POOLS.computeIfAbsent(poolName, name -> {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName(name);
+            config.setJdbcUrl(url);
+            config.setUsername(username);
+            config.setPassword(password);
+            if (driverClassName != null && !driverClassName.isEmpty()) {
+                config.setDriverClassName(driverClassName);
+            }
+            config.setMaximumPoolSize(intProperty("db.pool.maximum-pool-size", 10));
+            config.setMinimumIdle(intProperty("db.pool.minimum-idle", 2));
+            config.setConnectionTimeout(longProperty("db.pool.connection-timeout-ms", 30000L));
+            config.setIdleTimeout(longProperty("db.pool.idle-timeout-ms", 600000L));
+            config.setMaxLifetime(longProperty("db.pool.max-lifetime-ms", 1800000L));
+            config.setLeakDetectionThreshold(longProperty("db.pool.leak-detection-threshold-ms", 0L));
+            // 启动时不因数据库暂时不可用而失败，首次获取连接时再报错（与原先的懒连接行为一致）
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory((trackedPool, poolStats) -> {
+                PoolMetricsTracker tracker = new PoolMetricsTracker(trackedPool, poolStats);
+                TRACKERS.put(trackedPool, tracker);
+                return tracker;
+            });
+
+            log.info("创建连接池 {}: 最大连接 {}, 最小空闲 {}, 获取超时 {} ms",
+                name, config.getMaximumPoolSize(), config.getMinimumIdle(), config.getConnectionTimeout());
+            return new HikariDataSource(config);
+        });
+    }
+
+    /**
+     * 关闭并移除指定连接池
+     */
+    public static void closePool(String poolName) {
+        HikariDataSource pool = POOLS.remove(poolName);
+        TRACKERS.remove(poolName);
+        if (pool != null && !pool.isClosed()) {
+            pool.close();
+            log.info("已关闭连接池 {}", poolName);
+        }
+    }
+
+    /**
+     * 关闭所有连接池（JVM 退出时自动调用）
+     */
+    public static void closeAll() {
+        new ArrayList<>(POOLS.keySet()).forEach(ConnectionPoolManager::closePool);
+    }
+
+    /**
+     * 获取指定连接池的指标快照
+     *
+     * @return 快照，池不存在时返回 null
+     */
+    public static PoolMetrics getMetrics(String poolName) {
+        PoolMetricsTracker tracker = TRACKERS.get(poolName);
+        return tracker == null ? null : tracker.snapshot();
+    }
+
+    /**
+     * 获取所有连接池的指标快照
+     */
+    public static List<PoolMetrics> getAllMetrics() {
+        List<PoolMetrics> metrics = new ArrayList<>();
+        for (PoolMetricsTracker tracker : TRACKERS.values()) {
+            metrics.add(tracker.snapshot());
+        }
+        metrics.sort((a, b) -> a.getPoolName().compareTo(b.getPoolName()));
+        return metrics;
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        return Integer.parseInt(YamlUtils.getProperty("application.yml", key, String.valueOf(defaultValue)));
+    }
+
+    private static long longProperty(String key, long defaultValue) {
+        return Long.parseLong(YamlUtils.getProperty("application.yml", key, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Hikari 指标采集器：记录获取连接耗时（直方图）、使用时长、超时次数
+     */
+    private static final class PoolMetricsTracker implements IMetricsTracker {
+        private final String poolName;
+        private final PoolStats poolStats;
+        private final LongAdder[] acquireBuckets = new LongAdder[ACQUIRE_BUCKETS_MS.length + 1];
+        private final LongAdder acquireCount = new LongAdder();
+        private final LongAdder acquireNanosTotal = new LongAdder();
+        private final AtomicLong acquireNanosMax = new AtomicLong();
+        private final LongAdder usageCount = new LongAdder();
+        private final LongAdder usageMillisTotal = new LongAdder();
+        private final LongAdder timeoutCount = new LongAdder();
+        private final LongAdder createdCount = new LongAdder();
+
+        private PoolMetricsTracker(String poolName, PoolStats poolStats) {
+            this.poolName = poolName;
+            this.poolStats = poolStats;
+            for (int i = 0; i < acquireBuckets.length; i++) {
+                acquireBuckets[i] = new LongAdder();
+            }
+        }
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquireCount.increment();
+            acquireNanosTotal.add(elapsedAcquiredNanos);
+            acquireNanosMax.accumulateAndGet(elapsedAcquiredNanos, Math::max);
+            double millis = elapsedAcquiredNanos / 1_000_000.0;
+            int bucket = 0;
+            while (bucket < ACQUIRE_BUCKETS_MS.length && millis > ACQUIRE_BUCKETS_MS[bucket]) {
+                bucket++;
+            }
+            acquireBuckets[bucket].increment();
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usageCount.increment();
+            usageMillisTotal.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeoutCount.increment();
+        }
+
+        @Override
+        public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+            createdCount.increment();
+        }
+
+        private PoolMetrics snapshot() {
+            long[] histogram = new long[acquireBuckets.length];
+            for (int i = 0; i < acquireBuckets.length; i++) {
+                histogram[i] = acquireBuckets[i].sum();
+            }
+            long acquires = acquireCount.sum();
+            long usages = usageCount.sum();
+            return new PoolMetrics(
+                poolName,
+                poolStats.getActiveConnections(),
+                poolStats.getIdleConnections(),
+                poolStats.getTotalConnections(),
+                poolStats.getMaxConnections(),
+                poolStats.getPendingThreads(),
+                acquires,
+                acquires == 0 ? 0 : acquireNanosTotal.sum() / 1_000_000.0 / acquires,
+                acquireNanosMax.get() / 1_000_000.0,
+                usages == 0 ? 0 : (double) usageMillisTotal.sum() / usages,
+                timeoutCount.sum(),
+                createdCount.sum(),
+                histogram);
+        }
+    }
+
+    /**
+     * 连接池指标快照
+     */
+    public static class PoolMetrics {
+        private final String poolName;
+        private final int active;
+        private final int idle;
+        private final int total;
+        private final int max;
+        private final int pendingThreads;
+        private final long acquireCount;
+        private final double avgAcquireMillis;
+        private final double maxAcquireMillis;
+        private final double avgUsageMillis;
+        private final long timeoutCount;
+        private final long createdCount;
+        private final long[] acquireHistogram;
+
+        PoolMetrics(String poolName, int active, int idle, int total, int max, int pendingThreads,
+                    long acquireCount, double avgAcquireMillis, double maxAcquireMillis, double avgUsageMillis,
+                    long timeoutCount, long createdCount, long[] acquireHistogram) {
+            this.poolName = poolName;
+            this.active = active;
+            this.idle = idle;
+            this.total = total;
+            this.max = max;
+            this.pendingThreads = pendingThreads;
+            this.acquireCount = acquireCount;
+            this.avgAcquireMillis = avgAcquireMillis;
+            this.maxAcquireMillis = maxAcquireMillis;
+            this.avgUsageMillis = avgUsageMillis;
+            this.timeoutCount = timeoutCount;
+            this.createdCount = createdCount;
+            this.acquireHistogram = acquireHistogram;
+        }
+
+        public String getPoolName() { return poolName; }
+        public int getActive() { return active; }
+        public int getIdle() { return idle; }
+        public int getTotal() { return total; }
+        public int getMax() { return max; }
+        public int getPendingThreads() { return pendingThreads; }
+        public long getAcquireCount() { return acquireCount; }
+        public double getAvgAcquireMillis() { return avgAcquireMillis; }
+        public double getMaxAcquireMillis() { return maxAcquireMillis; }
+        public double getAvgUsageMillis() { return avgUsageMillis; }
+        public long getTimeoutCount() { return timeoutCount; }
+        public long getCreatedCount() { return createdCount; }
+
+        /**
+         * 获取连接耗时直方图，第 i 个值对应 ≤ getHistogramBucketBoundsMillis()[i] 的次数，最后一个为超出上界的次数
+         */
+        public long[] getAcquireHistogram() { return acquireHistogram.clone(); }
+
+        public static double[] getHistogramBucketBoundsMillis() { return ACQUIRE_BUCKETS_MS.clone(); }
+
+        /**
+         * 按直方图估算获取连接耗时的分位数（返回所在桶的上界，超出最大桶时返回最大观测值）
+         *
+         * @param quantile 0~1，例如 0.95
+         */
+        public double getAcquirePercentileMillis(double quantile) {
+            if (acquireCount == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(acquireCount * quantile);
+            long cumulative = 0;
+            for (int i = 0; i < acquireHistogram.length; i++) {
+                cumulative += acquireHistogram[i];
+                if (cumulative >= target) {
+                    return i < ACQUIRE_BUCKETS_MS.length ? Math.min(ACQUIRE_BUCKETS_MS[i], maxAcquireMillis) : maxAcquireMillis;
+                }
+            }
+            return maxAcquireMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: 活跃 %d, 空闲 %d, 总计 %d/%d, 等待 %d, 获取 %d 次 (平均 %.2f ms, P95 %.2f ms, 最大 %.2f ms), 超时 %d",
+                poolName, active, idle, total, max, pendingThreads, acquireCount,
+                avgAcquireMillis, getAcquirePercentileMillis(0.95), maxAcquireMillis, timeoutCount);
+        }
+    }
+}
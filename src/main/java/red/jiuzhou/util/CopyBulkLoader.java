@@ -0,0 +1,233 @@
+package red.jiuzhou.util;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import red.jiuzhou.batch.ConflictResolutionStrategy;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * @className: red.jiuzhou.util.CopyBulkLoader.java
+ * @description: 基于 PostgreSQL COPY 的批量加载器
+ *
+ * 逐行 INSERT ... ON CONFLICT 的 JDBC 批处理需要为每个值调用 setObject 并逐条执行，
+ * 全量重导时是主要耗时。本加载器改为：
+ * <ol>
+ *   <li>创建会话级临时表作为暂存表（临时表不写 WAL，且各会话互不可见，可并发导入）</li>
+ *   <li>通过 PgJDBC CopyManager 以 CSV 格式流式写入暂存表</li>
+ *   <li>按冲突策略执行一条 INSERT ... SELECT ... ON CONFLICT 合并到目标表</li>
+ * </ol>
+ * 所有语句都在当前线程绑定的连接上执行，因此与 DatabaseUtil.beginTransaction 开启的全局事务一致，
+ * 失败时随全局事务一起回滚。
+ *
+ * 支持 REPLACE_UPDATE / SKIP_CONFLICT / SMART_MERGE，CANCEL_IMPORT 仍走原有的逐行路径。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class CopyBulkLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(CopyBulkLoader.class);
+
+    /** COPY 模式下每批行数（暂存表的创建/删除开销需要更大的批次摊薄） */
+    public static final int BATCH_SIZE = 20000;
+
+    /** 向 COPY 流写入数据的缓冲大小 */
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+
+    private static final String STAGING_PREFIX = "_copy_stage_";
+
+    /**
+     * 判断策略是否支持 COPY 加载
+     */
+    public static boolean supports(ConflictResolutionStrategy strategy) {
+        return strategy == ConflictResolutionStrategy.REPLACE_UPDATE
+            || strategy == ConflictResolutionStrategy.SKIP_CONFLICT
+            || strategy == ConflictResolutionStrategy.SMART_MERGE;
+    }
+
+    /**
+     * 通过 COPY + 暂存表合并的方式写入数据
+     *
+     * @param tableName 目标表
+     * @param dataList  数据行（缺失字段写 NULL）
+     * @param strategy  冲突策略
+     * @return 实际写入（插入或更新）的行数
+     */
+    public static int load(String tableName, List<Map<String, String>> dataList, ConflictResolutionStrategy strategy) {
+        if (dataList == null || dataList.isEmpty()) {
+            return 0;
+        }
+        if (!supports(strategy)) {
+            throw new IllegalArgumentException("COPY 加载不支持策略: " + strategy);
+        }
+        if (!tableName.matches("^[a-zA-Z0-9_]+$")) {
+            throw new IllegalArgumentException("非法表名: " + tableName);
+        }
+
+        Set<String> columnSet = new LinkedHashSet<>();
+        for (Map<String, String> row : dataList) {
+            columnSet.addAll(row.keySet());
+        }
+        List<String> columns = new ArrayList<>(columnSet);
+        String primaryKey = DatabaseUtil.getPrimaryKeyColumn(tableName);
+        if (primaryKey != null && !columns.contains(primaryKey)) {
+            primaryKey = null;
+        }
+        String mergeSql = buildMergeSql(tableName, columns, primaryKey, strategy);
+
+        long start = System.currentTimeMillis();
+        JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
+        Integer affected = jdbcTemplate.execute((ConnectionCallback<Integer>) con ->
+            copyAndMerge(con, tableName, columns, dataList, mergeSql));
+
+        log.debug("COPY {} 完成: {} 行, 合并 {} 行, 策略 {}, 耗时 {} ms",
+            tableName, dataList.size(), affected, strategy.getDisplayName(), System.currentTimeMillis() - start);
+        return affected == null ? 0 : affected;
+    }
+
+    private static int copyAndMerge(Connection con, String tableName, List<String> columns,
+                                    List<Map<String, String>> dataList, String mergeSql) throws SQLException {
+        String staging = STAGING_PREFIX + tableName;
+        String columnList = quoteColumns(columns);
+
+        try (Statement stmt = con.createStatement()) {
+            // 暂存表只包含本批字段，类型与目标表一致，不带约束与默认值
+            stmt.execute("DROP TABLE IF EXISTS pg_temp.\"" + staging + "\"");
+            stmt.execute(String.format("CREATE TEMP TABLE \"%s\" AS SELECT %s FROM \"%s\" WITH NO DATA",
+                staging, columnList, tableName));
+            try {
+                CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+                CopyIn copyIn = copyManager.copyIn(String.format(
+                    "COPY pg_temp.\"%s\" (%s) FROM STDIN WITH (FORMAT csv)", staging, columnList));
+                try {
+                    writeCsvRows(copyIn, columns, dataList);
+                    copyIn.endCopy();
+                } finally {
+                    if (copyIn.isActive()) {
+                        copyIn.cancelCopy();
+                    }
+                }
+                return stmt.executeUpdate(mergeSql);
+            } finally {
+                dropStagingQuietly(stmt, staging);
+            }
+        }
+    }
+
+    /**
+     * 删除暂存表；事务已因前面的错误中止时删除会失败，此时忽略（临时表随事务回滚或会话结束自动清理），
+     * 以免掩盖原始异常
+     */
+    private static void dropStagingQuietly(Statement stmt, String staging) {
+        try {
+            stmt.execute("DROP TABLE IF EXISTS pg_temp.\"" + staging + "\"");
+        } catch (SQLException e) {
+            log.debug("删除暂存表 {} 失败: {}", staging, e.getMessage());
+        }
+    }
+
+    /**
+     * 写出 CSV 行：NULL 输出为空（不加引号），其余值一律加引号，内部引号双写，
+     * 因此空字符串与 NULL 可以区分，换行等字符也能原样保留
+     */
+    private static void writeCsvRows(CopyIn copyIn, List<String> columns,
+                                     List<Map<String, String>> dataList) throws SQLException {
+        StringBuilder sb = new StringBuilder(COPY_BUFFER_CHARS + 1024);
+        for (Map<String, String> row : dataList) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                String value = row.get(columns.get(i));
+                if (value != null) {
+                    sb.append('"');
+                    for (int j = 0; j < value.length(); j++) {
+                        char c = value.charAt(j);
+                        if (c == '"') {
+                            sb.append('"');
+                        }
+                        // PostgreSQL 文本类型不允许 NUL 字符
+                        if (c != '\0') {
+                            sb.append(c);
+                        }
+                    }
+                    sb.append('"');
+                }
+            }
+            sb.append('\n');
+            if (sb.length() >= COPY_BUFFER_CHARS) {
+                flush(copyIn, sb);
+            }
+        }
+        flush(copyIn, sb);
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder sb) throws SQLException {
+        if (sb.length() > 0) {
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            sb.setLength(0);
+        }
+    }
+
+    /**
+     * 构建暂存表 → 目标表的合并语句
+     *
+     * 同一批次内主键重复时，单条 ON CONFLICT DO UPDATE 语句会报错，
+     * 因此先按主键去重：覆盖/智能合并保留最后一条（与逐行 UPSERT 的最终结果一致），跳过冲突保留第一条。
+     */
+    static String buildMergeSql(String tableName, List<String> columns, String primaryKey,
+                                ConflictResolutionStrategy strategy) {
+        String staging = STAGING_PREFIX + tableName;
+        String columnList = quoteColumns(columns);
+        if (primaryKey == null) {
+            log.warn("Table {} has no primary key, COPY merge falls back to plain insert", tableName);
+            return String.format("INSERT INTO \"%s\" (%s) SELECT %s FROM pg_temp.\"%s\"",
+                tableName, columnList, columnList, staging);
+        }
+
+        if (strategy == ConflictResolutionStrategy.SMART_MERGE
+            && DatabaseUtil.getColumnNamesFromDb(tableName).stream().noneMatch(col -> col.equalsIgnoreCase("updated_at"))) {
+            log.warn("Table {} has no updated_at field, fallback to UPSERT", tableName);
+            strategy = ConflictResolutionStrategy.REPLACE_UPDATE;
+        }
+
+        String order = strategy == ConflictResolutionStrategy.SKIP_CONFLICT ? "ASC" : "DESC";
+        String source = String.format(
+            "SELECT DISTINCT ON (\"%s\") %s FROM pg_temp.\"%s\" ORDER BY \"%s\", ctid %s",
+            primaryKey, columnList, staging, primaryKey, order);
+
+        String updateSet = columns.stream()
+            .filter(col -> !col.equals(primaryKey))
+            .map(col -> String.format("\"%s\" = EXCLUDED.\"%s\"", col, col))
+            .collect(Collectors.joining(", "));
+
+        String conflictAction;
+        if (strategy == ConflictResolutionStrategy.SKIP_CONFLICT || updateSet.isEmpty()) {
+            conflictAction = "DO NOTHING";
+        } else if (strategy == ConflictResolutionStrategy.SMART_MERGE) {
+            conflictAction = String.format("DO UPDATE SET %s WHERE \"%s\".\"updated_at\" < EXCLUDED.\"updated_at\"",
+                updateSet, tableName);
+        } else {
+            conflictAction = "DO UPDATE SET " + updateSet;
+        }
+
+        return String.format("INSERT INTO \"%s\" (%s) %s ON CONFLICT (\"%s\") %s",
+            tableName, columnList, source, primaryKey, conflictAction);
+    }
+
+    private static String quoteColumns(List<String> columns) {
+        return columns.stream().map(c -> "\"" + c + "\"").collect(Collectors.joining(","));
+    }
+}
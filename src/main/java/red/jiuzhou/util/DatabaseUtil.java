@@ -5,11 +5,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Configurable;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
-import org.springframework.boot.jdbc.DataSourceBuilder;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.FileSystemResource;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -23,6 +21,8 @@ import red.jiuzhou.dbxml.TableConf;
 
 import javax.sql.DataSource;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.*;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -44,28 +44,24 @@ public class DatabaseUtil {
     private static final DataSourceTransactionManager transactionManager;
     // 每页显示的行数
     public static final int ROWS_PER_PAGE = 15;
-    private static final Map<String, JdbcTemplate> jdbcTemplateCache = new HashMap<>();
+    // 按库名缓存的 JdbcTemplate（多线程并发切换库时需保证只创建一个连接池）
+    private static final Map<String, JdbcTemplate> jdbcTemplateCache = new java.util.concurrent.ConcurrentHashMap<>();
+    /** 默认库连接池名称 */
+    public static final String DEFAULT_POOL_NAME = "pg-default";
 
-    // ========== 元信息缓存（性能优化）==========
-    // 主键缓存: tableName -> primaryKeyColumn
-    private static final Map<String, String> PRIMARY_KEY_CACHE = new java.util.concurrent.ConcurrentHashMap<>();
-    // 列长度缓存: tableName.columnName -> length
-    private static final Map<String, Integer> COLUMN_LENGTH_CACHE = new java.util.concurrent.ConcurrentHashMap<>();
-    // 表存在性缓存: tableName -> exists
-    private static final Map<String, Boolean> TABLE_EXISTS_CACHE = new java.util.concurrent.ConcurrentHashMap<>();
+    // 表/字段/主键等元信息统一由 SchemaCatalog 提供（一次加载，DDL 时精确失效）
 
     // 静态代码块初始化
     static {
         // 1. 读取 application.yml 配置
         Properties properties = loadYamlProperties("application.yml");
 
-        // 2. 创建 DataSource (PostgreSQL 的 JDBC URL 格式)
-        dataSource = DataSourceBuilder.create()
-                .url(properties.getProperty("spring.datasource.url"))
-                .username(properties.getProperty("spring.datasource.username"))
-                .password(properties.getProperty("spring.datasource.password"))
-                .driverClassName(properties.getProperty("spring.datasource.driver-class-name"))
-                .build();
+        // 2. 创建连接池 DataSource (PostgreSQL 的 JDBC URL 格式)，与 Spring 容器共用
+        dataSource = ConnectionPoolManager.getOrCreatePool(DEFAULT_POOL_NAME,
+                properties.getProperty("spring.datasource.url"),
+                properties.getProperty("spring.datasource.username"),
+                properties.getProperty("spring.datasource.password"),
+                properties.getProperty("spring.datasource.driver-class-name"));
 
         // 3. 创建 JdbcTemplate
         jdbcTemplate = new JdbcTemplate(dataSource);
@@ -79,11 +75,10 @@ public class DatabaseUtil {
             return jdbcTemplate; // 没传就用默认
         }
 
-        // 先查缓存
-        if (jdbcTemplateCache.containsKey(databaseName)) {
-            return jdbcTemplateCache.get(databaseName);
-        }
+        return jdbcTemplateCache.computeIfAbsent(databaseName, DatabaseUtil::createJdbcTemplate);
+    }
 
+    private static JdbcTemplate createJdbcTemplate(String databaseName) {
         try {
             // 读取默认配置
             Properties properties = loadYamlProperties("application.yml");
@@ -96,17 +91,13 @@ public class DatabaseUtil {
             );
 
             log.info("modifiedUrl:::::::::::{}", modifiedUrl);
-            DataSource dataSource = DataSourceBuilder.create()
-                    .url(modifiedUrl)
-                    .username(properties.getProperty("spring.datasource.username"))
-                    .password(properties.getProperty("spring.datasource.password"))
-                    .driverClassName(properties.getProperty("spring.datasource.driver-class-name"))
-                    .build();
-
-            JdbcTemplate newJdbcTemplate = new JdbcTemplate(dataSource);
+            DataSource dataSource = ConnectionPoolManager.getOrCreatePool("pg-" + databaseName,
+                    modifiedUrl,
+                    properties.getProperty("spring.datasource.username"),
+                    properties.getProperty("spring.datasource.password"),
+                    properties.getProperty("spring.datasource.driver-class-name"));
 
-            jdbcTemplateCache.put(databaseName, newJdbcTemplate);
-            return newJdbcTemplate;
+            return new JdbcTemplate(dataSource);
         } catch (Exception e) {
             log.error("切换数据库失败: {}", databaseName, e);
             throw new RuntimeException(e);
@@ -120,6 +111,13 @@ public class DatabaseUtil {
         return jdbcTemplate;
     }
 
+    /**
+     * 获取默认库的连接池 DataSource
+     */
+    public static DataSource getDataSource() {
+        return dataSource;
+    }
+
     /**
      * 获取数据库连接
      * 注意：使用完毕后需要关闭连接
@@ -128,6 +126,18 @@ public class DatabaseUtil {
         return dataSource.getConnection();
     }
 
+    /**
+     * 打开一个不经过连接池的默认库连接，供 LISTEN 这类长期占用的连接使用，
+     * 避免永久占用池中的名额并阻碍连接按 maxLifetime 轮换。调用方负责关闭
+     */
+    public static Connection openUnpooledConnection() throws SQLException {
+        Properties properties = loadYamlProperties("application.yml");
+        return DriverManager.getConnection(
+                properties.getProperty("spring.datasource.url"),
+                properties.getProperty("spring.datasource.username"),
+                properties.getProperty("spring.datasource.password"));
+    }
+
     /**
      * 获取事务状态（开启事务）
      */
@@ -273,13 +283,9 @@ public class DatabaseUtil {
      * 判断列是否为数值类型 (PostgreSQL)
      */
     private static boolean isNumericType(String tableName, String columnName) {
-        JdbcTemplate jdbcTemplate = getJdbcTemplate();
-
         try {
-            String sql = "SELECT data_type FROM information_schema.columns " +
-                        "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?";
-
-            String dataType = jdbcTemplate.queryForObject(sql, String.class, tableName, columnName);
+            SchemaCatalog.ColumnMeta column = SchemaCatalog.get().getColumn(tableName, columnName);
+            String dataType = column != null ? column.getDataType() : null;
 
             return dataType != null && (
                 dataType.toLowerCase().contains("int") ||
@@ -357,31 +363,16 @@ public class DatabaseUtil {
     }
 
     /**
-     * 获取表的主键字段名 (PostgreSQL)（带缓存）
+     * 获取表的主键字段名 (PostgreSQL)
      *
-     * 优化：元信息查询结果缓存，避免重复查询 information_schema
+     * 从 SchemaCatalog 读取；无主键或联合主键时返回 null
      */
     public static String getPrimaryKeyColumn(String tableName) {
         if (tableName == null) return null;
 
-        // 先查缓存
-        String cached = PRIMARY_KEY_CACHE.get(tableName);
-        if (cached != null) {
-            return cached.isEmpty() ? null : cached; // 空字符串表示"无主键"
-        }
-
-        String sql = "SELECT kcu.column_name FROM information_schema.table_constraints tc " +
-                     "JOIN information_schema.key_column_usage kcu " +
-                     "ON tc.constraint_name = kcu.constraint_name AND tc.table_schema = kcu.table_schema " +
-                     "WHERE tc.table_schema = current_schema() AND tc.table_name = ? AND tc.constraint_type = 'PRIMARY KEY'";
         try {
-            String result = jdbcTemplate.queryForObject(sql, String.class, tableName);
-            PRIMARY_KEY_CACHE.put(tableName, result != null ? result : "");
-            return result;
-        } catch (EmptyResultDataAccessException e) {
-            // 表没有主键，缓存空字符串表示"无主键"
-            PRIMARY_KEY_CACHE.put(tableName, "");
-            return null;
+            List<String> primaryKey = SchemaCatalog.get().getPrimaryKey(tableName);
+            return primaryKey.size() == 1 ? primaryKey.get(0) : null;
         } catch (Exception e) {
             log.warn("获取表 {} 的主键失败: {}", tableName, e.getMessage());
             return null;
@@ -671,8 +662,7 @@ public class DatabaseUtil {
     }
 
     public static List<String> getTableNamesByPrefix(String prefix) {
-        String sql = "SELECT table_name FROM information_schema.tables WHERE table_schema = current_schema() AND table_name LIKE ?";
-        return jdbcTemplate.queryForList(sql, String.class, prefix + "%");
+        return SchemaCatalog.get().getTableNamesByPrefix(prefix);
     }
 
     public static List<String> getTableNamesByPrefix(String prefix, String databaseName) {
@@ -681,9 +671,7 @@ public class DatabaseUtil {
     }
 
     public static boolean tableExists(String tableName) {
-        String sql = "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = current_schema() AND table_name = ?";
-        Integer count = jdbcTemplate.queryForObject(sql, Integer.class, tableName);
-        return count != null && count > 0;
+        return SchemaCatalog.get().tableExists(tableName);
     }
 
     public static boolean tableExists(String tableName, String databaseName) {
@@ -703,13 +691,8 @@ public class DatabaseUtil {
     }
 
     public static String getTableDDL(String tableName) {
-        // PostgreSQL: 从 information_schema 获取表结构
-        String sql = "SELECT column_name, data_type, character_maximum_length, is_nullable, column_default " +
-                     "FROM information_schema.columns " +
-                     "WHERE table_schema = current_schema() AND table_name = ? " +
-                     "ORDER BY ordinal_position";
-
-        List<Map<String, Object>> columns = jdbcTemplate.queryForList(sql, tableName);
+        // PostgreSQL: 从元信息目录获取表结构
+        List<Map<String, Object>> columns = getTableMetadata(tableName);
 
         StringBuilder ddl = new StringBuilder("CREATE TABLE \"" + tableName + "\" (\n");
 
@@ -902,6 +885,8 @@ public class DatabaseUtil {
             ScriptUtils.executeSqlScript(conn, new FileSystemResource(filePath));
             // 全部成功后提交事务
             conn.commit();
+            // 脚本中的建表/改表语句使元信息目录中对应的表失效
+            SchemaCatalog.onSqlExecuted(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
         } catch (Exception ex) {
             if (conn != null) {
                 // 失败则回滚
@@ -915,6 +900,11 @@ public class DatabaseUtil {
         }
     }
     public static List<String> getColumnNamesFromDb(String tableName) {
+        SchemaCatalog.TableMeta table = SchemaCatalog.get().getTable(tableName);
+        if (table != null) {
+            return table.getColumnNames();
+        }
+        // 不在当前 schema 的表（如临时表）仍从结果集元数据获取
         return jdbcTemplate.query("SELECT * FROM \"" + tableName + "\" LIMIT 1", rs -> {
             ResultSetMetaData metaData = rs.getMetaData();
             List<String> columns = new ArrayList<>();
@@ -940,11 +930,17 @@ public class DatabaseUtil {
      * @return list of maps containing column metadata
      */
     public static List<Map<String, Object>> getTableMetadata(String tableName) {
-        String sql = "SELECT column_name, data_type, character_maximum_length, is_nullable, column_default " +
-                "FROM information_schema.columns " +
-                "WHERE table_schema = current_schema() AND table_name = ? " +
-                "ORDER BY ordinal_position";
-        return jdbcTemplate.queryForList(sql, tableName);
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (SchemaCatalog.ColumnMeta column : SchemaCatalog.get().getColumns(tableName)) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("column_name", column.getName());
+            row.put("data_type", column.getDataType());
+            row.put("character_maximum_length", column.getMaxLength() > 0 ? column.getMaxLength() : null);
+            row.put("is_nullable", column.isNullable() ? "YES" : "NO");
+            row.put("column_default", column.getDefaultValue());
+            result.add(row);
+        }
+        return result;
     }
 
     /**
@@ -955,29 +951,16 @@ public class DatabaseUtil {
      * @throws Exception 如果字段不存在
      */
     /**
-     * 获取指定表中某字段的最大长度（仅适用于 VARCHAR 类型字段）(PostgreSQL)（带缓存）
+     * 获取指定表中某字段的最大长度（仅适用于 VARCHAR 类型字段）(PostgreSQL)
      *
-     * 优化：元信息查询结果缓存，避免重复查询 information_schema
+     * 从 SchemaCatalog 读取，非 VARCHAR 字段返回 0
      */
     public static int getColumnLength(String tableName, String columnName) {
-        String cacheKey = tableName + "." + columnName;
-
-        // 先查缓存
-        Integer cached = COLUMN_LENGTH_CACHE.get(cacheKey);
-        if (cached != null) {
-            return cached;
-        }
-
-        String sql = "SELECT character_maximum_length FROM information_schema.columns " +
-                "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?";
-        try {
-            Integer result = jdbcTemplate.queryForObject(sql, Integer.class, tableName, columnName);
-            int length = result != null ? result : 0;
-            COLUMN_LENGTH_CACHE.put(cacheKey, length);
-            return length;
-        } catch (EmptyResultDataAccessException e) {
+        SchemaCatalog.ColumnMeta column = SchemaCatalog.get().getColumn(tableName, columnName);
+        if (column == null) {
             throw new RuntimeException(String.format("字段 [%s.%s] 不存在！", tableName, columnName));
         }
+        return column.getMaxLength();
     }
 
     /**
@@ -988,19 +971,22 @@ public class DatabaseUtil {
      * @throws Exception 字段不存在或 SQL 执行失败
      */
     public static void ensureVarcharLengthIfNeeded(String tableName, String columnName, int requiredLength) throws Exception {
-        String typeSql = "SELECT data_type FROM information_schema.columns " +
-                "WHERE table_schema = current_schema() AND table_name = ? AND column_name = ?";
-        String dataType = jdbcTemplate.queryForObject(typeSql, String.class, tableName, columnName);
-        if (!"character varying".equalsIgnoreCase(dataType) && !"varchar".equalsIgnoreCase(dataType)) {
+        SchemaCatalog catalog = SchemaCatalog.get();
+        SchemaCatalog.ColumnMeta column = catalog.getColumn(tableName, columnName);
+        if (column == null) {
+            throw new RuntimeException(String.format("字段 [%s.%s] 不存在！", tableName, columnName));
+        }
+        if (!column.isVarchar()) {
             log.warn("字段 [{}] 不是 VARCHAR 类型，跳过调整", columnName);
             return;
         }
 
-        int currentLength = getColumnLength(tableName, columnName);
+        int currentLength = column.getMaxLength();
         if (currentLength < requiredLength) {
             String alterSql = String.format("ALTER TABLE \"%s\" ALTER COLUMN \"%s\" TYPE VARCHAR(%d)",
                     tableName, columnName, requiredLength);
             jdbcTemplate.execute(alterSql);
+            catalog.invalidate(tableName);
             log.info("已将字段 [{}] 长度由 {} 调整为 {}", columnName, currentLength, requiredLength);
         }
     }
@@ -1030,44 +1016,26 @@ public class DatabaseUtil {
     // ========== 缓存管理方法 ==========
 
     /**
-     * 清除指定表的元信息缓存
+     * 清除指定表的元信息缓存（重新从数据库加载该表）
      *
-     * @param tableName 表名，如果为 null 则清空所有缓存
+     * @param tableName 表名，如果为 null 则全量重新加载
      */
     public static void clearMetadataCache(String tableName) {
-        if (tableName == null) {
-            clearAllMetadataCache();
-            return;
-        }
-
-        PRIMARY_KEY_CACHE.remove(tableName);
-        TABLE_EXISTS_CACHE.remove(tableName);
-
-        // 清除该表的所有列长度缓存
-        String prefix = tableName + ".";
-        COLUMN_LENGTH_CACHE.entrySet().removeIf(e -> e.getKey().startsWith(prefix));
-
-        log.debug("已清除表 {} 的元信息缓存", tableName);
+        SchemaCatalog.get().invalidate(tableName);
     }
 
     /**
-     * 清空所有元信息缓存
+     * 全量重新加载元信息
      */
     public static void clearAllMetadataCache() {
-        PRIMARY_KEY_CACHE.clear();
-        COLUMN_LENGTH_CACHE.clear();
-        TABLE_EXISTS_CACHE.clear();
-        log.info("已清空所有元信息缓存");
+        SchemaCatalog.get().reloadAll();
     }
 
     /**
      * 获取缓存统计信息
      */
     public static String getMetadataCacheStats() {
-        return String.format("DatabaseUtil 元信息缓存: 主键=%d, 列长度=%d, 表存在=%d",
-                PRIMARY_KEY_CACHE.size(),
-                COLUMN_LENGTH_CACHE.size(),
-                TABLE_EXISTS_CACHE.size());
+        return SchemaCatalog.get().getStats();
     }
 
     public static void main(String[] args) throws Exception {
@@ -51,6 +51,15 @@ public class EncodingMetadataCache {
                 EncodingMetadataCache::cleanupExpired,
                 10, 10, TimeUnit.MINUTES
         );
+        // 表结构变化时失效该表所有 mapType 的条目；null 表示目录整体重载
+        SchemaCatalog.addInvalidationListener(tableName -> {
+            if (tableName == null) {
+                clearAll();
+            } else {
+                String prefix = tableName + ":";
+                cache.keySet().removeIf(key -> key.regionMatches(true, 0, prefix, 0, prefix.length()));
+            }
+        });
     }
 
     /**
@@ -47,8 +47,8 @@ public class EncodingMetadataManager {
         try {
             JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
 
-            // 计算文件哈希（用于往返验证）
-            String fileHash = cn.hutool.crypto.digest.DigestUtil.md5Hex(cn.hutool.core.io.FileUtil.readBytes(xmlFile));
+            // 计算文件哈希（用于往返验证，流式读取）
+            String fileHash = cn.hutool.crypto.digest.DigestUtil.md5Hex(xmlFile);
 
             // PostgreSQL: 使用 ON CONFLICT ... DO UPDATE SET
             String sql = """
@@ -80,6 +80,9 @@ public class EncodingMetadataManager {
             // 使缓存失效，确保下次查询获取最新数据
             EncodingMetadataCache.invalidate(tableName, mapType);
 
+            // 条目级清单，导出验证不一致时用于定位差异；需要整文件解析，放到后台构建
+            RoundTripValidator.scheduleItemManifest(tableName, mapType, xmlFile);
+
         } catch (Exception e) {
             // 如果表不存在，警告但不抛出异常（允许降级为硬编码UTF-16）
             log.warn("保存编码元数据失败（表可能不存在）: 表={}, mapType={}, 错误={}",
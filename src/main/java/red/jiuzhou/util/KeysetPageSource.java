@@ -0,0 +1,553 @@
+package red.jiuzhou.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.StringUtils;
+import red.jiuzhou.dbxml.TabConfLoad;
+import red.jiuzhou.dbxml.TableConf;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @className: red.jiuzhou.util.KeysetPageSource.java
+ * @description: 表格浏览的数据访问层：按排序键 keyset（seek）分块读取，缓存最近的数据块并预取相邻块
+ *
+ * 一个实例对应「表 + 筛选条件 + 排序」的一次浏览，筛选或排序变化时创建新实例。
+ * 数据来自表配置中的 SQL（与原分页查询一致，world 表去掉按地图类型的 WHERE），去掉 ORDER BY 后作为子查询：
+ * <pre>
+ * 第 k 块 = SELECT q.*, 排序键... FROM (配置 SQL) q WHERE 筛选 AND 排序键 > 第 k-1 块最后一行的排序键
+ *          ORDER BY 排序键 LIMIT blockSize
+ * 排序键 = 表格列排序（服务端排序） + 配置 SQL 的 ORDER BY + 主键（保证唯一）
+ * </pre>
+ * 排序键的表达式（如配置中的 CAST("id" AS INTEGER)）按子查询的输出列求值。
+ * 顺序滚动时锚点（每块之前最后一行的排序键）由上一块直接得到；跳转到远处的块时，从最近的已知锚点出发，
+ * 只 OFFSET 取一行排序键作为新锚点，不会读取中间的整行数据。
+ * 表没有主键时排序键不唯一，退化为 LIMIT/OFFSET（仍按相同顺序）。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class KeysetPageSource implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(KeysetPageSource.class);
+
+    private static final int DEFAULT_BLOCK_SIZE = 200;
+    private static final int DEFAULT_CACHED_BLOCKS = 16;
+    private static final long DEFAULT_EXACT_COUNT_LIMIT = 1_000_000L;
+    /** 行数统计缓存有效期：切换/清除筛选时不重复 COUNT */
+    private static final long COUNT_TTL_MS = 30_000L;
+    /** 排序键在查询结果中的列名前缀，读取后从行中移除 */
+    private static final String KEY_ALIAS = "__keyset_";
+
+    /** 最外层 ORDER BY 与单个排序项（表达式 [ASC|DESC] [NULLS FIRST|LAST]） */
+    private static final Pattern ORDER_BY = Pattern.compile("(?i)order\\s+by\\b");
+    private static final Pattern SORT_TERM =
+            Pattern.compile("(?is)^(.*?)(?:\\s+(asc|desc))?(?:\\s+nulls\\s+(first|last))?$");
+
+    private static final Map<String, long[]> COUNT_CACHE = new ConcurrentHashMap<>();
+    private static final Object[] FROM_START = new Object[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String tableName;
+    private final String baseSql;
+    private final String filterSql;
+    private final Executor executor;
+    private final int blockSize;
+    private final boolean keyset;
+    private final List<SortKey> orderKeys;
+
+    /** 第 k 块之前最后一行的排序键（第 0 块为 FROM_START） */
+    private final ConcurrentSkipListMap<Integer, Object[]> anchors = new ConcurrentSkipListMap<>();
+    private final Map<Integer, List<Map<String, Object>>> blocks;
+    private final Map<Integer, CompletableFuture<List<Map<String, Object>>>> inFlight = new ConcurrentHashMap<>();
+
+    /** 读到不满一块时得到的精确行数，未知为 -1 */
+    private volatile long knownSize = -1;
+    private volatile boolean closed;
+
+    /**
+     * 排序键：SQL 表达式 + 方向 + NULL 位置（缺省与 PostgreSQL 一致：升序 NULL 在后，降序 NULL 在前）
+     */
+    public static final class SortKey {
+        private final String expression;
+        private final boolean descending;
+        private final boolean nullsFirst;
+
+        SortKey(String expression, boolean descending, boolean nullsFirst) {
+            this.expression = expression;
+            this.descending = descending;
+            this.nullsFirst = nullsFirst;
+        }
+
+        /**
+         * 按列排序（表格表头排序）
+         */
+        public static SortKey column(String columnName, boolean descending) {
+            return new SortKey(quote(columnName), descending, descending);
+        }
+
+        String getExpression() {
+            return expression;
+        }
+
+        boolean isDescending() {
+            return descending;
+        }
+
+        boolean isNullsFirst() {
+            return nullsFirst;
+        }
+
+        /** 忽略引号、空白和大小写的表达式，用于去掉重复的排序键 */
+        private String normalized() {
+            return expression.replace("\"", "").replaceAll("\\s+", "").toLowerCase();
+        }
+
+        private String direction() {
+            return (descending ? " DESC" : " ASC") + (nullsFirst ? " NULLS FIRST" : " NULLS LAST");
+        }
+
+        /** 等于给定值的条件，参数追加到 args */
+        private String equalTo(Object value, List<Object> args) {
+            if (value == null) {
+                return expression + " IS NULL";
+            }
+            args.add(value);
+            return expression + " = ?";
+        }
+
+        /** 排在给定值之后的条件，参数追加到 args；没有任何值排在其后时返回 null */
+        private String after(Object value, List<Object> args) {
+            if (value == null) {
+                return nullsFirst ? expression + " IS NOT NULL" : null;
+            }
+            args.add(value);
+            String compare = expression + (descending ? " < ?" : " > ?");
+            return nullsFirst ? compare : "(" + compare + " OR " + expression + " IS NULL)";
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SortKey)) return false;
+            SortKey that = (SortKey) o;
+            return descending == that.descending && nullsFirst == that.nullsFirst && expression.equals(that.expression);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(expression, descending, nullsFirst);
+        }
+
+        @Override
+        public String toString() {
+            return expression + direction();
+        }
+    }
+
+    public KeysetPageSource(String tableName, String tabFilePath, String filterSql, List<SortKey> sortKeys,
+                            Executor executor) {
+        this(DatabaseUtil.getJdbcTemplate(), tableName, browseSql(tableName, tabFilePath),
+                SchemaCatalog.get().getPrimaryKey(tableName), filterSql, sortKeys, executor,
+                Integer.parseInt(YamlUtils.getProperty("application.yml", "table.browse.block-size",
+                        String.valueOf(DEFAULT_BLOCK_SIZE))),
+                Integer.parseInt(YamlUtils.getProperty("application.yml", "table.browse.cached-blocks",
+                        String.valueOf(DEFAULT_CACHED_BLOCKS))));
+    }
+
+    KeysetPageSource(JdbcTemplate jdbcTemplate, String tableName, String browseSql, List<String> keyColumns,
+                     String filterSql, List<SortKey> sortKeys, Executor executor, int blockSize, int cachedBlocks) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableName = tableName;
+        this.filterSql = filterSql == null ? "" : filterSql.trim();
+        this.executor = executor;
+        this.blockSize = Math.max(1, blockSize);
+        this.keyset = !keyColumns.isEmpty();
+
+        String[] parts = splitOrderBy(browseSql);
+        this.baseSql = parts[0];
+        List<SortKey> order = new ArrayList<>();
+        for (SortKey key : sortKeys) {
+            addSortKey(order, key);
+        }
+        for (SortKey key : parseOrderBy(parts[1])) {
+            addSortKey(order, key);
+        }
+        for (String keyColumn : keyColumns) {
+            addSortKey(order, SortKey.column(keyColumn, false));
+        }
+        this.orderKeys = Collections.unmodifiableList(order);
+
+        this.blocks = new LinkedHashMap<>(cachedBlocks * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Map<String, Object>>> eldest) {
+                return size() > Math.max(2, cachedBlocks);
+            }
+        };
+        anchors.put(0, FROM_START);
+        if (!keyset) {
+            log.info("表 {} 没有主键，浏览时使用 LIMIT/OFFSET 分页", tableName);
+        }
+    }
+
+    private static void addSortKey(List<SortKey> order, SortKey key) {
+        for (SortKey existing : order) {
+            if (existing.normalized().equals(key.normalized())) {
+                return;
+            }
+        }
+        order.add(key);
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /** 是否按排序键 keyset 分页 */
+    public boolean isKeyset() {
+        return keyset;
+    }
+
+    /** 读到末尾后得到的精确行数，未知为 -1 */
+    public long getKnownSize() {
+        return knownSize;
+    }
+
+    /**
+     * 已缓存的数据块，未缓存返回 null（不触发加载）
+     */
+    public List<Map<String, Object>> getBlockIfCached(int block) {
+        synchronized (blocks) {
+            return blocks.get(block);
+        }
+    }
+
+    /**
+     * 异步加载数据块，完成后在后台预取前后相邻块
+     */
+    public CompletableFuture<List<Map<String, Object>>> loadBlock(int block) {
+        CompletableFuture<List<Map<String, Object>>> future = fetch(block);
+        future.thenRun(() -> {
+            prefetch(block + 1);
+            prefetch(block - 1);
+        });
+        return future;
+    }
+
+    private void prefetch(int block) {
+        if (block < 0 || closed || (knownSize >= 0 && (long) block * blockSize >= knownSize)) {
+            return;
+        }
+        if (getBlockIfCached(block) == null) {
+            fetch(block);
+        }
+    }
+
+    private CompletableFuture<List<Map<String, Object>>> fetch(int block) {
+        List<Map<String, Object>> cached = getBlockIfCached(block);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return inFlight.computeIfAbsent(block, b -> {
+            CompletableFuture<List<Map<String, Object>>> future = CompletableFuture.supplyAsync(() -> queryBlock(b), executor);
+            future.whenComplete((rows, ex) -> inFlight.remove(b));
+            return future;
+        });
+    }
+
+    private List<Map<String, Object>> queryBlock(int block) {
+        if (closed) {
+            return Collections.emptyList();
+        }
+        List<Map<String, Object>> rows;
+        if (keyset) {
+            Object[] after = resolveAnchor(block);
+            if (after == null) {
+                rows = Collections.emptyList();
+            } else {
+                List<Object> args = new ArrayList<>();
+                String sql = "SELECT q.*, " + keyProjection() + fromClause(after, args) + keyOrderClause() + " LIMIT ?";
+                args.add(blockSize);
+                rows = jdbcTemplate.queryForList(sql, args.toArray());
+                if (rows.size() == blockSize) {
+                    anchors.put(block + 1, keyOf(rows.get(rows.size() - 1)));
+                }
+                for (Map<String, Object> row : rows) {
+                    for (int i = 0; i < orderKeys.size(); i++) {
+                        row.remove(KEY_ALIAS + i);
+                    }
+                }
+            }
+        } else {
+            List<Object> args = new ArrayList<>();
+            String sql = "SELECT q.*" + fromClause(FROM_START, args) + expressionOrderClause() + " LIMIT ? OFFSET ?";
+            args.add(blockSize);
+            args.add((long) block * blockSize);
+            rows = jdbcTemplate.queryForList(sql, args.toArray());
+        }
+
+        if (rows.size() < blockSize && (!rows.isEmpty() || block == 0)) {
+            knownSize = (long) block * blockSize + rows.size();
+        }
+        synchronized (blocks) {
+            blocks.put(block, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * 第 block 块的起始锚点：已知直接返回，否则从最近的已知锚点 OFFSET 定位；越过末尾返回 null
+     */
+    private Object[] resolveAnchor(int block) {
+        Object[] known = anchors.get(block);
+        if (known != null) {
+            return known;
+        }
+        Map.Entry<Integer, Object[]> floor = anchors.floorEntry(block);
+        Object[] from = floor.getValue();
+        long skip = (long) (block - floor.getKey()) * blockSize - 1;
+
+        List<Object> args = new ArrayList<>();
+        String sql = "SELECT " + keyProjection() + fromClause(from, args) + keyOrderClause() + " OFFSET ? LIMIT 1";
+        args.add(skip);
+        List<Map<String, Object>> keys = jdbcTemplate.queryForList(sql, args.toArray());
+        if (keys.isEmpty()) {
+            return null;
+        }
+        Object[] anchor = keyOf(keys.get(0));
+        anchors.put(block, anchor);
+        return anchor;
+    }
+
+    /**
+     * FROM 子查询 + WHERE（筛选条件与锚点之后的条件），参数按占位符顺序追加到 args
+     */
+    private String fromClause(Object[] after, List<Object> args) {
+        List<String> conditions = new ArrayList<>(2);
+        if (!filterSql.isEmpty()) {
+            conditions.add("(" + filterSql + ")");
+        }
+        if (after.length > 0) {
+            conditions.add(afterCondition(after, args));
+        }
+        return " FROM (" + baseSql + ") q" + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions));
+    }
+
+    /**
+     * 排序键排在锚点之后：k0 在后，或 k0 相等且 k1 在后，…（各键方向与 NULL 位置不同，不能用行值比较）
+     */
+    private String afterCondition(Object[] after, List<Object> args) {
+        StringJoiner any = new StringJoiner(" OR ", "(", ")");
+        for (int i = 0; i < orderKeys.size(); i++) {
+            List<Object> termArgs = new ArrayList<>();
+            StringJoiner all = new StringJoiner(" AND ", "(", ")");
+            for (int j = 0; j < i; j++) {
+                all.add(orderKeys.get(j).equalTo(after[j], termArgs));
+            }
+            String later = orderKeys.get(i).after(after[i], termArgs);
+            if (later == null) {
+                continue;
+            }
+            all.add(later);
+            any.add(all.toString());
+            args.addAll(termArgs);
+        }
+        return any.length() > 2 ? any.toString() : "FALSE";
+    }
+
+    private String keyProjection() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (int i = 0; i < orderKeys.size(); i++) {
+            joiner.add(orderKeys.get(i).getExpression() + " AS " + quote(KEY_ALIAS + i));
+        }
+        return joiner.toString();
+    }
+
+    private String keyOrderClause() {
+        StringJoiner joiner = new StringJoiner(", ", " ORDER BY ", "");
+        for (int i = 0; i < orderKeys.size(); i++) {
+            joiner.add(quote(KEY_ALIAS + i) + orderKeys.get(i).direction());
+        }
+        return joiner.toString();
+    }
+
+    private String expressionOrderClause() {
+        if (orderKeys.isEmpty()) {
+            return "";
+        }
+        StringJoiner joiner = new StringJoiner(", ", " ORDER BY ", "");
+        orderKeys.forEach(key -> joiner.add(key.getExpression() + key.direction()));
+        return joiner.toString();
+    }
+
+    private Object[] keyOf(Map<String, Object> row) {
+        Object[] key = new Object[orderKeys.size()];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = row.get(KEY_ALIAS + i);
+        }
+        return key;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * 表浏览使用的 SQL：表配置中的 SQL（与导出、原分页查询一致），
+     * world 表去掉按地图类型过滤的 WHERE 以浏览全部地图；没有配置时为整表
+     */
+    static String browseSql(String tableName, String tabFilePath) {
+        String plain = "SELECT * FROM " + quote(tableName);
+        if (!StringUtils.hasLength(tabFilePath)) {
+            return plain;
+        }
+        try {
+            TableConf conf = TabConfLoad.getTale(tableName, tabFilePath);
+            if (conf == null || !StringUtils.hasLength(conf.getSql())) {
+                return plain;
+            }
+            String sql = conf.getSql().trim().replaceFirst(";\\s*$", "");
+            if ("world".equals(tableName)) {
+                sql = sql.replaceFirst("(?i)where\\s+[^o]+(?=\\s+order)", "");
+            }
+            return sql;
+        } catch (RuntimeException e) {
+            log.warn("读取表 {} 的配置 SQL 失败，按整表浏览: {}", tableName, e.getMessage());
+            return plain;
+        }
+    }
+
+    /**
+     * 拆分出最外层的 ORDER BY：返回 [去掉 ORDER BY 的 SQL, ORDER BY 之后的排序项（没有时为空串）]
+     */
+    static String[] splitOrderBy(String sql) {
+        int depth = 0;
+        char quoteChar = 0;
+        int orderAt = -1;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quoteChar != 0) {
+                if (c == quoteChar) {
+                    quoteChar = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quoteChar = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (depth == 0 && (c == 'o' || c == 'O') && (i == 0 || !isIdentifierChar(sql.charAt(i - 1)))
+                    && ORDER_BY.matcher(sql).region(i, sql.length()).lookingAt()) {
+                orderAt = i;
+            }
+        }
+        if (orderAt < 0) {
+            return new String[]{sql.trim(), ""};
+        }
+        Matcher matcher = ORDER_BY.matcher(sql).region(orderAt, sql.length());
+        matcher.lookingAt();
+        return new String[]{sql.substring(0, orderAt).trim(), sql.substring(matcher.end()).trim()};
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    /**
+     * 解析 ORDER BY 排序项（逗号分隔，忽略括号和引号内的逗号）
+     */
+    static List<SortKey> parseOrderBy(String orderClause) {
+        List<SortKey> keys = new ArrayList<>();
+        if (orderClause == null || orderClause.isBlank()) {
+            return keys;
+        }
+        List<String> terms = new ArrayList<>();
+        int depth = 0;
+        char quoteChar = 0;
+        int start = 0;
+        for (int i = 0; i < orderClause.length(); i++) {
+            char c = orderClause.charAt(i);
+            if (quoteChar != 0) {
+                if (c == quoteChar) {
+                    quoteChar = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quoteChar = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                terms.add(orderClause.substring(start, i));
+                start = i + 1;
+            }
+        }
+        terms.add(orderClause.substring(start));
+
+        for (String term : terms) {
+            Matcher matcher = SORT_TERM.matcher(term.trim());
+            if (!matcher.matches() || matcher.group(1).isBlank()) {
+                continue;
+            }
+            boolean descending = "desc".equalsIgnoreCase(matcher.group(2));
+            boolean nullsFirst = matcher.group(3) != null ? "first".equalsIgnoreCase(matcher.group(3)) : descending;
+            keys.add(new SortKey(matcher.group(1).trim(), descending, nullsFirst));
+        }
+        return keys;
+    }
+
+    /**
+     * 整表（不读配置 SQL）按筛选条件的行数，见 {@link #countRows(String, String, String)}
+     */
+    public static long countRows(String tableName, String filterSql) {
+        return countRows(tableName, null, filterSql);
+    }
+
+    /**
+     * 浏览用的总行数（阻塞，带短期缓存），统计范围与 {@link #browseSql} 一致
+     * - 无筛选且统计信息显示为大表时直接用估算值
+     * - 否则 COUNT，但最多数到 table.browse.exact-count-limit 行，超过时返回上限 + 1（滚动到末尾时再修正）
+     */
+    public static long countRows(String tableName, String tabFilePath, String filterSql) {
+        String filter = filterSql == null ? "" : filterSql.trim();
+        String baseSql = splitOrderBy(browseSql(tableName, tabFilePath))[0];
+        String cacheKey = baseSql + "|" + filter;
+        long now = System.currentTimeMillis();
+        long[] cached = COUNT_CACHE.get(cacheKey);
+        if (cached != null && now - cached[1] < COUNT_TTL_MS) {
+            return cached[0];
+        }
+
+        long limit = Long.parseLong(YamlUtils.getProperty("application.yml", "table.browse.exact-count-limit",
+                String.valueOf(DEFAULT_EXACT_COUNT_LIMIT)));
+        long count;
+        SchemaCatalog.TableMeta table = SchemaCatalog.get().getTable(tableName);
+        if (filter.isEmpty() && table != null && table.getEstimatedRows() > limit) {
+            count = table.getEstimatedRows();
+        } else {
+            String where = filter.isEmpty() ? "" : " WHERE " + filter;
+            Long counted = DatabaseUtil.getJdbcTemplate().queryForObject(
+                    "SELECT COUNT(*) FROM (SELECT 1 FROM (" + baseSql + ") q" + where + " LIMIT ?) t",
+                    Long.class, limit + 1);
+            count = counted != null ? counted : 0;
+        }
+        COUNT_CACHE.put(cacheKey, new long[]{count, now});
+        return count;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        inFlight.values().forEach(f -> f.cancel(false));
+        synchronized (blocks) {
+            blocks.clear();
+        }
+    }
+}
@@ -1,12 +1,19 @@
 package red.jiuzhou.util;
 
-import cn.hutool.core.io.FileUtil;
 import cn.hutool.crypto.digest.DigestUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * 往返一致性验证器
@@ -15,6 +22,9 @@ import java.io.File;
  * - 保存导入文件的 MD5 哈希
  * - 验证导出文件与原始文件的一致性
  * - 记录验证结果到数据库
+ * - 保存条目级摘要清单（{@link XmlItemManifest}），哈希不一致时指出具体哪些条目、字段不同
+ *
+ * 文件哈希与条目清单都以流式方式计算，内存占用与文件大小无关。
  *
  * @author Claude
  * @date 2025-12-29
@@ -23,6 +33,31 @@ public class RoundTripValidator {
 
     private static final Logger log = LoggerFactory.getLogger(RoundTripValidator.class);
 
+    /** 是否在导入时保存条目清单（关闭后只能做整文件哈希比对） */
+    private static final boolean ITEM_MANIFEST_ENABLED = Boolean.parseBoolean(
+            YamlUtils.getProperty("application.yml", "roundtrip.item-manifest.enabled", "true"));
+
+    /** validateAllTables 的并行线程数 */
+    private static final int VALIDATE_THREADS = Integer.parseInt(
+            YamlUtils.getProperty("application.yml", "roundtrip.validate-threads", "4"));
+
+    /** 验证结果中保留的差异明细条数 */
+    private static final int MAX_DIFF_DETAILS = 50;
+
+    private static volatile boolean manifestTableReady = false;
+
+    /**
+     * 条目清单在后台单线程构建，不占用导入路径；同一张表排队期间的重复请求合并为一次（取最新文件）。
+     * 验证时若该表的清单仍在排队，直接在验证线程构建；正在构建时等待其完成（按表加锁）。
+     */
+    private static final ExecutorService manifestExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "RoundTripValidator-Manifest");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Map<String, File> pendingManifests = new ConcurrentHashMap<>();
+    private static final Map<String, Object> manifestLocks = new ConcurrentHashMap<>();
+
     /**
      * 验证结果类
      */
@@ -31,15 +66,27 @@ public class RoundTripValidator {
         private final String originalHash;
         private final String exportedHash;
         private final String message;
+        private final XmlItemManifest.Diff diff;
 
         public ValidationResult(boolean passed, String originalHash, String exportedHash) {
+            this(passed, originalHash, exportedHash, null);
+        }
+
+        public ValidationResult(boolean passed, String originalHash, String exportedHash, XmlItemManifest.Diff diff) {
             this.passed = passed;
             this.originalHash = originalHash;
             this.exportedHash = exportedHash;
-            this.message = passed ?
-                    "✅ 往返一致性验证通过！导出文件与原始文件完全一致" :
-                    String.format("❌ 往返一致性验证失败！原始哈希: %s, 导出哈希: %s",
-                            originalHash, exportedHash);
+            this.diff = diff;
+            if (passed) {
+                this.message = "✅ 往返一致性验证通过！导出文件与原始文件完全一致";
+            } else if (diff == null) {
+                this.message = String.format("❌ 往返一致性验证失败！原始哈希: %s, 导出哈希: %s",
+                        originalHash, exportedHash);
+            } else if (diff.isContentEqual()) {
+                this.message = "⚠️ 往返一致性验证失败：条目内容一致，仅格式不同（编码/缩进/空白）。" + diff.getSummary();
+            } else {
+                this.message = "❌ 往返一致性验证失败！" + diff.getSummary();
+            }
         }
 
         public boolean isPassed() {
@@ -58,6 +105,13 @@ public class RoundTripValidator {
             return message;
         }
 
+        /**
+         * 条目级比对结果，文件哈希一致或没有条目清单时为 null
+         */
+        public XmlItemManifest.Diff getDiff() {
+            return diff;
+        }
+
         @Override
         public String toString() {
             return message;
@@ -65,7 +119,7 @@ public class RoundTripValidator {
     }
 
     /**
-     * 保存原始文件哈希（导入时调用）
+     * 保存原始文件哈希（导入时调用，条目清单由 {@link EncodingMetadataManager#saveMetadata} 统一安排）
      *
      * @param tableName 表名
      * @param mapType   World表的地图类型
@@ -74,8 +128,8 @@ public class RoundTripValidator {
      */
     public static String saveFileHash(String tableName, String mapType, File xmlFile) {
         try {
-            // 计算文件 MD5
-            String md5 = DigestUtil.md5Hex(FileUtil.readBytes(xmlFile));
+            // 计算文件 MD5（流式读取）
+            String md5 = DigestUtil.md5Hex(xmlFile);
             log.debug("计算文件哈希: {} -> {}", xmlFile.getName(), md5);
 
             // 保存到数据库
@@ -93,7 +147,6 @@ public class RoundTripValidator {
             } else {
                 log.warn("⚠️ 未找到元数据记录，无法保存哈希: 表={}, mapType={}", tableName, mapType);
             }
-
             return md5;
 
         } catch (Exception e) {
@@ -102,9 +155,97 @@ public class RoundTripValidator {
         }
     }
 
+    /**
+     * 安排在后台构建并保存条目清单（导入时调用，立即返回）
+     *
+     * @param tableName 表名
+     * @param mapType   World表的地图类型
+     * @param xmlFile   原始XML文件
+     */
+    public static void scheduleItemManifest(String tableName, String mapType, File xmlFile) {
+        if (!ITEM_MANIFEST_ENABLED) {
+            return;
+        }
+        String type = mapType == null ? "" : mapType;
+        if (pendingManifests.put(manifestKey(tableName, type), xmlFile) == null) {
+            manifestExecutor.execute(() -> buildPendingManifest(tableName, type));
+        }
+    }
+
+    /**
+     * 构建该表排队中的条目清单；后台线程正在构建时等待其完成，没有待构建的清单时立即返回
+     */
+    private static void buildPendingManifest(String tableName, String mapType) {
+        String key = manifestKey(tableName, mapType);
+        synchronized (manifestLocks.computeIfAbsent(key, k -> new Object())) {
+            File file = pendingManifests.remove(key);
+            if (file != null) {
+                saveItemManifest(tableName, mapType, file);
+            }
+        }
+    }
+
+    private static String manifestKey(String tableName, String mapType) {
+        return tableName + ":" + (mapType == null ? "" : mapType);
+    }
+
+    /**
+     * 流式计算并保存文件的条目清单（同步执行，失败不影响导入）
+     *
+     * @param tableName 表名
+     * @param mapType   World表的地图类型
+     * @param xmlFile   原始XML文件
+     * @return 条目数，未启用或失败时返回 -1
+     */
+    public static int saveItemManifest(String tableName, String mapType, File xmlFile) {
+        if (!ITEM_MANIFEST_ENABLED) {
+            return -1;
+        }
+        try {
+            ensureManifestTable();
+            long start = System.currentTimeMillis();
+            XmlItemManifest manifest = XmlItemManifest.build(xmlFile);
+            byte[] data = manifest.toBytes();
+            DatabaseUtil.getJdbcTemplate().update("""
+                INSERT INTO roundtrip_item_manifest (table_name, map_type, item_count, manifest, updated_at)
+                VALUES (?, ?, ?, ?, NOW())
+                ON CONFLICT (table_name, map_type) DO UPDATE SET
+                    item_count = EXCLUDED.item_count,
+                    manifest = EXCLUDED.manifest,
+                    updated_at = NOW()
+                """, tableName, mapType == null ? "" : mapType, manifest.size(), data);
+            log.info("✅ 保存条目清单: 表={}, mapType={}, 条目={}, 大小={} KB, 耗时={} ms",
+                    tableName, mapType, manifest.size(), data.length / 1024, System.currentTimeMillis() - start);
+            return manifest.size();
+        } catch (Exception e) {
+            log.warn("保存条目清单失败（仅影响差异定位）: 表={}, 错误={}", tableName, e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * 删除条目清单
+     *
+     * @param tableName 表名
+     * @param mapType   World表的地图类型
+     */
+    public static void deleteItemManifest(String tableName, String mapType) {
+        pendingManifests.remove(manifestKey(tableName, mapType));
+        try {
+            ensureManifestTable();
+            DatabaseUtil.getJdbcTemplate().update(
+                    "DELETE FROM roundtrip_item_manifest WHERE table_name = ? AND map_type = ?",
+                    tableName, mapType == null ? "" : mapType);
+        } catch (Exception e) {
+            log.warn("删除条目清单失败: 表={}, mapType={}, 错误={}", tableName, mapType, e.getMessage());
+        }
+    }
+
     /**
      * 验证往返一致性（导出后调用）
      *
+     * 先流式比较整文件 MD5，一致则直接通过；不一致时若有条目清单，逐条目比对并报告差异。
+     *
      * @param tableName    表名
      * @param mapType      World表的地图类型
      * @param exportedFile 导出的XML文件
@@ -123,17 +264,25 @@ public class RoundTripValidator {
                 return new ValidationResult(false, "未记录", "N/A");
             }
 
-            // 2. 计算导出文件哈希
-            String exportedHash = DigestUtil.md5Hex(FileUtil.readBytes(exportedFile));
+            // 2. 计算导出文件哈希（流式读取）
+            String exportedHash = DigestUtil.md5Hex(exportedFile);
             log.debug("导出文件哈希: {} -> {}", exportedFile.getName(), exportedHash);
+            recordExportPath(tableName, mapType, exportedFile);
 
-            // 3. 对比哈希
+            // 3. 对比哈希，不一致时按条目定位差异（loadItemManifest 会先完成该表排队中的清单）
             boolean passed = originalHash.equalsIgnoreCase(exportedHash);
+            XmlItemManifest.Diff diff = null;
+            if (!passed) {
+                XmlItemManifest manifest = loadItemManifest(tableName, mapType);
+                if (manifest != null) {
+                    diff = manifest.compare(exportedFile, MAX_DIFF_DETAILS);
+                }
+            }
 
             // 4. 记录验证结果
             saveValidationResult(tableName, mapType, passed);
 
-            ValidationResult result = new ValidationResult(passed, originalHash, exportedHash);
+            ValidationResult result = new ValidationResult(passed, originalHash, exportedHash, diff);
             log.info(result.getMessage());
 
             return result;
@@ -144,6 +293,65 @@ public class RoundTripValidator {
         }
     }
 
+    /**
+     * 读取已保存的条目清单；该表的清单仍在排队或构建时先完成构建
+     *
+     * @return 清单，未保存时返回 null
+     */
+    public static XmlItemManifest loadItemManifest(String tableName, String mapType) {
+        buildPendingManifest(tableName, mapType);
+        try {
+            ensureManifestTable();
+            byte[] data = DatabaseUtil.getJdbcTemplate().queryForObject(
+                    "SELECT manifest FROM roundtrip_item_manifest WHERE table_name = ? AND map_type = ?",
+                    byte[].class, tableName, mapType == null ? "" : mapType);
+            return data == null ? null : XmlItemManifest.fromBytes(data);
+        } catch (EmptyResultDataAccessException e) {
+            return null;
+        } catch (Exception e) {
+            log.warn("读取条目清单失败: 表={}, 错误={}", tableName, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 记录最近一次导出路径（供 validateAllTables 重新验证），清单尚未保存时先插入只有路径的记录
+     */
+    private static void recordExportPath(String tableName, String mapType, File exportedFile) {
+        try {
+            ensureManifestTable();
+            DatabaseUtil.getJdbcTemplate().update("""
+                INSERT INTO roundtrip_item_manifest (table_name, map_type, last_export_path, updated_at)
+                VALUES (?, ?, ?, NOW())
+                ON CONFLICT (table_name, map_type) DO UPDATE SET
+                    last_export_path = EXCLUDED.last_export_path
+                """, tableName, mapType == null ? "" : mapType, exportedFile.getAbsolutePath());
+        } catch (Exception e) {
+            log.trace("记录导出路径失败（忽略）: {}", e.getMessage());
+        }
+    }
+
+    private static synchronized void ensureManifestTable() {
+        if (manifestTableReady) {
+            return;
+        }
+        DatabaseUtil.getJdbcTemplate().execute("""
+            CREATE TABLE IF NOT EXISTS roundtrip_item_manifest (
+                table_name VARCHAR(100) NOT NULL,
+                map_type VARCHAR(50) NOT NULL DEFAULT '',
+                item_count INT,
+                manifest BYTEA,
+                last_export_path TEXT,
+                updated_at TIMESTAMP NOT NULL DEFAULT NOW(),
+                PRIMARY KEY (table_name, map_type)
+            )
+            """);
+        // 只记录了导出路径、尚未保存清单的表，清单列为空（旧版本建表时为 NOT NULL）
+        DatabaseUtil.getJdbcTemplate().execute(
+                "ALTER TABLE roundtrip_item_manifest ALTER COLUMN item_count DROP NOT NULL, ALTER COLUMN manifest DROP NOT NULL");
+        manifestTableReady = true;
+    }
+
     /**
      * 保存验证结果到数据库
      *
@@ -210,15 +418,21 @@ public class RoundTripValidator {
     /**
      * 批量验证所有表的往返一致性
      *
+     * 有导出记录的表重新对导出文件做验证（多表并行，每个任务流式处理一个文件），
+     * 没有导出记录的表沿用最近一次的验证结果。
+     *
      * @return 验证报告
      */
     public static String validateAllTables() {
         try {
+            ensureManifestTable();
             JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
             String sql = """
-                SELECT table_name, map_type, original_file_hash, last_validation_result
-                FROM file_encoding_metadata
-                WHERE original_file_hash IS NOT NULL
+                SELECT m.table_name, m.map_type, m.last_validation_result, r.last_export_path
+                FROM file_encoding_metadata m
+                LEFT JOIN roundtrip_item_manifest r ON r.table_name = m.table_name AND r.map_type = m.map_type
+                WHERE m.original_file_hash IS NOT NULL
+                ORDER BY m.table_name, m.map_type
                 """;
 
             var results = jdbcTemplate.queryForList(sql);
@@ -229,21 +443,53 @@ public class RoundTripValidator {
             int failed = 0;
             int notValidated = 0;
 
-            for (var row : results) {
-                String tableName = (String) row.get("table_name");
-                String mapType = (String) row.get("map_type");
-                Boolean validationResult = (Boolean) row.get("last_validation_result");
-
-                if (validationResult == null) {
-                    notValidated++;
-                    report.append(String.format("⚪ %s (mapType=%s): 未验证\n", tableName, mapType));
-                } else if (validationResult) {
-                    passed++;
-                    report.append(String.format("✅ %s (mapType=%s): 通过\n", tableName, mapType));
-                } else {
-                    failed++;
-                    report.append(String.format("❌ %s (mapType=%s): 失败\n", tableName, mapType));
+            // 1. 提交需要重新验证的表
+            List<Future<ValidationResult>> futures = new ArrayList<>(total);
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, VALIDATE_THREADS));
+            try {
+                for (var row : results) {
+                    String tableName = (String) row.get("table_name");
+                    String mapType = (String) row.get("map_type");
+                    String exportPath = (String) row.get("last_export_path");
+                    if (exportPath != null && new File(exportPath).isFile()) {
+                        futures.add(executor.submit(() -> validateRoundTrip(tableName, mapType, new File(exportPath))));
+                    } else {
+                        futures.add(null);
+                    }
+                }
+
+                // 2. 按原顺序汇总
+                for (int i = 0; i < total; i++) {
+                    Map<String, Object> row = results.get(i);
+                    String tableName = (String) row.get("table_name");
+                    String mapType = (String) row.get("map_type");
+                    Future<ValidationResult> future = futures.get(i);
+
+                    Boolean validationResult;
+                    ValidationResult detail = null;
+                    if (future != null) {
+                        detail = future.get();
+                        validationResult = detail.isPassed();
+                    } else {
+                        validationResult = (Boolean) row.get("last_validation_result");
+                    }
+
+                    if (validationResult == null) {
+                        notValidated++;
+                        report.append(String.format("⚪ %s (mapType=%s): 未验证\n", tableName, mapType));
+                    } else if (validationResult) {
+                        passed++;
+                        report.append(String.format("✅ %s (mapType=%s): 通过\n", tableName, mapType));
+                    } else {
+                        failed++;
+                        report.append(String.format("❌ %s (mapType=%s): 失败\n", tableName, mapType));
+                        if (detail != null && detail.getDiff() != null) {
+                            report.append("   ").append(detail.getDiff().getSummary().replace("\n", "\n   ")).append("\n");
+                        }
+                    }
                 }
+            } finally {
+                executor.shutdownNow();
             }
 
             report.append(String.format("\n总计: %d, 通过: %d, 失败: %d, 未验证: %d\n",
@@ -0,0 +1,590 @@
+package red.jiuzhou.util;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @className: red.jiuzhou.util.SchemaCatalog.java
+ * @description: 共享的数据库元信息目录（当前 schema 的表、字段、主键）
+ *
+ * 首次使用时用一条 pg_catalog 查询加载整个 schema，构建不可变快照；读操作只读取 volatile 快照引用，无锁。
+ * 失效是精确的：应用自身执行的 DDL（{@link DatabaseUtil#ensureVarcharLengthIfNeeded}、
+ * {@link DatabaseUtil#executeSqlScript} 执行的建表脚本）只重新加载涉及的表并替换快照中的对应条目；
+ * 其他客户端执行的 DDL 通过事件触发器 + LISTEN/NOTIFY 通知（需要超级用户安装触发器，无权限时只依赖应用内失效）。
+ *
+ * 依赖表结构的派生缓存通过 {@link #addInvalidationListener} 订阅失效事件（参数为表名，null 表示全部），
+ * 或比较 {@link #getVersion()} 判断是否需要重建。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class SchemaCatalog {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaCatalog.class);
+
+    private static final String CHANNEL = "jz_schema_changed";
+
+    /** 未命中的表在此间隔内不重复查询数据库 */
+    private static final long MISS_RECHECK_MS = 5000;
+
+    private static final String CATALOG_SQL =
+            "SELECT c.relname AS table_name, obj_description(c.oid, 'pg_class') AS table_comment, " +
+            "       GREATEST(c.reltuples, 0)::bigint AS estimated_rows, " +
+            "       a.attname AS column_name, a.attnum AS ordinal_position, " +
+            "       format_type(a.atttypid, NULL) AS data_type, " +
+            "       format_type(a.atttypid, a.atttypmod) AS column_type, " +
+            "       CASE WHEN a.atttypid IN (1043, 1042) AND a.atttypmod > 4 THEN a.atttypmod - 4 END AS max_length, " +
+            "       NOT a.attnotnull AS nullable, " +
+            "       pg_get_expr(d.adbin, d.adrelid) AS column_default, " +
+            "       col_description(c.oid, a.attnum) AS column_comment, " +
+            // int2vector 下标从 0 开始，换算为从 1 开始的主键序号
+            "       array_position(i.indkey::int2[], a.attnum) - array_lower(i.indkey::int2[], 1) + 1 AS pk_position " +
+            "FROM pg_class c " +
+            "JOIN pg_namespace n ON n.oid = c.relnamespace AND n.nspname = current_schema() " +
+            "JOIN pg_attribute a ON a.attrelid = c.oid AND a.attnum > 0 AND NOT a.attisdropped " +
+            "LEFT JOIN pg_attrdef d ON d.adrelid = c.oid AND d.adnum = a.attnum " +
+            "LEFT JOIN pg_index i ON i.indrelid = c.oid AND i.indisprimary " +
+            "WHERE c.relkind IN ('r', 'p', 'v', 'm', 'f') ";
+
+    private static final Pattern DDL_TABLE = Pattern.compile(
+            "(?i)\\b(?:CREATE|ALTER|DROP)\\s+(?:UNLOGGED\\s+)?TABLE\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?(?:ONLY\\s+)?" +
+            "(?:\"?\\w+\"?\\.)?\"?([\\w$]+)\"?");
+    private static final Pattern DDL_ANY = Pattern.compile(
+            "(?i)\\b(?:CREATE|ALTER|DROP)\\s+(?:OR\\s+REPLACE\\s+)?(?:TABLE|UNLOGGED|VIEW|MATERIALIZED|FOREIGN|SCHEMA)\\b|\\bRENAME\\s+TO\\b");
+
+    private static volatile SchemaCatalog instance;
+    private static final List<Consumer<String>> LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Map<String, TableMeta> tables = Collections.emptyMap();
+    private volatile Map<String, String> lowerCaseIndex = Collections.emptyMap();
+    private volatile long version;
+    private volatile long loadedAt;
+    private final Map<String, Long> recentMisses = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+
+    SchemaCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * 默认数据源的目录，首次调用时加载并启动 DDL 通知监听
+     */
+    public static SchemaCatalog get() {
+        SchemaCatalog catalog = instance;
+        if (catalog == null) {
+            synchronized (SchemaCatalog.class) {
+                catalog = instance;
+                if (catalog == null) {
+                    catalog = new SchemaCatalog(DatabaseUtil.getJdbcTemplate());
+                    catalog.reloadAll();
+                    if (Boolean.parseBoolean(YamlUtils.getProperty("application.yml", "catalog.listen.enabled", "true"))) {
+                        catalog.startListener();
+                    }
+                    instance = catalog;
+                }
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * 订阅失效事件：参数为失效的表名，null 表示整个目录已重新加载
+     */
+    public static void addInvalidationListener(Consumer<String> listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * 应用执行了一段 SQL（如建表脚本）：目录已加载时按其中的 DDL 失效，未加载时首次使用会读到最新结构
+     */
+    public static void onSqlExecuted(String sql) {
+        SchemaCatalog catalog = instance;
+        if (catalog != null) {
+            catalog.invalidateFromSql(sql);
+        }
+    }
+
+    // ==================== 查询（无锁） ====================
+
+    public TableMeta getTable(String tableName) {
+        if (tableName == null) {
+            return null;
+        }
+        Map<String, TableMeta> snapshot = tables;
+        TableMeta table = snapshot.get(tableName);
+        if (table == null) {
+            String realName = lowerCaseIndex.get(tableName.toLowerCase());
+            table = realName != null ? snapshot.get(realName) : null;
+        }
+        if (table == null) {
+            table = recheckMiss(tableName);
+        }
+        return table;
+    }
+
+    public boolean tableExists(String tableName) {
+        return getTable(tableName) != null;
+    }
+
+    /**
+     * 主键字段（按主键定义顺序），表不存在或无主键时为空列表
+     */
+    public List<String> getPrimaryKey(String tableName) {
+        TableMeta table = getTable(tableName);
+        return table != null ? table.getPrimaryKey() : Collections.emptyList();
+    }
+
+    public ColumnMeta getColumn(String tableName, String columnName) {
+        TableMeta table = getTable(tableName);
+        return table != null ? table.getColumn(columnName) : null;
+    }
+
+    public List<ColumnMeta> getColumns(String tableName) {
+        TableMeta table = getTable(tableName);
+        return table != null ? table.getColumns() : Collections.emptyList();
+    }
+
+    /**
+     * 所有表名（按名称排序）
+     */
+    public List<String> getTableNames() {
+        List<String> names = new ArrayList<>(tables.keySet());
+        Collections.sort(names);
+        return names;
+    }
+
+    public List<String> getTableNamesByPrefix(String prefix) {
+        List<String> names = new ArrayList<>();
+        for (String name : tables.keySet()) {
+            if (name.startsWith(prefix)) {
+                names.add(name);
+            }
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    public Collection<TableMeta> getAllTables() {
+        return tables.values();
+    }
+
+    /**
+     * 快照版本号，每次有表被重新加载时递增
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public String getStats() {
+        return String.format("元信息目录: %d 个表, 版本 %d, 全量加载于 %tT", tables.size(), version, loadedAt);
+    }
+
+    // ==================== 加载与失效 ====================
+
+    /**
+     * 全量重新加载（一条查询）
+     */
+    public void reloadAll() {
+        long start = System.currentTimeMillis();
+        Map<String, TableMeta> loaded = query(null);
+        synchronized (writeLock) {
+            publish(loaded);
+            loadedAt = System.currentTimeMillis();
+        }
+        recentMisses.clear();
+        log.info("元信息目录加载完成: {} 个表，耗时 {} ms", loaded.size(), System.currentTimeMillis() - start);
+        notifyListeners(null);
+    }
+
+    /**
+     * 重新加载指定表（表已删除时从目录移除）
+     *
+     * 表名不区分大小写：调用方传入的大小写可能与库中不同（未加引号的 DDL 会被转为小写），
+     * 同名（忽略大小写）的表都会刷新，监听器按库中的实际表名收到通知。
+     */
+    public void invalidate(String tableName) {
+        if (tableName == null) {
+            reloadAll();
+            return;
+        }
+        Map<String, TableMeta> loaded = query(tableName);
+        Set<String> affected = new LinkedHashSet<>();
+        synchronized (writeLock) {
+            Map<String, TableMeta> next = new HashMap<>(tables);
+            next.keySet().removeIf(name -> {
+                if (name.equalsIgnoreCase(tableName)) {
+                    affected.add(name);
+                    return true;
+                }
+                return false;
+            });
+            next.putAll(loaded);
+            affected.addAll(loaded.keySet());
+            publish(next);
+        }
+        recentMisses.remove(tableName.toLowerCase());
+        if (affected.isEmpty()) {
+            affected.add(tableName);
+        }
+        log.debug("元信息目录已刷新表: {}", affected);
+        for (String name : affected) {
+            notifyListeners(name);
+        }
+    }
+
+    /**
+     * 按 SQL 文本中的 CREATE/ALTER/DROP TABLE 语句精确失效；含其他无法定位的 DDL 时全量重新加载
+     */
+    public void invalidateFromSql(String sql) {
+        if (sql == null) {
+            return;
+        }
+        Set<String> affected = new LinkedHashSet<>();
+        int tableStatements = 0;
+        Matcher matcher = DDL_TABLE.matcher(sql);
+        while (matcher.find()) {
+            affected.add(matcher.group(1));
+            tableStatements++;
+        }
+        // 视图、schema、重命名等无法按表定位的 DDL
+        int ddlStatements = 0;
+        Matcher any = DDL_ANY.matcher(sql);
+        while (any.find()) {
+            ddlStatements++;
+        }
+        if (ddlStatements > tableStatements) {
+            reloadAll();
+            return;
+        }
+        for (String table : affected) {
+            invalidate(table);
+        }
+    }
+
+    private TableMeta recheckMiss(String tableName) {
+        long now = System.currentTimeMillis();
+        String missKey = tableName.toLowerCase();
+        Long last = recentMisses.get(missKey);
+        if (last != null && now - last < MISS_RECHECK_MS) {
+            return null;
+        }
+        recentMisses.put(missKey, now);
+        Map<String, TableMeta> loaded = query(tableName);
+        if (loaded.isEmpty()) {
+            return null;
+        }
+        synchronized (writeLock) {
+            Map<String, TableMeta> next = new HashMap<>(tables);
+            next.putAll(loaded);
+            publish(next);
+        }
+        TableMeta table = loaded.get(tableName);
+        if (table == null) {
+            table = loaded.values().iterator().next();
+        }
+        for (String name : loaded.keySet()) {
+            notifyListeners(name);
+        }
+        return table;
+    }
+
+    private void publish(Map<String, TableMeta> next) {
+        Map<String, String> index = new HashMap<>(next.size() * 2);
+        for (String name : next.keySet()) {
+            index.put(name.toLowerCase(), name);
+        }
+        tables = Collections.unmodifiableMap(next);
+        lowerCaseIndex = index;
+        version++;
+    }
+
+    private void notifyListeners(String tableName) {
+        for (Consumer<String> listener : LISTENERS) {
+            try {
+                listener.accept(tableName);
+            } catch (Exception e) {
+                log.warn("元信息失效回调失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private Map<String, TableMeta> query(String tableName) {
+        // 按表名查询时忽略大小写，与 getTable 的查找规则一致
+        String sql = CATALOG_SQL + (tableName != null ? "AND lower(c.relname) = lower(?) " : "") + "ORDER BY c.relname, a.attnum";
+        Object[] args = tableName != null ? new Object[]{tableName} : new Object[0];
+
+        Map<String, TableBuilder> builders = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            String name = rs.getString("table_name");
+            TableBuilder builder = builders.computeIfAbsent(name, k -> {
+                try {
+                    return new TableBuilder(k, rs.getString("table_comment"), rs.getLong("estimated_rows"));
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            int pkPosition = rs.getInt("pk_position");
+            boolean primaryKey = !rs.wasNull();
+            int maxLength = rs.getInt("max_length");
+            builder.columns.add(new ColumnMeta(
+                    rs.getString("column_name"),
+                    rs.getString("data_type"),
+                    rs.getString("column_type"),
+                    maxLength,
+                    rs.getBoolean("nullable"),
+                    rs.getString("column_default"),
+                    rs.getString("column_comment"),
+                    rs.getInt("ordinal_position"),
+                    primaryKey ? pkPosition : 0));
+        }, args);
+
+        Map<String, TableMeta> result = new HashMap<>(builders.size() * 2);
+        for (TableBuilder builder : builders.values()) {
+            result.put(builder.name, builder.build());
+        }
+        return result;
+    }
+
+    // ==================== DDL 通知 ====================
+
+    /**
+     * 安装事件触发器（无权限时跳过）并启动 LISTEN 线程
+     */
+    private void startListener() {
+        installEventTrigger();
+        Thread listener = new Thread(this::listenLoop, "schema-catalog-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    private void installEventTrigger() {
+        try {
+            Integer exists = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM pg_event_trigger WHERE evtname IN ('jz_schema_ddl_end', 'jz_schema_sql_drop')",
+                    Integer.class);
+            if (exists != null && exists == 2) {
+                return;
+            }
+            jdbcTemplate.execute(
+                    "CREATE OR REPLACE FUNCTION jz_notify_schema_change() RETURNS event_trigger LANGUAGE plpgsql AS $$\n" +
+                    "DECLARE r record;\n" +
+                    "BEGIN\n" +
+                    "  IF TG_EVENT = 'sql_drop' THEN\n" +
+                    "    FOR r IN SELECT object_identity FROM pg_event_trigger_dropped_objects()\n" +
+                    "             WHERE object_type IN ('table', 'view', 'materialized view', 'foreign table') LOOP\n" +
+                    "      PERFORM pg_notify('" + CHANNEL + "', r.object_identity);\n" +
+                    "    END LOOP;\n" +
+                    "  ELSE\n" +
+                    "    FOR r IN SELECT object_identity FROM pg_event_trigger_ddl_commands()\n" +
+                    "             WHERE object_type IN ('table', 'table column', 'view', 'materialized view', 'foreign table') LOOP\n" +
+                    "      PERFORM pg_notify('" + CHANNEL + "', r.object_identity);\n" +
+                    "    END LOOP;\n" +
+                    "  END IF;\n" +
+                    "END $$");
+            jdbcTemplate.execute("DROP EVENT TRIGGER IF EXISTS jz_schema_ddl_end");
+            jdbcTemplate.execute("CREATE EVENT TRIGGER jz_schema_ddl_end ON ddl_command_end EXECUTE FUNCTION jz_notify_schema_change()");
+            jdbcTemplate.execute("DROP EVENT TRIGGER IF EXISTS jz_schema_sql_drop");
+            jdbcTemplate.execute("CREATE EVENT TRIGGER jz_schema_sql_drop ON sql_drop EXECUTE FUNCTION jz_notify_schema_change()");
+            log.info("已安装 DDL 事件触发器，外部 DDL 将通过 NOTIFY {} 失效元信息目录", CHANNEL);
+        } catch (Exception e) {
+            log.info("未能安装 DDL 事件触发器（通常需要超级用户），元信息目录仅在应用内 DDL 时失效: {}", e.getMessage());
+        }
+    }
+
+    private void listenLoop() {
+        boolean reconnect = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            // 独立直连：LISTEN 连接伴随进程常驻，不能占用共享连接池的名额
+            try (Connection conn = DatabaseUtil.openUnpooledConnection();
+                 Statement stmt = conn.createStatement()) {
+                conn.setAutoCommit(true);
+                stmt.execute("LISTEN " + CHANNEL);
+                if (reconnect) {
+                    // 断线期间可能错过通知
+                    reloadAll();
+                }
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (!Thread.currentThread().isInterrupted()) {
+                    PGNotification[] notifications = pg.getNotifications(10000);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    Set<String> affected = new LinkedHashSet<>();
+                    for (PGNotification notification : notifications) {
+                        affected.add(tableOf(notification.getParameter()));
+                    }
+                    for (String table : affected) {
+                        invalidate(table);
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("元信息目录 LISTEN 连接中断，30 秒后重连: {}", e.getMessage());
+                reconnect = true;
+                try {
+                    Thread.sleep(30000);
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从 object_identity（如 public.item_templates、public.item_templates.name）取表名
+     */
+    static String tableOf(String identity) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (char c : identity.toCharArray()) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == '.' && !quoted) {
+                parts.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        parts.add(current.toString());
+        return parts.size() >= 2 ? parts.get(1) : parts.get(0);
+    }
+
+    // ==================== 数据结构 ====================
+
+    private static final class TableBuilder {
+        final String name;
+        final String comment;
+        final long estimatedRows;
+        final List<ColumnMeta> columns = new ArrayList<>();
+
+        TableBuilder(String name, String comment, long estimatedRows) {
+            this.name = name;
+            this.comment = comment;
+            this.estimatedRows = estimatedRows;
+        }
+
+        TableMeta build() {
+            return new TableMeta(name, comment, estimatedRows, columns);
+        }
+    }
+
+    /**
+     * 表元信息（不可变）
+     */
+    public static final class TableMeta {
+        private final String name;
+        private final String comment;
+        private final long estimatedRows;
+        private final List<ColumnMeta> columns;
+        private final Map<String, ColumnMeta> columnIndex;
+        private final List<String> primaryKey;
+
+        TableMeta(String name, String comment, long estimatedRows, List<ColumnMeta> columns) {
+            this.name = name;
+            this.comment = comment;
+            this.estimatedRows = estimatedRows;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+
+            Map<String, ColumnMeta> index = new HashMap<>(columns.size() * 2);
+            List<ColumnMeta> pkColumns = new ArrayList<>();
+            for (ColumnMeta column : columns) {
+                index.put(column.getName(), column);
+                index.putIfAbsent(column.getName().toLowerCase(), column);
+                if (column.isPrimaryKey()) {
+                    pkColumns.add(column);
+                }
+            }
+            pkColumns.sort(Comparator.comparingInt(c -> c.pkPosition));
+            List<String> pk = new ArrayList<>(pkColumns.size());
+            for (ColumnMeta column : pkColumns) {
+                pk.add(column.getName());
+            }
+            this.columnIndex = index;
+            this.primaryKey = Collections.unmodifiableList(pk);
+        }
+
+        public String getName() { return name; }
+        public String getComment() { return comment; }
+        /** pg_class.reltuples 估算行数（未 ANALYZE 时为 0） */
+        public long getEstimatedRows() { return estimatedRows; }
+        public List<ColumnMeta> getColumns() { return columns; }
+        public List<String> getPrimaryKey() { return primaryKey; }
+
+        /** 按字段名查找，精确匹配优先，其次不区分大小写 */
+        public ColumnMeta getColumn(String columnName) {
+            if (columnName == null) {
+                return null;
+            }
+            ColumnMeta column = columnIndex.get(columnName);
+            return column != null ? column : columnIndex.get(columnName.toLowerCase());
+        }
+
+        public List<String> getColumnNames() {
+            List<String> names = new ArrayList<>(columns.size());
+            for (ColumnMeta column : columns) {
+                names.add(column.getName());
+            }
+            return names;
+        }
+    }
+
+    /**
+     * 字段元信息（不可变）
+     */
+    public static final class ColumnMeta {
+        private final String name;
+        private final String dataType;
+        private final String columnType;
+        private final int maxLength;
+        private final boolean nullable;
+        private final String defaultValue;
+        private final String comment;
+        private final int ordinalPosition;
+        private final int pkPosition;
+
+        ColumnMeta(String name, String dataType, String columnType, int maxLength, boolean nullable,
+                   String defaultValue, String comment, int ordinalPosition, int pkPosition) {
+            this.name = name;
+            this.dataType = dataType;
+            this.columnType = columnType;
+            this.maxLength = maxLength;
+            this.nullable = nullable;
+            this.defaultValue = defaultValue;
+            this.comment = comment;
+            this.ordinalPosition = ordinalPosition;
+            this.pkPosition = pkPosition;
+        }
+
+        public String getName() { return name; }
+        /** 与 information_schema.columns.data_type 一致，如 character varying、integer */
+        public String getDataType() { return dataType; }
+        /** 带长度/精度的完整类型，如 character varying(255) */
+        public String getColumnType() { return columnType; }
+        /** VARCHAR/CHAR 的最大长度，其他类型为 0 */
+        public int getMaxLength() { return maxLength; }
+        public boolean isNullable() { return nullable; }
+        public String getDefaultValue() { return defaultValue; }
+        public String getComment() { return comment; }
+        public int getOrdinalPosition() { return ordinalPosition; }
+        public boolean isPrimaryKey() { return pkPosition > 0; }
+
+        public boolean isVarchar() {
+            return "character varying".equals(dataType);
+        }
+    }
+}
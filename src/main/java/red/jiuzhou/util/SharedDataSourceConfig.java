@@ -0,0 +1,26 @@
+package red.jiuzhou.util;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * @className: red.jiuzhou.util.SharedDataSourceConfig.java
+ * @description: Spring 容器与 DatabaseUtil 共用同一个连接池
+ *
+ * 定义 DataSource Bean 后 Spring Boot 不再自动创建第二个连接池，
+ * 容器中的 JdbcTemplate / 事务管理器都基于 DatabaseUtil 的默认库连接池。
+ * 连接池的生命周期由 ConnectionPoolManager 管理，容器关闭时不重复关闭。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+@Configuration
+public class SharedDataSourceConfig {
+
+    @Bean(destroyMethod = "")
+    public DataSource dataSource() {
+        return DatabaseUtil.getDataSource();
+    }
+}
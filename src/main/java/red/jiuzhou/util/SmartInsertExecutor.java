@@ -93,12 +93,40 @@ public class SmartInsertExecutor {
         String tableName,
         List<Map<String, String>> dataList,
         ConflictResolutionStrategy strategy) {
+        executeBatchInsert(tableName, dataList, strategy, false);
+    }
+
+    /**
+     * Execute batch insert with specified conflict resolution strategy
+     *
+     * @param tableName Table name
+     * @param dataList Data to insert
+     * @param strategy Conflict resolution strategy
+     * @param bulkLoad Use COPY + staging table merge (see {@link CopyBulkLoader});
+     *                 CANCEL_IMPORT always uses the row-by-row path
+     */
+    public static void executeBatchInsert(
+        String tableName,
+        List<Map<String, String>> dataList,
+        ConflictResolutionStrategy strategy,
+        boolean bulkLoad) {
 
         if (dataList == null || dataList.isEmpty()) {
             log.debug("No data to insert for table {}", tableName);
             return;
         }
 
+        if (bulkLoad && CopyBulkLoader.supports(strategy)) {
+            log.info("Executing COPY bulk load for table {} with strategy: {}",
+                tableName, strategy.getDisplayName());
+            try {
+                CopyBulkLoader.load(tableName, dataList, strategy);
+            } catch (DataAccessException e) {
+                handleInsertError(tableName, dataList, e);
+            }
+            return;
+        }
+
         log.info("Executing batch insert for table {} with strategy: {}",
             tableName, strategy.getDisplayName());
 
@@ -0,0 +1,234 @@
+package red.jiuzhou.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * @className: red.jiuzhou.util.TableChangeTracker.java
+ * @description: 表数据变更跟踪（用于"仅导出变更"）
+ *
+ * 每张被跟踪的表安装一个语句级触发器，任何 INSERT/UPDATE/DELETE/TRUNCATE 都会把
+ * table_change_version 中该表的版本号加一（导入时的清表 + 批量写入同样会触发）。
+ * 导出时记录主表及所有子表的版本签名与导出文件 MD5 到 table_export_state；
+ * 下次导出前若签名未变且导出文件未被改动，即可跳过该表。
+ *
+ * 触发器按语句而非按行触发，批量导入时的额外开销可以忽略。
+ * 导入重建表（DROP + CREATE）会删除触发器，因此每次获取签名时按 pg_trigger 检查并补装，签名中带表的 oid。
+ * 首次跟踪某张表时没有导出记录，会完整导出一次作为基线。
+ * 签名还可附加导出配置指纹，配置变化同样会触发重新导出。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class TableChangeTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(TableChangeTracker.class);
+
+    private static final String TRIGGER_NAME = "jz_change_tracking";
+
+    private static volatile boolean schemaReady = false;
+
+    /**
+     * 创建版本表、导出状态表与触发器函数（幂等）
+     */
+    private static synchronized void ensureSchema() {
+        if (schemaReady) {
+            return;
+        }
+        JdbcTemplate jdbcTemplate = DatabaseUtil.getJdbcTemplate();
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS table_change_version (
+                table_name VARCHAR(255) PRIMARY KEY,
+                version BIGINT NOT NULL DEFAULT 0,
+                changed_at TIMESTAMP NOT NULL DEFAULT NOW()
+            )
+            """);
+        jdbcTemplate.execute("""
+            CREATE TABLE IF NOT EXISTS table_export_state (
+                table_name VARCHAR(255) NOT NULL,
+                map_type VARCHAR(64) NOT NULL DEFAULT '',
+                version_signature TEXT NOT NULL,
+                export_file_path TEXT,
+                export_file_hash VARCHAR(32),
+                export_time TIMESTAMP NOT NULL DEFAULT NOW(),
+                PRIMARY KEY (table_name, map_type)
+            )
+            """);
+        jdbcTemplate.execute("""
+            CREATE OR REPLACE FUNCTION jz_bump_table_version() RETURNS trigger AS $$
+            BEGIN
+                INSERT INTO table_change_version (table_name, version, changed_at)
+                VALUES (TG_TABLE_NAME, 1, NOW())
+                ON CONFLICT (table_name) DO UPDATE
+                    SET version = table_change_version.version + 1, changed_at = NOW();
+                RETURN NULL;
+            END;
+            $$ LANGUAGE plpgsql
+            """);
+        schemaReady = true;
+    }
+
+    /**
+     * 为表安装变更触发器
+     *
+     * CREATE OR REPLACE TRIGGER 需要 PostgreSQL 14+，这里用 DROP + CREATE 以兼容更早的版本。
+     */
+    private static void installTrigger(String tableName) {
+        if (!tableName.matches("^[a-zA-Z0-9_]+$")) {
+            throw new IllegalArgumentException("非法表名: " + tableName);
+        }
+        // 两条语句一次发送，自动提交模式下作为同一个隐式事务执行，不会出现触发器缺失的窗口
+        DatabaseUtil.getJdbcTemplate().execute(String.format(
+            "DROP TRIGGER IF EXISTS %1$s ON \"%2$s\"; " +
+            "CREATE TRIGGER %1$s AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON \"%2$s\" " +
+            "FOR EACH STATEMENT EXECUTE FUNCTION jz_bump_table_version()",
+            TRIGGER_NAME, tableName));
+        log.debug("已为表 {} 安装变更跟踪触发器", tableName);
+    }
+
+    /**
+     * 获取一组表（主表+子表）当前的版本签名，必须在读取数据之前调用，
+     * 这样导出期间发生的修改会在下一次导出时被发现。
+     *
+     * 触发器是否存在每次都从 pg_trigger 读取：导入时 DROP TABLE + CREATE TABLE 会连同触发器一起删除，
+     * 不能依赖进程内记录。签名同时包含表的 oid，表被重建后签名必然变化，即使重建期间的写入没有被计数。
+     *
+     * @return 签名；跟踪不可用（如无权限创建触发器）时返回 null
+     */
+    public static String captureSignature(List<String> tableNames) {
+        return captureSignature(tableNames, null);
+    }
+
+    /**
+     * 获取版本签名，并附加导出配置指纹（表配置、字段顺序、黑名单、合规规则等）。
+     * 配置变化而数据未变时签名同样会变化，避免按旧配置生成的文件被当作"未变化"跳过。
+     *
+     * @param configFingerprint 导出配置指纹，为空时只包含数据版本
+     * @return 签名；跟踪不可用（如无权限创建触发器）时返回 null
+     */
+    public static String captureSignature(List<String> tableNames, String configFingerprint) {
+        try {
+            ensureSchema();
+            List<String> sorted = new ArrayList<>(new TreeSet<>(tableNames));
+            Map<String, Long> oids = new HashMap<>();
+            List<String> untracked = new ArrayList<>();
+            DatabaseUtil.getJdbcTemplate().query(
+                "SELECT c.relname, c.oid::bigint, " +
+                "       EXISTS (SELECT 1 FROM pg_trigger t WHERE t.tgrelid = c.oid AND t.tgname = ?) " +
+                "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace AND n.nspname = current_schema() " +
+                "WHERE c.relkind IN ('r', 'p') AND c.relname = ANY(?)",
+                ps -> {
+                    ps.setString(1, TRIGGER_NAME);
+                    ps.setArray(2, ps.getConnection().createArrayOf("varchar", sorted.toArray()));
+                },
+                rs -> {
+                    oids.put(rs.getString(1), rs.getLong(2));
+                    if (!rs.getBoolean(3)) {
+                        untracked.add(rs.getString(1));
+                    }
+                });
+            for (String tableName : untracked) {
+                installTrigger(tableName);
+            }
+
+            Map<String, Long> versions = new HashMap<>();
+            DatabaseUtil.getJdbcTemplate().query(
+                "SELECT table_name, version FROM table_change_version WHERE table_name = ANY(?)",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", sorted.toArray())),
+                rs -> {
+                    versions.put(rs.getString(1), rs.getLong(2));
+                });
+
+            StringBuilder signature = new StringBuilder();
+            for (String tableName : sorted) {
+                signature.append(tableName).append('@').append(oids.getOrDefault(tableName, 0L))
+                    .append(':').append(versions.getOrDefault(tableName, 0L)).append(';');
+            }
+            if (configFingerprint != null && !configFingerprint.isEmpty()) {
+                signature.append("config:").append(configFingerprint).append(';');
+            }
+            return signature.toString();
+        } catch (Exception e) {
+            log.warn("变更跟踪不可用，按全量导出处理: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 判断自上次导出后数据是否未变化且导出文件未被改动
+     *
+     * @param tableName  主表名
+     * @param mapType    World 表的地图类型，普通表传空字符串
+     * @param signature  {@link #captureSignature} 返回的签名
+     * @param exportFile 导出文件路径
+     */
+    public static boolean isUnchanged(String tableName, String mapType, String signature, String exportFile) {
+        if (signature == null) {
+            return false;
+        }
+        File file = new File(exportFile);
+        if (!file.isFile()) {
+            return false;
+        }
+        try {
+            Map<String, Object> state = DatabaseUtil.getJdbcTemplate().queryForMap(
+                "SELECT version_signature, export_file_path, export_file_hash FROM table_export_state " +
+                "WHERE table_name = ? AND map_type = ?",
+                tableName, mapType == null ? "" : mapType);
+            if (!signature.equals(state.get("version_signature"))
+                || !file.getAbsolutePath().equals(state.get("export_file_path"))) {
+                return false;
+            }
+            String fileHash = cn.hutool.crypto.digest.DigestUtil.md5Hex(file);
+            return fileHash.equals(state.get("export_file_hash"));
+        } catch (EmptyResultDataAccessException e) {
+            return false;
+        } catch (Exception e) {
+            log.warn("读取导出状态失败，按全量导出处理: 表={}, 错误={}", tableName, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 记录一次成功导出（签名为导出开始前获取的签名）
+     */
+    public static void recordExport(String tableName, String mapType, String signature, String exportFile) {
+        if (signature == null) {
+            return;
+        }
+        try {
+            File file = new File(exportFile);
+            String fileHash = cn.hutool.crypto.digest.DigestUtil.md5Hex(file);
+            DatabaseUtil.getJdbcTemplate().update("""
+                INSERT INTO table_export_state (table_name, map_type, version_signature, export_file_path, export_file_hash, export_time)
+                VALUES (?, ?, ?, ?, ?, NOW())
+                ON CONFLICT (table_name, map_type) DO UPDATE SET
+                    version_signature = EXCLUDED.version_signature,
+                    export_file_path = EXCLUDED.export_file_path,
+                    export_file_hash = EXCLUDED.export_file_hash,
+                    export_time = NOW()
+                """,
+                tableName, mapType == null ? "" : mapType, signature, file.getAbsolutePath(), fileHash);
+        } catch (Exception e) {
+            log.warn("记录导出状态失败（下次将全量导出）: 表={}, 错误={}", tableName, e.getMessage());
+        }
+    }
+
+    /**
+     * 清除表的导出状态，强制下次完整导出
+     */
+    public static void invalidate(String tableName, String mapType) {
+        try {
+            DatabaseUtil.getJdbcTemplate().update(
+                "DELETE FROM table_export_state WHERE table_name = ? AND map_type = ?",
+                tableName, mapType == null ? "" : mapType);
+        } catch (Exception e) {
+            log.trace("清除导出状态失败（忽略）: 表={}, 错误={}", tableName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package red.jiuzhou.util;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import org.dom4j.Attribute;
+import org.dom4j.Element;
+import org.dom4j.ElementHandler;
+import org.dom4j.ElementPath;
+import org.dom4j.Node;
+import org.dom4j.io.SAXReader;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @className: red.jiuzhou.util.XmlItemManifest.java
+ * @description: XML 条目级摘要清单
+ *
+ * 流式解析 XML（一次只在内存中保留一个条目），对根节点的每个直接子节点（条目）计算规范化哈希：
+ * - 条目键：子节点 id 的文本，没有则取 id 属性、name 子节点，都没有时使用序号；重复键追加 #n
+ * - 字段：条目的每个直接子节点（重复出现的子表节点记为 name[2]、name[3]…）以及条目属性（@name）
+ * - 规范化：属性按名称排序、文本去除首尾空白、忽略注释与纯空白文本，与编码、BOM、缩进无关
+ *
+ * 清单只保存 条目键 → 64 位条目哈希 + 各字段 64 位哈希，序列化为 gzip 压缩的二进制。
+ * 与导出文件比对时同样逐条目流式处理，可以准确指出哪些条目、哪些字段不一致。
+ * @author: yanxq
+ * @date:  2026-10-16
+ * @version V1.0
+ */
+public class XmlItemManifest {
+
+    private static final int MAGIC = 0x4A5A4D31;
+
+    private final Map<String, ItemDigest> items = new LinkedHashMap<>();
+    /** 字段名去重，同一清单中所有条目共享 */
+    private final Map<String, String> fieldNames = new HashMap<>();
+
+    /**
+     * 单个条目的摘要
+     */
+    public static final class ItemDigest {
+        private final String key;
+        private final long hash;
+        private final String[] fields;
+        private final long[] fieldHashes;
+        private int ordinal;
+
+        ItemDigest(String key, long hash, String[] fields, long[] fieldHashes) {
+            this.key = key;
+            this.hash = hash;
+            this.fields = fields;
+            this.fieldHashes = fieldHashes;
+        }
+
+        public String getKey() { return key; }
+        public long getHash() { return hash; }
+    }
+
+    /**
+     * 比对结果：缺失/多出/内容变化的条目，以及顺序变化的条目数；明细最多保留 maxDetails 条
+     */
+    public static final class Diff {
+        private final int maxDetails;
+        private final List<String> details = new ArrayList<>();
+        private int comparedItems;
+        private int changedItems;
+        private int missingItems;
+        private int extraItems;
+        private int reorderedItems;
+
+        Diff(int maxDetails) {
+            this.maxDetails = maxDetails;
+        }
+
+        private void detail(String message) {
+            if (details.size() < maxDetails) {
+                details.add(message);
+            }
+        }
+
+        public boolean isContentEqual() {
+            return changedItems == 0 && missingItems == 0 && extraItems == 0 && reorderedItems == 0;
+        }
+
+        public int getComparedItems() { return comparedItems; }
+        public int getChangedItems() { return changedItems; }
+        public int getMissingItems() { return missingItems; }
+        public int getExtraItems() { return extraItems; }
+        public int getReorderedItems() { return reorderedItems; }
+        public List<String> getDetails() { return Collections.unmodifiableList(details); }
+
+        public String getSummary() {
+            StringBuilder summary = new StringBuilder(String.format(
+                    "条目 %d 个：内容变化 %d，缺失 %d，多出 %d，顺序变化 %d",
+                    comparedItems, changedItems, missingItems, extraItems, reorderedItems));
+            for (String detail : details) {
+                summary.append("\n  - ").append(detail);
+            }
+            int total = changedItems + missingItems + extraItems;
+            if (total > details.size()) {
+                summary.append("\n  ... 其余 ").append(total - details.size()).append(" 条未列出");
+            }
+            return summary.toString();
+        }
+
+        @Override
+        public String toString() {
+            return getSummary();
+        }
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * 流式构建文件的条目清单
+     */
+    public static XmlItemManifest build(File xmlFile) {
+        XmlItemManifest manifest = new XmlItemManifest();
+        stream(xmlFile, manifest.fieldNames, manifest::add);
+        return manifest;
+    }
+
+    private void add(ItemDigest digest) {
+        digest.ordinal = items.size();
+        items.put(digest.key, digest);
+    }
+
+    /**
+     * 将另一个文件（通常是导出文件）与本清单逐条目比对，内存中只保留本清单与当前条目
+     *
+     * @param maxDetails 最多保留的差异明细条数
+     */
+    public Diff compare(File xmlFile, int maxDetails) {
+        Diff diff = new Diff(maxDetails);
+        BitSet seen = new BitSet(items.size());
+        // 已出现条目的最大原始序号，出现更小的序号即视为顺序变化（缺失/多出的条目不影响判断）
+        int[] maxOrdinal = {-1};
+        stream(xmlFile, new HashMap<>(fieldNames), digest -> {
+            diff.comparedItems++;
+            ItemDigest original = items.get(digest.key);
+            if (original == null) {
+                diff.extraItems++;
+                diff.detail("多出条目 " + digest.key);
+                return;
+            }
+            seen.set(original.ordinal);
+            if (original.ordinal < maxOrdinal[0]) {
+                diff.reorderedItems++;
+            } else {
+                maxOrdinal[0] = original.ordinal;
+            }
+            if (original.hash != digest.hash) {
+                diff.changedItems++;
+                diff.detail("条目 " + digest.key + " 字段不一致: " + String.join(", ", diffFields(original, digest)));
+            }
+        });
+        for (ItemDigest original : items.values()) {
+            if (!seen.get(original.ordinal)) {
+                diff.missingItems++;
+                diff.detail("缺失条目 " + original.key);
+            }
+        }
+        return diff;
+    }
+
+    private static List<String> diffFields(ItemDigest original, ItemDigest exported) {
+        Map<String, Long> exportedFields = new LinkedHashMap<>();
+        for (int i = 0; i < exported.fields.length; i++) {
+            exportedFields.put(exported.fields[i], exported.fieldHashes[i]);
+        }
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < original.fields.length; i++) {
+            Long hash = exportedFields.remove(original.fields[i]);
+            if (hash == null) {
+                result.add(original.fields[i] + "(缺失)");
+            } else if (hash != original.fieldHashes[i]) {
+                result.add(original.fields[i] + "(值不同)");
+            }
+        }
+        for (String extra : exportedFields.keySet()) {
+            result.add(extra + "(多出)");
+        }
+        if (result.isEmpty()) {
+            // 字段集合与值都相同但条目哈希不同，说明字段顺序变化
+            result.add("字段顺序不同");
+        }
+        return result;
+    }
+
+    /**
+     * 逐条目解析文件：每个根节点直接子节点处理完即摘除，内存与文件大小无关
+     */
+    private static void stream(File xmlFile, Map<String, String> fieldNames, Consumer<ItemDigest> consumer) {
+        Map<String, Integer> keyCounts = new HashMap<>();
+        int[] ordinal = {0};
+        SAXReader reader = new SAXReader();
+        reader.setDefaultHandler(new ElementHandler() {
+            @Override
+            public void onStart(ElementPath elementPath) {
+            }
+
+            @Override
+            public void onEnd(ElementPath elementPath) {
+                if (elementPath.size() != 2) {
+                    return;
+                }
+                Element element = elementPath.getCurrent();
+                String key = itemKey(element, ordinal[0]++);
+                int count = keyCounts.merge(key, 1, Integer::sum);
+                if (count > 1) {
+                    key = key + "#" + count;
+                }
+                consumer.accept(digest(key, element, fieldNames));
+                element.detach();
+            }
+        });
+        FileEncodingDetector.EncodingInfo encoding = FileEncodingDetector.detect(xmlFile);
+        try (Reader in = BomAwareFileReader.openReader(xmlFile, encoding)) {
+            reader.read(in);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("流式解析XML失败: " + xmlFile.getName(), e);
+        }
+    }
+
+    private static String itemKey(Element element, int ordinal) {
+        String id = element.elementTextTrim("id");
+        if (id == null || id.isEmpty()) {
+            id = element.attributeValue("id");
+        }
+        if (id == null || id.isEmpty()) {
+            id = element.elementTextTrim("name");
+        }
+        return (id == null || id.isEmpty()) ? "#" + ordinal : id;
+    }
+
+    private static ItemDigest digest(String key, Element element, Map<String, String> fieldNames) {
+        List<String> fields = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        StringBuilder buffer = new StringBuilder();
+
+        for (Attribute attribute : sortedAttributes(element)) {
+            fields.add(fieldNames.computeIfAbsent("@" + attribute.getName(), k -> k));
+            hashes.add(MurmurHash.hash64(attribute.getValue()));
+        }
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (Element child : element.elements()) {
+            int count = occurrences.merge(child.getName(), 1, Integer::sum);
+            String field = count == 1 ? child.getName() : child.getName() + "[" + count + "]";
+            fields.add(fieldNames.computeIfAbsent(field, k -> k));
+            buffer.setLength(0);
+            canonicalize(child, buffer);
+            hashes.add(MurmurHash.hash64(buffer));
+        }
+        // 条目文本（无子节点的条目）
+        String text = element.elements().isEmpty() ? element.getTextTrim() : "";
+        if (!text.isEmpty()) {
+            fields.add(fieldNames.computeIfAbsent("#text", k -> k));
+            hashes.add(MurmurHash.hash64(text));
+        }
+
+        long hash = MurmurHash.hash64(element.getName());
+        long[] fieldHashes = new long[hashes.size()];
+        for (int i = 0; i < fieldHashes.length; i++) {
+            fieldHashes[i] = hashes.get(i);
+            hash = (Long.rotateLeft(hash, 31) ^ MurmurHash.hash64(fields.get(i)) ^ fieldHashes[i]) * 0x9E3779B97F4A7C15L;
+        }
+        return new ItemDigest(key, hash, fields.toArray(new String[0]), fieldHashes);
+    }
+
+    /**
+     * 规范化序列化：名称、排序后的属性、去空白的文本、子节点（保持顺序），以控制字符分隔
+     */
+    private static void canonicalize(Element element, StringBuilder out) {
+        out.append('\u0001').append(element.getName());
+        for (Attribute attribute : sortedAttributes(element)) {
+            out.append('\u0002').append(attribute.getName()).append('=').append(attribute.getValue());
+        }
+        for (Node node : element.content()) {
+            if (node instanceof Element child) {
+                canonicalize(child, out);
+            } else if (node.getNodeType() == Node.TEXT_NODE || node.getNodeType() == Node.CDATA_SECTION_NODE
+                    || node.getNodeType() == Node.ENTITY_REFERENCE_NODE) {
+                String text = node.getText().trim();
+                if (!text.isEmpty()) {
+                    out.append('\u0003').append(text);
+                }
+            }
+        }
+        out.append('\u0004');
+    }
+
+    private static List<Attribute> sortedAttributes(Element element) {
+        if (element.attributeCount() == 0) {
+            return Collections.emptyList();
+        }
+        List<Attribute> attributes = new ArrayList<>(element.attributes());
+        attributes.sort(Comparator.comparing(Attribute::getName));
+        return attributes;
+    }
+
+    /**
+     * 序列化为 gzip 压缩的二进制：字段名表 + 每个条目的 键、哈希、字段下标与字段哈希
+     */
+    public byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(bytes)))) {
+                Map<String, Integer> nameIndex = new LinkedHashMap<>();
+                for (ItemDigest digest : items.values()) {
+                    for (String field : digest.fields) {
+                        nameIndex.putIfAbsent(field, nameIndex.size());
+                    }
+                }
+                out.writeInt(MAGIC);
+                out.writeInt(nameIndex.size());
+                for (String name : nameIndex.keySet()) {
+                    out.writeUTF(name);
+                }
+                out.writeInt(items.size());
+                for (ItemDigest digest : items.values()) {
+                    out.writeUTF(digest.key);
+                    out.writeLong(digest.hash);
+                    out.writeInt(digest.fields.length);
+                    for (int i = 0; i < digest.fields.length; i++) {
+                        out.writeInt(nameIndex.get(digest.fields[i]));
+                        out.writeLong(digest.fieldHashes[i]);
+                    }
+                }
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException("序列化条目清单失败", e);
+        }
+    }
+
+    public static XmlItemManifest fromBytes(byte[] data) {
+        XmlItemManifest manifest = new XmlItemManifest();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new ByteArrayInputStream(data))))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("未知的清单格式");
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+                manifest.fieldNames.put(names[i], names[i]);
+            }
+            int itemCount = in.readInt();
+            for (int i = 0; i < itemCount; i++) {
+                String key = in.readUTF();
+                long hash = in.readLong();
+                int fieldCount = in.readInt();
+                String[] fields = new String[fieldCount];
+                long[] fieldHashes = new long[fieldCount];
+                for (int j = 0; j < fieldCount; j++) {
+                    fields[j] = names[in.readInt()];
+                    fieldHashes[j] = in.readLong();
+                }
+                manifest.add(new ItemDigest(key, hash, fields, fieldHashes));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("读取条目清单失败", e);
+        }
+        return manifest;
+    }
+}
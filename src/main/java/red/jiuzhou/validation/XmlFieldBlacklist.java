@@ -1,6 +1,8 @@
 package red.jiuzhou.validation;
 
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  * XML字段黑名单配置
@@ -182,6 +184,25 @@ public class XmlFieldBlacklist {
         return false;
     }
 
+    /**
+     * 获取对指定表生效的全部黑名单字段（按名称排序）
+     *
+     * @param tableName 表名
+     * @return 该表导出时会被过滤的字段
+     */
+    public static Set<String> getBlacklistedFields(String tableName) {
+        Set<String> fields = new TreeSet<>();
+        for (Set<String> blacklist : List.of(GLOBAL_BLACKLIST, SKILL_BLACKLIST, NPC_BLACKLIST, DROP_BLACKLIST,
+                ITEM_BLACKLIST, PLAYTIME_BLACKLIST, PRECONDITION_BLACKLIST)) {
+            for (String field : blacklist) {
+                if (shouldFilter(tableName, field)) {
+                    fields.add(field);
+                }
+            }
+        }
+        return fields;
+    }
+
     /**
      * 获取字段被过滤的原因
      *
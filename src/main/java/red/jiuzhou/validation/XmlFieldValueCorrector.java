@@ -4,7 +4,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
 
 /**
  * XML字段值自动修正器
@@ -27,9 +29,52 @@ public class XmlFieldValueCorrector {
     private static final Logger log = LoggerFactory.getLogger(XmlFieldValueCorrector.class);
 
     /**
-     * 修正统计信息
+     * 修正统计信息（导出分页并行写出，需线程安全）
      */
-    private static final Map<String, AtomicInteger> CORRECTION_STATS = new HashMap<>();
+    private static final Map<String, AtomicInteger> CORRECTION_STATS = new ConcurrentHashMap<>();
+
+    /**
+     * 修正规则分类：按表名确定，每类只有列出的字段可能被修正（与对应 correctXxxField 的判断保持一致）
+     */
+    private enum Category {
+        SKILL(Set.of("target_flying_restriction", "target_maxcount", "penalty_time_succ",
+                "maxBurstSignetLevel", "max_burst_signet_level", "casting_delay", "cost_parameter")),
+        WORLD(Set.of("strparam1", "strparam2", "strparam3", "instance_cooltime")),
+        NPC(Set.of("skill_level", "abnormal_status_resist_name")),
+        ITEM(Set.of("casting_delay"));
+
+        private final Set<String> fields;
+
+        Category(Set<String> fields) {
+            this.fields = fields;
+        }
+
+        static Category of(String tableName) {
+            if (tableName.startsWith("skill_") || tableName.contains("_skill_")) {
+                return SKILL;
+            } else if (tableName.equals("world") || tableName.startsWith("world_")) {
+                return WORLD;
+            } else if (tableName.startsWith("npc_") || tableName.contains("_npc_")) {
+                return NPC;
+            } else if (tableName.startsWith("item_")) {
+                return ITEM;
+            }
+            return null;
+        }
+
+        String correct(String fieldName, String value) {
+            switch (this) {
+                case SKILL:
+                    return correctSkillField(fieldName, value);
+                case WORLD:
+                    return correctWorldField(fieldName, value);
+                case NPC:
+                    return correctNpcField(fieldName, value);
+                default:
+                    return correctItemField(fieldName, value);
+            }
+        }
+    }
 
     /**
      * 修正字段值（在导出XML时调用）
@@ -44,28 +89,47 @@ public class XmlFieldValueCorrector {
             return value;
         }
 
-        String correctedValue = value;
-
         // 根据表名和字段名应用修正规则
-        if (tableName.startsWith("skill_") || tableName.contains("_skill_")) {
-            correctedValue = correctSkillField(fieldName, value);
-        } else if (tableName.equals("world") || tableName.startsWith("world_")) {
-            correctedValue = correctWorldField(fieldName, value);
-        } else if (tableName.startsWith("npc_") || tableName.contains("_npc_")) {
-            correctedValue = correctNpcField(fieldName, value);
-        } else if (tableName.startsWith("item_")) {
-            correctedValue = correctItemField(fieldName, value);
-        }
+        Category category = Category.of(tableName);
+        String correctedValue = category == null ? value : category.correct(fieldName, value);
 
         // 记录修正
         if (!correctedValue.equals(value)) {
-            String key = tableName + "." + fieldName;
-            CORRECTION_STATS.computeIfAbsent(key, k -> new AtomicInteger(0)).incrementAndGet();
+            recordCorrection(tableName + "." + fieldName);
         }
 
         return correctedValue;
     }
 
+    /**
+     * 预先绑定某表某字段的修正函数，供导出时按列编译一次、逐行直接调用
+     *
+     * @param tableName 表名
+     * @param fieldName 字段名
+     * @return 修正函数（语义同 {@link #correctValue}）；该表该字段没有修正规则时返回 null，调用方直接使用原值
+     */
+    public static UnaryOperator<String> bind(String tableName, String fieldName) {
+        Category category = Category.of(tableName);
+        if (category == null || !category.fields.contains(fieldName)) {
+            return null;
+        }
+        String statsKey = tableName + "." + fieldName;
+        return value -> {
+            if (value == null || value.isEmpty()) {
+                return value;
+            }
+            String correctedValue = category.correct(fieldName, value);
+            if (!correctedValue.equals(value)) {
+                recordCorrection(statsKey);
+            }
+            return correctedValue;
+        };
+    }
+
+    private static void recordCorrection(String key) {
+        CORRECTION_STATS.computeIfAbsent(key, k -> new AtomicInteger(0)).incrementAndGet();
+    }
+
     /**
      * 修正技能字段
      */
@@ -119,6 +119,13 @@ public class FieldConstraint {
                 .build();
     }
 
+    /**
+     * 约束内容指纹（字段、类型、取值范围、默认值），规则修改后指纹随之变化
+     */
+    public String fingerprint() {
+        return fieldName + ':' + type + ':' + minValue + ':' + maxValue + ':' + defaultValue;
+    }
+
     public enum ConstraintType {
         NUMERIC_RANGE,    // 数值范围
         STRING_LENGTH,    // 字符串长度
@@ -95,6 +95,20 @@ public class FileValidationRule {
         return blacklistFields.size() + constraints.size() + requiredFields.size() + referenceFields.size();
     }
 
+    /**
+     * 规则内容指纹（黑名单、约束、必填、引用字段按名称排序后拼接），用于判断按旧规则导出的文件是否过期
+     */
+    public String fingerprint() {
+        StringBuilder sb = new StringBuilder(tableName).append('|')
+                .append(new TreeSet<>(blacklistFields)).append('|')
+                .append(new TreeSet<>(requiredFields)).append('|')
+                .append(new TreeMap<>(referenceFields)).append('|');
+        for (String fieldName : new TreeSet<>(constraints.keySet())) {
+            sb.append(constraints.get(fieldName).fingerprint()).append(';');
+        }
+        return sb.toString();
+    }
+
     public static class Builder {
         private String tableName;
         private String xmlFileName;
@@ -0,0 +1,176 @@
+package red.jiuzhou.dbxml;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+import org.dom4j.io.OutputFormat;
+import org.dom4j.io.XMLWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * XmlExportWriter 与原导出路径（分页 asXML → parseText 合并 → XMLWriter 美化输出）逐字节对比
+ */
+class XmlExportWriterTest {
+
+    /** 覆盖空串、CR/CRLF、制表符、DEL/NEL、引号与需要转义的字符 */
+    private static final String[] VALUES = {
+            "", "plain", "a\r\nb", "a\rb", "a\nb", "x\ty", "x\u007fy\u0085z", "q\"'<>&", "  ", "\t", "tail\n", "中文"
+    };
+
+    @Test
+    void matchesDom4jWriteParseFormatPath() throws Exception {
+        List<Row> rows = sampleRows();
+        assertEquals(legacyExport(rows), streamingExport(rows, false));
+    }
+
+    @Test
+    void pageFragmentsMatchDom4jWriteParseFormatPath() throws Exception {
+        List<Row> rows = sampleRows();
+        assertEquals(legacyExport(rows), streamingExport(rows, true));
+    }
+
+    @Test
+    void emptyTextIsWrittenAsEmptyElement() throws IOException {
+        StringWriter out = new StringWriter();
+        XmlExportWriter writer = new XmlExportWriter(out);
+        writer.writeStartElement("x");
+        writer.writeCharacters("");
+        writer.writeAttribute("a", "1");
+        writer.writeEndElement();
+        assertEquals("\n<x a=\"1\"/>", out.toString());
+    }
+
+    @Test
+    void lineBreaksAreNormalized() {
+        assertEquals("a\nb\nc\n", XmlExportWriter.escapeElementText("a\r\nb\rc\n"));
+        assertEquals("a b c d e", XmlExportWriter.escapeAttributeValue("a\r\nb\rc\nd\te"));
+        assertEquals("&quot;&lt;&amp;&gt;'", XmlExportWriter.escapeAttributeValue("\"<&>'"));
+    }
+
+    private static List<Row> sampleRows() {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < VALUES.length; i++) {
+            Row row = new Row();
+            row.attributes.put("id", String.valueOf(i));
+            row.attributes.put("name", VALUES[(i + 3) % VALUES.length]);
+            for (int j = 0; j < VALUES.length; j++) {
+                row.fields.put("f" + j, VALUES[(i + j) % VALUES.length]);
+            }
+            if (i % 3 == 0) {
+                row.children.add(VALUES[i]);
+                row.children.add(VALUES[(i + 1) % VALUES.length]);
+            }
+            rows.add(row);
+        }
+        // 只有属性、没有子节点的行
+        Row attributesOnly = new Row();
+        attributesOnly.attributes.put("id", "last");
+        rows.add(attributesOnly);
+        return rows;
+    }
+
+    /**
+     * 原导出路径：dom4j 构建分页 Document，asXML 写出后重新解析合并，最后用美化格式写出
+     */
+    private static String legacyExport(List<Row> rows) throws Exception {
+        Document page = DocumentHelper.createDocument();
+        Element pageRoot = page.addElement("items");
+        for (Row row : rows) {
+            Element item = pageRoot.addElement("item");
+            row.attributes.forEach(item::addAttribute);
+            row.fields.forEach((name, value) -> item.addElement(name).setText(value));
+            if (!row.children.isEmpty()) {
+                Element list = item.addElement("children");
+                for (String child : row.children) {
+                    Element data = list.addElement("data");
+                    data.addAttribute("v", child);
+                    data.addElement("value").setText(child);
+                }
+            }
+        }
+
+        Document merged = DocumentHelper.createDocument();
+        Element root = merged.addElement("items");
+        root.addAttribute("generator", "test");
+        Document parsed = DocumentHelper.parseText(page.asXML());
+        for (Element element : new ArrayList<>(parsed.getRootElement().elements())) {
+            element.detach();
+            root.add(element);
+        }
+
+        OutputFormat format = OutputFormat.createPrettyPrint();
+        format.setEncoding("UTF-8");
+        format.setIndent("\t");
+        format.setNewlines(true);
+        format.setTrimText(false);
+        StringWriter out = new StringWriter();
+        XMLWriter xmlWriter = new XMLWriter(out, format);
+        xmlWriter.write(merged);
+        xmlWriter.flush();
+        return out.toString();
+    }
+
+    /**
+     * 流式导出路径；pageFragments 为 true 时与并行分页一样先在 baseDepth=1 的写出器里渲染片段再拼接
+     */
+    private static String streamingExport(List<Row> rows, boolean pageFragments) throws IOException {
+        StringWriter out = new StringWriter();
+        XmlExportWriter writer = new XmlExportWriter(out);
+        writer.writeStartDocument("UTF-8");
+        writer.writeStartElement("items");
+        writer.writeAttribute("generator", "test");
+        for (int start = 0; start < rows.size(); start += 5) {
+            List<Row> page = rows.subList(start, Math.min(rows.size(), start + 5));
+            if (pageFragments) {
+                StringWriter fragment = new StringWriter();
+                XmlExportWriter pageWriter = new XmlExportWriter(fragment, 1);
+                writeRows(pageWriter, page);
+                pageWriter.flush();
+                writer.writeRaw(fragment.toString());
+            } else {
+                writeRows(writer, page);
+            }
+        }
+        writer.writeEndDocument();
+        writer.flush();
+        return out.toString();
+    }
+
+    private static void writeRows(XmlExportWriter writer, List<Row> rows) throws IOException {
+        for (Row row : rows) {
+            writer.writeStartElement("item");
+            for (Map.Entry<String, String> attr : row.attributes.entrySet()) {
+                writer.writeAttribute(attr.getKey(), attr.getValue());
+            }
+            for (Map.Entry<String, String> field : row.fields.entrySet()) {
+                writer.writeTextElement(field.getKey(), field.getValue());
+            }
+            if (!row.children.isEmpty()) {
+                writer.writeStartElement("children");
+                for (String child : row.children) {
+                    writer.writeStartElement("data");
+                    writer.writeAttribute("v", child);
+                    writer.writeTextElement("value", child);
+                    writer.writeEndElement();
+                }
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    private static final class Row {
+        private final Map<String, String> attributes = new LinkedHashMap<>();
+        private final Map<String, String> fields = new LinkedHashMap<>();
+        private final List<String> children = new ArrayList<>();
+    }
+}
@@ -0,0 +1,39 @@
+package red.jiuzhou.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * XmlSearchIndex 正则字面量前缀（布隆过滤候选文件用）
+ */
+class XmlSearchIndexTest {
+
+    @Test
+    void literalPrefixStopsAtFirstMetacharacter() {
+        assertEquals("item_", XmlSearchIndex.literalPrefix("item_\\d+"));
+        assertEquals("skill", XmlSearchIndex.literalPrefix("^skill.*"));
+        assertEquals("ab", XmlSearchIndex.literalPrefix("abc?d"));
+        assertEquals("abc", XmlSearchIndex.literalPrefix("abc+"));
+    }
+
+    @Test
+    void topLevelAlternationDisablesPruning() {
+        assertEquals("", XmlSearchIndex.literalPrefix("abc|xyz"));
+        assertEquals("", XmlSearchIndex.literalPrefix("^abc|xyz$"));
+        assertEquals("", XmlSearchIndex.literalPrefix("abc\\d|xyz"));
+    }
+
+    @Test
+    void alternationInsideGroupOrClassOrEscapedKeepsPrefix() {
+        assertEquals("abc", XmlSearchIndex.literalPrefix("abc(1|2)"));
+        assertEquals("abc", XmlSearchIndex.literalPrefix("abc[|x]"));
+        assertEquals("abc", XmlSearchIndex.literalPrefix("abc\\|xyz"));
+    }
+
+    @Test
+    void inlineFlagGroupDisablesPruning() {
+        assertEquals("", XmlSearchIndex.literalPrefix("(?i)abc"));
+        assertEquals("", XmlSearchIndex.literalPrefix("abc(?x) d"));
+    }
+}
@@ -0,0 +1,105 @@
+package red.jiuzhou.ui.mapping;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 集合式同步（需要 PostgreSQL，通过 -Dtest.pg.url=jdbc:postgresql://host:port/db?user=...&amp;password=... 指定，未指定时跳过）
+ */
+class EnhancedDataSyncServiceTest {
+
+    private Connection conn;
+
+    @BeforeEach
+    void connect() throws SQLException {
+        String url = System.getProperty("test.pg.url");
+        assumeTrue(url != null && !url.isEmpty(), "未配置 test.pg.url，跳过数据库测试");
+        conn = DriverManager.getConnection(url);
+        conn.setAutoCommit(false);
+    }
+
+    @AfterEach
+    void close() throws SQLException {
+        if (conn != null) {
+            conn.rollback();
+            conn.close();
+        }
+    }
+
+    @Test
+    void fullSyncKeepsRemappedAndUnmappedChildRows() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE sync_src_child (parent_id INT, id INT, val TEXT)");
+            stmt.execute("CREATE TEMP TABLE sync_tgt_child (parent_id INT, id INT, val TEXT, PRIMARY KEY (parent_id, id))");
+            stmt.execute("INSERT INTO sync_src_child VALUES (1, 1, 'a'), (1, 2, 'b'), (2, 1, 'c'), (3, 1, 'unmapped')");
+            stmt.execute("INSERT INTO sync_tgt_child VALUES (101, 1, 'old'), (102, 9, 'stale'), (3, 1, 'keep')");
+        }
+
+        // 父表主键不是恒等映射：源 1/2 对应目标 101/102，源 3 没有映射
+        Map<String, String> parentKeyMapping = new LinkedHashMap<>();
+        parentKeyMapping.put("1", "101");
+        parentKeyMapping.put("2", "102");
+
+        EnhancedDataSyncService.EnhancedSyncResult result = new EnhancedDataSyncService.EnhancedSyncResult();
+        EnhancedDataSyncService.syncDataSetBased(conn, "sync_src_child", "sync_tgt_child", "parent_id,id", "parent_id",
+                Arrays.asList("parent_id", "id", "val"), parentKeyMapping,
+                EnhancedDataSyncService.SyncMode.FULL_SYNC, result);
+
+        assertEquals(Arrays.asList("3:1:keep", "101:1:a", "101:2:b", "102:1:c"), targetRows());
+        assertEquals(1, result.deletedRows);
+        assertEquals(2, result.insertedRows);
+        assertEquals(1, result.updatedRows);
+        assertEquals(1, result.skippedRows);
+    }
+
+    @Test
+    void fullSyncWithoutMappingDeletesRowsMissingFromSource() throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE sync_src_main (id INT, val TEXT)");
+            stmt.execute("CREATE TEMP TABLE sync_tgt_main (id INT PRIMARY KEY, val TEXT)");
+            stmt.execute("INSERT INTO sync_src_main VALUES (1, 'a'), (2, 'b')");
+            stmt.execute("INSERT INTO sync_tgt_main VALUES (1, 'old'), (5, 'stale')");
+        }
+
+        EnhancedDataSyncService.EnhancedSyncResult result = new EnhancedDataSyncService.EnhancedSyncResult();
+        EnhancedDataSyncService.syncDataSetBased(conn, "sync_src_main", "sync_tgt_main", "id", null,
+                Arrays.asList("id", "val"), null, EnhancedDataSyncService.SyncMode.FULL_SYNC, result);
+
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id || ':' || val FROM sync_tgt_main ORDER BY id")) {
+            List<String> rows = new ArrayList<>();
+            while (rs.next()) {
+                rows.add(rs.getString(1));
+            }
+            assertEquals(Arrays.asList("1:a", "2:b"), rows);
+        }
+        assertEquals(1, result.deletedRows);
+    }
+
+    private List<String> targetRows() throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(
+                     "SELECT parent_id || ':' || id || ':' || val FROM sync_tgt_child ORDER BY parent_id, id")) {
+            while (rs.next()) {
+                rows.add(rs.getString(1));
+            }
+        }
+        return rows;
+    }
+}
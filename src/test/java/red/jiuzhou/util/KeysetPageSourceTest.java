@@ -0,0 +1,129 @@
+package red.jiuzhou.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * 表浏览分块读取（数据库部分需要 PostgreSQL，通过 -Dtest.pg.url 指定，未指定时跳过）
+ */
+class KeysetPageSourceTest {
+
+    /** 与 XMLToConf 生成的表配置一致：主键是文本，按数值排序 */
+    private static final String CONFIGURED_SQL = "select * from \"browse_item\" order by CAST(\"id\" AS INTEGER) ASC";
+
+    // 单线程执行，预取与读取不会在同一连接上并发
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private SingleConnectionDataSource dataSource;
+
+    @AfterEach
+    void close() {
+        executor.shutdownNow();
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+    }
+
+    @Test
+    void splitsOutermostOrderBy() {
+        String[] parts = KeysetPageSource.splitOrderBy(
+                "SELECT * FROM t WHERE note = 'order by x' AND id IN (SELECT id FROM s ORDER BY id) ORDER BY a, b DESC");
+        assertEquals("SELECT * FROM t WHERE note = 'order by x' AND id IN (SELECT id FROM s ORDER BY id)", parts[0]);
+        assertEquals("a, b DESC", parts[1]);
+        assertArrayEquals(new String[]{"SELECT * FROM border_by", ""},
+                KeysetPageSource.splitOrderBy("SELECT * FROM border_by"));
+    }
+
+    @Test
+    void parsesSortTerms() {
+        List<KeysetPageSource.SortKey> keys = KeysetPageSource.parseOrderBy(
+                "CAST(\"id\" AS INTEGER) ASC, coalesce(a, 'x,y') desc, \"b\" nulls first");
+        assertEquals(3, keys.size());
+        assertEquals("CAST(\"id\" AS INTEGER)", keys.get(0).getExpression());
+        assertFalse(keys.get(0).isDescending());
+        assertFalse(keys.get(0).isNullsFirst());
+        assertEquals("coalesce(a, 'x,y')", keys.get(1).getExpression());
+        assertEquals(true, keys.get(1).isDescending());
+        assertEquals(true, keys.get(1).isNullsFirst());
+        assertEquals("\"b\"", keys.get(2).getExpression());
+        assertEquals(true, keys.get(2).isNullsFirst());
+    }
+
+    @Test
+    void followsConfiguredOrderAcrossBlocks() {
+        JdbcTemplate jdbcTemplate = createTable();
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= 23; i++) {
+            expected.add(String.valueOf(i));
+        }
+
+        KeysetPageSource source = newSource(jdbcTemplate, "", Collections.emptyList());
+        // 先跳到后面的块，再顺序读取
+        List<Map<String, Object>> jumped = source.loadBlock(4).join();
+        assertEquals(List.of("17", "18", "19", "20"), ids(jumped));
+        assertEquals(expected, ids(readAll(source)));
+        assertEquals(23, source.getKnownSize());
+        assertFalse(jumped.get(0).keySet().stream().anyMatch(k -> k.startsWith("__keyset_")));
+    }
+
+    @Test
+    void sortsOnServerWithNullsAndTies() {
+        JdbcTemplate jdbcTemplate = createTable();
+        List<String> expected = jdbcTemplate.queryForList(
+                "SELECT id FROM browse_item WHERE CAST(id AS INTEGER) > 2 "
+                        + "ORDER BY val DESC NULLS FIRST, CAST(id AS INTEGER)", String.class);
+
+        KeysetPageSource source = newSource(jdbcTemplate, "CAST(id AS INTEGER) > 2",
+                List.of(KeysetPageSource.SortKey.column("val", true)));
+        source.loadBlock(3).join();
+        assertEquals(expected, ids(readAll(source)));
+    }
+
+    private KeysetPageSource newSource(JdbcTemplate jdbcTemplate, String filter, List<KeysetPageSource.SortKey> sortKeys) {
+        return new KeysetPageSource(jdbcTemplate, "browse_item", CONFIGURED_SQL, List.of("id"),
+                filter, sortKeys, executor, 4, 3);
+    }
+
+    private JdbcTemplate createTable() {
+        String url = System.getProperty("test.pg.url");
+        assumeTrue(url != null && !url.isEmpty(), "未配置 test.pg.url，跳过数据库测试");
+        dataSource = new SingleConnectionDataSource(url, true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TEMP TABLE browse_item (id TEXT PRIMARY KEY, val TEXT)");
+        for (int i = 1; i <= 23; i++) {
+            // 重复值与 NULL 交错，文本主键按字典序与数值序不同
+            jdbcTemplate.update("INSERT INTO browse_item VALUES (?, ?)", String.valueOf(i), i % 4 == 0 ? null : "v" + (i % 3));
+        }
+        return jdbcTemplate;
+    }
+
+    private static List<Map<String, Object>> readAll(KeysetPageSource source) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (int block = 0; ; block++) {
+            List<Map<String, Object>> part = source.loadBlock(block).join();
+            rows.addAll(part);
+            if (part.size() < source.getBlockSize()) {
+                return rows;
+            }
+        }
+    }
+
+    private static List<String> ids(List<Map<String, Object>> rows) {
+        List<String> ids = new ArrayList<>();
+        rows.forEach(row -> ids.add((String) row.get("id")));
+        return ids;
+    }
+}